@@ -0,0 +1,32 @@
+#!/bin/bash
+
+# 基准测试
+# 基准测试代码位于src/benchmark/java，只在benchmark profile下作为测试源码编译，不随应用部署。
+# 用法: ./benchmark.sh <名称> [参数...]
+#   stream-protocols [token数] [轮数]    流式协议和压缩方式的字节数与编码耗时
+#   search [查询数] [延迟毫秒] [轮数]     依次搜索与多查询搜索的耗时，搜索接口由本机桩服务模拟
+#   knowledge [text|vectors] [分块数] [查询数] [ef]   知识库索引的构建耗时、查询延迟和recall@10
+
+TARGET=target
+
+case "$1" in
+    stream-protocols)
+        MAIN=com.example.langchain4jdeepseek.sse.StreamProtocolBenchmark
+        ;;
+    search)
+        MAIN=com.example.langchain4jdeepseek.tools.SearchBenchmark
+        ;;
+    knowledge)
+        MAIN=com.example.langchain4jdeepseek.knowledge.KnowledgeBenchmark
+        ;;
+    *)
+        echo "用法: $0 <stream-protocols|search|knowledge> [参数...]" >&2
+        exit 1
+        ;;
+esac
+shift
+
+mvn -B -q -Pbenchmark test-compile || exit 1
+mvn -B -q dependency:build-classpath -Dmdep.includeScope=test -Dmdep.outputFile=$TARGET/benchmark-classpath.txt || exit 1
+
+java -cp "$TARGET/classes:$TARGET/test-classes:$(cat $TARGET/benchmark-classpath.txt)" $MAIN "$@"
@@ -0,0 +1,261 @@
+package com.example.langchain4jdeepseek.knowledge;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * 知识库检索基准测试
+ * 用合成语料构建独立的索引，测量构建耗时、查询延迟分位数，以及相对暴力检索的recall@k。
+ * 支持两种语料：
+ * text：合成分块按主题生成，一半的词取自所属主题的专有词，一半取自通用词，用特征哈希模型向量化，
+ * 近似真实文档按主题聚集的分布；查询只取分块中的少量词，与分块的相似度普遍偏低且并列较多。
+ * vectors：围绕若干中心的高斯聚类向量，查询为数据点加噪声，用于单独衡量索引本身的召回率。
+ * 用法: ./benchmark.sh knowledge [text|vectors] [分块数] [查询数] [ef]
+ */
+public class KnowledgeBenchmark {
+
+    private static final int VOCABULARY_SIZE = 20000;
+    private static final int WORDS_PER_CHUNK = 60;
+    private static final int WORDS_PER_QUERY = 8;
+    private static final int CHUNKS_PER_TOPIC = 200;
+    private static final int WORDS_PER_TOPIC = 40;
+    private static final int VECTORS_PER_CLUSTER = 400;
+    private static final double CLUSTER_SPREAD = 0.7;
+    private static final double QUERY_NOISE = 0.1;
+    private static final int TOP_K = 10;
+    private static final float TIE_EPSILON = 1e-6f;
+
+    private static final String[] SYLLABLES = {
+            "ka", "ri", "to", "me", "su", "lo", "na", "vi", "de", "po",
+            "zu", "xe", "ba", "qi", "fo", "ly", "gar", "ten", "mon", "sil"
+    };
+
+    private final EmbeddingModel embeddingModel;
+    private final int m;
+    private final int efConstruction;
+    private final int efSearch;
+
+    public KnowledgeBenchmark(EmbeddingModel embeddingModel, int m, int efConstruction, int efSearch) {
+        this.embeddingModel = embeddingModel;
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String corpus = args.length > 0 ? args[0] : "text";
+        int chunks = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        int queries = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+        int ef = args.length > 3 ? Integer.parseInt(args[3]) : 128;
+        KnowledgeBenchmark benchmark = new KnowledgeBenchmark(new HashingEmbeddingModel(256), 16, 100, ef);
+        Map<String, Object> result = switch (corpus) {
+            case "text" -> benchmark.run(chunks, queries);
+            case "vectors" -> benchmark.runVectors(chunks, queries);
+            default -> throw new IllegalArgumentException("Unknown corpus: " + corpus);
+        };
+        System.out.println(new ObjectMapper().writerWithDefaultPrettyPrinter().writeValueAsString(result));
+    }
+
+    /**
+     * 用合成文本语料运行基准测试
+     * @param chunkCount 合成分块数
+     * @param queryCount 查询次数
+     * @return 测试结果
+     */
+    public Map<String, Object> run(int chunkCount, int queryCount) {
+        SplittableRandom random = new SplittableRandom(7);
+        String[] vocabulary = vocabulary(random);
+        HnswIndex index = new HnswIndex(embeddingModel.dimension(), m, efConstruction);
+
+        long embedNanos = 0;
+        long buildNanos = 0;
+        String[][] topics = new String[Math.max(1, chunkCount / CHUNKS_PER_TOPIC)][];
+        for (int t = 0; t < topics.length; t++) {
+            topics[t] = new String[WORDS_PER_TOPIC];
+            for (int w = 0; w < WORDS_PER_TOPIC; w++) {
+                topics[t][w] = vocabulary[random.nextInt(vocabulary.length)];
+            }
+        }
+
+        String[] texts = new String[chunkCount];
+        for (int i = 0; i < chunkCount; i++) {
+            texts[i] = chunk(vocabulary, topics[random.nextInt(topics.length)], random);
+            long start = System.nanoTime();
+            float[] vector = embeddingModel.embed(texts[i]).content().vector();
+            long embedded = System.nanoTime();
+            index.add(vector);
+            buildNanos += System.nanoTime() - embedded;
+            embedNanos += embedded - start;
+        }
+
+        float[][] queries = new float[queryCount][];
+        for (int q = 0; q < queryCount; q++) {
+            // 从随机分块中抽取部分词作为查询，模拟用户只记得片段
+            String[] words = texts[random.nextInt(chunkCount)].split(" ");
+            StringBuilder query = new StringBuilder();
+            for (int i = 0; i < WORDS_PER_QUERY; i++) {
+                query.append(words[random.nextInt(words.length)]).append(' ');
+            }
+            queries[q] = embeddingModel.embed(query.toString()).content().vector();
+        }
+
+        Map<String, Object> result = header("text", chunkCount, queryCount, embeddingModel.dimension());
+        result.put("embedMillis", embedNanos / 1_000_000);
+        result.put("buildMillis", buildNanos / 1_000_000);
+        result.putAll(query(index, queries));
+        return result;
+    }
+
+    /**
+     * 用高斯聚类向量运行基准测试
+     * @param vectorCount 向量数
+     * @param queryCount 查询次数
+     * @return 测试结果
+     */
+    public Map<String, Object> runVectors(int vectorCount, int queryCount) {
+        SplittableRandom random = new SplittableRandom(7);
+        int dimension = embeddingModel.dimension();
+        float[][] centers = new float[Math.max(1, vectorCount / VECTORS_PER_CLUSTER)][dimension];
+        for (float[] center : centers) {
+            for (int i = 0; i < dimension; i++) {
+                center[i] = (float) gaussian(random);
+            }
+        }
+
+        HnswIndex index = new HnswIndex(dimension, m, efConstruction);
+        float[][] vectors = new float[vectorCount][];
+        long start = System.nanoTime();
+        for (int n = 0; n < vectorCount; n++) {
+            float[] center = centers[random.nextInt(centers.length)];
+            float[] vector = new float[dimension];
+            for (int i = 0; i < dimension; i++) {
+                vector[i] = center[i] + (float) (gaussian(random) * CLUSTER_SPREAD);
+            }
+            vectors[n] = normalize(vector);
+            index.add(vectors[n]);
+        }
+        long buildNanos = System.nanoTime() - start;
+
+        float[][] queries = new float[queryCount][];
+        for (int q = 0; q < queryCount; q++) {
+            float[] base = vectors[random.nextInt(vectorCount)];
+            float[] query = new float[dimension];
+            for (int i = 0; i < dimension; i++) {
+                query[i] = base[i] + (float) (gaussian(random) * QUERY_NOISE);
+            }
+            queries[q] = normalize(query);
+        }
+
+        Map<String, Object> result = header("vectors", vectorCount, queryCount, dimension);
+        result.put("buildMillis", buildNanos / 1_000_000);
+        result.putAll(query(index, queries));
+        return result;
+    }
+
+    private Map<String, Object> header(String corpus, int count, int queryCount, int dimension) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("corpus", corpus);
+        result.put("chunks", count);
+        result.put("queries", queryCount);
+        result.put("dimension", dimension);
+        result.put("m", m);
+        result.put("efConstruction", efConstruction);
+        result.put("efSearch", efSearch);
+        return result;
+    }
+
+    /**
+     * 逐个查询，统计延迟分位数和相对暴力检索的召回率
+     */
+    private Map<String, Object> query(HnswIndex index, float[][] queries) {
+        long[] latencies = new long[queries.length];
+        long exactNanos = 0;
+        double recall = 0;
+        for (int q = 0; q < queries.length; q++) {
+            long start = System.nanoTime();
+            List<HnswIndex.Scored> approximate = index.search(queries[q], TOP_K, efSearch, null);
+            latencies[q] = System.nanoTime() - start;
+
+            long exactStart = System.nanoTime();
+            List<HnswIndex.Scored> exact = index.exactSearch(queries[q], TOP_K);
+            exactNanos += System.nanoTime() - exactStart;
+
+            // 与第k个精确结果相似度相同的分块同样算命中，避免并列分数导致召回率偏低
+            if (exact.isEmpty()) {
+                recall += 1;
+            } else {
+                float threshold = exact.get(exact.size() - 1).score() - TIE_EPSILON;
+                long found = approximate.stream().filter(scored -> scored.score() >= threshold).count();
+                recall += (double) found / exact.size();
+            }
+        }
+        Arrays.sort(latencies);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        if (queries.length > 0) {
+            result.put("queryP50Micros", percentile(latencies, 0.50) / 1000);
+            result.put("queryP95Micros", percentile(latencies, 0.95) / 1000);
+            result.put("queryP99Micros", percentile(latencies, 0.99) / 1000);
+            result.put("bruteForceAvgMicros", exactNanos / queries.length / 1000);
+            result.put("recallAt" + TOP_K, Math.round(recall / queries.length * 1000) / 1000.0);
+        }
+        return result;
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(percentile * sorted.length) - 1)];
+    }
+
+    private static double gaussian(SplittableRandom random) {
+        // Box-Muller变换
+        return Math.sqrt(-2 * Math.log(1 - random.nextDouble())) * Math.cos(2 * Math.PI * random.nextDouble());
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        float scale = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] *= scale;
+        }
+        return vector;
+    }
+
+    private static String[] vocabulary(SplittableRandom random) {
+        String[] vocabulary = new String[VOCABULARY_SIZE];
+        for (int i = 0; i < VOCABULARY_SIZE; i++) {
+            StringBuilder word = new StringBuilder();
+            int syllables = 2 + random.nextInt(3);
+            for (int s = 0; s < syllables; s++) {
+                word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            }
+            vocabulary[i] = word.toString();
+        }
+        return vocabulary;
+    }
+
+    /**
+     * 生成一个分块：主题词均匀抽取，通用词按近似齐普夫分布抽取（少数高频词加大量低频词）
+     */
+    private static String chunk(String[] vocabulary, String[] topic, SplittableRandom random) {
+        StringBuilder chunk = new StringBuilder();
+        for (int i = 0; i < WORDS_PER_CHUNK; i++) {
+            if (i % 2 == 0) {
+                chunk.append(topic[random.nextInt(topic.length)]);
+            } else {
+                double r = random.nextDouble();
+                chunk.append(vocabulary[(int) (vocabulary.length * r * r * r)]);
+            }
+            chunk.append(' ');
+        }
+        return chunk.toString();
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.langchain4jdeepseek.sse;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * 流式协议基准测试
+ * 用合成的中英文混合token流分别按各协议和压缩方式编码，统计写出字节数、写出次数和编码吞吐，
+ * 与原有SSE格式对比。不涉及网络，只衡量编码开销和线上字节。
+ * 用法: ./benchmark.sh stream-protocols [token数] [轮数]
+ */
+public class StreamProtocolBenchmark {
+
+    private static final String[] WORDS = {
+            " the", " model", " stream", " token", " request", " response", " with", " for", " and", " data",
+            " is", " a", " to", " of", " in", " server", " client", " event", " JSON", " API"
+    };
+    // 按默认配置模拟token合并，不考虑等待时间
+    private static final int BATCH_MAX_CHARS = 64;
+
+    private static final String CJK = "的是在了不和有大这主中人上为们地个用工时要动国产以我到他会作来分生对于学下级就年阶义发成部民可出能方进同行面说种过命度而多子后自社加小机也经力线本电高量长得实家定深法表着水理化争现所起好无使性前等反体合路图把结第里正新开论之物从当两些还天资事队批如应形想制心样干都向变关点";
+
+    public static void main(String[] args) throws IOException {
+        int tokens = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        Map<String, Object> result = new StreamProtocolBenchmark().run(tokens, rounds);
+        System.out.println(new ObjectMapper().writerWithDefaultPrettyPrinter().writeValueAsString(result));
+    }
+
+    /**
+     * 运行基准测试
+     * @param tokenCount 合成token数
+     * @param rounds 编码轮数，用于测量吞吐
+     * @return 各协议和压缩方式的结果，包含相对原有格式的字节比例
+     */
+    public Map<String, Object> run(int tokenCount, int rounds) throws IOException {
+        List<String> tokens = tokens(tokenCount);
+        Map<String, Object> results = new LinkedHashMap<>();
+
+        Measurement legacy = measure(rounds, () -> encodeLegacy(tokens));
+        results.put(StreamProtocol.SSE_TEXT.id(), legacy.toMap(legacy.bytes));
+
+        for (StreamProtocol protocol : List.of(StreamProtocol.SSE_JSON, StreamProtocol.FRAMES)) {
+            for (StreamCompression compression : StreamCompression.values()) {
+                Measurement measurement = measure(rounds, () -> encode(protocol, compression, tokens));
+                String name = protocol.id() + (compression == StreamCompression.IDENTITY ? "" : "+" + compression.contentEncoding());
+                results.put(name, measurement.toMap(legacy.bytes));
+            }
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("tokens", tokenCount);
+        result.put("tokenChars", tokens.stream().mapToInt(String::length).sum());
+        result.put("rounds", rounds);
+        result.put("batchMaxChars", BATCH_MAX_CHARS);
+        result.put("formats", results);
+        return result;
+    }
+
+    private static Encoded encodeLegacy(List<String> tokens) {
+        long bytes = 0;
+        int writes = 0;
+        List<StreamEvent> events = new ArrayList<>(tokens.size() + 2);
+        events.add(StreamEvent.session("2f0c9d6e-5a43-4c38-9a6f-1d2b3c4d5e6f"));
+        tokens.forEach(token -> events.add(StreamEvent.token(token)));
+        events.add(StreamEvent.complete());
+        for (StreamEvent event : events) {
+            SseEmitter.SseEventBuilder builder = SseTextEncoder.toSse(event);
+            if (builder == null) {
+                continue;
+            }
+            for (ResponseBodyEmitter.DataWithMediaType data : builder.build()) {
+                bytes += data.getData().toString().getBytes(StandardCharsets.UTF_8).length;
+            }
+            writes++;
+        }
+        return new Encoded(bytes, writes);
+    }
+
+    private static Encoded encode(StreamProtocol protocol, StreamCompression compression, List<String> tokens)
+            throws IOException {
+        ByteStreamEncoder encoder = (ByteStreamEncoder) protocol.newEncoder(compression);
+        long bytes = 0;
+        int writes = 0;
+        long sequence = 0;
+        bytes += encoder.encode(StreamEvent.session("2f0c9d6e-5a43-4c38-9a6f-1d2b3c4d5e6f"), ++sequence).length;
+        writes++;
+        StringBuilder pending = new StringBuilder();
+        for (String token : tokens) {
+            pending.append(token);
+            if (pending.length() >= BATCH_MAX_CHARS) {
+                bytes += encoder.encode(StreamEvent.token(pending.toString()), ++sequence).length;
+                writes++;
+                pending.setLength(0);
+            }
+        }
+        if (pending.length() > 0) {
+            bytes += encoder.encode(StreamEvent.token(pending.toString()), ++sequence).length;
+            writes++;
+        }
+        bytes += encoder.encode(StreamEvent.usage(1200, tokens.size(), "STOP"), ++sequence).length;
+        bytes += encoder.encode(StreamEvent.complete(), ++sequence).length;
+        bytes += encoder.finish().length;
+        writes += 2;
+        return new Encoded(bytes, writes);
+    }
+
+    private static Measurement measure(int rounds, EncodeTask task) throws IOException {
+        // 预热
+        Encoded encoded = task.run();
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            encoded = task.run();
+        }
+        long nanos = Math.max(1, System.nanoTime() - start);
+        return new Measurement(encoded.bytes, encoded.writes, nanos / Math.max(1, rounds));
+    }
+
+    private static List<String> tokens(int count) {
+        SplittableRandom random = new SplittableRandom(11);
+        List<String> tokens = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            // 约三分之二为中文片段，其余为英文单词
+            if (random.nextInt(3) < 2) {
+                int start = random.nextInt(CJK.length() - 2);
+                tokens.add(CJK.substring(start, start + 1 + random.nextInt(2)));
+            } else {
+                tokens.add(WORDS[random.nextInt(WORDS.length)]);
+            }
+        }
+        return tokens;
+    }
+
+    private interface EncodeTask {
+        Encoded run() throws IOException;
+    }
+
+    private record Encoded(long bytes, int writes) {
+    }
+
+    private record Measurement(long bytes, int writes, long nanosPerRound) {
+
+        Map<String, Object> toMap(long legacyBytes) {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("bytes", bytes);
+            result.put("writes", writes);
+            result.put("bytesVsLegacy", Math.round(bytes * 1000.0 / legacyBytes) / 1000.0);
+            result.put("encodeMicros", nanosPerRound / 1000);
+            return result;
+        }
+    }
+}
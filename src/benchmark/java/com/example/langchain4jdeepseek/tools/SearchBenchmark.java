@@ -0,0 +1,153 @@
+package com.example.langchain4jdeepseek.tools;
+
+import com.example.langchain4jdeepseek.config.TavilyConfig;
+import com.example.langchain4jdeepseek.logging.TrafficLogger;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 多查询搜索基准测试
+ * 在本机启动模拟Tavily接口的桩服务（固定延迟加少量抖动，不同查询的结果有部分URL重叠），
+ * 对比一轮对话中依次调用searchWeb与一次调用searchWebMulti的耗时和输出长度，不访问真实的搜索服务。
+ * 用法: ./benchmark.sh search [查询数] [桩服务延迟毫秒] [轮数]
+ */
+public class SearchBenchmark {
+
+    // 桩服务每个查询返回的结果数，其中一部分URL在所有查询间共享
+    private static final int RESULTS_PER_QUERY = 5;
+    private static final int SHARED_RESULTS = 2;
+
+    private final int queryCount;
+    private final long latencyMs;
+    private final int rounds;
+
+    public SearchBenchmark(int queryCount, long latencyMs, int rounds) {
+        this.queryCount = queryCount;
+        this.latencyMs = latencyMs;
+        this.rounds = rounds;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int queries = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        long latencyMs = args.length > 1 ? Long.parseLong(args[1]) : 300;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        Map<String, Object> result = new SearchBenchmark(queries, latencyMs, rounds).run();
+        System.out.println(new ObjectMapper().writerWithDefaultPrettyPrinter().writeValueAsString(result));
+    }
+
+    /**
+     * 运行基准测试
+     * @return 测试结果
+     */
+    public Map<String, Object> run() throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        ExecutorService serverExecutor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "search-stub");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.createContext("/search", this::handle);
+        server.setExecutor(serverExecutor);
+        server.start();
+
+        TavilyConfig config = new TavilyConfig();
+        config.apiUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+        config.apiKey = "benchmark";
+        // 关闭的流量日志不启动写入线程
+        TrafficLogger trafficLogger = new TrafficLogger(false, 0, 0, 1, "logs/search-benchmark.jsonl", 0, 0);
+        TavilySearchTool tool = new TavilySearchTool(config, trafficLogger, 15_000, 800, 8, queryCount, 8, 4000);
+        try {
+            List<String> queries = new ArrayList<>();
+            for (int i = 0; i < queryCount; i++) {
+                queries.add("benchmark query " + i);
+            }
+            // 预热连接池和JIT
+            tool.searchWeb(queries.get(0));
+            tool.searchWebMulti(queries);
+
+            long[] sequential = new long[rounds];
+            long[] parallel = new long[rounds];
+            int sequentialChars = 0;
+            int parallelChars = 0;
+            for (int r = 0; r < rounds; r++) {
+                long start = System.nanoTime();
+                int chars = 0;
+                for (String query : queries) {
+                    chars += tool.searchWeb(query).length();
+                }
+                sequential[r] = System.nanoTime() - start;
+                sequentialChars = chars;
+
+                start = System.nanoTime();
+                parallelChars = tool.searchWebMulti(queries).length();
+                parallel[r] = System.nanoTime() - start;
+            }
+            Arrays.sort(sequential);
+            Arrays.sort(parallel);
+
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("queries", queryCount);
+            result.put("stubLatencyMs", latencyMs);
+            result.put("rounds", rounds);
+            result.put("sequentialP50Millis", sequential[rounds / 2] / 1_000_000);
+            result.put("sequentialMaxMillis", sequential[rounds - 1] / 1_000_000);
+            result.put("multiP50Millis", parallel[rounds / 2] / 1_000_000);
+            result.put("multiMaxMillis", parallel[rounds - 1] / 1_000_000);
+            result.put("speedup", Math.round((double) sequential[rounds / 2] / Math.max(1, parallel[rounds / 2]) * 10) / 10.0);
+            result.put("sequentialResultChars", sequentialChars);
+            result.put("multiResultChars", parallelChars);
+            return result;
+        } finally {
+            tool.destroy();
+            server.stop(0);
+            serverExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * 桩服务：按请求中的查询词生成结果，前SHARED_RESULTS条URL所有查询相同
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        try {
+            long jitter = latencyMs > 0 ? ThreadLocalRandom.current().nextLong(Math.max(1, latencyMs / 10)) : 0;
+            Thread.sleep(latencyMs + jitter);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        int queryId = Math.abs(body.hashCode());
+        StringBuilder json = new StringBuilder("{\"answer\":\"stub answer\",\"results\":[");
+        for (int i = 0; i < RESULTS_PER_QUERY; i++) {
+            String url = i < SHARED_RESULTS ? "https://example.com/shared/" + i : "https://example.com/" + queryId + "/" + i;
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"title\":\"Result ").append(i).append("\",\"url\":\"").append(url)
+                    .append("\",\"content\":\"").append("stub content ".repeat(40)).append("\"}");
+        }
+        json.append("]}");
+
+        byte[] response = json.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, response.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(response);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.langchain4jdeepseek.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 上下文预算配置
+ * 预算按估算的输入token计，包括系统提示词、用户消息和工具定义
+ */
+@Component
+@ConfigurationProperties(prefix = "context.budget")
+public class ContextBudgetProperties {
+
+    /**
+     * 默认的上下文预算
+     */
+    private long defaultTokens = 60_000;
+
+    /**
+     * 按场景覆盖的上下文预算
+     */
+    private Map<String, Long> scenarios = new HashMap<>();
+
+    /**
+     * 输入超出预算时的处理方式：reject拒绝请求，trim截断用户消息
+     */
+    private String overflow = "reject";
+
+    /**
+     * 单次工具结果的token上限，实际上限不超过场景预算的四分之一
+     */
+    private long toolResultMaxTokens = 4_000;
+
+    public long getDefaultTokens() {
+        return defaultTokens;
+    }
+
+    public void setDefaultTokens(long defaultTokens) {
+        this.defaultTokens = defaultTokens;
+    }
+
+    public Map<String, Long> getScenarios() {
+        return scenarios;
+    }
+
+    public void setScenarios(Map<String, Long> scenarios) {
+        this.scenarios = scenarios;
+    }
+
+    public String getOverflow() {
+        return overflow;
+    }
+
+    public void setOverflow(String overflow) {
+        this.overflow = overflow;
+    }
+
+    public long getToolResultMaxTokens() {
+        return toolResultMaxTokens;
+    }
+
+    public void setToolResultMaxTokens(long toolResultMaxTokens) {
+        this.toolResultMaxTokens = toolResultMaxTokens;
+    }
+}
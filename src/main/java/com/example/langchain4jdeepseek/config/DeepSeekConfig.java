@@ -1,13 +1,36 @@
 package com.example.langchain4jdeepseek.config;
 
+import com.example.langchain4jdeepseek.context.TokenCalibrationListener;
+import com.example.langchain4jdeepseek.context.TokenEstimator;
+import com.example.langchain4jdeepseek.http.CancellableHttpClientBuilder;
+import com.example.langchain4jdeepseek.lifecycle.StartupWarmup;
+import com.example.langchain4jdeepseek.limit.ConcurrencyLimiter;
+import com.example.langchain4jdeepseek.logging.TrafficLogListener;
+import com.example.langchain4jdeepseek.logging.TrafficLogger;
+import com.example.langchain4jdeepseek.limit.LimitedChatModel;
+import com.example.langchain4jdeepseek.limit.LimitedStreamingChatModel;
+import com.example.langchain4jdeepseek.pool.CircuitBreaker;
+import com.example.langchain4jdeepseek.pool.HedgingChatModel;
+import com.example.langchain4jdeepseek.pool.LazyChatModel;
+import com.example.langchain4jdeepseek.pool.LazyStreamingChatModel;
+import com.example.langchain4jdeepseek.pool.ModelEndpoint;
+import com.example.langchain4jdeepseek.pool.ModelEndpointPool;
+import com.example.langchain4jdeepseek.pool.RoutingChatModel;
+import com.example.langchain4jdeepseek.pool.RoutingStreamingChatModel;
+import com.example.langchain4jdeepseek.resilience.RetryBudget;
+import com.example.langchain4jdeepseek.tracing.TracingChatModelListener;
 import dev.langchain4j.model.chat.ChatModel;
 import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
 import dev.langchain4j.model.openai.OpenAiChatModel;
 import dev.langchain4j.model.openai.OpenAiStreamingChatModel;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Configuration
 public class DeepSeekConfig {
 
@@ -20,28 +43,121 @@ public class DeepSeekConfig {
     @Value("${deepseek.api.model.name}")
     private String modelName;
 
+    @Value("${hedging.enabled:false}")
+    private boolean hedgingEnabled;
+
+    @Value("${hedging.percentile:95}")
+    private double hedgingPercentile;
+
+    @Value("${hedging.min-delay-ms:500}")
+    private long hedgingMinDelayMs;
+
+    @Value("${hedging.budget-ratio:0.1}")
+    private double hedgingBudgetRatio;
+
+    @Value("${hedging.include-tool-turns:true}")
+    private boolean hedgingIncludeToolTurns;
+
+    @Value("${hedging.max-threads:64}")
+    private int hedgingMaxThreads;
+
+    /**
+     * 模型端点池，未配置deepseek.pool.endpoints时只包含deepseek.api.*端点。
+     * 快速启动模式下各端点的模型客户端在后台预热或首次使用时才构建
+     */
     @Bean
-    public ChatModel deepSeekChatModel() {
+    public ModelEndpointPool modelEndpointPool(ModelPoolProperties poolProperties, TrafficLogger trafficLogger,
+                                               TokenEstimator tokenEstimator, StartupWarmup startupWarmup) {
+        List<ModelPoolProperties.Endpoint> configured = poolProperties.getEndpoints();
+        if (configured.isEmpty()) {
+            ModelPoolProperties.Endpoint defaultEndpoint = new ModelPoolProperties.Endpoint();
+            defaultEndpoint.setName("deepseek");
+            defaultEndpoint.setUrl(apiUrl);
+            defaultEndpoint.setKey(apiKey);
+            configured = List.of(defaultEndpoint);
+        }
+
+        List<ModelEndpoint> endpoints = new ArrayList<>();
+        List<LazyChatModel> lazyChatModels = new ArrayList<>();
+        List<LazyStreamingChatModel> lazyStreamingChatModels = new ArrayList<>();
+        for (ModelPoolProperties.Endpoint endpoint : configured) {
+            String endpointModel = endpoint.getModelName() != null ? endpoint.getModelName() : modelName;
+            String name = endpoint.getName() != null ? endpoint.getName() : endpoint.getUrl();
+            // 请求和响应通过采样的异步流量日志记录，不在请求线程上同步输出
+            List<ChatModelListener> listeners = List.of(
+                    new TrafficLogListener(trafficLogger, name),
+                    new TokenCalibrationListener(tokenEstimator),
+                    new TracingChatModelListener(name));
+            LazyChatModel chatModel = new LazyChatModel(
+                    () -> buildChatModel(endpoint.getUrl(), endpoint.getKey(), endpointModel, listeners));
+            LazyStreamingChatModel streamingChatModel = new LazyStreamingChatModel(
+                    () -> buildStreamingChatModel(endpoint.getUrl(), endpoint.getKey(), endpointModel, listeners));
+            lazyChatModels.add(chatModel);
+            lazyStreamingChatModels.add(streamingChatModel);
+            endpoints.add(new ModelEndpoint(
+                    name,
+                    endpoint.getUrl(),
+                    chatModel,
+                    streamingChatModel,
+                    new CircuitBreaker(
+                            poolProperties.getCircuitMinCalls(),
+                            poolProperties.getCircuitFailureRate(),
+                            poolProperties.getCircuitWindowMs(),
+                            poolProperties.getCircuitOpenMs()),
+                    poolProperties.getLatencyAlpha()));
+        }
+        // 默认模式下登记时立即构建，与之前的启动行为一致
+        startupWarmup.register("model-clients", () -> {
+            lazyChatModels.forEach(LazyChatModel::initialize);
+            lazyStreamingChatModels.forEach(LazyStreamingChatModel::initialize);
+        });
+        return new ModelEndpointPool(endpoints);
+    }
+
+    @Bean
+    public ChatModel deepSeekChatModel(ModelEndpointPool modelEndpointPool, ConcurrencyLimiter concurrencyLimiter,
+                                       RetryBudget retryBudget) {
+        ChatModel primary = modelEndpointPool.getPrimary().getChatModel();
+        ChatModel model = new LimitedChatModel(
+                new RoutingChatModel(modelEndpointPool, primary, retryBudget), concurrencyLimiter);
+        if (!hedgingEnabled) {
+            return model;
+        }
+        // 对冲在限流之外，对冲副本同样占用并发许可
+        return new HedgingChatModel(model, hedgingPercentile, hedgingMinDelayMs,
+                hedgingBudgetRatio, hedgingIncludeToolTurns, hedgingMaxThreads);
+    }
+    
+    @Bean
+    public StreamingChatModel deepSeekStreamingChatModel(ModelEndpointPool modelEndpointPool, ConcurrencyLimiter concurrencyLimiter,
+                                                         RetryBudget retryBudget) {
+        StreamingChatModel primary = modelEndpointPool.getPrimary().getStreamingChatModel();
+        return new LimitedStreamingChatModel(
+                new RoutingStreamingChatModel(modelEndpointPool, primary, retryBudget), concurrencyLimiter);
+    }
+
+    private ChatModel buildChatModel(String baseUrl, String key, String model, List<ChatModelListener> listeners) {
         return OpenAiChatModel.builder()
-                .apiKey(apiKey)
-                .baseUrl(apiUrl)
-                .modelName(modelName)
-                .logRequests(true)
-                .logResponses(true)
-                .maxRetries(3)
+                .apiKey(key)
+                .baseUrl(baseUrl)
+                .modelName(model)
+                .listeners(listeners)
+                // 重试由RoutingChatModel按节点级重试预算进行
+                .maxRetries(0)
+                .httpClientBuilder(new CancellableHttpClientBuilder())
                 .temperature(0.7)
                 .build();
     }
-    
-    @Bean
-    public StreamingChatModel deepSeekStreamingChatModel() {
+
+    private StreamingChatModel buildStreamingChatModel(String baseUrl, String key, String model,
+                                                       List<ChatModelListener> listeners) {
         return OpenAiStreamingChatModel.builder()
-                .apiKey(apiKey)
-                .baseUrl(apiUrl)
-                .modelName(modelName)
-                .logRequests(true)
-                .logResponses(true)
+                .apiKey(key)
+                .baseUrl(baseUrl)
+                .modelName(model)
+                .listeners(listeners)
+                .httpClientBuilder(new CancellableHttpClientBuilder())
                 .temperature(0.7)
                 .build();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,24 @@
+package com.example.langchain4jdeepseek.config;
+
+import com.example.langchain4jdeepseek.knowledge.HashingEmbeddingModel;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class KnowledgeConfig {
+
+    @Value("${knowledge.embedding.dimension:256}")
+    private int embeddingDimension;
+
+    /**
+     * 知识库使用的向量模型，默认为进程内的特征哈希模型，声明其他EmbeddingModel Bean即可替换
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public EmbeddingModel embeddingModel() {
+        return new HashingEmbeddingModel(embeddingDimension);
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.langchain4jdeepseek.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 模型端点池配置
+ * 未配置端点时使用deepseek.api.*的单一端点
+ */
+@Component
+@ConfigurationProperties(prefix = "deepseek.pool")
+public class ModelPoolProperties {
+
+    /**
+     * 端点列表，可包含自建的OpenAI兼容网关
+     */
+    private List<Endpoint> endpoints = new ArrayList<>();
+
+    /**
+     * EWMA延迟的平滑系数
+     */
+    private double latencyAlpha = 0.2;
+
+    /**
+     * 熔断统计窗口内的最少调用数
+     */
+    private int circuitMinCalls = 10;
+
+    /**
+     * 触发熔断的错误率
+     */
+    private double circuitFailureRate = 0.5;
+
+    /**
+     * 熔断统计窗口长度（毫秒）
+     */
+    private long circuitWindowMs = 30_000;
+
+    /**
+     * 熔断打开后的冷却时间（毫秒）
+     */
+    private long circuitOpenMs = 30_000;
+
+    public List<Endpoint> getEndpoints() {
+        return endpoints;
+    }
+
+    public void setEndpoints(List<Endpoint> endpoints) {
+        this.endpoints = endpoints;
+    }
+
+    public double getLatencyAlpha() {
+        return latencyAlpha;
+    }
+
+    public void setLatencyAlpha(double latencyAlpha) {
+        this.latencyAlpha = latencyAlpha;
+    }
+
+    public int getCircuitMinCalls() {
+        return circuitMinCalls;
+    }
+
+    public void setCircuitMinCalls(int circuitMinCalls) {
+        this.circuitMinCalls = circuitMinCalls;
+    }
+
+    public double getCircuitFailureRate() {
+        return circuitFailureRate;
+    }
+
+    public void setCircuitFailureRate(double circuitFailureRate) {
+        this.circuitFailureRate = circuitFailureRate;
+    }
+
+    public long getCircuitWindowMs() {
+        return circuitWindowMs;
+    }
+
+    public void setCircuitWindowMs(long circuitWindowMs) {
+        this.circuitWindowMs = circuitWindowMs;
+    }
+
+    public long getCircuitOpenMs() {
+        return circuitOpenMs;
+    }
+
+    public void setCircuitOpenMs(long circuitOpenMs) {
+        this.circuitOpenMs = circuitOpenMs;
+    }
+
+    /**
+     * 单个模型端点配置
+     */
+    public static class Endpoint {
+
+        private String name;
+        private String url;
+        private String key;
+
+        /**
+         * 为空时使用deepseek.api.model.name
+         */
+        private String modelName;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public void setKey(String key) {
+            this.key = key;
+        }
+
+        public String getModelName() {
+            return modelName;
+        }
+
+        public void setModelName(String modelName) {
+            this.modelName = modelName;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.langchain4jdeepseek.config;
+
+import com.example.langchain4jdeepseek.session.FileSessionStore;
+import com.example.langchain4jdeepseek.session.InMemorySessionStore;
+import com.example.langchain4jdeepseek.session.SessionStore;
+import com.example.langchain4jdeepseek.session.WriteBehindSessionStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+@Configuration
+public class SessionStoreConfig {
+
+    @Value("${session.store.type:memory}")
+    private String type;
+
+    @Value("${session.store.dir:data/sessions}")
+    private String directory;
+
+    @Value("${session.store.flush-interval-ms:200}")
+    private long flushIntervalMs;
+
+    @Value("${session.store.flush-max-chars:2048}")
+    private int flushMaxChars;
+
+    @Value("${session.store.ended-retention-ms:300000}")
+    private long endedRetentionMs;
+
+    @Value("${session.store.stale-ms:600000}")
+    private long staleMs;
+
+    /**
+     * 会话状态存储：memory为进程内存储；file为多个节点共享目录的存储，会话内容延迟批量写入。
+     * 声明其他SessionStore Bean即可替换
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public SessionStore sessionStore() {
+        return switch (type) {
+            case "memory" -> new InMemorySessionStore();
+            case "file" -> {
+                try {
+                    FileSessionStore store = new FileSessionStore(Path.of(directory), endedRetentionMs, staleMs,
+                            Math.max(1000, staleMs / 10));
+                    yield new WriteBehindSessionStore(store, flushIntervalMs, flushMaxChars);
+                } catch (IOException e) {
+                    throw new IllegalStateException("Failed to open session store at " + directory, e);
+                }
+            }
+            default -> throw new IllegalStateException("Unknown session.store.type: " + type);
+        };
+    }
+}
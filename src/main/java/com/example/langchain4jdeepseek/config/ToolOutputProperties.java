@@ -0,0 +1,89 @@
+package com.example.langchain4jdeepseek.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 工具输出后处理配置
+ * 按工具名（@Tool方法名）覆盖默认值
+ */
+@Component
+@ConfigurationProperties(prefix = "tool.output")
+public class ToolOutputProperties {
+
+    /**
+     * 工具结果默认的token上限，实际上限不超过场景的工具结果上限
+     */
+    private long defaultMaxTokens = 4_000;
+
+    /**
+     * 按工具覆盖的token上限
+     */
+    private Map<String, Long> maxTokens = new HashMap<>();
+
+    /**
+     * 截断时开头部分占保留内容的比例，其余保留结尾
+     */
+    private double defaultHeadRatio = 0.5;
+
+    /**
+     * 按工具覆盖的开头比例，日志类输出可偏向结尾
+     */
+    private Map<String, Double> headRatio = new HashMap<>();
+
+    /**
+     * 连续重复多少行以上时折叠
+     */
+    private int collapseRepeatedLines = 3;
+
+    public long maxTokensFor(String tool) {
+        return maxTokens.getOrDefault(tool, defaultMaxTokens);
+    }
+
+    public double headRatioFor(String tool) {
+        return headRatio.getOrDefault(tool, defaultHeadRatio);
+    }
+
+    public long getDefaultMaxTokens() {
+        return defaultMaxTokens;
+    }
+
+    public void setDefaultMaxTokens(long defaultMaxTokens) {
+        this.defaultMaxTokens = defaultMaxTokens;
+    }
+
+    public Map<String, Long> getMaxTokens() {
+        return maxTokens;
+    }
+
+    public void setMaxTokens(Map<String, Long> maxTokens) {
+        this.maxTokens = maxTokens;
+    }
+
+    public double getDefaultHeadRatio() {
+        return defaultHeadRatio;
+    }
+
+    public void setDefaultHeadRatio(double defaultHeadRatio) {
+        this.defaultHeadRatio = defaultHeadRatio;
+    }
+
+    public Map<String, Double> getHeadRatio() {
+        return headRatio;
+    }
+
+    public void setHeadRatio(Map<String, Double> headRatio) {
+        this.headRatio = headRatio;
+    }
+
+    public int getCollapseRepeatedLines() {
+        return collapseRepeatedLines;
+    }
+
+    public void setCollapseRepeatedLines(int collapseRepeatedLines) {
+        this.collapseRepeatedLines = collapseRepeatedLines;
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.langchain4jdeepseek.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * token配额配置
+ * 配额按客户端的输入与输出token之和计，0表示不限制。
+ * 客户端配额可按客户端标识覆盖；场景配额限制单个客户端在该场景下的用量
+ */
+@Component
+@ConfigurationProperties(prefix = "usage.quota")
+public class UsageQuotaProperties {
+
+    /**
+     * 是否在调用模型前检查配额
+     */
+    private boolean enabled = true;
+
+    /**
+     * 每个客户端的每日token配额
+     */
+    private long dailyTokens = 0;
+
+    /**
+     * 每个客户端的每月token配额
+     */
+    private long monthlyTokens = 0;
+
+    /**
+     * 按客户端标识覆盖的配额
+     */
+    private Map<String, Limit> clients = new HashMap<>();
+
+    /**
+     * 单个客户端在指定场景下的配额
+     */
+    private Map<String, Limit> scenarios = new HashMap<>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getDailyTokens() {
+        return dailyTokens;
+    }
+
+    public void setDailyTokens(long dailyTokens) {
+        this.dailyTokens = dailyTokens;
+    }
+
+    public long getMonthlyTokens() {
+        return monthlyTokens;
+    }
+
+    public void setMonthlyTokens(long monthlyTokens) {
+        this.monthlyTokens = monthlyTokens;
+    }
+
+    public Map<String, Limit> getClients() {
+        return clients;
+    }
+
+    public void setClients(Map<String, Limit> clients) {
+        this.clients = clients;
+    }
+
+    public Map<String, Limit> getScenarios() {
+        return scenarios;
+    }
+
+    public void setScenarios(Map<String, Limit> scenarios) {
+        this.scenarios = scenarios;
+    }
+
+    /**
+     * 获取客户端的配额，未覆盖时使用默认值
+     */
+    public Limit forClient(String clientKey) {
+        Limit limit = clients.get(clientKey);
+        return limit != null ? limit : new Limit(dailyTokens, monthlyTokens);
+    }
+
+    /**
+     * 每日和每月配额
+     */
+    public static class Limit {
+
+        private long dailyTokens;
+
+        private long monthlyTokens;
+
+        public Limit() {
+        }
+
+        public Limit(long dailyTokens, long monthlyTokens) {
+            this.dailyTokens = dailyTokens;
+            this.monthlyTokens = monthlyTokens;
+        }
+
+        public long getDailyTokens() {
+            return dailyTokens;
+        }
+
+        public void setDailyTokens(long dailyTokens) {
+            this.dailyTokens = dailyTokens;
+        }
+
+        public long getMonthlyTokens() {
+            return monthlyTokens;
+        }
+
+        public void setMonthlyTokens(long monthlyTokens) {
+            this.monthlyTokens = monthlyTokens;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.langchain4jdeepseek.context;
+
+import com.example.langchain4jdeepseek.config.ContextBudgetProperties;
+import com.example.langchain4jdeepseek.exception.ContextBudgetExceededException;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按场景的上下文预算
+ * 在模型调用前检查输入的估算token数，超出时截断或拒绝，并给出工具结果的长度上限。
+ * 工具循环中的每次模型调用都按完整的消息列表再检查一次，累积的工具结果超出预算时从最早的开始截断
+ */
+@Component
+public class ContextBudget {
+
+    private static final Logger logger = LoggerFactory.getLogger(ContextBudget.class);
+
+    // 截断用户消息时至少保留的token数，不足时直接拒绝
+    private static final long MIN_MESSAGE_TOKENS = 256;
+
+    // 为省略标记预留的token数
+    private static final long MARKER_TOKENS = 16;
+
+    // 截断累积的工具结果时每条至少保留的token数
+    private static final long MIN_TOOL_RESULT_TOKENS = 64;
+
+    private final ContextBudgetProperties properties;
+    private final TokenEstimator tokenEstimator;
+
+    private final LongAdder checkedInputs = new LongAdder();
+    private final LongAdder trimmedInputs = new LongAdder();
+    private final LongAdder rejectedInputs = new LongAdder();
+    private final LongAdder checkedRequests = new LongAdder();
+    private final LongAdder trimmedRequests = new LongAdder();
+    private final LongAdder rejectedRequests = new LongAdder();
+
+    public ContextBudget(ContextBudgetProperties properties, TokenEstimator tokenEstimator) {
+        this.properties = properties;
+        this.tokenEstimator = tokenEstimator;
+    }
+
+    /**
+     * 获取场景的上下文预算
+     */
+    public long budgetFor(String scenario) {
+        return properties.getScenarios().getOrDefault(scenario, properties.getDefaultTokens());
+    }
+
+    /**
+     * 获取场景下单次工具结果的token上限
+     */
+    public long toolResultLimit(String scenario) {
+        return Math.min(properties.getToolResultMaxTokens(), budgetFor(scenario) / 4);
+    }
+
+    /**
+     * 使用户消息符合场景的上下文预算
+     * @param scenario 场景
+     * @param systemPrompt 替换变量后的系统提示词
+     * @param message 用户消息
+     * @param fixedTokens 其他固定开销，如工具定义
+     * @return 原消息，或按配置截断后的消息
+     * @throws ContextBudgetExceededException 超出预算且不允许截断时
+     */
+    public String fit(String scenario, String systemPrompt, String message, long fixedTokens) {
+        checkedInputs.increment();
+        long budget = budgetFor(scenario);
+        long overhead = tokenEstimator.estimate(systemPrompt) + fixedTokens;
+        long messageTokens = tokenEstimator.estimate(message);
+        if (overhead + messageTokens <= budget) {
+            return message;
+        }
+
+        long available = budget - overhead;
+        if ("trim".equalsIgnoreCase(properties.getOverflow()) && available >= MIN_MESSAGE_TOKENS) {
+            trimmedInputs.increment();
+            logger.warn("Trimming input for scenario '{}' from ~{} to ~{} tokens", scenario, messageTokens, available);
+            return clip(message, available);
+        }
+
+        rejectedInputs.increment();
+        logger.warn("Rejecting input for scenario '{}': ~{} tokens exceeds budget of {}",
+                scenario, overhead + messageTokens, budget);
+        throw new ContextBudgetExceededException(
+                "Input of ~" + (overhead + messageTokens) + " tokens exceeds the context budget of " + budget
+                        + " tokens for scenario '" + scenario + "'",
+                overhead + messageTokens, budget);
+    }
+
+    /**
+     * 使一次模型调用的完整请求符合场景的上下文预算
+     * 请求包括系统提示词、用户消息、之前各轮的工具调用和结果以及工具定义
+     * @param scenario 场景
+     * @param request 发送给模型的请求
+     * @return 原请求，或按配置截断工具结果后的请求
+     * @throws ContextBudgetExceededException 超出预算且不允许截断或截断后仍超出时
+     */
+    public ChatRequest fit(String scenario, ChatRequest request) {
+        checkedRequests.increment();
+        long budget = budgetFor(scenario);
+        long total = tokenEstimator.estimate(request.messages()) + tokenEstimator.estimateTools(request.toolSpecifications());
+        if (total <= budget) {
+            return request;
+        }
+
+        if ("trim".equalsIgnoreCase(properties.getOverflow())) {
+            long excess = total - budget;
+            List<ChatMessage> messages = new ArrayList<>(request.messages());
+            for (int i = 0; i < messages.size() && excess > 0; i++) {
+                if (!(messages.get(i) instanceof ToolExecutionResultMessage result)) {
+                    continue;
+                }
+                long tokens = tokenEstimator.estimate(result.text());
+                if (tokens <= MIN_TOOL_RESULT_TOKENS) {
+                    continue;
+                }
+                String clipped = clip(result.text(), Math.max(MIN_TOOL_RESULT_TOKENS, tokens - excess));
+                messages.set(i, ToolExecutionResultMessage.from(result.id(), result.toolName(), clipped));
+                excess -= tokens - tokenEstimator.estimate(clipped);
+            }
+            if (excess <= 0) {
+                trimmedRequests.increment();
+                logger.warn("Trimming tool results for scenario '{}' from ~{} to within {} tokens", scenario, total, budget);
+                return request.toBuilder().messages(messages).build();
+            }
+        }
+
+        rejectedRequests.increment();
+        logger.warn("Rejecting model call for scenario '{}': ~{} tokens exceeds budget of {}", scenario, total, budget);
+        throw new ContextBudgetExceededException(
+                "Request of ~" + total + " tokens exceeds the context budget of " + budget
+                        + " tokens for scenario '" + scenario + "'",
+                total, budget);
+    }
+
+    /**
+     * 将文本截断到给定token数，保留开头和结尾并标注省略的部分
+     */
+    public String clip(String text, long maxTokens) {
+        long total = tokenEstimator.estimate(text);
+        if (total <= maxTokens) {
+            return text;
+        }
+        long keep = Math.max(0, maxTokens - MARKER_TOKENS);
+        int head = tokenEstimator.charsWithin(text, keep * 2 / 3, false);
+        int tail = tokenEstimator.charsWithin(text, keep / 3, true);
+        if (head + tail >= text.length()) {
+            return text;
+        }
+        long omitted = tokenEstimator.estimate(text.substring(head, text.length() - tail));
+        return text.substring(0, head)
+                + "\n[... 已省略约" + omitted + "个token ...]\n"
+                + text.substring(text.length() - tail);
+    }
+
+    /**
+     * 获取预算检查和估算校准统计
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("defaultBudgetTokens", properties.getDefaultTokens());
+        result.put("overflow", properties.getOverflow());
+        result.put("checkedInputs", checkedInputs.sum());
+        result.put("trimmedInputs", trimmedInputs.sum());
+        result.put("rejectedInputs", rejectedInputs.sum());
+        result.put("checkedRequests", checkedRequests.sum());
+        result.put("trimmedRequests", trimmedRequests.sum());
+        result.put("rejectedRequests", rejectedRequests.sum());
+        result.put("estimator", tokenEstimator.snapshot());
+        return result;
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.langchain4jdeepseek.context;
+
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.listener.ChatModelResponseContext;
+import dev.langchain4j.model.output.TokenUsage;
+
+/**
+ * 用每次模型调用返回的实际token用量校准本地估算器
+ */
+public class TokenCalibrationListener implements ChatModelListener {
+
+    private final TokenEstimator tokenEstimator;
+
+    public TokenCalibrationListener(TokenEstimator tokenEstimator) {
+        this.tokenEstimator = tokenEstimator;
+    }
+
+    @Override
+    public void onResponse(ChatModelResponseContext context) {
+        TokenUsage usage = context.chatResponse().tokenUsage();
+        if (usage != null && usage.inputTokenCount() != null) {
+            tokenEstimator.calibrate(context.chatRequest(), usage.inputTokenCount());
+        }
+    }
+}
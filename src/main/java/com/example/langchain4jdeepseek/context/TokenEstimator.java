@@ -0,0 +1,227 @@
+package com.example.langchain4jdeepseek.context;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.Content;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.TextContent;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 本地token估算器
+ * 按字符类别加权估算DeepSeek分词后的token数（中日韩字符约0.6，ASCII字符约0.3），
+ * 并根据模型返回的实际用量校准估算系数
+ */
+@Component
+public class TokenEstimator {
+
+    // 校准系数的取值范围，避免个别异常响应使估算失真
+    private static final double MIN_CORRECTION = 0.5;
+    private static final double MAX_CORRECTION = 2.0;
+
+    private final double cjkPerChar;
+    private final double asciiPerChar;
+    private final double otherPerChar;
+    private final int messageOverhead;
+    private final boolean autoCalibrate;
+    private final double calibrationAlpha;
+    private final int calibrationMinSamples;
+
+    // 校准系数（实际/估算），以double的位形式保存
+    private final AtomicLong correctionBits = new AtomicLong(Double.doubleToLongBits(1.0));
+
+    private final LongAdder samples = new LongAdder();
+    private final LongAdder estimatedInputTokens = new LongAdder();
+    private final LongAdder actualInputTokens = new LongAdder();
+    private final LongAdder absoluteError = new LongAdder();
+
+    public TokenEstimator(
+            @Value("${token.estimator.cjk-per-char:0.6}") double cjkPerChar,
+            @Value("${token.estimator.ascii-per-char:0.3}") double asciiPerChar,
+            @Value("${token.estimator.other-per-char:1.0}") double otherPerChar,
+            @Value("${token.estimator.message-overhead:4}") int messageOverhead,
+            @Value("${token.estimator.auto-calibrate:true}") boolean autoCalibrate,
+            @Value("${token.estimator.calibration-alpha:0.05}") double calibrationAlpha,
+            @Value("${token.estimator.calibration-min-samples:20}") int calibrationMinSamples) {
+        this.cjkPerChar = cjkPerChar;
+        this.asciiPerChar = asciiPerChar;
+        this.otherPerChar = otherPerChar;
+        this.messageOverhead = messageOverhead;
+        this.autoCalibrate = autoCalibrate;
+        this.calibrationAlpha = calibrationAlpha;
+        this.calibrationMinSamples = calibrationMinSamples;
+    }
+
+    /**
+     * 估算文本的token数（已应用校准系数）
+     */
+    public long estimate(String text) {
+        return calibrated(rawEstimate(text));
+    }
+
+    /**
+     * 估算一组消息的token数（已应用校准系数）
+     */
+    public long estimate(List<ChatMessage> messages) {
+        return calibrated(rawEstimate(messages));
+    }
+
+    /**
+     * 估算工具定义占用的token数（已应用校准系数）
+     */
+    public long estimateTools(List<ToolSpecification> tools) {
+        return calibrated(rawEstimateTools(tools));
+    }
+
+    /**
+     * 计算文本前缀在给定token预算内的最大字符数
+     * @param text 文本
+     * @param maxTokens token预算
+     * @param fromEnd true表示从文本末尾向前计算
+     * @return 字符数
+     */
+    public int charsWithin(String text, long maxTokens, boolean fromEnd) {
+        double limit = maxTokens / correction();
+        double tokens = 0;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(fromEnd ? length - 1 - i : i);
+            tokens += weight(c);
+            if (tokens > limit) {
+                return i;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * 用一次模型调用的实际输入token数校准估算
+     * @param request 发送给模型的请求
+     * @param actualInput 模型返回的输入token数
+     */
+    public void calibrate(ChatRequest request, int actualInput) {
+        long raw = rawEstimate(request.messages()) + rawEstimateTools(request.toolSpecifications());
+        if (raw <= 0 || actualInput <= 0) {
+            return;
+        }
+
+        samples.increment();
+        estimatedInputTokens.add(calibrated(raw));
+        actualInputTokens.add(actualInput);
+        absoluteError.add(Math.abs(calibrated(raw) - actualInput));
+
+        if (!autoCalibrate) {
+            return;
+        }
+        double ratio = Math.max(MIN_CORRECTION, Math.min(MAX_CORRECTION, (double) actualInput / raw));
+        // 样本不足时直接取平均，之后按EWMA平滑
+        long count = samples.sum();
+        double alpha = count < calibrationMinSamples ? 1.0 / count : calibrationAlpha;
+        correctionBits.getAndUpdate(bits -> {
+            double current = Double.longBitsToDouble(bits);
+            return Double.doubleToLongBits(current + alpha * (ratio - current));
+        });
+    }
+
+    /**
+     * 当前校准系数
+     */
+    public double correction() {
+        return autoCalibrate ? Double.longBitsToDouble(correctionBits.get()) : 1.0;
+    }
+
+    /**
+     * 获取估算与实际用量的对比统计
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        long count = samples.sum();
+        result.put("samples", count);
+        result.put("estimatedInputTokens", estimatedInputTokens.sum());
+        result.put("actualInputTokens", actualInputTokens.sum());
+        result.put("meanAbsoluteError", count > 0 ? absoluteError.sum() / count : 0);
+        result.put("correction", correction());
+        result.put("autoCalibrate", autoCalibrate);
+        return result;
+    }
+
+    private long calibrated(long raw) {
+        return Math.max(1, Math.round(raw * correction()));
+    }
+
+    private long rawEstimate(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        double tokens = 0;
+        for (int i = 0; i < text.length(); i++) {
+            tokens += weight(text.charAt(i));
+        }
+        return (long) Math.ceil(tokens);
+    }
+
+    private long rawEstimate(List<ChatMessage> messages) {
+        long tokens = 0;
+        for (ChatMessage message : messages) {
+            tokens += messageOverhead;
+            if (message instanceof SystemMessage system) {
+                tokens += rawEstimate(system.text());
+            } else if (message instanceof UserMessage user) {
+                for (Content content : user.contents()) {
+                    if (content instanceof TextContent text) {
+                        tokens += rawEstimate(text.text());
+                    }
+                }
+            } else if (message instanceof AiMessage ai) {
+                tokens += rawEstimate(ai.text());
+                if (ai.hasToolExecutionRequests()) {
+                    for (ToolExecutionRequest call : ai.toolExecutionRequests()) {
+                        tokens += rawEstimate(call.name()) + rawEstimate(call.arguments());
+                    }
+                }
+            } else if (message instanceof ToolExecutionResultMessage result) {
+                tokens += rawEstimate(result.text());
+            }
+        }
+        return tokens;
+    }
+
+    private long rawEstimateTools(List<ToolSpecification> tools) {
+        long tokens = 0;
+        if (tools != null) {
+            for (ToolSpecification tool : tools) {
+                tokens += messageOverhead + rawEstimate(tool.name()) + rawEstimate(tool.description());
+                if (tool.parameters() != null) {
+                    tokens += rawEstimate(tool.parameters().toString());
+                }
+            }
+        }
+        return tokens;
+    }
+
+    private double weight(char c) {
+        if (c < 128) {
+            return asciiPerChar;
+        }
+        Character.UnicodeScript script = Character.UnicodeScript.of(c);
+        if (script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL) {
+            return cjkPerChar;
+        }
+        return otherPerChar;
+    }
+}
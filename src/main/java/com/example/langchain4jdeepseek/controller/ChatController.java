@@ -1,18 +1,45 @@
 package com.example.langchain4jdeepseek.controller;
 
+import com.example.langchain4jdeepseek.exception.RateLimitExceededException;
+import com.example.langchain4jdeepseek.lifecycle.DrainCoordinator;
+import com.example.langchain4jdeepseek.limit.AdminAccess;
+import com.example.langchain4jdeepseek.limit.ClientKeys;
+import com.example.langchain4jdeepseek.limit.ClientRateLimiter;
+import com.example.langchain4jdeepseek.pool.ModelEndpointPool;
+import com.example.langchain4jdeepseek.resilience.Deadline;
 import com.example.langchain4jdeepseek.service.ChatService;
 import com.example.langchain4jdeepseek.service.StreamingResponseHandler;
+import com.example.langchain4jdeepseek.session.SessionStore;
+import com.example.langchain4jdeepseek.sse.SseConnection;
+import com.example.langchain4jdeepseek.sse.SseConnectionRegistry;
+import com.example.langchain4jdeepseek.sse.StreamCompression;
+import com.example.langchain4jdeepseek.sse.StreamEvent;
+import com.example.langchain4jdeepseek.sse.StreamProtocol;
+import com.example.langchain4jdeepseek.tracing.Tracer;
+import com.example.langchain4jdeepseek.transcript.TranscriptStore;
+import com.example.langchain4jdeepseek.usage.UsageTracker;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
 import dev.langchain4j.data.message.AiMessage;
 import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.output.TokenUsage;
+import dev.langchain4j.service.tool.ToolExecution;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
+import java.nio.channels.Channels;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 
@@ -21,23 +48,64 @@ import java.util.concurrent.CompletableFuture;
 @CrossOrigin(origins = "*")
 public class ChatController {
 
+    // 请求截止时间请求头（毫秒）
+    private static final String TIMEOUT_HEADER = "X-Request-Timeout-Ms";
+
+    // 协商得到的流式协议响应头
+    private static final String STREAM_PROTOCOL_HEADER = "X-Stream-Protocol";
+
+    // 工具开始事件中调用参数的最大字符数
+    private static final int MAX_TOOL_ARGUMENT_CHARS = 200;
+
     private final ChatService chatService;
+    private final ClientRateLimiter clientRateLimiter;
+    private final ModelEndpointPool modelEndpointPool;
+    private final SseConnectionRegistry sseConnectionRegistry;
+    private final UsageTracker usageTracker;
+    private final DrainCoordinator drainCoordinator;
+    private final Tracer tracer;
+    private final AdminAccess adminAccess;
+
+    @Value("${deadline.default-ms:120000}")
+    private long defaultTimeoutMs;
+
+    @Value("${deadline.stream-default-ms:1800000}")
+    private long defaultStreamTimeoutMs;
+
+    @Value("${deadline.max-ms:1800000}")
+    private long maxTimeoutMs;
+
+    @Value("${sse.compression.enabled:false}")
+    private boolean streamCompressionEnabled;
 
     @Autowired
-    public ChatController(ChatService chatService) {
+    public ChatController(ChatService chatService, ClientRateLimiter clientRateLimiter, ModelEndpointPool modelEndpointPool,
+                          SseConnectionRegistry sseConnectionRegistry, UsageTracker usageTracker,
+                          DrainCoordinator drainCoordinator, Tracer tracer, AdminAccess adminAccess) {
         this.chatService = chatService;
+        this.clientRateLimiter = clientRateLimiter;
+        this.modelEndpointPool = modelEndpointPool;
+        this.sseConnectionRegistry = sseConnectionRegistry;
+        this.usageTracker = usageTracker;
+        this.drainCoordinator = drainCoordinator;
+        this.tracer = tracer;
+        this.adminAccess = adminAccess;
     }
 
     @PostMapping
-    public Map<String, String> chat(@RequestBody Map<String, String> request) {
+    public Map<String, String> chat(@RequestBody Map<String, String> request, HttpServletRequest httpRequest) {
         String userMessage = request.get("message");
         String scenario = request.get("scenario");
         
+        String clientKey = resolveClientKey(httpRequest);
+        admit(clientKey, scenario, userMessage);
+        
+        Deadline deadline = resolveDeadline(httpRequest, defaultTimeoutMs);
         String response;
         if (scenario != null && !scenario.isEmpty()) {
-            response = chatService.chatWithScenario(userMessage, scenario);
+            response = chatService.chatWithScenario(userMessage, scenario, clientKey, deadline);
         } else {
-            response = chatService.chat(userMessage);
+            response = chatService.chatWithScenario(userMessage, "default", clientKey, deadline);
         }
         
         Map<String, String> result = new HashMap<>();
@@ -46,21 +114,25 @@ public class ChatController {
     }
     
     @PostMapping("/with-variables")
-    public Map<String, String> chatWithVariables(@RequestBody Map<String, Object> request) {
+    public Map<String, String> chatWithVariables(@RequestBody Map<String, Object> request, HttpServletRequest httpRequest) {
         String userMessage = (String) request.get("message");
         String scenario = (String) request.get("scenario");
         Map<String, String> variables = (Map<String, String>) request.get("variables");
         
+        String clientKey = resolveClientKey(httpRequest);
+        admit(clientKey, scenario, userMessage);
+        
         // 设置动态变量
         if (variables != null && !variables.isEmpty()) {
             chatService.setDynamicVariables(variables);
         }
         
+        Deadline deadline = resolveDeadline(httpRequest, defaultTimeoutMs);
         String response;
         if (scenario != null && !scenario.isEmpty()) {
-            response = chatService.chatWithScenario(userMessage, scenario);
+            response = chatService.chatWithScenario(userMessage, scenario, clientKey, deadline);
         } else {
-            response = chatService.chat(userMessage);
+            response = chatService.chatWithScenario(userMessage, "default", clientKey, deadline);
         }
         
         Map<String, String> result = new HashMap<>();
@@ -70,53 +142,103 @@ public class ChatController {
     
     /**
      * 流式聊天端点
+     * 按Accept请求头协商传输格式：text/event-stream为原有格式，text/event-stream;version=1为紧凑JSON，
+     * application/x-chat-frames为长度前缀的二进制帧；后两者按Accept-Encoding压缩
      * @param request 请求体，包含message和scenario
-     * @return SseEmitter 用于服务器发送事件
+     * @return 流式响应
      */
-    @PostMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public SseEmitter streamChat(@RequestBody Map<String, String> request) {
+    @PostMapping(value = "/stream", produces = {MediaType.TEXT_EVENT_STREAM_VALUE, "application/x-chat-frames"})
+    public ResponseEntity<ResponseBodyEmitter> streamChat(@RequestBody Map<String, String> request, HttpServletRequest httpRequest) {
         String userMessage = request.get("message");
         String scenario = request.get("scenario");
         
+        // 在建立SSE连接前检查配额并限流，超限时直接返回429
+        String clientKey = resolveClientKey(httpRequest);
+        admit(clientKey, scenario, userMessage);
+        
         // 生成唯一会话ID
         String sessionId = UUID.randomUUID().toString();
         
-        // 设置SSE超时时间为30分钟
-        SseEmitter emitter = new SseEmitter(30 * 60 * 1000L);
+        // 协商传输格式和压缩方式
+        StreamProtocol protocol = StreamProtocol.negotiate(httpRequest.getHeader(HttpHeaders.ACCEPT));
+        StreamCompression compression = protocol.isCompressible() && streamCompressionEnabled
+                ? StreamCompression.negotiate(httpRequest.getHeader(HttpHeaders.ACCEPT_ENCODING))
+                : StreamCompression.IDENTITY;
+        
+        // 超时与请求截止时间一致，默认30分钟
+        Deadline deadline = resolveDeadline(httpRequest, defaultStreamTimeoutMs);
+        ResponseBodyEmitter emitter = protocol == StreamProtocol.SSE_TEXT
+                ? new SseEmitter(deadline.remainingMillis())
+                : new ResponseBodyEmitter(deadline.remainingMillis());
+        
+        // 登记连接，由注册表统一发送心跳和处理超时；连接结束时取消未完成的上游生成并释放会话缓冲区
+        SseConnection connection = sseConnectionRegistry.register(sessionId, emitter, protocol.newEncoder(compression),
+                clientKey, scenario, deadline.remainingMillis(), reason -> chatService.cancelStream(sessionId, reason));
+        
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(protocol.mediaType());
+        headers.setCacheControl("no-cache");
+        headers.set(STREAM_PROTOCOL_HEADER, protocol.id());
+        // 提示反向代理不要缓冲流式响应
+        headers.set("X-Accel-Buffering", "no");
+        headers.setVary(List.of(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING));
+        if (compression.contentEncoding() != null) {
+            headers.set(HttpHeaders.CONTENT_ENCODING, compression.contentEncoding());
+        }
+        ResponseEntity<ResponseBodyEmitter> response = ResponseEntity.ok().headers(headers).body(emitter);
         
         // 发送会话ID给客户端
         try {
-            emitter.send(SseEmitter.event()
-                    .name("session-id")
-                    .data(sessionId));
+            connection.send(StreamEvent.session(sessionId));
         } catch (IOException e) {
             emitter.completeWithError(e);
-            return emitter;
+            return response;
         }
         
         // 异步处理流式响应
         CompletableFuture.runAsync(() -> {
             try {
-                chatService.streamChat(userMessage, scenario, sessionId, 
+                chatService.streamChat(userMessage, scenario, sessionId, clientKey, deadline,
                     new StreamingResponseHandler<AiMessage>() {
                         @Override
                         public void onNext(String token) {
                             try {
-                                emitter.send(SseEmitter.event()
-                                        .name("token")
-                                        .data(token));
+                                connection.send(StreamEvent.token(token));
                             } catch (IOException e) {
+                                // 发送失败说明客户端已不可达，停止上游生成
+                                chatService.cancelStream(sessionId, "send_failure");
                                 emitter.completeWithError(e);
                             }
                         }
                         
+                        // 工具事件在工具线程上产生，放入发件队列后立即返回，不阻塞工具执行
+                        @Override
+                        public void onToolStarted(ToolExecutionRequest toolRequest) {
+                            connection.post(StreamEvent.toolStart(toolRequest.id(), toolRequest.name(),
+                                    abbreviate(toolRequest.arguments(), MAX_TOOL_ARGUMENT_CHARS)));
+                        }
+                        
+                        @Override
+                        public void onToolOutput(ToolExecutionRequest toolRequest, String chunk) {
+                            connection.post(StreamEvent.toolOutput(toolRequest.id(), toolRequest.name(), chunk));
+                        }
+                        
+                        @Override
+                        public void onToolExecuted(ToolExecution execution, long durationMs) {
+                            connection.post(StreamEvent.toolEnd(execution.request().id(), execution.request().name(),
+                                    durationMs, execution.result() != null ? execution.result().length() : 0));
+                        }
+                        
                         @Override
                         public void onComplete(ChatResponse response) {
                             try {
-                                emitter.send(SseEmitter.event()
-                                        .name("complete")
-                                        .data("Stream completed"));
-                                emitter.complete();
+                                TokenUsage usage = response.tokenUsage();
+                                connection.send(StreamEvent.usage(
+                                        usage != null ? usage.inputTokenCount() : null,
+                                        usage != null ? usage.outputTokenCount() : null,
+                                        response.finishReason() != null ? response.finishReason().name() : null));
+                                connection.sendLast(StreamEvent.complete());
+                                connection.complete("completed", null);
                             } catch (IOException e) {
                                 emitter.completeWithError(e);
                             }
@@ -125,13 +247,14 @@ public class ChatController {
                         @Override
                         public void onError(Throwable error) {
                             try {
-                                emitter.send(SseEmitter.event()
-                                        .name("error")
-                                        .data("Error: " + error.getMessage()));
+                                // 被限流时提示客户端等待时间
+                                Long retryAfterMs = error instanceof RateLimitExceededException rateLimited
+                                        ? rateLimited.getRetryAfterSeconds() * 1000 : null;
+                                connection.sendLast(StreamEvent.error(error.getMessage(), retryAfterMs));
                             } catch (IOException e) {
                                 // 忽略发送错误事件的异常，直接完成
                             } finally {
-                                emitter.completeWithError(error);
+                                connection.complete("error", error);
                             }
                         }
                     });
@@ -140,44 +263,124 @@ public class ChatController {
             }
         });
         
-        // 设置完成和超时处理
-        emitter.onCompletion(() -> {
-            // 清理资源
-        });
-        
-        emitter.onTimeout(() -> {
-            emitter.complete();
-        });
-        
-        return emitter;
+        return response;
     }
     
     /**
      * 获取流式会话的当前内容
+     * 进行中的会话从会话存储读取，使用共享存储时可由任一节点查询；已结束的会话从本节点的磁盘记录分块复制到响应，
+     * 返回内容包含status、content及场景和用户消息。本节点没有记录时返回共享存储中保留的结果
      * @param sessionId 会话ID
      * @return 会话内容
      */
     @GetMapping("/stream/{sessionId}")
-    public Map<String, String> getStreamingSessionContent(@PathVariable String sessionId) {
-        String content = chatService.getStreamingSessionContent(sessionId);
+    public ResponseEntity<?> getStreamingSessionContent(@PathVariable String sessionId) {
+        SessionStore.StreamSession session = chatService.getStreamingSession(sessionId);
         
         Map<String, String> result = new HashMap<>();
-        if (content != null) {
-            result.put("content", content);
+        if (session != null && session.isActive()) {
+            result.put("content", session.content());
             result.put("status", "active");
-        } else {
-            result.put("content", "");
-            result.put("status", "not_found");
+            return ResponseEntity.ok(result);
+        }
+        
+        Optional<TranscriptStore.TranscriptReader> transcript = chatService.findTranscript(sessionId);
+        if (transcript.isPresent()) {
+            TranscriptStore.TranscriptReader reader = transcript.get();
+            // Servlet容器不暴露套接字通道，正文经输出流分块复制，不在堆上构建完整的字符串
+            StreamingResponseBody body = outputStream -> {
+                try (reader) {
+                    reader.transferTo(Channels.newChannel(outputStream));
+                }
+            };
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .contentLength(reader.length())
+                    .body(body);
         }
         
+        if (session != null) {
+            result.put("content", session.content());
+            result.put("status", session.status());
+            return ResponseEntity.ok(result);
+        }
+        
+        result.put("content", "");
+        result.put("status", "not_found");
+        return ResponseEntity.ok(result);
+    }
+    
+    /**
+     * 获取流式会话统计，包括取消的会话数和节省的token估算
+     * @return 统计信息
+     */
+    @GetMapping("/stream/stats")
+    public Map<String, Object> getStreamingStats() {
+        return chatService.getStreamingStats();
+    }
+    
+    /**
+     * 获取SSE连接统计，包括当前连接数、连接时长分位数和按原因分类的关闭次数
+     * @return 统计信息
+     */
+    @GetMapping("/stream/connections")
+    public Map<String, Object> getStreamConnections() {
+        return sseConnectionRegistry.snapshot();
+    }
+    
+    /**
+     * 关闭所有SSE连接，进行中的会话被取消，需要管理员Key
+     * @return 关闭的连接数
+     */
+    @DeleteMapping("/stream/connections")
+    public Map<String, Object> closeStreamConnections(HttpServletRequest httpRequest) {
+        adminAccess.require(httpRequest, "Closing all stream connections");
+        Map<String, Object> result = new HashMap<>();
+        result.put("closed", sseConnectionRegistry.closeAll("admin_close"));
         return result;
     }
     
+    /**
+     * 获取模型端点池状态，包括熔断状态、EWMA延迟和在途请求数
+     * @return 端点状态列表
+     */
+    @GetMapping("/endpoints")
+    public List<Map<String, Object>> getModelEndpoints() {
+        return modelEndpointPool.snapshot();
+    }
+    
+    /**
+     * 获取上下文预算统计，包括截断/拒绝次数以及token估算与实际用量的对比
+     * @return 统计信息
+     */
+    @GetMapping("/context/stats")
+    public Map<String, Object> getContextStats() {
+        return chatService.getContextStats();
+    }
+    
+    /**
+     * 获取追踪统计，包括采样的轮次数、导出和丢弃的段数
+     * @return 统计信息
+     */
+    @GetMapping("/tracing/stats")
+    public Map<String, Object> getTracingStats() {
+        return tracer.snapshot();
+    }
+    
     @GetMapping("/scenarios")
     public List<String> getAvailableScenarios() {
         return chatService.getAvailableScenarios();
     }
     
+    /**
+     * 获取各场景提示词的当前版本，提示词文件热更新后版本号递增
+     * @return 场景到版本号的映射
+     */
+    @GetMapping("/scenarios/versions")
+    public Map<String, Long> getScenarioVersions() {
+        return chatService.getPromptVersions();
+    }
+    
     @GetMapping("/current-scenario")
     public Map<String, String> getCurrentScenario() {
         Map<String, String> result = new HashMap<>();
@@ -199,4 +402,44 @@ public class ChatController {
             throw new IllegalArgumentException("Both scenario and template are required");
         }
     }
+    
+    /**
+     * 准入检查：排空期间拒绝新请求，然后检查token配额（只读内存计数器），再按客户端限流
+     */
+    private void admit(String clientKey, String scenario, String userMessage) {
+        drainCoordinator.checkAccepting();
+        long estimatedTokens = clientRateLimiter.estimateTokens(userMessage);
+        usageTracker.checkQuota(clientKey, scenario != null && !scenario.isEmpty() ? scenario : "default", estimatedTokens);
+        clientRateLimiter.acquire(clientKey, estimatedTokens);
+    }
+    
+    private static String abbreviate(String text, int maxChars) {
+        if (text == null || text.length() <= maxChars) {
+            return text;
+        }
+        return text.substring(0, maxChars) + "…";
+    }
+    
+    /**
+     * 解析客户端标识，优先使用API Key请求头的指纹，后续的限流、用量和日志都不接触原始Key
+     */
+    private String resolveClientKey(HttpServletRequest httpRequest) {
+        return ClientKeys.resolve(httpRequest);
+    }
+    
+    /**
+     * 解析请求截止时间，请求头未指定时使用默认值，并限制在最大值以内
+     */
+    private Deadline resolveDeadline(HttpServletRequest httpRequest, long defaultMs) {
+        long timeoutMs = defaultMs;
+        String header = httpRequest.getHeader(TIMEOUT_HEADER);
+        if (header != null && !header.isBlank()) {
+            try {
+                timeoutMs = Long.parseLong(header.trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid " + TIMEOUT_HEADER + " header: " + header);
+            }
+        }
+        return Deadline.afterMillis(Math.max(1, Math.min(timeoutMs, maxTimeoutMs)));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,78 @@
+package com.example.langchain4jdeepseek.controller;
+
+import com.example.langchain4jdeepseek.knowledge.KnowledgeBase;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/api/knowledge")
+@CrossOrigin(origins = "*")
+public class KnowledgeController {
+
+    private final KnowledgeBase knowledgeBase;
+
+    @Autowired
+    public KnowledgeController(KnowledgeBase knowledgeBase) {
+        this.knowledgeBase = knowledgeBase;
+    }
+
+    /**
+     * 导入文档，同ID文档已存在时替换
+     * @param request 请求体，包含id（可选）、title、content和scenarios（可选）
+     * @return 文档ID和分块数
+     */
+    @PostMapping("/documents")
+    public Map<String, Object> ingest(@RequestBody IngestRequest request) {
+        if (request.content() == null || request.content().isBlank()) {
+            throw new IllegalArgumentException("content is required");
+        }
+        String id = request.id();
+        if (id == null || id.isBlank()) {
+            id = UUID.randomUUID().toString();
+        }
+        int chunks = knowledgeBase.ingest(id, request.title(), request.content(), request.scenarios());
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("id", id);
+        result.put("chunks", chunks);
+        return result;
+    }
+
+    @DeleteMapping("/documents/{id}")
+    public Map<String, Object> delete(@PathVariable String id) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("id", id);
+        result.put("deleted", knowledgeBase.delete(id));
+        return result;
+    }
+
+    /**
+     * 直接检索知识库，便于核对导入效果
+     */
+    @GetMapping("/search")
+    public List<KnowledgeBase.Hit> search(@RequestParam String query,
+                                          @RequestParam(required = false) String scenario,
+                                          @RequestParam(defaultValue = "5") int limit) {
+        return knowledgeBase.search(query, scenario, limit);
+    }
+
+    @GetMapping("/stats")
+    public Map<String, Object> getStats() {
+        return knowledgeBase.snapshot();
+    }
+
+    /**
+     * 文档导入请求
+     * @param id 文档ID，为空时自动生成
+     * @param title 文档标题
+     * @param content 文档正文
+     * @param scenarios 可检索该文档的场景，为空时所有场景可见
+     */
+    public record IngestRequest(String id, String title, String content, List<String> scenarios) {
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.langchain4jdeepseek.controller;
+
+import com.example.langchain4jdeepseek.lifecycle.DrainCoordinator;
+import com.example.langchain4jdeepseek.lifecycle.StartupWarmup;
+import com.example.langchain4jdeepseek.limit.AdminAccess;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/lifecycle")
+@CrossOrigin(origins = "*")
+public class LifecycleController {
+
+    private final DrainCoordinator drainCoordinator;
+    private final StartupWarmup startupWarmup;
+    private final AdminAccess adminAccess;
+
+    @Autowired
+    public LifecycleController(DrainCoordinator drainCoordinator, StartupWarmup startupWarmup, AdminAccess adminAccess) {
+        this.drainCoordinator = drainCoordinator;
+        this.startupWarmup = startupWarmup;
+        this.adminAccess = adminAccess;
+    }
+
+    /**
+     * 就绪检查，供编排系统判断是否转发流量
+     * @return 预热完成且接受请求时为200，预热中、预热失败、排空中或已排空时为503，响应体为排空和预热进度
+     */
+    @GetMapping("/readiness")
+    public ResponseEntity<Map<String, Object>> readiness() {
+        Map<String, Object> status = new LinkedHashMap<>(drainCoordinator.status());
+        status.put("warmup", startupWarmup.status());
+        boolean ready = startupWarmup.isReady() && drainCoordinator.isAccepting();
+        return ResponseEntity.status(ready ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE).body(status);
+    }
+
+    /**
+     * 获取启动预热进度，包括各预热任务的状态和耗时
+     */
+    @GetMapping("/startup")
+    public Map<String, Object> startupStatus() {
+        return startupWarmup.status();
+    }
+
+    /**
+     * 获取排空进度
+     */
+    @GetMapping("/drain")
+    public Map<String, Object> drainStatus() {
+        return drainCoordinator.status();
+    }
+
+    /**
+     * 开始排空，适合在发送停止信号前由部署流程调用，需要管理员Key
+     * @param reason 排空原因
+     */
+    @PostMapping("/drain")
+    public Map<String, Object> drain(@RequestParam(defaultValue = "deploy") String reason, HttpServletRequest httpRequest) {
+        adminAccess.require(httpRequest, "Starting a drain");
+        return drainCoordinator.startDrain(reason);
+    }
+
+    /**
+     * 取消排空，恢复接受请求，需要管理员Key
+     */
+    @DeleteMapping("/drain")
+    public Map<String, Object> resume(HttpServletRequest httpRequest) {
+        adminAccess.require(httpRequest, "Cancelling a drain");
+        return drainCoordinator.resume();
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.langchain4jdeepseek.controller;
+
+import com.example.langchain4jdeepseek.limit.AdminAccess;
+import com.example.langchain4jdeepseek.limit.ClientKeys;
+import com.example.langchain4jdeepseek.usage.UsageTracker;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/usage")
+@CrossOrigin(origins = "*")
+public class UsageController {
+
+    private final UsageTracker usageTracker;
+
+    // 带有效管理员Key的请求可以查询任意客户端
+    private final AdminAccess adminAccess;
+
+    @Autowired
+    public UsageController(UsageTracker usageTracker, AdminAccess adminAccess) {
+        this.usageTracker = usageTracker;
+        this.adminAccess = adminAccess;
+    }
+
+    /**
+     * 按日期区间汇总token用量，非管理员只能查询自身的用量
+     * @param from 起始日期（含），默认本月第一天
+     * @param to 结束日期（含），默认今天
+     * @param client 只统计该客户端（指纹或来源地址），查询其他客户端需要管理员Key
+     * @param scenario 只统计该场景
+     * @param model 只统计该模型
+     * @param groupBy 逗号分隔的分组维度：client、scenario、model、day
+     * @return 总计和分组结果
+     */
+    @GetMapping
+    public Map<String, Object> query(@RequestParam(required = false) String from,
+                                     @RequestParam(required = false) String to,
+                                     @RequestParam(required = false) String client,
+                                     @RequestParam(required = false) String scenario,
+                                     @RequestParam(required = false) String model,
+                                     @RequestParam(defaultValue = "client,scenario,model") String groupBy,
+                                     HttpServletRequest httpRequest) throws IOException {
+        client = authorizeClient(client, httpRequest);
+        List<String> dimensions = new ArrayList<>();
+        for (String dimension : groupBy.split(",")) {
+            if (!dimension.isBlank() && !dimensions.contains(dimension.trim())) {
+                dimensions.add(dimension.trim());
+            }
+        }
+        return usageTracker.query(from != null ? LocalDate.parse(from) : null, to != null ? LocalDate.parse(to) : null,
+                client, scenario, model, dimensions);
+    }
+
+    /**
+     * 查询客户端的配额使用情况，未指定客户端时查询调用方自身；查询其他客户端需要管理员Key
+     */
+    @GetMapping("/quota")
+    public Map<String, Object> quota(@RequestParam(required = false) String client, HttpServletRequest httpRequest) {
+        client = authorizeClient(client, httpRequest);
+        return usageTracker.quota(client != null ? client : ClientKeys.resolve(httpRequest));
+    }
+
+    /**
+     * 获取用量统计，包括待写入的维度数、刷新次数和配额拒绝次数
+     */
+    @GetMapping("/stats")
+    public Map<String, Object> stats() {
+        return usageTracker.snapshot();
+    }
+
+    /**
+     * 立即将内存中的增量写入存储
+     * @return 写入的行数
+     */
+    @PostMapping("/flush")
+    public Map<String, Object> flush() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("rows", usageTracker.flush());
+        return result;
+    }
+
+    /**
+     * 确定查询的客户端：管理员可以查询任意客户端（未指定时不过滤），其他调用方只能查询自身
+     */
+    private String authorizeClient(String client, HttpServletRequest httpRequest) {
+        if (client != null && client.isBlank()) {
+            client = null;
+        }
+        if (adminAccess.isAdmin(httpRequest)) {
+            return client;
+        }
+        String self = ClientKeys.resolve(httpRequest);
+        if (client != null && !client.equals(self)) {
+            adminAccess.require(httpRequest, "Querying another client's usage");
+        }
+        return self;
+    }
+}
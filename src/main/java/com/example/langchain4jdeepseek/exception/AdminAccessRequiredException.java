@@ -0,0 +1,11 @@
+package com.example.langchain4jdeepseek.exception;
+
+/**
+ * 请求需要管理员权限但未提供有效的管理员Key时抛出的异常
+ */
+public class AdminAccessRequiredException extends RuntimeException {
+
+    public AdminAccessRequiredException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.langchain4jdeepseek.exception;
+
+/**
+ * 输入超出场景上下文预算时抛出的异常
+ */
+public class ContextBudgetExceededException extends RuntimeException {
+
+    private final long estimatedTokens;
+    private final long budgetTokens;
+
+    public ContextBudgetExceededException(String message, long estimatedTokens, long budgetTokens) {
+        super(message);
+        this.estimatedTokens = estimatedTokens;
+        this.budgetTokens = budgetTokens;
+    }
+
+    public long getEstimatedTokens() {
+        return estimatedTokens;
+    }
+
+    public long getBudgetTokens() {
+        return budgetTokens;
+    }
+}
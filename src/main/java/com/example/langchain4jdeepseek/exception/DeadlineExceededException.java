@@ -0,0 +1,11 @@
+package com.example.langchain4jdeepseek.exception;
+
+/**
+ * 请求超过截止时间时抛出的异常
+ */
+public class DeadlineExceededException extends RuntimeException {
+
+    public DeadlineExceededException(String message) {
+        super(message);
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.langchain4jdeepseek.exception;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -11,6 +12,76 @@ import java.util.Map;
 @ControllerAdvice
 public class GlobalExceptionHandler {
 
+    @ExceptionHandler(RateLimitExceededException.class)
+    public ResponseEntity<Map<String, String>> handleRateLimitExceeded(RateLimitExceededException e) {
+        Map<String, String> errorResponse = new HashMap<>();
+        errorResponse.put("error", "Too many requests");
+        errorResponse.put("message", e.getMessage());
+        errorResponse.put("retryAfter", String.valueOf(e.getRetryAfterSeconds()));
+        
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(errorResponse);
+    }
+
+    @ExceptionHandler(QuotaExceededException.class)
+    public ResponseEntity<Map<String, String>> handleQuotaExceeded(QuotaExceededException e) {
+        Map<String, String> errorResponse = new HashMap<>();
+        errorResponse.put("error", "Token quota exceeded");
+        errorResponse.put("message", e.getMessage());
+        errorResponse.put("period", e.getPeriod());
+        errorResponse.put("usedTokens", String.valueOf(e.getUsedTokens()));
+        errorResponse.put("quotaTokens", String.valueOf(e.getQuotaTokens()));
+        errorResponse.put("retryAfter", String.valueOf(e.getRetryAfterSeconds()));
+        
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(errorResponse);
+    }
+
+    @ExceptionHandler(ServiceDrainingException.class)
+    public ResponseEntity<Map<String, String>> handleServiceDraining(ServiceDrainingException e) {
+        Map<String, String> errorResponse = new HashMap<>();
+        errorResponse.put("error", "Service draining");
+        errorResponse.put("message", e.getMessage());
+        errorResponse.put("retryAfter", String.valueOf(e.getRetryAfterSeconds()));
+        
+        // 关闭keep-alive连接，使客户端重试时重新经过负载均衡
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .header(HttpHeaders.CONNECTION, "close")
+                .body(errorResponse);
+    }
+
+    @ExceptionHandler(AdminAccessRequiredException.class)
+    public ResponseEntity<Map<String, String>> handleAdminAccessRequired(AdminAccessRequiredException e) {
+        Map<String, String> errorResponse = new HashMap<>();
+        errorResponse.put("error", "Forbidden");
+        errorResponse.put("message", e.getMessage());
+        
+        return ResponseEntity.status(HttpStatus.FORBIDDEN).body(errorResponse);
+    }
+
+    @ExceptionHandler(DeadlineExceededException.class)
+    public ResponseEntity<Map<String, String>> handleDeadlineExceeded(DeadlineExceededException e) {
+        Map<String, String> errorResponse = new HashMap<>();
+        errorResponse.put("error", "Request deadline exceeded");
+        errorResponse.put("message", e.getMessage());
+        
+        return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).body(errorResponse);
+    }
+
+    @ExceptionHandler(ContextBudgetExceededException.class)
+    public ResponseEntity<Map<String, String>> handleContextBudgetExceeded(ContextBudgetExceededException e) {
+        Map<String, String> errorResponse = new HashMap<>();
+        errorResponse.put("error", "Context budget exceeded");
+        errorResponse.put("message", e.getMessage());
+        errorResponse.put("estimatedTokens", String.valueOf(e.getEstimatedTokens()));
+        errorResponse.put("budgetTokens", String.valueOf(e.getBudgetTokens()));
+        
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(errorResponse);
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<Map<String, String>> handleException(Exception e) {
         Map<String, String> errorResponse = new HashMap<>();
@@ -19,4 +90,4 @@ public class GlobalExceptionHandler {
         
         return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
     }
-}
\ No newline at end of file
+}
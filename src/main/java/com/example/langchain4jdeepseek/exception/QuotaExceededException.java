@@ -0,0 +1,34 @@
+package com.example.langchain4jdeepseek.exception;
+
+/**
+ * 客户端token用量超出每日或每月配额时抛出的异常
+ * 继承限流异常，沿用429响应和流式错误事件中的重试提示
+ */
+public class QuotaExceededException extends RateLimitExceededException {
+
+    private final String period;
+    private final long usedTokens;
+    private final long quotaTokens;
+
+    public QuotaExceededException(String message, String period, long usedTokens, long quotaTokens, long retryAfterSeconds) {
+        super(message, retryAfterSeconds);
+        this.period = period;
+        this.usedTokens = usedTokens;
+        this.quotaTokens = quotaTokens;
+    }
+
+    /**
+     * 超出的配额周期，daily或monthly
+     */
+    public String getPeriod() {
+        return period;
+    }
+
+    public long getUsedTokens() {
+        return usedTokens;
+    }
+
+    public long getQuotaTokens() {
+        return quotaTokens;
+    }
+}
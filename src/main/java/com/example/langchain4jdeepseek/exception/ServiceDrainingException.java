@@ -0,0 +1,21 @@
+package com.example.langchain4jdeepseek.exception;
+
+/**
+ * 服务正在排空、不再接受新请求时抛出的异常
+ */
+public class ServiceDrainingException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public ServiceDrainingException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * 建议客户端重试前等待的秒数，重试应由负载均衡转发到其他实例
+     */
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.langchain4jdeepseek.http;
+
+import com.example.langchain4jdeepseek.exception.DeadlineExceededException;
+import com.example.langchain4jdeepseek.resilience.Deadline;
+import com.example.langchain4jdeepseek.resilience.SharedScheduler;
+import com.example.langchain4jdeepseek.tools.ToolProgress;
+import com.example.langchain4jdeepseek.tracing.Span;
+import dev.langchain4j.http.client.HttpClient;
+import dev.langchain4j.http.client.HttpRequest;
+import dev.langchain4j.http.client.SuccessfulHttpResponse;
+import dev.langchain4j.http.client.sse.ServerSentEventListener;
+import dev.langchain4j.http.client.sse.ServerSentEventParser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 支持取消和截止时间的HTTP客户端
+ * 将SSE响应流登记到发起请求时线程绑定的StreamCancellation上，
+ * 会话取消时关闭响应流，从而中断上游的流式生成；
+ * 线程绑定了Deadline时，请求只能使用剩余的时间预算
+ */
+public class CancellableHttpClient implements HttpClient {
+
+    // 同步请求的截止时间中断握手：定时器只在调用线程仍处于execute中时中断它
+    private static final int IN_EXECUTE = 0;
+    private static final int INTERRUPTING = 1;
+    private static final int INTERRUPTED = 2;
+    private static final int RETURNED = 3;
+
+    private final HttpClient delegate;
+
+    public CancellableHttpClient(HttpClient delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public SuccessfulHttpResponse execute(HttpRequest request) {
+        Deadline deadline = Deadline.current();
+        if (deadline == null) {
+            return delegate.execute(request);
+        }
+
+        deadline.check("model request");
+        // 到期时中断调用线程，JDK HTTP客户端会随之放弃请求。
+        // 定时器先将状态从IN_EXECUTE改为INTERRUPTING才能中断，调用线程返回前改为RETURNED，
+        // 两者只有一方成功，因此返回之后调用线程（可能是池化线程）不会再收到中断
+        Thread caller = Thread.currentThread();
+        AtomicInteger state = new AtomicInteger(IN_EXECUTE);
+        ScheduledFuture<?> timer = SharedScheduler.schedule(() -> {
+            if (state.compareAndSet(IN_EXECUTE, INTERRUPTING)) {
+                caller.interrupt();
+                state.set(INTERRUPTED);
+            }
+        }, deadline.remainingMillis());
+        try {
+            return delegate.execute(request);
+        } catch (RuntimeException e) {
+            if (deadline.isExpired()) {
+                throw new DeadlineExceededException("Request deadline exceeded during model request");
+            }
+            throw e;
+        } finally {
+            timer.cancel(false);
+            if (!state.compareAndSet(IN_EXECUTE, RETURNED)) {
+                // 定时器已开始中断，等它完成后清除中断标记
+                while (state.get() == INTERRUPTING) {
+                    Thread.onSpinWait();
+                }
+                Thread.interrupted();
+            }
+        }
+    }
+
+    @Override
+    public void execute(HttpRequest request, ServerSentEventParser parser, ServerSentEventListener listener) {
+        StreamCancellation cancellation = StreamCancellation.current();
+        Deadline deadline = Deadline.current();
+        ToolProgress.Listener progress = ToolProgress.current();
+        Span span = Span.current();
+        if (cancellation == null && deadline == null && progress == null && !span.isSampled()) {
+            delegate.execute(request, parser, listener);
+            return;
+        }
+
+        // 会话已取消时不再发起新的上游请求（例如工具调用后的下一轮）
+        if (cancellation != null && cancellation.isCancelled()) {
+            listener.onError(new CancellationException("Stream cancelled: " + cancellation.getCancelReason()));
+            return;
+        }
+        if (deadline != null && deadline.isExpired()) {
+            listener.onError(new DeadlineExceededException("Request deadline exceeded before model request"));
+            return;
+        }
+
+        delegate.execute(request, (inputStream, eventListener) -> {
+            if (cancellation != null) {
+                cancellation.attach(inputStream);
+            }
+            // 到期时关闭响应流
+            ScheduledFuture<?> timer = deadline != null
+                    ? SharedScheduler.schedule(() -> closeQuietly(inputStream), deadline.remainingMillis())
+                    : null;
+            // 解析线程上继续绑定上下文，使工具调用及后续模型请求同样可取消、受截止时间约束，工具可上报进度，
+            // 并作为当前追踪段的子段记录
+            StreamCancellation previousCancellation = StreamCancellation.bind(cancellation);
+            Deadline previousDeadline = Deadline.bind(deadline);
+            ToolProgress.Listener previousProgress = ToolProgress.bind(progress);
+            Span previousSpan = Span.bind(span);
+            try {
+                parser.parse(inputStream, eventListener);
+            } finally {
+                Span.restore(previousSpan);
+                ToolProgress.restore(previousProgress);
+                Deadline.restore(previousDeadline);
+                StreamCancellation.restore(previousCancellation);
+                if (timer != null) {
+                    timer.cancel(false);
+                }
+                if (cancellation != null) {
+                    cancellation.detach(inputStream);
+                }
+            }
+        }, listener);
+    }
+
+    private static void closeQuietly(InputStream inputStream) {
+        try {
+            inputStream.close();
+        } catch (IOException e) {
+            // 关闭失败不影响截止时间处理
+        }
+    }
+}
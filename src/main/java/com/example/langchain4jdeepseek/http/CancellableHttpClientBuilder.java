@@ -0,0 +1,51 @@
+package com.example.langchain4jdeepseek.http;
+
+import dev.langchain4j.http.client.HttpClient;
+import dev.langchain4j.http.client.HttpClientBuilder;
+import dev.langchain4j.http.client.HttpClientBuilderLoader;
+
+import java.time.Duration;
+
+/**
+ * CancellableHttpClient的构建器
+ * 包装classpath中默认的HTTP客户端实现
+ */
+public class CancellableHttpClientBuilder implements HttpClientBuilder {
+
+    private final HttpClientBuilder delegate;
+
+    public CancellableHttpClientBuilder() {
+        this(HttpClientBuilderLoader.loadHttpClientBuilder());
+    }
+
+    public CancellableHttpClientBuilder(HttpClientBuilder delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Duration connectTimeout() {
+        return delegate.connectTimeout();
+    }
+
+    @Override
+    public HttpClientBuilder connectTimeout(Duration timeout) {
+        delegate.connectTimeout(timeout);
+        return this;
+    }
+
+    @Override
+    public Duration readTimeout() {
+        return delegate.readTimeout();
+    }
+
+    @Override
+    public HttpClientBuilder readTimeout(Duration timeout) {
+        delegate.readTimeout(timeout);
+        return this;
+    }
+
+    @Override
+    public HttpClient build() {
+        return new CancellableHttpClient(delegate.build());
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.langchain4jdeepseek.http;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 流式会话的取消句柄
+ * 记录会话当前打开的上游响应流，取消时关闭这些流，使模型请求立即终止
+ */
+public class StreamCancellation {
+
+    private static final ThreadLocal<StreamCancellation> CURRENT = new ThreadLocal<>();
+
+    private final String sessionId;
+
+    // 取消原因，为null表示尚未取消
+    private final AtomicReference<String> cancelReason = new AtomicReference<>();
+
+    // 当前打开的上游响应流（工具调用轮次中可能先后有多个）
+    private final Set<Closeable> upstreams = ConcurrentHashMap.newKeySet();
+
+    // 已转发给客户端的token数
+    private final AtomicLong tokensStreamed = new AtomicLong();
+
+    public StreamCancellation(String sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    /**
+     * 获取当前线程绑定的取消句柄
+     * @return 取消句柄，未绑定时返回null
+     */
+    public static StreamCancellation current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 将取消句柄绑定到当前线程
+     * @param cancellation 取消句柄
+     * @return 之前绑定的句柄，用于恢复
+     */
+    public static StreamCancellation bind(StreamCancellation cancellation) {
+        StreamCancellation previous = CURRENT.get();
+        CURRENT.set(cancellation);
+        return previous;
+    }
+
+    /**
+     * 恢复之前绑定的取消句柄
+     * @param previous bind返回的句柄
+     */
+    public static void restore(StreamCancellation previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    /**
+     * 取消会话并关闭所有上游响应流
+     * @param reason 取消原因
+     * @return true表示本次调用完成了取消，false表示之前已取消
+     */
+    public boolean cancel(String reason) {
+        if (!cancelReason.compareAndSet(null, reason)) {
+            return false;
+        }
+        for (Closeable upstream : upstreams) {
+            closeQuietly(upstream);
+        }
+        upstreams.clear();
+        return true;
+    }
+
+    /**
+     * 登记一个上游响应流，若会话已取消则立即关闭
+     */
+    public void attach(Closeable upstream) {
+        upstreams.add(upstream);
+        if (isCancelled()) {
+            upstreams.remove(upstream);
+            closeQuietly(upstream);
+        }
+    }
+
+    /**
+     * 移除已结束的上游响应流
+     */
+    public void detach(Closeable upstream) {
+        upstreams.remove(upstream);
+    }
+
+    public boolean isCancelled() {
+        return cancelReason.get() != null;
+    }
+
+    public String getCancelReason() {
+        return cancelReason.get();
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public void tokenStreamed() {
+        tokensStreamed.incrementAndGet();
+    }
+
+    public long getTokensStreamed() {
+        return tokensStreamed.get();
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // 关闭上游连接失败不影响取消结果
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.langchain4jdeepseek.knowledge;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 进程内的特征哈希向量模型
+ * 英文按小写单词及相邻词对、中日韩文本按单字和相邻字对提取特征，
+ * 以带符号的哈希映射到固定维度，词频取对数后做L2归一化。
+ * 不依赖模型文件和本地库；需要语义检索时可声明其他EmbeddingModel Bean替换
+ */
+public class HashingEmbeddingModel implements EmbeddingModel {
+
+    private final int dimension;
+
+    public HashingEmbeddingModel(int dimension) {
+        this.dimension = dimension;
+    }
+
+    @Override
+    public Response<List<Embedding>> embedAll(List<TextSegment> segments) {
+        List<Embedding> embeddings = new ArrayList<>(segments.size());
+        for (TextSegment segment : segments) {
+            embeddings.add(Embedding.from(embed(segment.text(), dimension)));
+        }
+        return Response.from(embeddings);
+    }
+
+    @Override
+    public int dimension() {
+        return dimension;
+    }
+
+    /**
+     * 计算文本的归一化向量
+     */
+    static float[] embed(String text, int dimension) {
+        Map<String, Integer> features = new HashMap<>();
+        String previousWord = null;
+        char previousCjk = 0;
+        StringBuilder word = new StringBuilder();
+
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? Character.toLowerCase(text.charAt(i)) : ' ';
+            if (isCjk(c)) {
+                previousWord = flushWord(word, previousWord, features);
+                features.merge(String.valueOf(c), 1, Integer::sum);
+                if (previousCjk != 0) {
+                    features.merge(new String(new char[]{previousCjk, c}), 1, Integer::sum);
+                }
+                previousCjk = c;
+            } else if (Character.isLetterOrDigit(c)) {
+                word.append(c);
+                previousCjk = 0;
+            } else {
+                previousWord = flushWord(word, previousWord, features);
+                previousCjk = 0;
+            }
+        }
+
+        float[] vector = new float[dimension];
+        for (Map.Entry<String, Integer> feature : features.entrySet()) {
+            long hash = hash(feature.getKey());
+            int bucket = (int) Math.floorMod(hash, (long) dimension);
+            float weight = (float) (1 + Math.log(feature.getValue()));
+            // 用哈希的另一位决定符号，使冲突的特征相互抵消而不是累加
+            vector[bucket] += (hash >>> 63) == 0 ? weight : -weight;
+        }
+
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        if (norm > 0) {
+            float scale = (float) (1 / Math.sqrt(norm));
+            for (int i = 0; i < dimension; i++) {
+                vector[i] *= scale;
+            }
+        }
+        return vector;
+    }
+
+    private static String flushWord(StringBuilder word, String previousWord, Map<String, Integer> features) {
+        if (word.length() == 0) {
+            return previousWord;
+        }
+        String current = word.toString();
+        word.setLength(0);
+        features.merge(current, 1, Integer::sum);
+        if (previousWord != null) {
+            features.merge(previousWord + ' ' + current, 1, Integer::sum);
+        }
+        return current;
+    }
+
+    private static boolean isCjk(char c) {
+        if (c < 128) {
+            return false;
+        }
+        Character.UnicodeScript script = Character.UnicodeScript.of(c);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+
+    private static long hash(String feature) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : feature.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
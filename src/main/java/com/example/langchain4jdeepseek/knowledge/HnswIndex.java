@@ -0,0 +1,479 @@
+package com.example.langchain4jdeepseek.knowledge;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+
+/**
+ * 分层可导航小世界图（HNSW）近似最近邻索引
+ * 向量需预先归一化，相似度使用内积。
+ * 写入串行执行，查询可并发；删除为软删除，查询遍历时跳过已删除和被过滤的节点，
+ * 但仍经由它们导航，过滤条件很严格时会扩大遍历范围而不是返回不足k个结果
+ */
+public class HnswIndex {
+
+    private static final int MAGIC = 0x484e5357;
+
+    private final int dimension;
+    private final int m;
+    private final int maxConnections0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final SplittableRandom random = new SplittableRandom(42);
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // 向量按节点顺序连续存放
+    private float[] vectors;
+    // links[节点][层]，每层数组第0位为邻居数
+    private int[][][] links;
+    private final BitSet deleted = new BitSet();
+
+    private int size;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    // 查询时的已访问标记，按代数复用避免每次清零
+    private final ThreadLocal<Visited> visited = ThreadLocal.withInitial(Visited::new);
+
+    public HnswIndex(int dimension, int m, int efConstruction) {
+        this.dimension = dimension;
+        this.m = m;
+        this.maxConnections0 = m * 2;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1 / Math.log(m);
+        this.vectors = new float[dimension * 1024];
+        this.links = new int[1024][][];
+    }
+
+    /**
+     * 插入向量
+     * @param vector 归一化向量
+     * @return 节点ID，从0开始连续分配
+     */
+    public int add(float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("Expected dimension " + dimension + " but got " + vector.length);
+        }
+        lock.writeLock().lock();
+        try {
+            int id = size;
+            ensureCapacity(id + 1);
+            System.arraycopy(vector, 0, vectors, id * dimension, dimension);
+
+            int level = (int) (-Math.log(1 - random.nextDouble()) * levelMultiplier);
+            links[id] = new int[level + 1][];
+            for (int l = 0; l <= level; l++) {
+                links[id][l] = new int[maxConnections(l) + 1];
+            }
+            size++;
+
+            if (entryPoint < 0) {
+                entryPoint = id;
+                maxLevel = level;
+                return id;
+            }
+
+            int current = entryPoint;
+            for (int l = maxLevel; l > level; l--) {
+                current = greedy(vector, current, l);
+            }
+            for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+                List<Scored> candidates = searchLayer(vector, current, efConstruction, l, null);
+                int[] selected = selectNeighbors(candidates, maxConnections(l));
+                for (int neighbor : selected) {
+                    append(links[id][l], neighbor);
+                    connect(neighbor, id, l);
+                }
+                current = candidates.get(0).id;
+            }
+
+            if (level > maxLevel) {
+                maxLevel = level;
+                entryPoint = id;
+            }
+            return id;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 软删除节点
+     */
+    public void delete(int id) {
+        lock.writeLock().lock();
+        try {
+            deleted.set(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 查询最相似的节点
+     * @param query 归一化查询向量
+     * @param k 返回数量
+     * @param ef 搜索宽度，越大召回越高、耗时越长
+     * @param filter 节点过滤条件，为null时不过滤
+     * @return 按相似度降序排列的结果
+     */
+    public List<Scored> search(float[] query, int k, int ef, IntPredicate filter) {
+        lock.readLock().lock();
+        try {
+            if (entryPoint < 0) {
+                return List.of();
+            }
+            int current = entryPoint;
+            for (int l = maxLevel; l > 0; l--) {
+                current = greedy(query, current, l);
+            }
+            IntPredicate accept = filter == null ? id -> !deleted.get(id) : id -> !deleted.get(id) && filter.test(id);
+            List<Scored> candidates = searchLayer(query, current, Math.max(ef, k), 0, accept);
+            return candidates.size() > k ? new ArrayList<>(candidates.subList(0, k)) : candidates;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 暴力计算精确的最近邻，用于评估召回率
+     */
+    public List<Scored> exactSearch(float[] query, int k) {
+        lock.readLock().lock();
+        try {
+            PriorityQueue<Scored> top = new PriorityQueue<>(Comparator.comparingDouble(Scored::score));
+            for (int id = 0; id < size; id++) {
+                if (deleted.get(id)) {
+                    continue;
+                }
+                top.add(new Scored(id, similarity(query, id)));
+                if (top.size() > k) {
+                    top.poll();
+                }
+            }
+            List<Scored> results = new ArrayList<>(top);
+            results.sort(Comparator.comparingDouble(Scored::score).reversed());
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 复制节点的向量
+     */
+    public float[] vector(int id) {
+        lock.readLock().lock();
+        try {
+            return Arrays.copyOfRange(vectors, id * dimension, (id + 1) * dimension);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int deletedCount() {
+        lock.readLock().lock();
+        try {
+            return deleted.cardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    /**
+     * 写出索引
+     */
+    public void write(DataOutputStream out) throws IOException {
+        lock.readLock().lock();
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(dimension);
+            out.writeInt(m);
+            out.writeInt(efConstruction);
+            out.writeInt(size);
+            out.writeInt(entryPoint);
+            out.writeInt(maxLevel);
+            for (int id = 0; id < size; id++) {
+                int offset = id * dimension;
+                for (int i = 0; i < dimension; i++) {
+                    out.writeFloat(vectors[offset + i]);
+                }
+                out.writeByte(links[id].length - 1);
+                for (int[] level : links[id]) {
+                    out.writeShort(level[0]);
+                    for (int i = 1; i <= level[0]; i++) {
+                        out.writeInt(level[i]);
+                    }
+                }
+            }
+            long[] deletedBits = deleted.toLongArray();
+            out.writeInt(deletedBits.length);
+            for (long bits : deletedBits) {
+                out.writeLong(bits);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 读取索引
+     */
+    public static HnswIndex read(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not an HNSW index file");
+        }
+        HnswIndex index = new HnswIndex(in.readInt(), in.readInt(), in.readInt());
+        int size = in.readInt();
+        index.ensureCapacity(size);
+        index.entryPoint = in.readInt();
+        index.maxLevel = in.readInt();
+        for (int id = 0; id < size; id++) {
+            int offset = id * index.dimension;
+            for (int i = 0; i < index.dimension; i++) {
+                index.vectors[offset + i] = in.readFloat();
+            }
+            int level = in.readUnsignedByte();
+            index.links[id] = new int[level + 1][];
+            for (int l = 0; l <= level; l++) {
+                int[] neighbors = new int[index.maxConnections(l) + 1];
+                neighbors[0] = in.readUnsignedShort();
+                for (int i = 1; i <= neighbors[0]; i++) {
+                    neighbors[i] = in.readInt();
+                }
+                index.links[id][l] = neighbors;
+            }
+        }
+        index.size = size;
+        long[] deletedBits = new long[in.readInt()];
+        for (int i = 0; i < deletedBits.length; i++) {
+            deletedBits[i] = in.readLong();
+        }
+        index.deleted.or(BitSet.valueOf(deletedBits));
+        return index;
+    }
+
+    private int maxConnections(int level) {
+        return level == 0 ? maxConnections0 : m;
+    }
+
+    private int greedy(float[] query, int start, int level) {
+        int current = start;
+        float best = similarity(query, current);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            int[] neighbors = links[current][level];
+            for (int i = 1; i <= neighbors[0]; i++) {
+                float score = similarity(query, neighbors[i]);
+                if (score > best) {
+                    best = score;
+                    current = neighbors[i];
+                    changed = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 在单层上做宽度为ef的最佳优先搜索
+     * 不满足accept的节点只用于导航，不进入结果；结果不足ef个时继续扩展
+     * @param accept 结果过滤条件，为null时不过滤
+     * @return 按相似度降序排列的结果
+     */
+    private List<Scored> searchLayer(float[] query, int start, int ef, int level, IntPredicate accept) {
+        Visited seen = visited.get();
+        seen.reset(size);
+        PriorityQueue<Scored> candidates = new PriorityQueue<>(Comparator.comparingDouble(Scored::score).reversed());
+        PriorityQueue<Scored> results = new PriorityQueue<>(Comparator.comparingDouble(Scored::score));
+
+        Scored first = new Scored(start, similarity(query, start));
+        seen.mark(start);
+        candidates.add(first);
+        if (accept == null || accept.test(start)) {
+            results.add(first);
+        }
+
+        while (!candidates.isEmpty()) {
+            Scored candidate = candidates.poll();
+            if (results.size() >= ef && candidate.score < results.peek().score) {
+                break;
+            }
+            int[] neighbors = links[candidate.id][level];
+            for (int i = 1; i <= neighbors[0]; i++) {
+                int neighbor = neighbors[i];
+                if (!seen.mark(neighbor)) {
+                    continue;
+                }
+                float score = similarity(query, neighbor);
+                if (results.size() < ef || score > results.peek().score) {
+                    Scored scored = new Scored(neighbor, score);
+                    candidates.add(scored);
+                    if (accept == null || accept.test(neighbor)) {
+                        results.add(scored);
+                        if (results.size() > ef) {
+                            results.poll();
+                        }
+                    }
+                }
+            }
+        }
+
+        List<Scored> ordered = new ArrayList<>(results);
+        ordered.sort(Comparator.comparingDouble(Scored::score).reversed());
+        return ordered;
+    }
+
+    /**
+     * 启发式选择邻居：优先保留彼此不相近的候选，使图在不同方向上都有连接，
+     * 不足时再用被跳过的候选补齐
+     */
+    private int[] selectNeighbors(List<Scored> candidates, int max) {
+        int[] selected = new int[Math.min(max, candidates.size())];
+        int count = 0;
+        List<Scored> skipped = new ArrayList<>();
+        for (Scored candidate : candidates) {
+            if (count == selected.length) {
+                break;
+            }
+            boolean diverse = true;
+            for (int i = 0; i < count; i++) {
+                if (similarity(candidate.id, selected[i]) > candidate.score) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected[count++] = candidate.id;
+            } else {
+                skipped.add(candidate);
+            }
+        }
+        for (int i = 0; i < skipped.size() && count < selected.length; i++) {
+            selected[count++] = skipped.get(i).id;
+        }
+        return count == selected.length ? selected : Arrays.copyOf(selected, count);
+    }
+
+    /**
+     * 为已有节点增加一条反向连接，超出上限时对原有邻居和新节点重新做启发式选择。
+     * 只替换最不相似的邻居会让邻居都挤在同一方向上，图的连通性变差，召回率明显下降
+     */
+    private void connect(int node, int neighbor, int level) {
+        int[] neighbors = links[node][level];
+        if (neighbors[0] < maxConnections(level)) {
+            append(neighbors, neighbor);
+            return;
+        }
+
+        List<Scored> candidates = new ArrayList<>(neighbors[0] + 1);
+        for (int i = 1; i <= neighbors[0]; i++) {
+            candidates.add(new Scored(neighbors[i], similarity(node, neighbors[i])));
+        }
+        candidates.add(new Scored(neighbor, similarity(node, neighbor)));
+        candidates.sort(Comparator.comparingDouble(Scored::score).reversed());
+        int[] selected = selectNeighbors(candidates, maxConnections(level));
+        neighbors[0] = 0;
+        for (int id : selected) {
+            append(neighbors, id);
+        }
+    }
+
+    private static void append(int[] neighbors, int id) {
+        neighbors[++neighbors[0]] = id;
+    }
+
+    private float similarity(float[] query, int id) {
+        return dot(query, 0, vectors, id * dimension);
+    }
+
+    private float similarity(int a, int b) {
+        return dot(vectors, a * dimension, vectors, b * dimension);
+    }
+
+    /**
+     * 内积，四路累加以减少浮点加法的依赖链
+     */
+    private float dot(float[] a, int offsetA, float[] b, int offsetB) {
+        float sum0 = 0;
+        float sum1 = 0;
+        float sum2 = 0;
+        float sum3 = 0;
+        int i = 0;
+        for (; i + 3 < dimension; i += 4) {
+            sum0 += a[offsetA + i] * b[offsetB + i];
+            sum1 += a[offsetA + i + 1] * b[offsetB + i + 1];
+            sum2 += a[offsetA + i + 2] * b[offsetB + i + 2];
+            sum3 += a[offsetA + i + 3] * b[offsetB + i + 3];
+        }
+        for (; i < dimension; i++) {
+            sum0 += a[offsetA + i] * b[offsetB + i];
+        }
+        return sum0 + sum1 + sum2 + sum3;
+    }
+
+    private void ensureCapacity(int nodes) {
+        if (nodes > links.length) {
+            int capacity = Math.max(nodes, links.length * 2);
+            links = Arrays.copyOf(links, capacity);
+            vectors = Arrays.copyOf(vectors, capacity * dimension);
+        }
+    }
+
+    /**
+     * 查询结果
+     * @param id 节点ID
+     * @param score 与查询向量的内积
+     */
+    public record Scored(int id, float score) {
+    }
+
+    /**
+     * 按代数标记的已访问集合
+     */
+    private static final class Visited {
+        private int[] marks = new int[0];
+        private int generation;
+
+        void reset(int size) {
+            if (marks.length < size) {
+                marks = new int[Math.max(size, marks.length * 2)];
+                generation = 0;
+            }
+            generation++;
+            if (generation == 0) {
+                Arrays.fill(marks, 0);
+                generation = 1;
+            }
+        }
+
+        /**
+         * @return true表示首次访问
+         */
+        boolean mark(int id) {
+            if (marks[id] == generation) {
+                return false;
+            }
+            marks[id] = generation;
+            return true;
+        }
+    }
+}
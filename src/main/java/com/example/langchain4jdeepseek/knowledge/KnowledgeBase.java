@@ -0,0 +1,474 @@
+package com.example.langchain4jdeepseek.knowledge;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * 本地文档知识库
+ * 文档按段落切分后在进程内向量化，写入HNSW索引；索引和分块内容保存在knowledge.dir下，
+ * 变更后延迟批量落盘，重启时直接加载。同一文档重新导入时替换其旧分块。
+ * 删除的分块先软删除，占比超过knowledge.compaction-deleted-ratio时在落盘前压缩：
+ * 用剩余节点的向量重建索引并去掉已删除的分块，不重新向量化
+ */
+@Component
+public class KnowledgeBase implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(KnowledgeBase.class);
+
+    private static final String INDEX_FILE = "index.bin";
+    private static final String CHUNKS_FILE = "chunks.jsonl";
+
+    private final EmbeddingModel embeddingModel;
+    private final boolean enabled;
+    private final Path directory;
+    private final Set<String> attachedScenarios;
+    private final int chunkChars;
+    private final int chunkOverlap;
+    private final int m;
+    private final int efConstruction;
+    private final int efSearch;
+    private final long saveDelayMs;
+    private final double compactionDeletedRatio;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ScheduledExecutorService saver;
+    private final AtomicBoolean saveScheduled = new AtomicBoolean();
+
+    // 分块按索引节点ID存放，已删除的分块为null
+    private final List<Chunk> chunks = new ArrayList<>();
+    private final Map<String, int[]> documents = new LinkedHashMap<>();
+    private HnswIndex index;
+    // 分块或索引的修改次数，在写锁下递增，压缩时据此判断重建期间是否有写入
+    private long version;
+
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder searchNanos = new LongAdder();
+    private final LongAdder ingestedChunks = new LongAdder();
+    private final LongAdder saves = new LongAdder();
+    private final LongAdder compactions = new LongAdder();
+
+    public KnowledgeBase(
+            EmbeddingModel embeddingModel,
+            @Value("${knowledge.enabled:true}") boolean enabled,
+            @Value("${knowledge.dir:data/knowledge}") String directory,
+            @Value("${knowledge.scenarios:}") List<String> attachedScenarios,
+            @Value("${knowledge.chunk-chars:500}") int chunkChars,
+            @Value("${knowledge.chunk-overlap:50}") int chunkOverlap,
+            @Value("${knowledge.hnsw.m:16}") int m,
+            @Value("${knowledge.hnsw.ef-construction:100}") int efConstruction,
+            @Value("${knowledge.hnsw.ef-search:128}") int efSearch,
+            @Value("${knowledge.save-delay-ms:2000}") long saveDelayMs,
+            @Value("${knowledge.compaction-deleted-ratio:0.2}") double compactionDeletedRatio) {
+        this.embeddingModel = embeddingModel;
+        this.enabled = enabled;
+        this.directory = Path.of(directory);
+        this.attachedScenarios = attachedScenarios.stream()
+                .map(String::trim)
+                .filter(scenario -> !scenario.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+        this.chunkChars = chunkChars;
+        this.chunkOverlap = Math.min(chunkOverlap, chunkChars / 2);
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+        this.saveDelayMs = saveDelayMs;
+        this.compactionDeletedRatio = compactionDeletedRatio;
+        this.saver = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "knowledge-saver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.index = new HnswIndex(embeddingModel.dimension(), m, efConstruction);
+
+        if (enabled) {
+            try {
+                load();
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to load knowledge base from " + this.directory, e);
+            }
+        }
+    }
+
+    /**
+     * 场景是否挂载知识库检索工具，只挂载knowledge.scenarios中列出的场景，未配置时不挂载
+     */
+    public boolean isAttached(String scenario) {
+        return enabled && attachedScenarios.contains(scenario);
+    }
+
+    /**
+     * 导入文档，已存在的同ID文档会被替换
+     * @param documentId 文档ID
+     * @param title 文档标题
+     * @param content 文档正文
+     * @param scenarios 可检索该文档的场景，为空时所有场景可见
+     * @return 生成的分块数
+     */
+    public int ingest(String documentId, String title, String content, List<String> scenarios) {
+        if (!enabled) {
+            throw new IllegalStateException("Knowledge base is disabled");
+        }
+        List<String> texts = split(content);
+        List<TextSegment> segments = texts.stream()
+                .map(text -> TextSegment.from(title == null || title.isBlank() ? text : title + "\n" + text))
+                .toList();
+        // 向量化在锁外完成，不阻塞查询
+        List<float[]> vectors = embeddingModel.embedAll(segments).content().stream()
+                .map(embedding -> embedding.vector())
+                .toList();
+        Set<String> visibleTo = scenarios == null ? Set.of() : Set.copyOf(scenarios);
+
+        lock.writeLock().lock();
+        try {
+            removeDocument(documentId);
+            int[] ids = new int[texts.size()];
+            for (int i = 0; i < texts.size(); i++) {
+                ids[i] = index.add(vectors.get(i));
+                chunks.add(new Chunk(documentId, title, texts.get(i), visibleTo));
+            }
+            documents.put(documentId, ids);
+            version++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        ingestedChunks.add(texts.size());
+        scheduleSave();
+        logger.info("知识库导入文档: {}，分块数: {}", documentId, texts.size());
+        return texts.size();
+    }
+
+    /**
+     * 删除文档
+     * @return true表示文档存在并已删除
+     */
+    public boolean delete(String documentId) {
+        boolean removed;
+        lock.writeLock().lock();
+        try {
+            removed = removeDocument(documentId);
+            if (removed) {
+                version++;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (removed) {
+            scheduleSave();
+        }
+        return removed;
+    }
+
+    /**
+     * 检索与查询最相关的分块
+     * @param query 查询文本
+     * @param scenario 当前场景，只返回对该场景可见的分块；为null时不过滤
+     * @param limit 返回数量
+     * @return 按相关度降序排列的结果
+     */
+    public List<Hit> search(String query, String scenario, int limit) {
+        long start = System.nanoTime();
+        float[] vector = embeddingModel.embed(query).content().vector();
+        List<Hit> hits = new ArrayList<>(limit);
+        lock.readLock().lock();
+        try {
+            List<HnswIndex.Scored> results = index.search(vector, limit, efSearch, id -> {
+                Chunk chunk = chunks.get(id);
+                return chunk != null && chunk.isVisibleTo(scenario);
+            });
+            for (HnswIndex.Scored result : results) {
+                Chunk chunk = chunks.get(result.id());
+                hits.add(new Hit(chunk.documentId(), chunk.title(), chunk.text(), result.score()));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        searches.increment();
+        searchNanos.add(System.nanoTime() - start);
+        return hits;
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", enabled);
+        result.put("attachedScenarios", attachedScenarios);
+        result.put("dimension", embeddingModel.dimension());
+        lock.readLock().lock();
+        try {
+            result.put("documents", documents.size());
+            result.put("chunks", index.size() - index.deletedCount());
+            result.put("deletedChunks", index.deletedCount());
+        } finally {
+            lock.readLock().unlock();
+        }
+        long searchCount = searches.sum();
+        result.put("searches", searchCount);
+        result.put("avgSearchMicros", searchCount == 0 ? 0 : searchNanos.sum() / searchCount / 1000);
+        result.put("ingestedChunks", ingestedChunks.sum());
+        result.put("saves", saves.sum());
+        result.put("compactions", compactions.sum());
+        return result;
+    }
+
+    /**
+     * 按段落切分文本，段落合并到接近分块长度；超长段落按固定窗口切分，相邻窗口保留重叠
+     */
+    List<String> split(String content) {
+        List<String> result = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (String paragraph : content.split("\\n\\s*\\n")) {
+            String trimmed = paragraph.strip();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            if (current.length() > 0 && current.length() + trimmed.length() + 2 > chunkChars) {
+                result.add(current.toString());
+                current.setLength(0);
+            }
+            if (trimmed.length() > chunkChars) {
+                int step = chunkChars - chunkOverlap;
+                for (int start = 0; start < trimmed.length(); start += step) {
+                    result.add(trimmed.substring(start, Math.min(trimmed.length(), start + chunkChars)));
+                    if (start + chunkChars >= trimmed.length()) {
+                        break;
+                    }
+                }
+                continue;
+            }
+            if (current.length() > 0) {
+                current.append("\n\n");
+            }
+            current.append(trimmed);
+        }
+        if (current.length() > 0) {
+            result.add(current.toString());
+        }
+        return result;
+    }
+
+    private boolean removeDocument(String documentId) {
+        int[] ids = documents.remove(documentId);
+        if (ids == null) {
+            return false;
+        }
+        for (int id : ids) {
+            index.delete(id);
+            chunks.set(id, null);
+        }
+        return true;
+    }
+
+    private void scheduleSave() {
+        if (saveScheduled.compareAndSet(false, true)) {
+            saver.schedule(this::save, saveDelayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 将索引和分块写入临时文件后原子替换，已删除分块过多时先压缩
+     */
+    private void save() {
+        saveScheduled.set(false);
+        compact(compactionDeletedRatio);
+        lock.readLock().lock();
+        try {
+            Files.createDirectories(directory);
+            Path chunksTemp = directory.resolve(CHUNKS_FILE + ".tmp");
+            try (BufferedWriter writer = Files.newBufferedWriter(chunksTemp, StandardCharsets.UTF_8)) {
+                for (Chunk chunk : chunks) {
+                    writer.write(chunk == null ? "null" : objectMapper.writeValueAsString(chunk));
+                    writer.newLine();
+                }
+            }
+            Path indexTemp = directory.resolve(INDEX_FILE + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(indexTemp), 1 << 16))) {
+                index.write(out);
+            }
+            Files.move(chunksTemp, directory.resolve(CHUNKS_FILE),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.move(indexTemp, directory.resolve(INDEX_FILE),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            saves.increment();
+        } catch (IOException e) {
+            logger.error("保存知识库失败: {}", e.getMessage(), e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 加载分块和索引；索引缺失、维度与向量模型不一致或与分块数量不符时，用分块内容重新构建
+     */
+    private void load() throws IOException {
+        Path chunksFile = directory.resolve(CHUNKS_FILE);
+        if (!Files.exists(chunksFile)) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(chunksFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                chunks.add("null".equals(line) ? null : objectMapper.readValue(line, Chunk.class));
+            }
+        }
+        indexDocuments();
+
+        Path indexFile = directory.resolve(INDEX_FILE);
+        if (Files.exists(indexFile)) {
+            try (DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(Files.newInputStream(indexFile), 1 << 16))) {
+                HnswIndex loaded = HnswIndex.read(in);
+                if (loaded.dimension() == embeddingModel.dimension() && loaded.size() == chunks.size()) {
+                    index = loaded;
+                    logger.info("已加载知识库: {}个文档，{}个分块", documents.size(), chunks.size());
+                    // 上次退出前未压缩的已删除分块在启动时全部回收
+                    if (index.deletedCount() > 0) {
+                        compact(0);
+                        scheduleSave();
+                    }
+                    return;
+                }
+            } catch (IOException e) {
+                logger.warn("知识库索引文件损坏: {}", e.getMessage());
+            }
+        }
+        rebuild();
+    }
+
+    /**
+     * 用分块内容重新向量化并构建索引，已删除的分块直接丢弃
+     */
+    private void rebuild() {
+        chunks.removeIf(chunk -> chunk == null);
+        indexDocuments();
+        logger.info("重新构建知识库索引: {}个分块", chunks.size());
+        index = new HnswIndex(embeddingModel.dimension(), m, efConstruction);
+        for (Chunk chunk : chunks) {
+            String text = chunk.title() == null || chunk.title().isBlank()
+                    ? chunk.text() : chunk.title() + "\n" + chunk.text();
+            index.add(embeddingModel.embed(text).content().vector());
+        }
+        scheduleSave();
+    }
+
+    /**
+     * 已删除分块占比不低于minDeletedRatio时压缩：用剩余节点的向量构建新索引并去掉已删除的分块。
+     * 构建期间只持有读锁，查询不受影响；替换时若期间有写入则放弃，下次落盘时重试
+     */
+    private void compact(double minDeletedRatio) {
+        HnswIndex compacted;
+        List<Chunk> live;
+        long expectedVersion;
+        lock.readLock().lock();
+        try {
+            int deletedCount = index.deletedCount();
+            if (deletedCount == 0 || (double) deletedCount / index.size() < minDeletedRatio) {
+                return;
+            }
+            expectedVersion = version;
+            compacted = new HnswIndex(embeddingModel.dimension(), m, efConstruction);
+            live = new ArrayList<>(index.size() - deletedCount);
+            for (int id = 0; id < chunks.size(); id++) {
+                Chunk chunk = chunks.get(id);
+                if (chunk != null) {
+                    compacted.add(index.vector(id));
+                    live.add(chunk);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (version != expectedVersion) {
+                logger.info("知识库压缩期间有写入，放弃本次压缩");
+                return;
+            }
+            int reclaimed = chunks.size() - live.size();
+            chunks.clear();
+            chunks.addAll(live);
+            index = compacted;
+            indexDocuments();
+            version++;
+            compactions.increment();
+            logger.info("知识库压缩完成: 回收{}个已删除分块，剩余{}个分块", reclaimed, live.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 按分块位置重建文档到节点ID的映射
+     */
+    private void indexDocuments() {
+        Map<String, List<Integer>> byDocument = new LinkedHashMap<>();
+        for (int id = 0; id < chunks.size(); id++) {
+            Chunk chunk = chunks.get(id);
+            if (chunk != null) {
+                byDocument.computeIfAbsent(chunk.documentId(), key -> new ArrayList<>()).add(id);
+            }
+        }
+        documents.clear();
+        byDocument.forEach((documentId, ids) ->
+                documents.put(documentId, ids.stream().mapToInt(Integer::intValue).toArray()));
+    }
+
+    @Override
+    public void destroy() {
+        saver.shutdownNow();
+        if (enabled && saveScheduled.get()) {
+            save();
+        }
+    }
+
+    /**
+     * 文档分块
+     * @param documentId 文档ID
+     * @param title 文档标题
+     * @param text 分块正文
+     * @param scenarios 可见场景，为空时所有场景可见
+     */
+    public record Chunk(String documentId, String title, String text, Set<String> scenarios) {
+
+        boolean isVisibleTo(String scenario) {
+            return scenario == null || scenarios == null || scenarios.isEmpty() || scenarios.contains(scenario);
+        }
+    }
+
+    /**
+     * 检索结果
+     */
+    public record Hit(String documentId, String title, String text, float score) {
+    }
+}
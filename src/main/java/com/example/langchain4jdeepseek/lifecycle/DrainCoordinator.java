@@ -0,0 +1,260 @@
+package com.example.langchain4jdeepseek.lifecycle;
+
+import com.example.langchain4jdeepseek.exception.ServiceDrainingException;
+import com.example.langchain4jdeepseek.sse.SseConnectionRegistry;
+import com.example.langchain4jdeepseek.tools.CommandExecutionTool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 停机和重新部署时的排空协调
+ * 排空开始后拒绝新的聊天请求并将就绪状态置为拒绝流量；超过空闲阈值没有数据的流式连接收到带随机抖动的重连提示后关闭，
+ * 进行中的生成在宽限期内继续完成；宽限期结束时提示并关闭剩余连接（取消上游生成和命令子进程），并结束剩余的命令。
+ * 排空可由编排系统通过接口提前触发，也在应用停止时自动执行，且先于Web服务器的优雅停机
+ */
+@Component
+public class DrainCoordinator implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(DrainCoordinator.class);
+
+    public enum State {
+        SERVING, DRAINING, DRAINED
+    }
+
+    private final SseConnectionRegistry sseConnectionRegistry;
+    private final CommandExecutionTool commandExecutionTool;
+    private final ApplicationEventPublisher eventPublisher;
+    private final long gracePeriodMs;
+    private final long idleThresholdMs;
+    private final long reconnectBaseMs;
+    private final long reconnectJitterMs;
+    private final long pollIntervalMs;
+
+    private final ScheduledExecutorService scheduler;
+
+    private final LongAdder drains = new LongAdder();
+    private final LongAdder rejectedRequests = new LongAdder();
+    private final LongAdder hintedStreams = new LongAdder();
+    private final LongAdder cancelledStreams = new LongAdder();
+    private final LongAdder terminatedCommands = new LongAdder();
+
+    // 以下字段由this保护
+    private State state = State.SERVING;
+    private String reason;
+    private long startedAt;
+    private long finishedAt;
+    private ScheduledFuture<?> poller;
+    private final List<Runnable> drainedCallbacks = new ArrayList<>();
+    private boolean stopping;
+
+    private volatile boolean accepting = true;
+    private volatile boolean running;
+
+    public DrainCoordinator(
+            SseConnectionRegistry sseConnectionRegistry,
+            CommandExecutionTool commandExecutionTool,
+            ApplicationEventPublisher eventPublisher,
+            @Value("${drain.grace-period-ms:30000}") long gracePeriodMs,
+            @Value("${drain.idle-threshold-ms:5000}") long idleThresholdMs,
+            @Value("${drain.reconnect-base-ms:1000}") long reconnectBaseMs,
+            @Value("${drain.reconnect-jitter-ms:10000}") long reconnectJitterMs,
+            @Value("${drain.poll-interval-ms:500}") long pollIntervalMs) {
+        this.sseConnectionRegistry = sseConnectionRegistry;
+        this.commandExecutionTool = commandExecutionTool;
+        this.eventPublisher = eventPublisher;
+        this.gracePeriodMs = gracePeriodMs;
+        this.idleThresholdMs = idleThresholdMs;
+        this.reconnectBaseMs = reconnectBaseMs;
+        this.reconnectJitterMs = reconnectJitterMs;
+        this.pollIntervalMs = pollIntervalMs;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "drain-coordinator");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 检查是否接受新请求
+     * @throws ServiceDrainingException 正在排空或已排空
+     */
+    public void checkAccepting() {
+        if (accepting) {
+            return;
+        }
+        rejectedRequests.increment();
+        long retryMs = reconnectBaseMs + (reconnectJitterMs > 0 ? ThreadLocalRandom.current().nextLong(reconnectJitterMs) : 0);
+        throw new ServiceDrainingException("Service is draining, retry on another instance",
+                Math.max(1, (retryMs + 999) / 1000));
+    }
+
+    public boolean isAccepting() {
+        return accepting;
+    }
+
+    /**
+     * 开始排空，已在排空时不重复开始
+     * @param reason 排空原因，如deploy、shutdown
+     * @return 排空进度
+     */
+    public synchronized Map<String, Object> startDrain(String reason) {
+        if (state == State.SERVING) {
+            state = State.DRAINING;
+            this.reason = reason;
+            startedAt = System.currentTimeMillis();
+            finishedAt = 0;
+            accepting = false;
+            drains.increment();
+            AvailabilityChangeEvent.publish(eventPublisher, this, ReadinessState.REFUSING_TRAFFIC);
+            logger.info("开始排空 ({})：{}个流式连接，{}个命令执行中，宽限期{}ms",
+                    reason, sseConnectionRegistry.size(), commandExecutionTool.getRunningCommands(), gracePeriodMs);
+            poller = scheduler.scheduleWithFixedDelay(this::poll, 0, pollIntervalMs, TimeUnit.MILLISECONDS);
+        }
+        return status();
+    }
+
+    /**
+     * 取消排空并恢复接受请求，应用停止过程中不能恢复
+     * @return 排空进度
+     */
+    public synchronized Map<String, Object> resume() {
+        if (state != State.SERVING && !stopping) {
+            if (poller != null) {
+                poller.cancel(false);
+            }
+            state = State.SERVING;
+            accepting = true;
+            AvailabilityChangeEvent.publish(eventPublisher, this, ReadinessState.ACCEPTING_TRAFFIC);
+            logger.info("已取消排空 ({})，恢复接受请求", reason);
+        }
+        return status();
+    }
+
+    /**
+     * 获取排空进度
+     */
+    public synchronized Map<String, Object> status() {
+        long now = System.currentTimeMillis();
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("state", state.name().toLowerCase());
+        status.put("accepting", accepting);
+        if (state != State.SERVING) {
+            status.put("reason", reason);
+            status.put("startedAt", Instant.ofEpochMilli(startedAt).toString());
+            status.put("elapsedMs", (finishedAt > 0 ? finishedAt : now) - startedAt);
+            status.put("remainingGraceMs", state == State.DRAINING ? Math.max(0, startedAt + gracePeriodMs - now) : 0);
+        }
+        status.put("openStreams", sseConnectionRegistry.size());
+        status.put("runningCommands", commandExecutionTool.getRunningCommands());
+        status.put("drains", drains.sum());
+        status.put("rejectedRequests", rejectedRequests.sum());
+        status.put("hintedStreams", hintedStreams.sum());
+        status.put("cancelledStreams", cancelledStreams.sum());
+        status.put("terminatedCommands", terminatedCommands.sum());
+        return status;
+    }
+
+    /**
+     * 定期检查排空进度：提示空闲连接重连，全部结束或宽限期到期时完成排空
+     */
+    private void poll() {
+        try {
+            long now;
+            synchronized (this) {
+                if (state != State.DRAINING) {
+                    return;
+                }
+                now = System.currentTimeMillis();
+                if (now - startedAt >= gracePeriodMs) {
+                    int cancelled = sseConnectionRegistry.reconnect(0, reconnectBaseMs, reconnectJitterMs, "drain_timeout");
+                    int terminated = commandExecutionTool.terminateAll();
+                    cancelledStreams.add(cancelled);
+                    terminatedCommands.add(terminated);
+                    logger.warn("排空宽限期已到，取消{}个流式连接，结束{}个命令", cancelled, terminated);
+                    finish();
+                    return;
+                }
+            }
+            hintedStreams.add(sseConnectionRegistry.reconnect(idleThresholdMs, reconnectBaseMs, reconnectJitterMs, "drain"));
+            if (sseConnectionRegistry.size() == 0 && commandExecutionTool.getRunningCommands() == 0) {
+                synchronized (this) {
+                    if (state == State.DRAINING) {
+                        logger.info("排空完成，用时{}ms", System.currentTimeMillis() - startedAt);
+                        finish();
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.error("排空检查失败: {}", e.getMessage(), e);
+        }
+    }
+
+    private void finish() {
+        state = State.DRAINED;
+        finishedAt = System.currentTimeMillis();
+        poller.cancel(false);
+        for (Runnable callback : drainedCallbacks) {
+            callback.run();
+        }
+        drainedCallbacks.clear();
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        stop(() -> {
+        });
+    }
+
+    /**
+     * 应用停止时排空，完成后才继续停止Web服务器等后续组件
+     */
+    @Override
+    public void stop(Runnable callback) {
+        synchronized (this) {
+            stopping = true;
+            running = false;
+            startDrain("shutdown");
+            if (state != State.DRAINED) {
+                drainedCallbacks.add(callback);
+                return;
+            }
+        }
+        callback.run();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * 在所有默认阶段的组件（包括Web服务器的优雅停机）之前停止
+     */
+    @Override
+    public int getPhase() {
+        return Integer.MAX_VALUE;
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.langchain4jdeepseek.lifecycle;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 启动预热
+ * 组件把耗时的初始化（模型客户端、命令黑名单、提示词、助手）登记为预热任务。默认模式下任务在登记时同步执行，
+ * 与之前的启动行为一致；快速启动模式下任务在后台线程池中与其余组件的创建并行执行，请求先于预热到达时由组件按需初始化。
+ * 就绪检查在所有任务完成后才通过；默认模式下任务失败时异常抛给登记方，启动失败，快速启动模式下保持未就绪
+ */
+@Component
+public class StartupWarmup implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(StartupWarmup.class);
+
+    public enum State {
+        PENDING, RUNNING, DONE, FAILED
+    }
+
+    private final boolean fastStartup;
+    private final long createdAt = System.nanoTime();
+    private final ExecutorService executor;
+
+    // 以下字段由this保护
+    private final Map<String, Task> tasks = new LinkedHashMap<>();
+    private long finishedAt;
+
+    private final AtomicInteger pending = new AtomicInteger();
+
+    public StartupWarmup(
+            @Value("${startup.fast:false}") boolean fastStartup,
+            @Value("${startup.warmup-threads:2}") int warmupThreads) {
+        this.fastStartup = fastStartup;
+        this.executor = fastStartup ? Executors.newFixedThreadPool(warmupThreads, runnable -> {
+            Thread thread = new Thread(runnable, "startup-warmup");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    /**
+     * 是否为快速启动模式，该模式下可以登记默认模式不执行的预热任务
+     */
+    public boolean isFastStartup() {
+        return fastStartup;
+    }
+
+    /**
+     * 登记预热任务，任务应当幂等，组件按需初始化时会再次调用同一初始化逻辑
+     * @param name 任务名称
+     * @param task 初始化逻辑
+     */
+    public void register(String name, Runnable task) {
+        Task entry = new Task();
+        synchronized (this) {
+            tasks.put(name, entry);
+        }
+        pending.incrementAndGet();
+        if (fastStartup) {
+            executor.execute(() -> run(name, entry, task));
+        } else {
+            run(name, entry, task);
+        }
+    }
+
+    private void run(String name, Task entry, Runnable task) {
+        long start = System.nanoTime();
+        synchronized (this) {
+            entry.state = State.RUNNING;
+        }
+        try {
+            task.run();
+            synchronized (this) {
+                entry.state = State.DONE;
+            }
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                entry.state = State.FAILED;
+                entry.error = e.getMessage();
+            }
+            // 默认模式下任务在组件创建时同步执行，失败应当和之前一样中止启动
+            if (!fastStartup) {
+                throw e;
+            }
+            logger.error("Startup warm-up task {} failed", name, e);
+        } finally {
+            long durationMs = (System.nanoTime() - start) / 1_000_000;
+            synchronized (this) {
+                entry.durationMs = durationMs;
+                if (pending.decrementAndGet() == 0) {
+                    finishedAt = System.nanoTime();
+                }
+            }
+            if (fastStartup) {
+                logger.info("Startup warm-up task {} finished in {}ms", name, durationMs);
+            }
+        }
+    }
+
+    /**
+     * 所有预热任务都已成功完成
+     */
+    public synchronized boolean isReady() {
+        if (pending.get() > 0) {
+            return false;
+        }
+        for (Task task : tasks.values()) {
+            if (task.state == State.FAILED) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 获取预热进度
+     */
+    public synchronized Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("mode", fastStartup ? "fast" : "default");
+        status.put("ready", isReady());
+        status.put("pending", pending.get());
+        if (finishedAt > 0) {
+            status.put("warmupMs", (finishedAt - createdAt) / 1_000_000);
+        }
+        Map<String, Object> details = new LinkedHashMap<>();
+        tasks.forEach((name, task) -> {
+            Map<String, Object> detail = new LinkedHashMap<>();
+            detail.put("state", task.state.name().toLowerCase());
+            if (task.state == State.DONE || task.state == State.FAILED) {
+                detail.put("durationMs", task.durationMs);
+            }
+            if (task.error != null) {
+                detail.put("error", task.error);
+            }
+            details.put(name, detail);
+        });
+        status.put("tasks", details);
+        return status;
+    }
+
+    @Override
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private static final class Task {
+        State state = State.PENDING;
+        long durationMs;
+        String error;
+    }
+}
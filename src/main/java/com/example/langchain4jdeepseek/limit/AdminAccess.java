@@ -0,0 +1,44 @@
+package com.example.langchain4jdeepseek.limit;
+
+import com.example.langchain4jdeepseek.exception.AdminAccessRequiredException;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * 管理接口的访问控制
+ * 请求头中的管理员Key与admin.key配置按固定时间比较；未配置时没有管理员，管理操作一律拒绝
+ */
+@Component
+public class AdminAccess {
+
+    public static final String ADMIN_KEY_HEADER = "X-Admin-Key";
+
+    private final byte[] adminKey;
+
+    public AdminAccess(@Value("${admin.key:${usage.admin-key:}}") String adminKey) {
+        this.adminKey = adminKey.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 请求是否带有效的管理员Key
+     */
+    public boolean isAdmin(HttpServletRequest request) {
+        String provided = request.getHeader(ADMIN_KEY_HEADER);
+        return adminKey.length > 0 && provided != null
+                && MessageDigest.isEqual(adminKey, provided.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 要求管理员Key，否则抛出AdminAccessRequiredException
+     * @param action 被拒绝时在错误信息中说明的操作
+     */
+    public void require(HttpServletRequest request, String action) {
+        if (!isAdmin(request)) {
+            throw new AdminAccessRequiredException(action + " requires " + ADMIN_KEY_HEADER);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.langchain4jdeepseek.limit;
+
+import com.example.langchain4jdeepseek.context.ContextBudget;
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+
+import java.util.Set;
+
+/**
+ * 按场景上下文预算检查每次调用的ChatModel
+ * 工具循环中累积的工具结果也计入预算，超出时截断或抛出ContextBudgetExceededException
+ */
+public class BudgetedChatModel implements ChatModel {
+
+    private final ChatModel delegate;
+    private final ContextBudget contextBudget;
+    private final String scenario;
+
+    public BudgetedChatModel(ChatModel delegate, ContextBudget contextBudget, String scenario) {
+        this.delegate = delegate;
+        this.contextBudget = contextBudget;
+        this.scenario = scenario;
+    }
+
+    @Override
+    public ChatResponse chat(ChatRequest chatRequest) {
+        return delegate.chat(contextBudget.fit(scenario, chatRequest));
+    }
+
+    @Override
+    public ChatRequestParameters defaultRequestParameters() {
+        return delegate.defaultRequestParameters();
+    }
+
+    @Override
+    public ModelProvider provider() {
+        return delegate.provider();
+    }
+
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return delegate.supportedCapabilities();
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.langchain4jdeepseek.limit;
+
+import com.example.langchain4jdeepseek.context.ContextBudget;
+import com.example.langchain4jdeepseek.exception.ContextBudgetExceededException;
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+
+import java.util.Set;
+
+/**
+ * 按场景上下文预算检查每次调用的StreamingChatModel
+ * 超出预算且无法截断时通过handler.onError报告，不发起模型调用
+ */
+public class BudgetedStreamingChatModel implements StreamingChatModel {
+
+    private final StreamingChatModel delegate;
+    private final ContextBudget contextBudget;
+    private final String scenario;
+
+    public BudgetedStreamingChatModel(StreamingChatModel delegate, ContextBudget contextBudget, String scenario) {
+        this.delegate = delegate;
+        this.contextBudget = contextBudget;
+        this.scenario = scenario;
+    }
+
+    @Override
+    public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+        ChatRequest fitted;
+        try {
+            fitted = contextBudget.fit(scenario, chatRequest);
+        } catch (ContextBudgetExceededException e) {
+            handler.onError(e);
+            return;
+        }
+        delegate.chat(fitted, handler);
+    }
+
+    @Override
+    public ChatRequestParameters defaultRequestParameters() {
+        return delegate.defaultRequestParameters();
+    }
+
+    @Override
+    public ModelProvider provider() {
+        return delegate.provider();
+    }
+
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return delegate.supportedCapabilities();
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.langchain4jdeepseek.limit;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * 客户端标识
+ * 带API Key的请求以Key的SHA-256指纹作为标识，原始Key不进入限流、用量、日志和追踪；
+ * 未带Key的请求以来源地址作为标识
+ */
+public final class ClientKeys {
+
+    public static final String API_KEY_HEADER = "X-API-Key";
+
+    // 指纹前缀，用于区分指纹和来源地址
+    public static final String FINGERPRINT_PREFIX = "key-";
+
+    // 指纹保留的SHA-256字节数
+    private static final int FINGERPRINT_BYTES = 8;
+
+    private ClientKeys() {
+    }
+
+    /**
+     * 解析请求的客户端标识
+     * @return API Key的指纹，未带Key时为来源地址
+     */
+    public static String resolve(HttpServletRequest request) {
+        String apiKey = request.getHeader(API_KEY_HEADER);
+        if (apiKey != null && !apiKey.isBlank()) {
+            return fingerprint(apiKey);
+        }
+        return request.getRemoteAddr();
+    }
+
+    /**
+     * 计算API Key的指纹：key-加SHA-256前8字节的十六进制
+     */
+    public static String fingerprint(String apiKey) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(apiKey.getBytes(StandardCharsets.UTF_8));
+            return FINGERPRINT_PREFIX + HexFormat.of().formatHex(digest, 0, FINGERPRINT_BYTES);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
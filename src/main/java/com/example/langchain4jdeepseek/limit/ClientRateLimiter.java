@@ -0,0 +1,138 @@
+package com.example.langchain4jdeepseek.limit;
+
+import com.example.langchain4jdeepseek.context.TokenEstimator;
+import com.example.langchain4jdeepseek.exception.RateLimitExceededException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按客户端限流
+ * 每个客户端（API Key指纹或来源地址，见ClientKeys）持有请求数和预估token数两个令牌桶。
+ * 跟踪的客户端数有上限，回收空闲桶后仍满时，新客户端共用一组溢出桶，大量伪造的来源不会使内存无限增长
+ */
+@Component
+public class ClientRateLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClientRateLimiter.class);
+
+    // 超过该数量时回收已补满的空闲桶，回收后仍满时新客户端使用溢出桶
+    private static final int MAX_TRACKED_CLIENTS = 10_000;
+
+    // 两次回收扫描的最小间隔，避免桶都不空闲时每个新客户端都遍历整个Map
+    private static final long EVICTION_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Map<String, ClientBuckets> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong lastEvictionNanos = new AtomicLong(System.nanoTime() - EVICTION_INTERVAL_NANOS);
+    private volatile ClientBuckets overflow;
+
+    private final TokenEstimator tokenEstimator;
+
+    @Value("${ratelimit.enabled:true}")
+    private boolean enabled;
+
+    @Value("${ratelimit.client.requests-per-minute:60}")
+    private long requestsPerMinute;
+
+    @Value("${ratelimit.client.request-burst:10}")
+    private long requestBurst;
+
+    @Value("${ratelimit.client.tokens-per-minute:100000}")
+    private long tokensPerMinute;
+
+    @Value("${ratelimit.client.token-burst:20000}")
+    private long tokenBurst;
+
+    public ClientRateLimiter(TokenEstimator tokenEstimator) {
+        this.tokenEstimator = tokenEstimator;
+    }
+
+    /**
+     * 为一次聊天请求获取配额，超限时抛出RateLimitExceededException
+     * @param clientKey 客户端标识，须为ClientKeys.resolve的结果，不得传入原始API Key
+     * @param estimatedTokens 预估消耗的token数
+     */
+    public void acquire(String clientKey, long estimatedTokens) {
+        if (!enabled) {
+            return;
+        }
+
+        ClientBuckets client = buckets.get(clientKey);
+        if (client == null) {
+            // 回收放在映射函数之外，避免在持有桶锁时遍历整个Map
+            evictIdleClients();
+            if (buckets.size() < MAX_TRACKED_CLIENTS) {
+                client = buckets.computeIfAbsent(clientKey, k -> newBuckets());
+            } else {
+                client = overflowBuckets();
+                logger.debug("Tracking {} clients, client '{}' uses the overflow bucket", buckets.size(), clientKey);
+            }
+        }
+
+        long requestWait = client.requests.tryAcquire(1);
+        if (requestWait > 0) {
+            throw rejected(clientKey, "request rate", requestWait);
+        }
+
+        long tokenWait = client.tokens.tryAcquire(estimatedTokens);
+        if (tokenWait > 0) {
+            client.requests.refund(1);
+            throw rejected(clientKey, "token rate", tokenWait);
+        }
+    }
+
+    /**
+     * 估算文本的token数，用于token令牌桶
+     */
+    public long estimateTokens(String text) {
+        return Math.max(1, tokenEstimator.estimate(text));
+    }
+
+    private RateLimitExceededException rejected(String clientKey, String limit, long waitNanos) {
+        long retryAfter = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos) + 1);
+        logger.warn("Client '{}' exceeded {} limit, retry after {}s", clientKey, limit, retryAfter);
+        return new RateLimitExceededException("Rate limit exceeded (" + limit + ")", retryAfter);
+    }
+
+    private void evictIdleClients() {
+        if (buckets.size() < MAX_TRACKED_CLIENTS) {
+            return;
+        }
+        long now = System.nanoTime();
+        long last = lastEvictionNanos.get();
+        if (now - last >= EVICTION_INTERVAL_NANOS && lastEvictionNanos.compareAndSet(last, now)) {
+            buckets.values().removeIf(ClientBuckets::isIdle);
+        }
+    }
+
+    private ClientBuckets overflowBuckets() {
+        ClientBuckets current = overflow;
+        if (current == null) {
+            synchronized (this) {
+                current = overflow;
+                if (current == null) {
+                    current = newBuckets();
+                    overflow = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private ClientBuckets newBuckets() {
+        return new ClientBuckets(
+                new TokenBucket(requestsPerMinute, requestBurst), new TokenBucket(tokensPerMinute, tokenBurst));
+    }
+
+    private record ClientBuckets(TokenBucket requests, TokenBucket tokens) {
+        boolean isIdle() {
+            return requests.isIdle() && tokens.isIdle();
+        }
+    }
+}
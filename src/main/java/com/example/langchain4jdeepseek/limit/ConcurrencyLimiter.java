@@ -0,0 +1,73 @@
+package com.example.langchain4jdeepseek.limit;
+
+import com.example.langchain4jdeepseek.exception.RateLimitExceededException;
+import com.example.langchain4jdeepseek.resilience.Deadline;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 全局模型调用并发限制
+ * 使用公平信号量按到达顺序排队，排队超时的请求被拒绝；
+ * 线程绑定了Deadline时最多排队到截止时间，不会在请求已超时后仍占用排队位置
+ */
+@Component
+public class ConcurrencyLimiter {
+
+    private final Semaphore permits;
+    private final int maxInFlight;
+    private final long queueTimeoutMillis;
+    private final LongAdder rejected = new LongAdder();
+
+    public ConcurrencyLimiter(
+            @Value("${ratelimit.global.max-in-flight:32}") int maxInFlight,
+            @Value("${ratelimit.global.queue-timeout-ms:5000}") long queueTimeoutMillis) {
+        this.maxInFlight = maxInFlight;
+        this.queueTimeoutMillis = queueTimeoutMillis;
+        this.permits = new Semaphore(maxInFlight, true);
+    }
+
+    /**
+     * 获取一个在途调用许可，排队超时时抛出RateLimitExceededException，
+     * 截止时间先于排队超时到期时抛出DeadlineExceededException
+     */
+    public void acquire() {
+        Deadline deadline = Deadline.current();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(Deadline.budgetMillis(deadline, queueTimeoutMillis), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RateLimitExceededException("Interrupted while waiting for model capacity", 1);
+        }
+        if (!acquired) {
+            rejected.increment();
+            if (deadline != null) {
+                deadline.check("model capacity became available");
+            }
+            throw new RateLimitExceededException("Too many concurrent model calls", 1);
+        }
+    }
+
+    /**
+     * 释放在途调用许可
+     */
+    public void release() {
+        permits.release();
+    }
+
+    public int getInFlight() {
+        return maxInFlight - permits.availablePermits();
+    }
+
+    public int getQueueLength() {
+        return permits.getQueueLength();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.langchain4jdeepseek.limit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 无锁令牌桶
+ * 基于GCRA算法，只用一个AtomicLong保存理论到达时间，通过CAS完成扣减
+ */
+public class TokenBucket {
+
+    // 每个令牌的补充间隔（纳秒）
+    private final long emissionIntervalNanos;
+
+    // 允许的突发容量对应的时间容差（纳秒）
+    private final long toleranceNanos;
+
+    private final long capacity;
+
+    // 理论到达时间（Theoretical Arrival Time）
+    private final AtomicLong tat;
+
+    /**
+     * @param permitsPerMinute 每分钟补充的令牌数
+     * @param capacity 桶容量（突发上限）
+     */
+    public TokenBucket(long permitsPerMinute, long capacity) {
+        this.emissionIntervalNanos = Math.max(1, TimeUnit.MINUTES.toNanos(1) / Math.max(1, permitsPerMinute));
+        this.capacity = Math.max(1, capacity);
+        this.toleranceNanos = emissionIntervalNanos * this.capacity;
+        this.tat = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * 尝试获取令牌
+     * @param permits 令牌数，超过桶容量时按容量计算
+     * @return 0表示获取成功，否则为需要等待的纳秒数
+     */
+    public long tryAcquire(long permits) {
+        long increment = emissionIntervalNanos * Math.min(Math.max(1, permits), capacity);
+        while (true) {
+            long now = System.nanoTime();
+            long current = tat.get();
+            long newTat = Math.max(current, now) + increment;
+            long waitNanos = newTat - toleranceNanos - now;
+            if (waitNanos > 0) {
+                return waitNanos;
+            }
+            if (tat.compareAndSet(current, newTat)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * 归还令牌（例如另一个桶拒绝了同一请求）
+     */
+    public void refund(long permits) {
+        tat.addAndGet(-emissionIntervalNanos * Math.min(Math.max(1, permits), capacity));
+    }
+
+    /**
+     * 桶是否已完全补满，补满的桶可以被回收
+     */
+    public boolean isIdle() {
+        return tat.get() <= System.nanoTime();
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.langchain4jdeepseek.logging;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.listener.ChatModelErrorContext;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.listener.ChatModelRequestContext;
+import dev.langchain4j.model.chat.listener.ChatModelResponseContext;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.output.TokenUsage;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 将模型请求和响应写入流量日志的监听器
+ * 成功的调用按采样率记录，失败的调用全部记录
+ */
+public class TrafficLogListener implements ChatModelListener {
+
+    private static final String SAMPLED = "trafficLog.sampled";
+    private static final String START = "trafficLog.start";
+
+    private final TrafficLogger trafficLogger;
+    private final String endpoint;
+
+    public TrafficLogListener(TrafficLogger trafficLogger, String endpoint) {
+        this.trafficLogger = trafficLogger;
+        this.endpoint = endpoint;
+    }
+
+    @Override
+    public void onRequest(ChatModelRequestContext requestContext) {
+        if (!trafficLogger.isEnabled()) {
+            return;
+        }
+        requestContext.attributes().put(START, System.nanoTime());
+        if (trafficLogger.sample()) {
+            requestContext.attributes().put(SAMPLED, Boolean.TRUE);
+        }
+    }
+
+    @Override
+    public void onResponse(ChatModelResponseContext responseContext) {
+        if (!Boolean.TRUE.equals(responseContext.attributes().get(SAMPLED))) {
+            return;
+        }
+        Map<String, Object> fields = baseFields(responseContext.chatRequest(), responseContext.attributes());
+        ChatResponse response = responseContext.chatResponse();
+        AiMessage aiMessage = response.aiMessage();
+        if (aiMessage != null) {
+            fields.put("response", trafficLogger.truncate(aiMessage.text()));
+            if (aiMessage.hasToolExecutionRequests()) {
+                fields.put("toolCalls", aiMessage.toolExecutionRequests().stream()
+                        .map(ToolExecutionRequest::name)
+                        .toList());
+            }
+        }
+        TokenUsage usage = response.tokenUsage();
+        if (usage != null) {
+            fields.put("inputTokens", usage.inputTokenCount());
+            fields.put("outputTokens", usage.outputTokenCount());
+        }
+        if (response.finishReason() != null) {
+            fields.put("finishReason", response.finishReason().name());
+        }
+        trafficLogger.log("model_call", fields);
+    }
+
+    @Override
+    public void onError(ChatModelErrorContext errorContext) {
+        if (!trafficLogger.isEnabled()) {
+            return;
+        }
+        Map<String, Object> fields = baseFields(errorContext.chatRequest(), errorContext.attributes());
+        fields.put("error", errorContext.error().getClass().getSimpleName());
+        fields.put("errorMessage", trafficLogger.truncate(errorContext.error().getMessage()));
+        trafficLogger.log("model_error", fields);
+    }
+
+    private Map<String, Object> baseFields(ChatRequest request, Map<Object, Object> attributes) {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put("endpoint", endpoint);
+        fields.put("model", request.modelName());
+        Object start = attributes.get(START);
+        if (start instanceof Long startNanos) {
+            fields.put("durationMs", (System.nanoTime() - startNanos) / 1_000_000);
+        }
+        fields.put("messages", request.messages().size());
+        List<ToolSpecification> tools = request.toolSpecifications();
+        if (tools != null && !tools.isEmpty()) {
+            fields.put("tools", tools.stream().map(ToolSpecification::name).toList());
+        }
+        fields.put("request", renderMessages(request.messages()));
+        return fields;
+    }
+
+    /**
+     * 渲染消息文本，超过长度上限后停止拼接
+     */
+    private String renderMessages(List<ChatMessage> messages) {
+        int limit = trafficLogger.getMaxPayloadChars();
+        StringBuilder builder = new StringBuilder();
+        for (ChatMessage message : messages) {
+            if (builder.length() >= limit) {
+                break;
+            }
+            builder.append(message.type()).append(": ").append(textOf(message)).append('\n');
+        }
+        return trafficLogger.truncate(builder.toString());
+    }
+
+    private static String textOf(ChatMessage message) {
+        if (message instanceof SystemMessage systemMessage) {
+            return systemMessage.text();
+        }
+        if (message instanceof UserMessage userMessage) {
+            return userMessage.hasSingleText() ? userMessage.singleText() : "[multimodal]";
+        }
+        if (message instanceof AiMessage aiMessage) {
+            return aiMessage.text() != null ? aiMessage.text() : "[tool calls]";
+        }
+        if (message instanceof ToolExecutionResultMessage resultMessage) {
+            return resultMessage.text();
+        }
+        return String.valueOf(message);
+    }
+}
@@ -0,0 +1,289 @@
+package com.example.langchain4jdeepseek.logging;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 模型和工具流量日志
+ * 请求线程只做采样判断和截断，事件进入有界无锁队列，由后台线程序列化为JSON行写入独立文件；
+ * 队列满时直接丢弃事件，不阻塞请求线程。
+ * 文件超过大小上限时轮转为.1、.2……；写入失败时关闭文件并按指数退避重新打开，期间事件在队列满后被丢弃
+ */
+@Component
+public class TrafficLogger implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(TrafficLogger.class);
+
+    // 每批最多写入的事件数
+    private static final int WRITE_BATCH = 256;
+
+    // 写入失败后重新打开文件的退避时间范围
+    private static final long MIN_REOPEN_BACKOFF_MILLIS = 100;
+    private static final long MAX_REOPEN_BACKOFF_MILLIS = 30_000;
+
+    private final boolean enabled;
+    private final double sampleRate;
+    private final int maxPayloadChars;
+    private final int bufferSize;
+    private final Path file;
+    private final long maxBytes;
+    private final int maxFiles;
+
+    private final ConcurrentLinkedQueue<Map<String, Object>> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder writeFailures = new LongAdder();
+    private final LongAdder rotations = new LongAdder();
+    private volatile boolean writerAvailable;
+    private volatile String lastError;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    // 以下字段只由写入线程访问
+    private OutputStream out;
+    private long size;
+
+    public TrafficLogger(
+            @Value("${traffic-log.enabled:true}") boolean enabled,
+            @Value("${traffic-log.sample-rate:0.1}") double sampleRate,
+            @Value("${traffic-log.max-payload-chars:2000}") int maxPayloadChars,
+            @Value("${traffic-log.buffer-size:4096}") int bufferSize,
+            @Value("${traffic-log.file:logs/model-traffic.jsonl}") String file,
+            @Value("${traffic-log.file-max-bytes:104857600}") long maxBytes,
+            @Value("${traffic-log.file-max-files:5}") int maxFiles) {
+        this.enabled = enabled;
+        this.sampleRate = sampleRate;
+        this.maxPayloadChars = maxPayloadChars;
+        this.bufferSize = bufferSize;
+        this.file = Path.of(file);
+        this.maxBytes = maxBytes;
+        this.maxFiles = maxFiles;
+        this.writer = new Thread(this::writeLoop, "traffic-log-writer");
+        this.writer.setDaemon(true);
+        if (enabled) {
+            this.writer.start();
+        }
+    }
+
+    /**
+     * 决定本次调用是否采样
+     */
+    public boolean sample() {
+        return enabled && (sampleRate >= 1.0 || ThreadLocalRandom.current().nextDouble() < sampleRate);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 截断负载，超出部分以省略标记和原始长度代替
+     */
+    public String truncate(String payload) {
+        if (payload == null || payload.length() <= maxPayloadChars) {
+            return payload;
+        }
+        return payload.substring(0, maxPayloadChars) + "...[truncated, " + payload.length() + " chars]";
+    }
+
+    public int getMaxPayloadChars() {
+        return maxPayloadChars;
+    }
+
+    /**
+     * 提交事件，队列已满时丢弃
+     * @param type 事件类型
+     * @param fields 事件字段，负载应已截断
+     */
+    public void log(String type, Map<String, Object> fields) {
+        if (!enabled) {
+            return;
+        }
+        if (queued.incrementAndGet() > bufferSize) {
+            queued.decrementAndGet();
+            dropped.increment();
+            return;
+        }
+        Map<String, Object> event = new LinkedHashMap<>();
+        event.put("ts", System.currentTimeMillis());
+        event.put("type", type);
+        event.putAll(fields);
+        queue.offer(event);
+    }
+
+    /**
+     * 记录一次采样的工具调用
+     */
+    public void logTool(String tool, String input, String output, long durationMillis, boolean success) {
+        if (!success || sample()) {
+            Map<String, Object> fields = new LinkedHashMap<>();
+            fields.put("tool", tool);
+            fields.put("durationMs", durationMillis);
+            fields.put("success", success);
+            fields.put("input", truncate(input));
+            fields.put("outputChars", output != null ? output.length() : 0);
+            fields.put("output", truncate(output));
+            log("tool_call", fields);
+        }
+    }
+
+    /**
+     * 获取日志管道统计
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("queued", queued.get());
+        result.put("written", written.sum());
+        result.put("dropped", dropped.sum());
+        result.put("writerAvailable", writerAvailable);
+        result.put("writeFailures", writeFailures.sum());
+        result.put("rotations", rotations.sum());
+        if (lastError != null) {
+            result.put("lastError", lastError);
+        }
+        return result;
+    }
+
+    private void writeLoop() {
+        long backoff = MIN_REOPEN_BACKOFF_MILLIS;
+        while (running || !queue.isEmpty()) {
+            try {
+                if (out == null) {
+                    open();
+                    writerAvailable = true;
+                    backoff = MIN_REOPEN_BACKOFF_MILLIS;
+                }
+                int count = drainTo();
+                if (count > 0) {
+                    out.flush();
+                } else {
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+                }
+            } catch (IOException e) {
+                writerAvailable = false;
+                writeFailures.increment();
+                lastError = e.toString();
+                closeQuietly();
+                if (!running) {
+                    logger.error("Traffic log writer failed during shutdown, {} events discarded: {}", queued.get(), file, e);
+                    return;
+                }
+                logger.error("Traffic log write failed, reopening in {}ms: {}", backoff, file, e);
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(backoff));
+                backoff = Math.min(backoff * 2, MAX_REOPEN_BACKOFF_MILLIS);
+            }
+        }
+        closeQuietly();
+    }
+
+    private int drainTo() throws IOException {
+        int count = 0;
+        Map<String, Object> event;
+        while (count < WRITE_BATCH && (event = queue.poll()) != null) {
+            queued.decrementAndGet();
+            count++;
+            event.put("ts", Instant.ofEpochMilli((Long) event.get("ts")).toString());
+            byte[] line;
+            try {
+                line = objectMapper.writeValueAsBytes(event);
+            } catch (JsonProcessingException e) {
+                dropped.increment();
+                continue;
+            }
+            try {
+                if (maxBytes > 0 && size > 0 && size + line.length + 1 > maxBytes) {
+                    rotate();
+                }
+                out.write(line);
+                out.write('\n');
+            } catch (IOException e) {
+                dropped.increment();
+                throw e;
+            }
+            size += line.length + 1;
+            written.increment();
+        }
+        return count;
+    }
+
+    private void open() throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        out = new BufferedOutputStream(Files.newOutputStream(file,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND));
+        size = Files.size(file);
+    }
+
+    /**
+     * 轮转文件：当前文件改名为.1，已有的.1、.2依次后移，超出保留个数的最旧文件被删除
+     */
+    private void rotate() throws IOException {
+        out.close();
+        out = null;
+        if (maxFiles > 0) {
+            Files.deleteIfExists(rotated(maxFiles));
+            for (int i = maxFiles - 1; i >= 1; i--) {
+                Path source = rotated(i);
+                if (Files.exists(source)) {
+                    Files.move(source, rotated(i + 1), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            Files.move(file, rotated(1), StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Files.deleteIfExists(file);
+        }
+        rotations.increment();
+        open();
+    }
+
+    private Path rotated(int index) {
+        return file.resolveSibling(file.getFileName() + "." + index);
+    }
+
+    private void closeQuietly() {
+        if (out == null) {
+            return;
+        }
+        try {
+            out.close();
+        } catch (IOException e) {
+            logger.debug("Failed to close traffic log: {}", file, e);
+        }
+        out = null;
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        running = false;
+        if (writer.isAlive()) {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.example.langchain4jdeepseek.pool;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 端点熔断器
+ * 在固定时间窗口内统计错误率，超过阈值时打开熔断；冷却后放行单个探测请求，只有探测请求的结果决定关闭或重新打开
+ * 每次状态切换递增代数，tryAcquire返回的许可携带代数，旧代数许可的结果一律忽略
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    /**
+     * 未获得许可
+     */
+    public static final long NO_PERMIT = -1;
+
+    private final int minCalls;
+    private final double failureRate;
+    private final long windowNanos;
+    private final long openNanos;
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong openedAt = new AtomicLong();
+    private final AtomicBoolean probeInFlight = new AtomicBoolean(false);
+
+    // 当前统计窗口
+    private final AtomicReference<Window> window;
+
+    public CircuitBreaker(int minCalls, double failureRate, long windowMillis, long openMillis) {
+        this.minCalls = minCalls;
+        this.failureRate = failureRate;
+        this.windowNanos = windowMillis * 1_000_000L;
+        this.openNanos = openMillis * 1_000_000L;
+        this.window = new AtomicReference<>(new Window(System.nanoTime()));
+    }
+
+    /**
+     * 申请向该端点发送请求的许可
+     * 半开状态下只放行一个探测请求
+     * @return 许可，结果回报时原样传回；NO_PERMIT表示不允许
+     */
+    public long tryAcquire() {
+        long gen = generation.get();
+        State current = state.get();
+        if (current == State.CLOSED) {
+            return permit(gen, false);
+        }
+        if (current == State.OPEN) {
+            if (System.nanoTime() - openedAt.get() < openNanos) {
+                return NO_PERMIT;
+            }
+            halfOpen();
+        }
+        if (!probeInFlight.compareAndSet(false, true)) {
+            return NO_PERMIT;
+        }
+        gen = generation.get();
+        if (state.get() != State.HALF_OPEN) {
+            // 抢到探测名额前状态已被其他探测结果改变
+            probeInFlight.set(false);
+            return state.get() == State.CLOSED ? permit(gen, false) : NO_PERMIT;
+        }
+        return permit(gen, true);
+    }
+
+    /**
+     * 不经熔断判断的许可，用于所有端点都熔断时的兜底请求，其结果只在关闭状态下计入统计
+     */
+    public long forcePermit() {
+        return permit(generation.get(), false);
+    }
+
+    public void onSuccess(long permit) {
+        if (isStale(permit)) {
+            return;
+        }
+        if (isProbe(permit)) {
+            close(generationOf(permit));
+            return;
+        }
+        if (state.get() == State.CLOSED) {
+            currentWindow().calls.incrementAndGet();
+        }
+    }
+
+    public void onFailure(long permit) {
+        if (isStale(permit)) {
+            return;
+        }
+        if (isProbe(permit)) {
+            open(generationOf(permit));
+            return;
+        }
+        if (state.get() != State.CLOSED) {
+            return;
+        }
+        Window current = currentWindow();
+        long calls = current.calls.incrementAndGet();
+        long failures = current.failures.incrementAndGet();
+        if (calls >= minCalls && (double) failures / calls >= failureRate) {
+            open(generationOf(permit));
+        }
+    }
+
+    /**
+     * 释放探测名额（请求未产生结果，例如被取消）
+     */
+    public void releaseProbe(long permit) {
+        if (isProbe(permit) && !isStale(permit)) {
+            probeInFlight.set(false);
+        }
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    private synchronized void halfOpen() {
+        if (state.get() == State.OPEN && System.nanoTime() - openedAt.get() >= openNanos) {
+            generation.incrementAndGet();
+            state.set(State.HALF_OPEN);
+        }
+    }
+
+    /**
+     * 打开熔断，expectedGeneration与当前代数不一致说明状态已被其他结果改变
+     */
+    private synchronized void open(long expectedGeneration) {
+        if (generation.get() != expectedGeneration) {
+            return;
+        }
+        generation.incrementAndGet();
+        openedAt.set(System.nanoTime());
+        state.set(State.OPEN);
+        probeInFlight.set(false);
+    }
+
+    private synchronized void close(long expectedGeneration) {
+        if (generation.get() != expectedGeneration) {
+            return;
+        }
+        generation.incrementAndGet();
+        window.set(new Window(System.nanoTime()));
+        state.set(State.CLOSED);
+        probeInFlight.set(false);
+    }
+
+    private boolean isStale(long permit) {
+        return permit == NO_PERMIT || generationOf(permit) != generation.get();
+    }
+
+    // 许可的最低位标记探测请求，其余位为代数
+    private static long permit(long gen, boolean probe) {
+        return gen << 1 | (probe ? 1 : 0);
+    }
+
+    private static long generationOf(long permit) {
+        return permit >>> 1;
+    }
+
+    private static boolean isProbe(long permit) {
+        return (permit & 1) != 0;
+    }
+
+    private Window currentWindow() {
+        Window current = window.get();
+        long now = System.nanoTime();
+        if (now - current.start >= windowNanos) {
+            Window fresh = new Window(now);
+            return window.compareAndSet(current, fresh) ? fresh : window.get();
+        }
+        return current;
+    }
+
+    private static final class Window {
+        final long start;
+        final AtomicLong calls = new AtomicLong();
+        final AtomicLong failures = new AtomicLong();
+
+        Window(long start) {
+            this.start = start;
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.example.langchain4jdeepseek.pool;
+
+import com.example.langchain4jdeepseek.resilience.Deadline;
+import com.example.langchain4jdeepseek.tracing.Span;
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 对冲请求的ChatModel
+ * 请求在分位数延迟内未返回时再发送一个副本，先成功者胜出，另一个被取消。
+ * 模型调用只返回工具调用请求，工具只会根据胜出的响应执行，因此带工具定义的请求同样可以对冲。
+ * 请求在有界线程池中执行，线程用尽时原请求在调用线程上执行，不再发送对冲副本
+ */
+public class HedgingChatModel implements ChatModel, AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(HedgingChatModel.class);
+
+    // 计算对冲延迟所需的最少样本数
+    private static final int MIN_SAMPLES = 20;
+
+    // 每隔多少个样本重新计算一次对冲延迟
+    private static final int RECOMPUTE_INTERVAL = 32;
+
+    // 预算以千分之一个对冲为单位
+    private static final long CREDIT_UNIT = 1000;
+
+    private final ChatModel delegate;
+    private final double percentile;
+    private final long minDelayMillis;
+    private final long budgetCreditPerRequest;
+    private final long maxBudgetCredits;
+    private final boolean includeToolTurns;
+
+    private final LatencyTracker latencyTracker = new LatencyTracker(512);
+    private final AtomicLong budgetCredits = new AtomicLong();
+    private final AtomicLong hedgesSent = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private volatile long hedgeDelayMillis = -1;
+
+    private final ExecutorService executor;
+
+    /**
+     * @param delegate 被对冲的模型
+     * @param percentile 触发对冲的延迟分位数
+     * @param minDelayMillis 对冲延迟下限
+     * @param budgetRatio 对冲请求占总请求的最大比例
+     * @param includeToolTurns 带工具定义的请求是否也对冲
+     * @param maxThreads 原请求和对冲副本共用的最大线程数
+     */
+    public HedgingChatModel(ChatModel delegate, double percentile, long minDelayMillis,
+                            double budgetRatio, boolean includeToolTurns, int maxThreads) {
+        this.delegate = delegate;
+        this.percentile = percentile;
+        this.minDelayMillis = minDelayMillis;
+        this.budgetCreditPerRequest = Math.round(budgetRatio * CREDIT_UNIT);
+        // 预算最多累积10个对冲，避免空闲后突发大量对冲
+        this.maxBudgetCredits = 10 * CREDIT_UNIT;
+        this.includeToolTurns = includeToolTurns;
+        this.executor = new ThreadPoolExecutor(0, maxThreads, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), new ThreadFactory());
+    }
+
+    @Override
+    public ChatResponse chat(ChatRequest chatRequest) {
+        if (!includeToolTurns && hasTools(chatRequest)) {
+            return timedChat(chatRequest);
+        }
+
+        earnBudget();
+        long delay = hedgeDelayMillis;
+        if (delay < 0) {
+            return timedChat(chatRequest);
+        }
+
+        // 对冲请求在线程池中执行，需要传递截止时间和追踪段
+        Deadline deadline = Deadline.current();
+        Span span = Span.current();
+        delay = Deadline.budgetMillis(deadline, delay);
+        CompletionService<ChatResponse> completionService = new ExecutorCompletionService<>(executor);
+        List<Future<ChatResponse>> attempts = new ArrayList<>(2);
+        try {
+            attempts.add(completionService.submit(() -> timedChat(chatRequest, deadline, span)));
+        } catch (RejectedExecutionException e) {
+            // 线程用尽，不对冲
+            rejected.incrementAndGet();
+            return timedChat(chatRequest);
+        }
+
+        try {
+            Future<ChatResponse> done = completionService.poll(delay, TimeUnit.MILLISECONDS);
+            if (done == null && trySpendBudget()) {
+                try {
+                    attempts.add(completionService.submit(() -> timedChat(chatRequest, deadline, span)));
+                    hedgesSent.incrementAndGet();
+                    logger.debug("No response within {}ms, sending hedged request", delay);
+                } catch (RejectedExecutionException e) {
+                    rejected.incrementAndGet();
+                }
+            }
+
+            RuntimeException lastError = null;
+            for (int pending = attempts.size(); pending > 0; pending--) {
+                Future<ChatResponse> completed = done != null ? done : completionService.take();
+                done = null;
+                try {
+                    ChatResponse response = completed.get();
+                    if (completed != attempts.get(0)) {
+                        hedgeWins.incrementAndGet();
+                    }
+                    return response;
+                } catch (ExecutionException e) {
+                    lastError = e.getCause() instanceof RuntimeException runtime
+                            ? runtime : new RuntimeException(e.getCause());
+                }
+            }
+            throw lastError;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for model response", e);
+        } finally {
+            // 取消未完成的请求
+            for (Future<ChatResponse> attempt : attempts) {
+                attempt.cancel(true);
+            }
+        }
+    }
+
+    private ChatResponse timedChat(ChatRequest chatRequest) {
+        long start = System.nanoTime();
+        ChatResponse response = delegate.chat(chatRequest);
+        recordLatency((System.nanoTime() - start) / 1_000_000);
+        return response;
+    }
+
+    private ChatResponse timedChat(ChatRequest chatRequest, Deadline deadline, Span span) {
+        Deadline previous = Deadline.bind(deadline);
+        Span previousSpan = Span.bind(span);
+        try {
+            return timedChat(chatRequest);
+        } finally {
+            Span.restore(previousSpan);
+            Deadline.restore(previous);
+        }
+    }
+
+    private void recordLatency(long latencyMillis) {
+        latencyTracker.record(latencyMillis);
+        long count = latencyTracker.getCount();
+        if (count == MIN_SAMPLES || (count > MIN_SAMPLES && count % RECOMPUTE_INTERVAL == 0)) {
+            hedgeDelayMillis = Math.max(minDelayMillis, latencyTracker.percentile(percentile));
+        }
+    }
+
+    private static boolean hasTools(ChatRequest chatRequest) {
+        return chatRequest.toolSpecifications() != null && !chatRequest.toolSpecifications().isEmpty();
+    }
+
+    private void earnBudget() {
+        budgetCredits.getAndUpdate(credits -> Math.min(maxBudgetCredits, credits + budgetCreditPerRequest));
+    }
+
+    private boolean trySpendBudget() {
+        while (true) {
+            long credits = budgetCredits.get();
+            if (credits < CREDIT_UNIT) {
+                return false;
+            }
+            if (budgetCredits.compareAndSet(credits, credits - CREDIT_UNIT)) {
+                return true;
+            }
+        }
+    }
+
+    public long getHedgeDelayMillis() {
+        return hedgeDelayMillis;
+    }
+
+    public long getHedgesSent() {
+        return hedgesSent.get();
+    }
+
+    public long getHedgeWins() {
+        return hedgeWins.get();
+    }
+
+    /**
+     * 线程池已满而未能提交的请求数，包括在调用线程上执行的原请求和放弃的对冲副本
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    @Override
+    public ChatRequestParameters defaultRequestParameters() {
+        return delegate.defaultRequestParameters();
+    }
+
+    @Override
+    public ModelProvider provider() {
+        return delegate.provider();
+    }
+
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return delegate.supportedCapabilities();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private static final class ThreadFactory implements java.util.concurrent.ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "model-hedge-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
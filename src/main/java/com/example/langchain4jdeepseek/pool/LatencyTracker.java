@@ -0,0 +1,51 @@
+package com.example.langchain4jdeepseek.pool;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 最近请求延迟的滑动采样
+ * 固定大小的环形缓冲区，按需计算分位数
+ */
+public class LatencyTracker {
+
+    private final AtomicLongArray samples;
+    private final AtomicLong count = new AtomicLong();
+
+    public LatencyTracker(int capacity) {
+        this.samples = new AtomicLongArray(capacity);
+    }
+
+    /**
+     * 记录一次请求延迟
+     * @param latencyMillis 延迟（毫秒）
+     */
+    public void record(long latencyMillis) {
+        long index = count.getAndIncrement();
+        samples.set((int) (index % samples.length()), latencyMillis);
+    }
+
+    /**
+     * 计算指定分位数的延迟
+     * @param percentile 分位数，取值0-100
+     * @return 延迟（毫秒），样本不足时返回-1
+     */
+    public long percentile(double percentile) {
+        int size = (int) Math.min(count.get(), samples.length());
+        if (size == 0) {
+            return -1;
+        }
+        long[] copy = new long[size];
+        for (int i = 0; i < size; i++) {
+            copy[i] = samples.get(i);
+        }
+        Arrays.sort(copy);
+        int rank = (int) Math.ceil(percentile / 100.0 * size) - 1;
+        return copy[Math.max(0, Math.min(size - 1, rank))];
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+}
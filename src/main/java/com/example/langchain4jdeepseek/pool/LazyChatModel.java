@@ -0,0 +1,61 @@
+package com.example.langchain4jdeepseek.pool;
+
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * 首次使用时才构建的ChatModel，用于快速启动模式下推迟模型客户端的创建
+ */
+public class LazyChatModel implements ChatModel {
+
+    private final Supplier<ChatModel> factory;
+    private volatile ChatModel delegate;
+
+    public LazyChatModel(Supplier<ChatModel> factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * 构建模型客户端，已构建时直接返回
+     */
+    public ChatModel initialize() {
+        ChatModel model = delegate;
+        if (model == null) {
+            synchronized (this) {
+                model = delegate;
+                if (model == null) {
+                    model = factory.get();
+                    delegate = model;
+                }
+            }
+        }
+        return model;
+    }
+
+    @Override
+    public ChatResponse chat(ChatRequest chatRequest) {
+        return initialize().chat(chatRequest);
+    }
+
+    @Override
+    public ChatRequestParameters defaultRequestParameters() {
+        return initialize().defaultRequestParameters();
+    }
+
+    @Override
+    public ModelProvider provider() {
+        return initialize().provider();
+    }
+
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return initialize().supportedCapabilities();
+    }
+}
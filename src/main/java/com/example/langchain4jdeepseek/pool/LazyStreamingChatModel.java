@@ -0,0 +1,61 @@
+package com.example.langchain4jdeepseek.pool;
+
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * 首次使用时才构建的StreamingChatModel，用于快速启动模式下推迟模型客户端的创建
+ */
+public class LazyStreamingChatModel implements StreamingChatModel {
+
+    private final Supplier<StreamingChatModel> factory;
+    private volatile StreamingChatModel delegate;
+
+    public LazyStreamingChatModel(Supplier<StreamingChatModel> factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * 构建模型客户端，已构建时直接返回
+     */
+    public StreamingChatModel initialize() {
+        StreamingChatModel model = delegate;
+        if (model == null) {
+            synchronized (this) {
+                model = delegate;
+                if (model == null) {
+                    model = factory.get();
+                    delegate = model;
+                }
+            }
+        }
+        return model;
+    }
+
+    @Override
+    public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+        initialize().chat(chatRequest, handler);
+    }
+
+    @Override
+    public ChatRequestParameters defaultRequestParameters() {
+        return initialize().defaultRequestParameters();
+    }
+
+    @Override
+    public ModelProvider provider() {
+        return initialize().provider();
+    }
+
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return initialize().supportedCapabilities();
+    }
+}
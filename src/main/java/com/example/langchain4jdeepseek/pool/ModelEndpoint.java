@@ -0,0 +1,130 @@
+package com.example.langchain4jdeepseek.pool;
+
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.StreamingChatModel;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 模型池中的单个端点
+ * 记录EWMA延迟、在途请求数和熔断状态
+ */
+public class ModelEndpoint {
+
+    private final String name;
+    private final String baseUrl;
+    private final ChatModel chatModel;
+    private final StreamingChatModel streamingChatModel;
+    private final CircuitBreaker circuitBreaker;
+    private final double alpha;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    // EWMA延迟（毫秒），以double位模式存储，0表示尚无样本
+    private final AtomicLong ewmaLatencyBits = new AtomicLong(Double.doubleToLongBits(0.0));
+
+    private final AtomicLong successes = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    public ModelEndpoint(String name, String baseUrl, ChatModel chatModel, StreamingChatModel streamingChatModel,
+                         CircuitBreaker circuitBreaker, double alpha) {
+        this.name = name;
+        this.baseUrl = baseUrl;
+        this.chatModel = chatModel;
+        this.streamingChatModel = streamingChatModel;
+        this.circuitBreaker = circuitBreaker;
+        this.alpha = alpha;
+    }
+
+    /**
+     * 路由评分，越小越优先：EWMA延迟乘以（在途请求数+1）
+     */
+    double score(double defaultLatency) {
+        double latency = getEwmaLatencyMillis();
+        if (latency <= 0) {
+            latency = defaultLatency;
+        }
+        return latency * (inFlight.get() + 1);
+    }
+
+    void onStart() {
+        inFlight.incrementAndGet();
+    }
+
+    /**
+     * @param permit 选择端点时获得的熔断许可
+     */
+    void onSuccess(long latencyMillis, long permit) {
+        inFlight.decrementAndGet();
+        successes.incrementAndGet();
+        updateLatency(latencyMillis);
+        circuitBreaker.onSuccess(permit);
+    }
+
+    void onFailure(long permit) {
+        inFlight.decrementAndGet();
+        failures.incrementAndGet();
+        circuitBreaker.onFailure(permit);
+    }
+
+    /**
+     * 请求被取消，不计入成功或失败
+     */
+    void onAbandoned(long permit) {
+        inFlight.decrementAndGet();
+        circuitBreaker.releaseProbe(permit);
+    }
+
+    private void updateLatency(long latencyMillis) {
+        while (true) {
+            long currentBits = ewmaLatencyBits.get();
+            double current = Double.longBitsToDouble(currentBits);
+            double updated = current <= 0 ? latencyMillis : alpha * latencyMillis + (1 - alpha) * current;
+            if (ewmaLatencyBits.compareAndSet(currentBits, Double.doubleToLongBits(updated))) {
+                return;
+            }
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public ChatModel getChatModel() {
+        return chatModel;
+    }
+
+    public StreamingChatModel getStreamingChatModel() {
+        return streamingChatModel;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public double getEwmaLatencyMillis() {
+        return Double.longBitsToDouble(ewmaLatencyBits.get());
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * 获取端点状态快照
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("name", name);
+        result.put("baseUrl", baseUrl);
+        result.put("circuit", circuitBreaker.getState().name());
+        result.put("ewmaLatencyMs", Math.round(getEwmaLatencyMillis()));
+        result.put("inFlight", inFlight.get());
+        result.put("successes", successes.get());
+        result.put("failures", failures.get());
+        return result;
+    }
+}
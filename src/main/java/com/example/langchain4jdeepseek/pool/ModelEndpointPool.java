@@ -0,0 +1,80 @@
+package com.example.langchain4jdeepseek.pool;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 模型端点池
+ * 按EWMA延迟和在途负载选择端点，跳过熔断中的端点
+ */
+public class ModelEndpointPool {
+
+    // 无延迟样本时使用的默认延迟，使新端点能获得流量
+    private static final double DEFAULT_LATENCY_MILLIS = 1.0;
+
+    private final List<ModelEndpoint> endpoints;
+
+    public ModelEndpointPool(List<ModelEndpoint> endpoints) {
+        if (endpoints.isEmpty()) {
+            throw new IllegalArgumentException("Model endpoint pool requires at least one endpoint");
+        }
+        this.endpoints = List.copyOf(endpoints);
+    }
+
+    /**
+     * 选择评分最低的可用端点
+     * 所有端点都处于熔断时返回评分最低者，避免整体不可用
+     * @param excluded 本次请求已尝试过的端点
+     * @return 选中的端点及其熔断许可，所有端点都已尝试时返回null
+     */
+    public Selection select(Set<ModelEndpoint> excluded) {
+        List<ModelEndpoint> candidates = new ArrayList<>(endpoints.size());
+        for (ModelEndpoint endpoint : endpoints) {
+            if (!excluded.contains(endpoint)) {
+                candidates.add(endpoint);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return null;
+        }
+
+        candidates.sort((a, b) -> Double.compare(a.score(DEFAULT_LATENCY_MILLIS), b.score(DEFAULT_LATENCY_MILLIS)));
+        for (ModelEndpoint endpoint : candidates) {
+            long permit = endpoint.getCircuitBreaker().tryAcquire();
+            if (permit != CircuitBreaker.NO_PERMIT) {
+                return new Selection(endpoint, permit);
+            }
+        }
+        if (!excluded.isEmpty()) {
+            return null;
+        }
+        ModelEndpoint fallback = candidates.get(0);
+        return new Selection(fallback, fallback.getCircuitBreaker().forcePermit());
+    }
+
+    /**
+     * 第一个配置的端点，用于提供默认请求参数等元信息
+     */
+    public ModelEndpoint getPrimary() {
+        return endpoints.get(0);
+    }
+
+    public int size() {
+        return endpoints.size();
+    }
+
+    /**
+     * 选中的端点，permit为结果回报时传回熔断器的许可
+     */
+    public record Selection(ModelEndpoint endpoint, long permit) {
+    }
+
+    /**
+     * 获取所有端点的状态
+     */
+    public List<Map<String, Object>> snapshot() {
+        return endpoints.stream().map(ModelEndpoint::snapshot).toList();
+    }
+}
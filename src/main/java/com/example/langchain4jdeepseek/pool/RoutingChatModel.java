@@ -0,0 +1,141 @@
+package com.example.langchain4jdeepseek.pool;
+
+import com.example.langchain4jdeepseek.exception.DeadlineExceededException;
+import com.example.langchain4jdeepseek.resilience.Deadline;
+import com.example.langchain4jdeepseek.resilience.RetryBudget;
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.InterruptedIOException;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 在端点池上路由的ChatModel
+ * 请求失败时在重试预算内退避后切换到下一个端点重试
+ */
+public class RoutingChatModel implements ChatModel {
+
+    private static final Logger logger = LoggerFactory.getLogger(RoutingChatModel.class);
+
+    private final ModelEndpointPool pool;
+    private final ChatModel primary;
+    private final RetryBudget retryBudget;
+
+    public RoutingChatModel(ModelEndpointPool pool, ChatModel primary, RetryBudget retryBudget) {
+        this.pool = pool;
+        this.primary = primary;
+        this.retryBudget = retryBudget;
+    }
+
+    @Override
+    public ChatResponse chat(ChatRequest chatRequest) {
+        retryBudget.recordRequest();
+        Deadline deadline = Deadline.current();
+        Set<ModelEndpoint> tried = new HashSet<>();
+        RuntimeException lastError = null;
+
+        for (int attempt = 0; attempt < retryBudget.getMaxAttempts(); attempt++) {
+            if (attempt > 0 && !awaitRetry(attempt, deadline)) {
+                break;
+            }
+            if (deadline != null) {
+                deadline.check("model call");
+            }
+
+            // 所有端点都已尝试过时，重新在全部端点中选择
+            ModelEndpointPool.Selection selection = pool.select(tried);
+            if (selection == null) {
+                tried.clear();
+                selection = pool.select(tried);
+            }
+            if (selection == null) {
+                break;
+            }
+            ModelEndpoint endpoint = selection.endpoint();
+            long permit = selection.permit();
+            tried.add(endpoint);
+            endpoint.onStart();
+            long start = System.nanoTime();
+            try {
+                ChatResponse response = endpoint.getChatModel().chat(chatRequest);
+                endpoint.onSuccess((System.nanoTime() - start) / 1_000_000, permit);
+                return response;
+            } catch (RuntimeException e) {
+                // 被取消的对冲请求和到期的请求不计入端点失败，也不再重试
+                if (isAbandoned(e)) {
+                    endpoint.onAbandoned(permit);
+                    throw e;
+                }
+                endpoint.onFailure(permit);
+                if (!RetryBudget.isRetryable(e)) {
+                    throw e;
+                }
+                lastError = e;
+                logger.warn("Model endpoint '{}' failed (attempt {}): {}", endpoint.getName(), attempt + 1, e.getMessage());
+            }
+        }
+
+        if (lastError != null) {
+            throw lastError;
+        }
+        throw new IllegalStateException("No model endpoint available");
+    }
+
+    /**
+     * 获取重试额度并退避等待
+     * @return false表示预算不足或剩余时间不够，不再重试
+     */
+    private boolean awaitRetry(int attempt, Deadline deadline) {
+        long backoff = retryBudget.backoffMillis(attempt);
+        if (deadline != null && deadline.remainingMillis() <= backoff) {
+            return false;
+        }
+        if (!retryBudget.tryAcquireRetry()) {
+            logger.warn("Retry budget exhausted, not retrying model call");
+            return false;
+        }
+        try {
+            Thread.sleep(backoff);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static boolean isAbandoned(Throwable error) {
+        if (Thread.currentThread().isInterrupted()) {
+            return true;
+        }
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof InterruptedException
+                    || cause instanceof InterruptedIOException
+                    || cause instanceof DeadlineExceededException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public ChatRequestParameters defaultRequestParameters() {
+        return primary.defaultRequestParameters();
+    }
+
+    @Override
+    public ModelProvider provider() {
+        return primary.provider();
+    }
+
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return primary.supportedCapabilities();
+    }
+}
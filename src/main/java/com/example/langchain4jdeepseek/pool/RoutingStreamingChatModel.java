@@ -0,0 +1,236 @@
+package com.example.langchain4jdeepseek.pool;
+
+import com.example.langchain4jdeepseek.http.StreamCancellation;
+import com.example.langchain4jdeepseek.resilience.Deadline;
+import com.example.langchain4jdeepseek.resilience.RetryBudget;
+import com.example.langchain4jdeepseek.resilience.SharedScheduler;
+import com.example.langchain4jdeepseek.tools.ToolProgress;
+import com.example.langchain4jdeepseek.tracing.Span;
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.CompleteToolCall;
+import dev.langchain4j.model.chat.response.PartialThinking;
+import dev.langchain4j.model.chat.response.PartialToolCall;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 在端点池上路由的StreamingChatModel
+ * 只有尚未输出任何内容的请求才会在重试预算内切换端点重试，已开始输出的流直接上报错误
+ */
+public class RoutingStreamingChatModel implements StreamingChatModel {
+
+    private static final Logger logger = LoggerFactory.getLogger(RoutingStreamingChatModel.class);
+
+    private final ModelEndpointPool pool;
+    private final StreamingChatModel primary;
+    private final RetryBudget retryBudget;
+
+    public RoutingStreamingChatModel(ModelEndpointPool pool, StreamingChatModel primary, RetryBudget retryBudget) {
+        this.pool = pool;
+        this.primary = primary;
+        this.retryBudget = retryBudget;
+    }
+
+    @Override
+    public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+        retryBudget.recordRequest();
+        new Attempt(chatRequest, handler, StreamCancellation.current(), Deadline.current(),
+                Span.current(), ToolProgress.current()).next(null);
+    }
+
+    @Override
+    public ChatRequestParameters defaultRequestParameters() {
+        return primary.defaultRequestParameters();
+    }
+
+    @Override
+    public ModelProvider provider() {
+        return primary.provider();
+    }
+
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return primary.supportedCapabilities();
+    }
+
+    /**
+     * 一次流式请求及其故障转移过程
+     */
+    private final class Attempt {
+
+        private final ChatRequest chatRequest;
+        private final StreamingChatResponseHandler handler;
+        private final StreamCancellation cancellation;
+        private final Deadline deadline;
+        private final Span span;
+        private final ToolProgress.Listener toolProgress;
+        private final Set<ModelEndpoint> tried = new HashSet<>();
+        private int attempts;
+
+        Attempt(ChatRequest chatRequest, StreamingChatResponseHandler handler,
+                StreamCancellation cancellation, Deadline deadline, Span span, ToolProgress.Listener toolProgress) {
+            this.chatRequest = chatRequest;
+            this.handler = handler;
+            this.cancellation = cancellation;
+            this.deadline = deadline;
+            this.span = span;
+            this.toolProgress = toolProgress;
+        }
+
+        void next(Throwable lastError) {
+            if (deadline != null && deadline.isExpired()) {
+                handler.onError(lastError != null ? lastError : new IllegalStateException("Request deadline exceeded"));
+                return;
+            }
+
+            // 所有端点都已尝试过时，重新在全部端点中选择
+            ModelEndpointPool.Selection selection = pool.select(tried);
+            if (selection == null) {
+                tried.clear();
+                selection = pool.select(tried);
+            }
+            if (selection == null) {
+                handler.onError(lastError != null ? lastError : new IllegalStateException("No model endpoint available"));
+                return;
+            }
+            ModelEndpoint endpoint = selection.endpoint();
+            tried.add(endpoint);
+            attempts++;
+            endpoint.onStart();
+
+            EndpointHandler endpointHandler = new EndpointHandler(this, endpoint, selection.permit());
+            // 故障转移可能发生在其他线程上，重新绑定取消句柄、截止时间、追踪段和工具进度接收方
+            StreamCancellation previousCancellation = StreamCancellation.bind(cancellation);
+            Deadline previousDeadline = Deadline.bind(deadline);
+            Span previousSpan = Span.bind(span);
+            ToolProgress.Listener previousProgress = ToolProgress.bind(toolProgress);
+            try {
+                endpoint.getStreamingChatModel().chat(chatRequest, endpointHandler);
+            } catch (RuntimeException e) {
+                endpointHandler.onError(e);
+            } finally {
+                ToolProgress.restore(previousProgress);
+                Span.restore(previousSpan);
+                Deadline.restore(previousDeadline);
+                StreamCancellation.restore(previousCancellation);
+            }
+        }
+
+        /**
+         * 在重试预算内退避后重试，不阻塞当前的IO线程
+         */
+        void retry(Throwable error) {
+            long backoff = retryBudget.backoffMillis(attempts);
+            if (attempts >= retryBudget.getMaxAttempts()
+                    || !RetryBudget.isRetryable(error)
+                    || (deadline != null && deadline.remainingMillis() <= backoff)
+                    || !retryBudget.tryAcquireRetry()) {
+                handler.onError(error);
+                return;
+            }
+            SharedScheduler.schedule(() -> next(error), backoff);
+        }
+
+        boolean isAbandoned() {
+            return (cancellation != null && cancellation.isCancelled())
+                    || (deadline != null && deadline.isExpired());
+        }
+    }
+
+    /**
+     * 单个端点上的响应处理器
+     */
+    private static final class EndpointHandler implements StreamingChatResponseHandler {
+
+        private final Attempt attempt;
+        private final ModelEndpoint endpoint;
+        private final long permit;
+        private final long start = System.nanoTime();
+
+        // 上游出错后仍可能回调完成，保证只结束一次
+        private final AtomicBoolean finished = new AtomicBoolean(false);
+
+        // 首次输出内容的时间，非0表示已开始输出，之后不再故障转移
+        private volatile long firstOutputNanos;
+
+        EndpointHandler(Attempt attempt, ModelEndpoint endpoint, long permit) {
+            this.attempt = attempt;
+            this.endpoint = endpoint;
+            this.permit = permit;
+        }
+
+        @Override
+        public void onPartialResponse(String partialResponse) {
+            markStarted();
+            attempt.handler.onPartialResponse(partialResponse);
+        }
+
+        @Override
+        public void onPartialThinking(PartialThinking partialThinking) {
+            markStarted();
+            attempt.handler.onPartialThinking(partialThinking);
+        }
+
+        @Override
+        public void onPartialToolCall(PartialToolCall partialToolCall) {
+            markStarted();
+            attempt.handler.onPartialToolCall(partialToolCall);
+        }
+
+        @Override
+        public void onCompleteToolCall(CompleteToolCall completeToolCall) {
+            markStarted();
+            attempt.handler.onCompleteToolCall(completeToolCall);
+        }
+
+        @Override
+        public void onCompleteResponse(ChatResponse completeResponse) {
+            if (!finished.compareAndSet(false, true)) {
+                return;
+            }
+            // 流式请求以首个输出的延迟作为端点延迟样本
+            long end = firstOutputNanos != 0 ? firstOutputNanos : System.nanoTime();
+            endpoint.onSuccess((end - start) / 1_000_000, permit);
+            attempt.handler.onCompleteResponse(completeResponse);
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            if (!finished.compareAndSet(false, true)) {
+                return;
+            }
+            // 取消或到期导致的中断不计入端点失败，也不重试
+            if (attempt.isAbandoned()) {
+                endpoint.onAbandoned(permit);
+                attempt.handler.onError(error);
+                return;
+            }
+
+            endpoint.onFailure(permit);
+            if (firstOutputNanos != 0) {
+                attempt.handler.onError(error);
+                return;
+            }
+
+            logger.warn("Model endpoint '{}' failed before streaming started: {}",
+                    endpoint.getName(), error.getMessage());
+            attempt.retry(error);
+        }
+
+        private void markStarted() {
+            if (firstOutputNanos == 0) {
+                firstOutputNanos = System.nanoTime();
+            }
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package com.example.langchain4jdeepseek.prompt;
+
+import com.example.langchain4jdeepseek.lifecycle.StartupWarmup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * 统一的系统提示词注册表
+ * 加载目录下所有*.prompt文件；配置了文件系统目录时通过WatchService增量热更新。
+ * 每次变更都原子替换不可变快照，进行中的请求继续使用各自取得的快照。
+ * 加载作为启动预热任务执行，快速启动模式下在后台进行，预热完成前的访问会先同步完成加载
+ */
+@Component
+public class PromptRegistry implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(PromptRegistry.class);
+
+    private static final String PROMPT_SUFFIX = ".prompt";
+    private static final String CLASSPATH_PATTERN = "classpath*:system-prompts/*" + PROMPT_SUFFIX;
+    private static final String DEFAULT_SCENARIO = "default";
+    private static final String FALLBACK_PROMPT = "你是一个专业的AI助手，请用简洁明了的语言回答问题。";
+
+    // 文件变更后等待的时间，合并编辑器保存时产生的多次事件
+    private static final long DEBOUNCE_MILLIS = 200;
+
+    private final AtomicLong versionCounter = new AtomicLong();
+    private final AtomicReference<Map<String, PromptTemplate>> snapshot = new AtomicReference<>(Map.of());
+    private final List<Consumer<PromptTemplate>> listeners = new CopyOnWriteArrayList<>();
+
+    private final String directory;
+    private final boolean watch;
+    private WatchService watchService;
+    private Thread watcher;
+    private volatile boolean loaded;
+
+    public PromptRegistry(
+            @Value("${prompt.directory:}") String directory,
+            @Value("${prompt.watch:true}") boolean watch,
+            StartupWarmup startupWarmup) {
+        this.directory = directory;
+        this.watch = watch;
+        startupWarmup.register("prompts", this::ensureLoaded);
+    }
+
+    /**
+     * 获取当前快照，同一请求内应只取一次，以保证使用一致的提示词版本
+     */
+    public Map<String, PromptTemplate> snapshot() {
+        ensureLoaded();
+        return snapshot.get();
+    }
+
+    /**
+     * 获取场景模板，不存在时回退到默认场景
+     */
+    public PromptTemplate get(String scenario) {
+        ensureLoaded();
+        Map<String, PromptTemplate> current = snapshot.get();
+        PromptTemplate template = current.get(scenario);
+        return template != null ? template : current.get(DEFAULT_SCENARIO);
+    }
+
+    /**
+     * 获取各场景的当前版本号
+     */
+    public Map<String, Long> versions() {
+        ensureLoaded();
+        Map<String, Long> versions = new HashMap<>();
+        snapshot.get().forEach((scenario, template) -> versions.put(scenario, template.version()));
+        return versions;
+    }
+
+    /**
+     * 注册模板变更监听器，场景被删除时回调的模板内容为null
+     */
+    public void addListener(Consumer<PromptTemplate> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * 通过API添加或更新模板
+     */
+    public PromptTemplate put(String scenario, String template) {
+        ensureLoaded();
+        return apply(scenario, template, "api");
+    }
+
+    /**
+     * 移除模板，默认场景不可移除
+     */
+    public void remove(String scenario) {
+        ensureLoaded();
+        apply(scenario, null, "api");
+    }
+
+    /**
+     * 首次访问或预热时加载全部模板，之后的变更通过热更新和API应用
+     */
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        synchronized (this) {
+            if (!loaded) {
+                loadAll();
+                loaded = true;
+            }
+        }
+    }
+
+    private void loadAll() {
+        Path dir = resolveDirectory();
+        if (dir != null) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + PROMPT_SUFFIX)) {
+                for (Path file : files) {
+                    loadFile(file);
+                }
+            } catch (IOException e) {
+                logger.error("Failed to list prompt directory: {}", dir, e);
+            }
+            if (watch) {
+                startWatcher(dir);
+            }
+        } else {
+            loadClasspath();
+        }
+
+        if (!snapshot.get().containsKey(DEFAULT_SCENARIO)) {
+            logger.warn("No default prompt found, using built-in fallback");
+            apply(DEFAULT_SCENARIO, FALLBACK_PROMPT, "fallback");
+        }
+        logger.info("Loaded {} prompt templates", snapshot.get().size());
+    }
+
+    private Path resolveDirectory() {
+        if (directory == null || directory.isBlank()) {
+            return null;
+        }
+        Path dir = Path.of(directory);
+        if (!Files.isDirectory(dir)) {
+            logger.error("Prompt directory does not exist: {}, falling back to classpath prompts", dir);
+            return null;
+        }
+        return dir;
+    }
+
+    private void loadClasspath() {
+        try {
+            Resource[] resources = new PathMatchingResourcePatternResolver().getResources(CLASSPATH_PATTERN);
+            for (Resource resource : resources) {
+                String filename = resource.getFilename();
+                if (filename == null) {
+                    continue;
+                }
+                String content = StreamUtils.copyToString(resource.getInputStream(), StandardCharsets.UTF_8);
+                apply(scenarioOf(filename), content, "classpath:system-prompts/" + filename);
+            }
+        } catch (IOException e) {
+            logger.error("Failed to load classpath prompts", e);
+        }
+    }
+
+    private void loadFile(Path file) {
+        String scenario = scenarioOf(file.getFileName().toString());
+        if (!Files.exists(file)) {
+            apply(scenario, null, file.toString());
+            return;
+        }
+        try {
+            String content = Files.readString(file, StandardCharsets.UTF_8);
+            apply(scenario, content, file.toString());
+        } catch (IOException e) {
+            logger.error("Failed to read prompt file: {}", file, e);
+        }
+    }
+
+    /**
+     * 复制当前快照并应用一个变更，然后原子替换
+     * 内容未变化时不产生新版本
+     */
+    private PromptTemplate apply(String scenario, String content, String source) {
+        // 默认场景是所有场景的回退，不允许移除
+        if (content == null && DEFAULT_SCENARIO.equals(scenario)) {
+            logger.warn("Ignoring removal of default prompt from {}", source);
+            return snapshot.get().get(DEFAULT_SCENARIO);
+        }
+        while (true) {
+            Map<String, PromptTemplate> current = snapshot.get();
+            PromptTemplate existing = current.get(scenario);
+            if (content == null ? existing == null : existing != null && existing.template().equals(content)) {
+                return existing;
+            }
+
+            Map<String, PromptTemplate> next = new HashMap<>(current);
+            PromptTemplate updated = null;
+            if (content == null) {
+                next.remove(scenario);
+            } else {
+                updated = new PromptTemplate(scenario, content, versionCounter.incrementAndGet(), source);
+                next.put(scenario, updated);
+            }
+
+            if (snapshot.compareAndSet(current, Map.copyOf(next))) {
+                PromptTemplate changed = updated != null ? updated : new PromptTemplate(scenario, null, 0, source);
+                if (updated != null) {
+                    logger.info("Prompt '{}' updated to version {} from {}", scenario, updated.version(), source);
+                } else {
+                    logger.info("Prompt '{}' removed", scenario);
+                }
+                for (Consumer<PromptTemplate> listener : listeners) {
+                    listener.accept(changed);
+                }
+                return updated;
+            }
+        }
+    }
+
+    private void startWatcher(Path dir) {
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            dir.register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY,
+                    StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException e) {
+            logger.error("Failed to watch prompt directory: {}", dir, e);
+            return;
+        }
+
+        watcher = new Thread(() -> watchLoop(dir), "prompt-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+        logger.info("Watching prompt directory for changes: {}", dir);
+    }
+
+    private void watchLoop(Path dir) {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                Set<Path> changed = new HashSet<>();
+                collect(key, dir, changed);
+
+                // 合并短时间内的后续事件
+                WatchKey more;
+                while ((more = watchService.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    collect(more, dir, changed);
+                }
+                changed.forEach(this::loadFile);
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // 注册表关闭
+        }
+    }
+
+    private void collect(WatchKey key, Path dir, Set<Path> changed) {
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.context() instanceof Path name && name.toString().endsWith(PROMPT_SUFFIX)) {
+                changed.add(dir.resolve(name));
+            }
+        }
+        key.reset();
+    }
+
+    private static String scenarioOf(String filename) {
+        return filename.substring(0, filename.length() - PROMPT_SUFFIX.length());
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.langchain4jdeepseek.prompt;
+
+/**
+ * 某一版本的系统提示词模板
+ * @param scenario 场景标识
+ * @param template 模板内容，可包含${变量}
+ * @param version 版本号，模板每次变化都会得到新的版本号
+ * @param source 来源，如文件路径、classpath或api
+ */
+public record PromptTemplate(String scenario, String template, long version, String source) {
+}
@@ -0,0 +1,83 @@
+package com.example.langchain4jdeepseek.resilience;
+
+import com.example.langchain4jdeepseek.exception.DeadlineExceededException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 请求截止时间
+ * 通过线程绑定在聊天服务、模型调用和工具之间传递，每一跳只使用剩余的时间预算
+ */
+public final class Deadline {
+
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+    private final long deadlineNanos;
+
+    private Deadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    /**
+     * 创建从现在起指定毫秒后到期的截止时间
+     */
+    public static Deadline afterMillis(long millis) {
+        return new Deadline(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    /**
+     * 获取当前线程绑定的截止时间
+     * @return 截止时间，未绑定时返回null
+     */
+    public static Deadline current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 将截止时间绑定到当前线程
+     * @return 之前绑定的截止时间，用于恢复
+     */
+    public static Deadline bind(Deadline deadline) {
+        Deadline previous = CURRENT.get();
+        CURRENT.set(deadline);
+        return previous;
+    }
+
+    /**
+     * 恢复之前绑定的截止时间
+     */
+    public static void restore(Deadline previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    /**
+     * 计算可用时间：有截止时间时取剩余时间与上限中的较小值
+     * @param deadline 截止时间，可为null
+     * @param capMillis 单跳时间上限
+     */
+    public static long budgetMillis(Deadline deadline, long capMillis) {
+        return deadline == null ? capMillis : Math.min(capMillis, deadline.remainingMillis());
+    }
+
+    public long remainingMillis() {
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime()));
+    }
+
+    public boolean isExpired() {
+        return deadlineNanos - System.nanoTime() <= 0;
+    }
+
+    /**
+     * 已到期时抛出DeadlineExceededException
+     * @param operation 将要执行的操作，用于错误信息
+     */
+    public void check(String operation) {
+        if (isExpired()) {
+            throw new DeadlineExceededException("Request deadline exceeded before " + operation);
+        }
+    }
+}
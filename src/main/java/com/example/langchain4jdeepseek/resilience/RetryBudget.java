@@ -0,0 +1,128 @@
+package com.example.langchain4jdeepseek.resilience;
+
+import com.example.langchain4jdeepseek.exception.DeadlineExceededException;
+import com.example.langchain4jdeepseek.exception.RateLimitExceededException;
+import com.example.langchain4jdeepseek.limit.TokenBucket;
+import dev.langchain4j.exception.NonRetriableException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.InterruptedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 节点级重试预算
+ * 每个原始请求积累一定比例的重试额度，重试消耗额度，使重试量不超过流量的固定比例；
+ * 另保留少量按时间补充的额度，保证低流量时也能重试
+ */
+@Component
+public class RetryBudget {
+
+    // 额度以千分之一次重试为单位
+    private static final long CREDIT_UNIT = 1000;
+
+    private final long creditPerRequest;
+    private final long maxCredits;
+    private final TokenBucket reserve;
+    private final int maxAttempts;
+    private final long baseBackoffMillis;
+    private final long maxBackoffMillis;
+
+    private final AtomicLong credits = new AtomicLong();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder rejectedRetries = new LongAdder();
+
+    public RetryBudget(
+            @Value("${retry.budget-ratio:0.1}") double budgetRatio,
+            @Value("${retry.min-retries-per-minute:10}") long minRetriesPerMinute,
+            @Value("${retry.max-attempts:3}") int maxAttempts,
+            @Value("${retry.base-backoff-ms:200}") long baseBackoffMillis,
+            @Value("${retry.max-backoff-ms:5000}") long maxBackoffMillis) {
+        this.creditPerRequest = Math.round(budgetRatio * CREDIT_UNIT);
+        this.maxCredits = 100 * CREDIT_UNIT;
+        this.reserve = new TokenBucket(minRetriesPerMinute, Math.max(1, minRetriesPerMinute));
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.baseBackoffMillis = baseBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    /**
+     * 记录一次原始请求并积累重试额度
+     */
+    public void recordRequest() {
+        requests.increment();
+        credits.getAndUpdate(current -> Math.min(maxCredits, current + creditPerRequest));
+    }
+
+    /**
+     * 尝试获取一次重试额度
+     * @return true表示允许重试
+     */
+    public boolean tryAcquireRetry() {
+        while (true) {
+            long current = credits.get();
+            if (current < CREDIT_UNIT) {
+                break;
+            }
+            if (credits.compareAndSet(current, current - CREDIT_UNIT)) {
+                retries.increment();
+                return true;
+            }
+        }
+        if (reserve.tryAcquire(1) == 0) {
+            retries.increment();
+            return true;
+        }
+        rejectedRetries.increment();
+        return false;
+    }
+
+    /**
+     * 计算第attempt次重试前的退避时间（指数退避加全抖动）
+     * @param attempt 重试序号，从1开始
+     */
+    public long backoffMillis(int attempt) {
+        long ceiling = Math.min(maxBackoffMillis, baseBackoffMillis << Math.min(attempt - 1, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    /**
+     * 判断错误是否值得重试
+     * 非可重试的模型错误、限流、截止时间到期、取消和中断都不重试
+     */
+    public static boolean isRetryable(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof NonRetriableException
+                    || cause instanceof RateLimitExceededException
+                    || cause instanceof DeadlineExceededException
+                    || cause instanceof CancellationException
+                    || cause instanceof InterruptedException
+                    || cause instanceof InterruptedIOException) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * 获取重试统计快照
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("requests", requests.sum());
+        result.put("retries", retries.sum());
+        result.put("rejectedRetries", rejectedRetries.sum());
+        result.put("availableRetries", credits.get() / CREDIT_UNIT);
+        return result;
+    }
+}
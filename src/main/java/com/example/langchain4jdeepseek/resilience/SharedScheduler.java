@@ -0,0 +1,38 @@
+package com.example.langchain4jdeepseek.resilience;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 全局共享的定时调度器
+ * 用于截止时间中断、重试退避等短小的定时任务，避免每个请求创建定时线程
+ */
+public final class SharedScheduler {
+
+    private static final ScheduledThreadPoolExecutor SCHEDULER = createScheduler();
+
+    private SharedScheduler() {
+    }
+
+    private static ScheduledThreadPoolExecutor createScheduler() {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "shared-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // 取消的任务立即移出队列，避免大量已取消的定时器堆积
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+
+    /**
+     * 延迟执行任务，任务应当简短且不阻塞
+     * @param task 任务
+     * @param delayMillis 延迟（毫秒）
+     * @return 可用于取消的句柄
+     */
+    public static ScheduledFuture<?> schedule(Runnable task, long delayMillis) {
+        return SCHEDULER.schedule(task, Math.max(0, delayMillis), TimeUnit.MILLISECONDS);
+    }
+}
@@ -1,31 +1,64 @@
 package com.example.langchain4jdeepseek.service;
 
+import com.example.langchain4jdeepseek.context.ContextBudget;
+import com.example.langchain4jdeepseek.context.TokenEstimator;
+import com.example.langchain4jdeepseek.exception.ContextBudgetExceededException;
+import com.example.langchain4jdeepseek.exception.DeadlineExceededException;
+import com.example.langchain4jdeepseek.exception.RateLimitExceededException;
+import com.example.langchain4jdeepseek.http.StreamCancellation;
+import com.example.langchain4jdeepseek.knowledge.KnowledgeBase;
+import com.example.langchain4jdeepseek.lifecycle.StartupWarmup;
+import com.example.langchain4jdeepseek.limit.BudgetedChatModel;
+import com.example.langchain4jdeepseek.limit.BudgetedStreamingChatModel;
+import com.example.langchain4jdeepseek.logging.TrafficLogger;
+import com.example.langchain4jdeepseek.prompt.PromptRegistry;
+import com.example.langchain4jdeepseek.prompt.PromptTemplate;
+import com.example.langchain4jdeepseek.resilience.Deadline;
+import com.example.langchain4jdeepseek.session.SessionStore;
+import com.example.langchain4jdeepseek.tools.ClippingToolExecutor;
 import com.example.langchain4jdeepseek.tools.CommandExecutionTool;
+import com.example.langchain4jdeepseek.tools.KnowledgeBaseTool;
 import com.example.langchain4jdeepseek.tools.TavilySearchTool;
+import com.example.langchain4jdeepseek.tools.ToolOutputProcessor;
+import com.example.langchain4jdeepseek.tools.ToolProgress;
+import com.example.langchain4jdeepseek.tracing.Span;
+import com.example.langchain4jdeepseek.tracing.Tracer;
+import com.example.langchain4jdeepseek.transcript.TranscriptStore;
+import com.example.langchain4jdeepseek.usage.UsageTracker;
+import dev.langchain4j.agent.tool.Tool;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.agent.tool.ToolSpecifications;
 import dev.langchain4j.data.message.AiMessage;
 import dev.langchain4j.data.message.UserMessage;
 import dev.langchain4j.model.chat.ChatModel;
 import dev.langchain4j.model.chat.StreamingChatModel;
 import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.output.TokenUsage;
 import dev.langchain4j.service.AiServices;
 import dev.langchain4j.service.TokenStream;
+import dev.langchain4j.service.tool.DefaultToolExecutor;
+import dev.langchain4j.service.tool.ToolExecutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.ClassPathResource;
-import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
-import org.springframework.util.StreamUtils;
 
-import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.lang.reflect.Method;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
 
 @Service
 public class ChatService {
@@ -36,101 +69,94 @@ public class ChatService {
     private final StreamingChatModel streamingChatModel;
     private final TavilySearchTool tavilySearchTool;
     private final CommandExecutionTool commandExecutionTool;
+    private final StreamingMetrics streamingMetrics;
+    private final PromptRegistry promptRegistry;
+    private final ContextBudget contextBudget;
+    private final TokenEstimator tokenEstimator;
+    private final ToolOutputProcessor toolOutputProcessor;
+    private final TranscriptStore transcriptStore;
+    private final KnowledgeBase knowledgeBase;
+    private final TrafficLogger trafficLogger;
+    private final UsageTracker usageTracker;
+    private final Tracer tracer;
     
-    // 存储系统提示词的映射
-    private final Map<String, String> promptTemplates = new HashMap<>();
+    // 进行中流式会话的内容、当前场景和动态变量，可由多个节点共享
+    private final SessionStore sessionStore;
     
-    // 存储动态变量的映射
-    private final Map<String, String> dynamicVariables = new HashMap<>();
+    // 工具定义，用于估算工具占用的上下文
+    private final List<ToolSpecification> toolSpecifications;
+    private final List<ToolSpecification> knowledgeToolSpecifications;
     
-    // 存储流式会话内容的映射
-    private final Map<String, StringBuilder> streamingSessions = new ConcurrentHashMap<>();
+    // 按场景缓存已构建的助手，记录构建时使用的提示词版本
+    private final Map<String, VersionedAssistant<Assistant>> syncAssistants = new ConcurrentHashMap<>();
+    private final Map<String, VersionedAssistant<StreamingAssistant>> streamingAssistants = new ConcurrentHashMap<>();
     
-    // 当前使用的场景
-    private String currentScenario = "default";
+    // 存储进行中流式会话的取消句柄
+    private final Map<String, StreamCancellation> activeStreams = new ConcurrentHashMap<>();
 
     @Value("${system.prompt.file:classpath:system-prompts/default.prompt}")
     private String defaultPromptFile;
 
+    // 知识库工具单次返回的分块数
+    @Value("${knowledge.max-results:5}")
+    private int knowledgeMaxResults;
+
     @Autowired
     public ChatService(
             ChatModel chatModel,
             StreamingChatModel streamingChatModel,
             TavilySearchTool tavilySearchTool,
-            CommandExecutionTool commandExecutionTool) {
+            CommandExecutionTool commandExecutionTool,
+            StreamingMetrics streamingMetrics,
+            PromptRegistry promptRegistry,
+            ContextBudget contextBudget,
+            TokenEstimator tokenEstimator,
+            ToolOutputProcessor toolOutputProcessor,
+            TranscriptStore transcriptStore,
+            KnowledgeBase knowledgeBase,
+            TrafficLogger trafficLogger,
+            UsageTracker usageTracker,
+            SessionStore sessionStore,
+            Tracer tracer,
+            StartupWarmup startupWarmup) {
         this.chatModel = chatModel;
         this.streamingChatModel = streamingChatModel;
         this.tavilySearchTool = tavilySearchTool;
         this.commandExecutionTool = commandExecutionTool;
+        this.streamingMetrics = streamingMetrics;
         
-        // 初始化默认提示词
-        loadDefaultPrompt();
+        this.promptRegistry = promptRegistry;
+        this.contextBudget = contextBudget;
+        this.tokenEstimator = tokenEstimator;
+        this.toolOutputProcessor = toolOutputProcessor;
+        this.transcriptStore = transcriptStore;
+        this.knowledgeBase = knowledgeBase;
+        this.trafficLogger = trafficLogger;
+        this.usageTracker = usageTracker;
+        this.sessionStore = sessionStore;
+        this.tracer = tracer;
+        this.toolSpecifications = new ArrayList<>(ToolSpecifications.toolSpecificationsFrom(tavilySearchTool));
+        this.toolSpecifications.addAll(ToolSpecifications.toolSpecificationsFrom(commandExecutionTool));
+        this.knowledgeToolSpecifications = ToolSpecifications.toolSpecificationsFrom(KnowledgeBaseTool.class);
         
-        // 初始化内置场景提示词
-        loadBuiltInScenarios();
+        // 提示词变更时只淘汰对应场景的助手缓存
+        promptRegistry.addListener(changed -> {
+            syncAssistants.remove(changed.scenario());
+            streamingAssistants.remove(changed.scenario());
+        });
         
         // 初始化默认动态变量
         initializeDefaultVariables();
-    }
-    
-    /**
-     * 加载默认系统提示词
-     */
-    private void loadDefaultPrompt() {
-        try {
-            Resource resource = new ClassPathResource("system-prompts/default.prompt");
-            String defaultPrompt = StreamUtils.copyToString(resource.getInputStream(), StandardCharsets.UTF_8);
-            promptTemplates.put("default", defaultPrompt);
-            logger.info("Loaded default system prompt");
-        } catch (IOException e) {
-            logger.error("Failed to load default system prompt", e);
-            // 使用硬编码的默认提示词作为后备
-            promptTemplates.put("default", "你是一个专业的AI助手，请用简洁明了的语言回答问题。");
-        }
-    }
-    
-    /**
-     * 加载内置场景提示词
-     */
-    private void loadBuiltInScenarios() {
-        // 定义内置场景列表
-        String[] scenarios = {"code_reviewer", "customer_support", "technical_writer", "translator"};
         
-        for (String scenario : scenarios) {
-            try {
-                Resource resource = new ClassPathResource("system-prompts/" + scenario + ".prompt");
-                String prompt = StreamUtils.copyToString(resource.getInputStream(), StandardCharsets.UTF_8);
-                promptTemplates.put(scenario, prompt);
-                logger.info("Loaded built-in scenario: {}", scenario);
-            } catch (IOException e) {
-                logger.warn("Failed to load built-in scenario: {}", scenario, e);
-                // 使用硬编码的提示词作为后备
-                loadFallbackScenario(scenario);
-            }
+        // 快速启动模式下在后台预先构建默认场景的助手，首个请求不再承担构建开销
+        if (startupWarmup.isFastStartup()) {
+            startupWarmup.register("assistants", this::warmUpAssistants);
         }
     }
     
-    /**
-     * 加载后备场景提示词
-     */
-    private void loadFallbackScenario(String scenario) {
-        switch (scenario) {
-            case "code_reviewer":
-                promptTemplates.put(scenario, "你是一个专业的代码审查员，请对提供的代码进行详细的审查，包括代码质量、性能、安全性和最佳实践。");
-                break;
-            case "customer_support":
-                promptTemplates.put(scenario, "你是一个专业的客户支持代理，请耐心解答用户的问题，提供有用的解决方案，并保持友好和专业的态度。");
-                break;
-            case "technical_writer":
-                promptTemplates.put(scenario, "你是一个专业的技术文档编写员，请用清晰、准确的语言编写技术文档，确保内容易于理解且符合技术写作规范。");
-                break;
-            case "translator":
-                promptTemplates.put(scenario, "你是一个专业的翻译专家，请准确翻译文本内容，保持原文的含义和风格，并确保翻译结果符合目标语言的表达习惯。");
-                break;
-            default:
-                promptTemplates.put(scenario, "你是一个专业的AI助手，请用简洁明了的语言回答问题。");
-                break;
-        }
+    private void warmUpAssistants() {
+        resolveAssistant(syncAssistants, "default", this::buildAssistant);
+        resolveAssistant(streamingAssistants, "default", this::buildStreamingAssistant);
     }
     
     /**
@@ -142,9 +168,11 @@ public class ChatService {
         DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("HH:mm:ss");
         DateTimeFormatter dateTimeFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
         
-        dynamicVariables.put("current_date", now.format(dateFormatter));
-        dynamicVariables.put("current_time", now.format(timeFormatter));
-        dynamicVariables.put("current_datetime", now.format(dateTimeFormatter));
+        Map<String, String> defaults = new HashMap<>();
+        defaults.put("current_date", now.format(dateFormatter));
+        defaults.put("current_time", now.format(timeFormatter));
+        defaults.put("current_datetime", now.format(dateTimeFormatter));
+        sessionStore.putVariables(defaults);
         
         logger.info("Initialized default dynamic variables");
     }
@@ -156,7 +184,7 @@ public class ChatService {
         String result = template;
         
         // 替换动态变量
-        for (Map.Entry<String, String> entry : dynamicVariables.entrySet()) {
+        for (Map.Entry<String, String> entry : sessionStore.getVariables().entrySet()) {
             String placeholder = "${" + entry.getKey() + "}";
             result = result.replace(placeholder, entry.getValue());
         }
@@ -169,7 +197,7 @@ public class ChatService {
      */
     public void setDynamicVariables(Map<String, String> variables) {
         if (variables != null) {
-            dynamicVariables.putAll(variables);
+            sessionStore.putVariables(variables);
             logger.info("Updated dynamic variables: {}", variables.keySet());
         }
     }
@@ -178,11 +206,7 @@ public class ChatService {
      * 获取当前系统提示词
      */
     public String getCurrentSystemPrompt() {
-        String template = promptTemplates.get(currentScenario);
-        if (template == null) {
-            template = promptTemplates.get("default");
-        }
-        return replaceVariables(template);
+        return replaceVariables(promptRegistry.get(sessionStore.getScenario()).template());
     }
     
     /**
@@ -196,45 +220,66 @@ public class ChatService {
      * 带场景的聊天方法
      */
     public String chatWithScenario(String message, String scenario) {
+        return chatWithScenario(message, scenario, null);
+    }
+    
+    /**
+     * 带场景和截止时间的聊天方法
+     */
+    public String chatWithScenario(String message, String scenario, Deadline deadline) {
+        return chatWithScenario(message, scenario, null, deadline);
+    }
+    
+    /**
+     * 带场景、客户端标识和截止时间的聊天方法
+     * 截止时间绑定到当前线程，模型调用和工具只使用剩余的时间预算；模型返回的用量计入该客户端。
+     * 采样的轮次记录提示词渲染、每次模型调用和每次工具调用的追踪段。
+     * 客户端标识会写入用量记录和追踪属性，调用方应传入ClientKeys解析的指纹或来源地址，不能传入原始API Key
+     */
+    public String chatWithScenario(String message, String scenario, String clientKey, Deadline deadline) {
         // 设置当前场景
-        this.currentScenario = scenario;
-        
-        // 获取场景对应的系统提示词
-        String systemPrompt = promptTemplates.get(scenario);
-        if (systemPrompt == null) {
-            systemPrompt = promptTemplates.get("default");
-            logger.warn("Scenario '{}' not found, using default scenario", scenario);
-        }
-        
-        // 替换变量
-        final String finalSystemPrompt = replaceVariables(systemPrompt);
-        
-        // 创建AI服务
-        Assistant assistant;
-        // 根据场景决定是否使用工具
-        if (shouldUseToolsForScenario(scenario)) {
-            assistant = AiServices.builder(Assistant.class)
-                    .chatModel(chatModel)
-                    .systemMessageProvider(ctx -> finalSystemPrompt)
-                    .tools(tavilySearchTool, commandExecutionTool)
-                    .build();
-        } else {
-            assistant = AiServices.builder(Assistant.class)
-                    .chatModel(chatModel)
-                    .systemMessageProvider(ctx -> finalSystemPrompt)
-                    .build();
-        }
-        
-        // 处理用户消息
-        UserMessage userMessage = UserMessage.from(message);
+        sessionStore.setScenario(scenario);
         
+        Span turn = startTurn("sync", scenario, clientKey, message);
+        Span previousSpan = Span.bind(turn);
+        Deadline previousDeadline = Deadline.bind(deadline);
         try {
+            Span render = turn.startChild("prompt.render", Span.KIND_INTERNAL);
+            Assistant assistant;
+            UserMessage userMessage;
+            try {
+                // 获取场景对应的助手，提示词版本变化后才重新构建
+                String resolved = resolveScenario(scenario);
+                assistant = resolveAssistant(syncAssistants, resolved, this::buildAssistant);
+                
+                // 按场景上下文预算检查输入，超出时截断或拒绝
+                userMessage = UserMessage.from(fitToContextBudget(resolved, message));
+            } finally {
+                render.end();
+            }
+            
             ChatResponse response = assistant.chat(userMessage);
             logger.info("Chat response received for scenario: {}", scenario);
+            usageTracker.record(clientKey, scenario, response.modelName(), response.tokenUsage());
+            recordResponse(turn, response);
+            endTurn(turn, "completed", null);
             return response.aiMessage().text();
+        } catch (RateLimitExceededException | ContextBudgetExceededException e) {
+            // 限流和超出上下文预算交给全局异常处理器返回429/413
+            endTurn(turn, "rejected", e);
+            throw e;
         } catch (Exception e) {
+            // 截止时间到期交给全局异常处理器返回504
+            if (deadline != null && deadline.isExpired()) {
+                endTurn(turn, "deadline", e);
+                throw new DeadlineExceededException("Request deadline exceeded for scenario: " + scenario);
+            }
             logger.error("Error during chat with scenario: {}", scenario, e);
+            endTurn(turn, "error", e);
             return "抱歉，处理您的请求时出现错误：" + e.getMessage();
+        } finally {
+            Deadline.restore(previousDeadline);
+            Span.restore(previousSpan);
         }
     }
     
@@ -242,79 +287,222 @@ public class ChatService {
      * 流式聊天方法
      */
     public void streamChat(String message, String scenario, String sessionId, StreamingResponseHandler<AiMessage> handler) {
+        streamChat(message, scenario, sessionId, null, handler);
+    }
+    
+    /**
+     * 带截止时间的流式聊天方法
+     */
+    public void streamChat(String message, String scenario, String sessionId, Deadline deadline,
+                           StreamingResponseHandler<AiMessage> handler) {
+        streamChat(message, scenario, sessionId, null, deadline, handler);
+    }
+    
+    /**
+     * 带客户端标识和截止时间的流式聊天方法，完成时模型返回的用量计入该客户端
+     * 客户端标识会写入用量记录和追踪属性，调用方应传入ClientKeys解析的指纹或来源地址，不能传入原始API Key
+     */
+    public void streamChat(String message, String scenario, String sessionId, String clientKey, Deadline deadline,
+                           StreamingResponseHandler<AiMessage> handler) {
         // 设置当前场景
-        this.currentScenario = scenario;
+        sessionStore.setScenario(scenario);
         
-        // 获取场景对应的系统提示词
-        String systemPrompt = promptTemplates.get(scenario);
-        if (systemPrompt == null) {
-            systemPrompt = promptTemplates.get("default");
-            logger.warn("Scenario '{}' not found, using default scenario", scenario);
-        }
-        
-        // 替换变量
-        final String finalSystemPrompt = replaceVariables(systemPrompt);
-        
-        // 创建AI服务
+        Span turn = startTurn("stream", scenario, clientKey, message);
+        Span render = turn.startChild("prompt.render", Span.KIND_INTERNAL);
         StreamingAssistant assistant;
-        // 根据场景决定是否使用工具
-        if (shouldUseToolsForScenario(scenario)) {
-            logger.info("Creating streaming assistant for scenario: {} with tools", scenario);
-            assistant = AiServices.builder(StreamingAssistant.class)
-                    .streamingChatModel(streamingChatModel)
-                    .systemMessageProvider(ctx -> finalSystemPrompt)
-                    .tools(tavilySearchTool, commandExecutionTool)
-                    .build();
-        } else {
-            logger.info("Creating streaming assistant for scenario: {} without tools", scenario);
-            assistant = AiServices.builder(StreamingAssistant.class)
-                    .streamingChatModel(streamingChatModel)
-                    .systemMessageProvider(ctx -> finalSystemPrompt)
-                    .build();
+        UserMessage userMessage;
+        long promptTokens;
+        Span previousSpan = Span.bind(turn);
+        try {
+            // 获取场景对应的流式助手，提示词版本变化后才重新构建
+            String resolved = resolveScenario(scenario);
+            assistant = resolveAssistant(streamingAssistants, resolved, this::buildStreamingAssistant);
+            
+            // 按场景上下文预算检查输入，超出时截断或拒绝
+            userMessage = UserMessage.from(fitToContextBudget(resolved, message));
+            promptTokens = estimateInputTokens(resolved, userMessage.singleText());
+        } catch (ContextBudgetExceededException e) {
+            endTurn(turn, "rejected", e);
+            handler.onError(e);
+            return;
+        } finally {
+            render.end();
+            Span.restore(previousSpan);
         }
         
-        // 初始化会话内容
-        streamingSessions.put(sessionId, new StringBuilder());
+        // 初始化会话内容和取消句柄
+        sessionStore.startStream(sessionId, scenario, message);
+        StreamCancellation cancellation = new StreamCancellation(sessionId);
+        activeStreams.put(sessionId, cancellation);
+        if (turn.isSampled()) {
+            turn.setAttribute("session.id", sessionId);
+            // 取消后上游不一定再回调，取消时即结束本轮的追踪段
+            cancellation.attach(() -> endStreamTurn(turn, cancellation, "cancelled", null));
+        }
+        // 取消后上游通常不再返回用量，按输入估算和已发送的token数计入用量和配额；
+        // 每轮只记录一次，取消后仍收到完成回调时不再重复计入
+        AtomicBoolean usageRecorded = new AtomicBoolean();
+        cancellation.attach(() -> {
+            if (usageRecorded.compareAndSet(false, true)) {
+                usageTracker.record(clientKey, scenario, null,
+                        new TokenUsage((int) promptTokens, (int) cancellation.getTokensStreamed()));
+            }
+        });
         
-        // 处理用户消息
-        UserMessage userMessage = UserMessage.from(message);
+        // 工具在模型响应的解析线程上依次执行，记录当前工具调用以计算耗时并关联增量输出
+        AtomicReference<ToolExecutionRequest> runningTool = new AtomicReference<>();
+        AtomicLong toolStartedAt = new AtomicLong();
+        ToolProgress.Listener toolProgress = (tool, chunk) -> {
+            ToolExecutionRequest request = runningTool.get();
+            if (request != null && !cancellation.isCancelled()) {
+                handler.onToolOutput(request, chunk);
+            }
+        };
         
+        // 绑定取消句柄、截止时间、工具进度接收方和追踪段，使模型请求的上游响应流可在客户端断开或到期时被关闭
+        StreamCancellation previous = StreamCancellation.bind(cancellation);
+        Deadline previousDeadline = Deadline.bind(deadline);
+        ToolProgress.Listener previousProgress = ToolProgress.bind(toolProgress);
+        previousSpan = Span.bind(turn);
         try {
             assistant.chat(userMessage)
                     .onPartialResponse(token -> {
-                        // 将token添加到会话内容
-                        streamingSessions.get(sessionId).append(token);
+                        // 已取消的会话不再转发token
+                        if (cancellation.isCancelled()) {
+                            streamingMetrics.recordDiscardedToken();
+                            return;
+                        }
+                        if (cancellation.getTokensStreamed() == 0) {
+                            turn.setAttribute("chat.time_to_first_token_ms", turn.elapsedMillis());
+                        }
+                        // 将token添加到会话内容，共享存储先缓冲在本节点再批量写入
+                        sessionStore.appendStream(sessionId, token);
+                        cancellation.tokenStreamed();
                         // 发送token给处理器
                         handler.onNext(token);
                     })
+                    .beforeToolExecution(before -> {
+                        runningTool.set(before.request());
+                        toolStartedAt.set(System.nanoTime());
+                        if (!cancellation.isCancelled()) {
+                            handler.onToolStarted(before.request());
+                        }
+                    })
+                    .onToolExecuted(execution -> {
+                        runningTool.set(null);
+                        long durationMs = (System.nanoTime() - toolStartedAt.get()) / 1_000_000;
+                        if (!cancellation.isCancelled()) {
+                            handler.onToolExecuted(execution, durationMs);
+                        }
+                    })
                     .onCompleteResponse(response -> {
+                        activeStreams.remove(sessionId);
+                        if (usageRecorded.compareAndSet(false, true)) {
+                            usageTracker.record(clientKey, scenario, response.modelName(), response.tokenUsage());
+                        }
+                        recordResponse(turn, response);
+                        if (cancellation.isCancelled()) {
+                            endStreamTurn(turn, cancellation, "cancelled", null);
+                            return;
+                        }
+                        endStreamTurn(turn, cancellation, "completed", null);
                         logger.info("Streaming chat completed for scenario: {}", scenario);
+                        streamingMetrics.recordCompleted(cancellation.getTokensStreamed());
+                        persistTranscript(sessionId, "completed");
                         handler.onComplete(response);
                     })
                     .onError(error -> {
+                        activeStreams.remove(sessionId);
+                        // 取消导致的上游中断不是错误
+                        if (cancellation.isCancelled()) {
+                            endStreamTurn(turn, cancellation, "cancelled", null);
+                            logger.info("Streaming chat cancelled for session {}: {}", sessionId, cancellation.getCancelReason());
+                            return;
+                        }
+                        endStreamTurn(turn, cancellation, deadline != null && deadline.isExpired() ? "deadline" : "error", error);
                         logger.error("Error during streaming chat with scenario: {}", scenario, error);
+                        persistTranscript(sessionId, "error");
                         handler.onError(error);
                     })
                     .start();
         } catch (Exception e) {
+            activeStreams.remove(sessionId);
+            endStreamTurn(turn, cancellation, "error", e);
             logger.error("Error during streaming chat with scenario: {}", scenario, e);
             handler.onError(e);
+        } finally {
+            Span.restore(previousSpan);
+            ToolProgress.restore(previousProgress);
+            Deadline.restore(previousDeadline);
+            StreamCancellation.restore(previous);
         }
     }
     
     /**
-     * 获取流式会话的当前内容
+     * 取消进行中的流式会话
+     * 关闭上游模型请求并释放会话缓冲区
+     * @param sessionId 会话ID
+     * @param reason 取消原因，如client_disconnect、timeout、send_failure
+     * @return true表示会话被本次调用取消
+     */
+    public boolean cancelStream(String sessionId, String reason) {
+        StreamCancellation cancellation = activeStreams.remove(sessionId);
+        if (cancellation == null || !cancellation.cancel(reason)) {
+            return false;
+        }
+        persistTranscript(sessionId, "cancelled");
+        streamingMetrics.recordCancelled(reason, cancellation.getTokensStreamed());
+        logger.info("Cancelled streaming session {} ({}), {} tokens streamed before cancel",
+                sessionId, reason, cancellation.getTokensStreamed());
+        return true;
+    }
+    
+    /**
+     * 获取流式会话统计
+     */
+    public Map<String, Object> getStreamingStats() {
+        Map<String, Object> stats = new HashMap<>(streamingMetrics.snapshot());
+        stats.put("activeStreams", activeStreams.size());
+        stats.put("transcripts", transcriptStore.snapshot());
+        stats.put("sessionStore", sessionStore.snapshot());
+        return stats;
+    }
+    
+    /**
+     * 将已结束的会话写入磁盘记录，成功后在会话存储中结束该会话
+     * 未启用磁盘存储时，已完成的会话仍保留在会话存储中
+     */
+    private void persistTranscript(String sessionId, String status) {
+        SessionStore.StreamSession session = sessionStore.getStream(sessionId);
+        if (session == null || !session.isActive()) {
+            return;
+        }
+        if (transcriptStore.append(sessionId, status, session.scenario(), session.message(), session.content())
+                || !"completed".equals(status)) {
+            sessionStore.endStream(sessionId, status);
+        }
+    }
+    
+    /**
+     * 查找已写入磁盘的会话记录
+     */
+    public Optional<TranscriptStore.TranscriptReader> findTranscript(String sessionId) {
+        return transcriptStore.find(sessionId);
+    }
+    
+    /**
+     * 获取流式会话，可能由其他节点处理
+     * @return 会话，不存在时返回null
      */
-    public String getStreamingSessionContent(String sessionId) {
-        StringBuilder content = streamingSessions.get(sessionId);
-        return content != null ? content.toString() : null;
+    public SessionStore.StreamSession getStreamingSession(String sessionId) {
+        return sessionStore.getStream(sessionId);
     }
     
     /**
      * 添加提示词模板
      */
     public void addPromptTemplate(String scenario, String template) {
-        promptTemplates.put(scenario, template);
+        promptRegistry.put(scenario, template);
         logger.info("Added new prompt template for scenario: {}", scenario);
     }
     
@@ -322,14 +510,208 @@ public class ChatService {
      * 获取可用场景列表
      */
     public List<String> getAvailableScenarios() {
-        return List.copyOf(promptTemplates.keySet());
+        return List.copyOf(promptRegistry.snapshot().keySet());
+    }
+    
+    /**
+     * 获取各场景提示词的当前版本
+     */
+    public Map<String, Long> getPromptVersions() {
+        return promptRegistry.versions();
     }
     
     /**
      * 获取当前场景
      */
     public String getCurrentScenario() {
-        return currentScenario;
+        return sessionStore.getScenario();
+    }
+    
+    /**
+     * 检查消息是否符合场景的上下文预算
+     * 系统提示词、用户消息和工具定义的估算token数之和不超过预算。
+     * 这里只检查第一次模型调用，之后工具循环中的调用由BudgetedChatModel按完整请求检查
+     * @param scenario 解析后的场景名
+     */
+    private String fitToContextBudget(String scenario, String message) {
+        String systemPrompt = replaceVariables(promptRegistry.get(scenario).template());
+        long toolTokens = 0;
+        if (shouldUseToolsForScenario(scenario)) {
+            toolTokens = tokenEstimator.estimateTools(toolSpecifications);
+            if (knowledgeBase.isAttached(scenario)) {
+                toolTokens += tokenEstimator.estimateTools(knowledgeToolSpecifications);
+            }
+        }
+        return contextBudget.fit(scenario, systemPrompt, message, toolTokens);
+    }
+    
+    /**
+     * 估算一次请求的输入token数：系统提示词、用户消息和工具定义
+     * @param scenario 解析后的场景名
+     */
+    private long estimateInputTokens(String scenario, String message) {
+        long tokens = tokenEstimator.estimate(replaceVariables(promptRegistry.get(scenario).template()))
+                + tokenEstimator.estimate(message);
+        if (shouldUseToolsForScenario(scenario)) {
+            tokens += tokenEstimator.estimateTools(toolSpecifications);
+            if (knowledgeBase.isAttached(scenario)) {
+                tokens += tokenEstimator.estimateTools(knowledgeToolSpecifications);
+            }
+        }
+        return tokens;
+    }
+    
+    /**
+     * 构建限制结果长度的工具执行器
+     * 挂载知识库的场景额外提供只检索该场景可见文档的知识库工具
+     */
+    private Map<ToolSpecification, ToolExecutor> budgetedTools(String scenario) {
+        long limit = contextBudget.toolResultLimit(scenario);
+        List<Object> scenarioTools = new ArrayList<>(List.of(tavilySearchTool, commandExecutionTool));
+        if (knowledgeBase.isAttached(scenario)) {
+            scenarioTools.add(new KnowledgeBaseTool(knowledgeBase, trafficLogger, scenario, knowledgeMaxResults));
+        }
+        Map<ToolSpecification, ToolExecutor> tools = new LinkedHashMap<>();
+        for (Object tool : scenarioTools) {
+            for (Method method : tool.getClass().getDeclaredMethods()) {
+                if (method.isAnnotationPresent(Tool.class)) {
+                    tools.put(ToolSpecifications.toolSpecificationFrom(method),
+                            new ClippingToolExecutor(new DefaultToolExecutor(tool, method), toolOutputProcessor, limit));
+                }
+            }
+        }
+        return tools;
+    }
+    
+    /**
+     * 获取上下文预算、token估算和工具输出处理统计
+     */
+    public Map<String, Object> getContextStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(contextBudget.snapshot());
+        stats.put("toolOutput", toolOutputProcessor.snapshot());
+        return stats;
+    }
+    
+    /**
+     * 开始一轮对话的追踪，未采样时返回空实现
+     * @param clientKey 由ClientKeys解析的客户端标识（API Key指纹或来源地址），原样写入chat.client属性
+     */
+    private Span startTurn(String mode, String scenario, String clientKey, String message) {
+        Span turn = tracer.startTrace("chat.turn", Span.KIND_SERVER);
+        if (turn.isSampled()) {
+            turn.setAttribute("chat.mode", mode)
+                    .setAttribute("chat.scenario", scenario)
+                    .setAttribute("chat.client", clientKey)
+                    .setAttribute("chat.request.chars", message != null ? message.length() : 0);
+        }
+        return turn;
+    }
+    
+    /**
+     * 记录一轮对话累计的模型用量和回复长度
+     */
+    private static void recordResponse(Span turn, ChatResponse response) {
+        if (!turn.isSampled()) {
+            return;
+        }
+        turn.setAttribute("gen_ai.response.model", response.modelName());
+        TokenUsage usage = response.tokenUsage();
+        if (usage != null) {
+            if (usage.inputTokenCount() != null) {
+                turn.setAttribute("gen_ai.usage.input_tokens", usage.inputTokenCount());
+            }
+            if (usage.outputTokenCount() != null) {
+                turn.setAttribute("gen_ai.usage.output_tokens", usage.outputTokenCount());
+            }
+        }
+        String text = response.aiMessage() != null ? response.aiMessage().text() : null;
+        turn.setAttribute("chat.response.chars", text != null ? text.length() : 0);
+    }
+    
+    private static void endStreamTurn(Span turn, StreamCancellation cancellation, String outcome, Throwable error) {
+        if (turn.isSampled()) {
+            turn.setAttribute("chat.tokens_streamed", cancellation.getTokensStreamed());
+            if (cancellation.isCancelled()) {
+                turn.setAttribute("chat.cancel_reason", cancellation.getCancelReason());
+            }
+        }
+        endTurn(turn, outcome, error);
+    }
+    
+    /**
+     * 结束一轮对话的追踪，取消不视为失败
+     * @param outcome completed、cancelled、rejected、deadline或error
+     */
+    private static void endTurn(Span turn, String outcome, Throwable error) {
+        if (!turn.isSampled()) {
+            return;
+        }
+        turn.setAttribute("chat.outcome", outcome);
+        if (error != null) {
+            turn.recordError(error);
+        } else if (!"completed".equals(outcome) && !"cancelled".equals(outcome)) {
+            turn.setError(outcome);
+        } else {
+            turn.setOk();
+        }
+        turn.end();
+    }
+    
+    private Assistant buildAssistant(String scenario, String template) {
+        // 工具循环中的每次模型调用都按完整请求检查上下文预算
+        AiServices<Assistant> builder = AiServices.builder(Assistant.class)
+                .chatModel(new BudgetedChatModel(chatModel, contextBudget, scenario))
+                .systemMessageProvider(ctx -> replaceVariables(template));
+        // 根据场景决定是否使用工具
+        if (shouldUseToolsForScenario(scenario)) {
+            builder.tools(budgetedTools(scenario));
+        }
+        return builder.build();
+    }
+    
+    private StreamingAssistant buildStreamingAssistant(String scenario, String template) {
+        AiServices<StreamingAssistant> builder = AiServices.builder(StreamingAssistant.class)
+                .streamingChatModel(new BudgetedStreamingChatModel(streamingChatModel, contextBudget, scenario))
+                .systemMessageProvider(ctx -> replaceVariables(template));
+        // 根据场景决定是否使用工具
+        if (shouldUseToolsForScenario(scenario)) {
+            logger.info("Creating streaming assistant for scenario: {} with tools", scenario);
+            builder.tools(budgetedTools(scenario));
+        } else {
+            logger.info("Creating streaming assistant for scenario: {} without tools", scenario);
+        }
+        return builder.build();
+    }
+    
+    /**
+     * 获取场景对应的助手
+     * 缓存中的助手与当前提示词版本一致时直接复用，否则使用当前版本重新构建。
+     * 助手持有构建时的模板，进行中的请求不受之后热更新的影响。
+     * 缓存按解析后的场景名存放，未知场景回退到默认场景时不会为客户端传入的任意名称各建一份
+     * @param factory 按(场景, 模板)构建助手
+     */
+    private <T> T resolveAssistant(Map<String, VersionedAssistant<T>> cache, String scenario,
+                                   BiFunction<String, String, T> factory) {
+        PromptTemplate prompt = promptRegistry.get(scenario);
+        VersionedAssistant<T> cached = cache.get(prompt.scenario());
+        if (cached != null && cached.version() == prompt.version()) {
+            return cached.assistant();
+        }
+        T assistant = factory.apply(prompt.scenario(), prompt.template());
+        cache.put(prompt.scenario(), new VersionedAssistant<>(prompt.version(), assistant));
+        return assistant;
+    }
+    
+    /**
+     * 解析客户端传入的场景名，未知场景回退到默认场景
+     * 助手缓存、上下文预算和知识库挂载都按解析后的场景名判断，与实际使用的提示词一致
+     */
+    private String resolveScenario(String scenario) {
+        String resolved = promptRegistry.get(scenario).scenario();
+        if (!resolved.equals(scenario)) {
+            logger.warn("Scenario '{}' not found, using default scenario", scenario);
+        }
+        return resolved;
     }
     
     /**
@@ -359,4 +741,10 @@ public class ChatService {
     interface StreamingAssistant {
         TokenStream chat(UserMessage message);
     }
+    
+    /**
+     * 带提示词版本的助手缓存项
+     */
+    private record VersionedAssistant<T>(long version, T assistant) {
+    }
 }
\ No newline at end of file
@@ -0,0 +1,77 @@
+package com.example.langchain4jdeepseek.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 流式会话统计
+ * 记录完成与取消的会话数，以及取消后节省的token估算
+ */
+@Component
+public class StreamingMetrics {
+
+    private final LongAdder completedStreams = new LongAdder();
+    private final LongAdder completedTokens = new LongAdder();
+    private final LongAdder cancelledStreams = new LongAdder();
+    private final Map<String, LongAdder> cancelledByReason = new ConcurrentHashMap<>();
+    private final LongAdder tokensStreamedBeforeCancel = new LongAdder();
+    private final LongAdder tokensDiscardedAfterCancel = new LongAdder();
+    private final LongAdder tokensSavedEstimate = new LongAdder();
+
+    /**
+     * 记录正常完成的会话
+     * @param tokens 会话输出的token数
+     */
+    public void recordCompleted(long tokens) {
+        completedStreams.increment();
+        completedTokens.add(tokens);
+    }
+
+    /**
+     * 记录被取消的会话
+     * 节省的token按已完成会话的平均输出长度减去已输出部分估算
+     * @param reason 取消原因
+     * @param tokensStreamed 取消前已输出的token数
+     */
+    public void recordCancelled(String reason, long tokensStreamed) {
+        cancelledStreams.increment();
+        cancelledByReason.computeIfAbsent(reason, k -> new LongAdder()).increment();
+        tokensStreamedBeforeCancel.add(tokensStreamed);
+
+        long completed = completedStreams.sum();
+        if (completed > 0) {
+            long averageTokens = completedTokens.sum() / completed;
+            tokensSavedEstimate.add(Math.max(0, averageTokens - tokensStreamed));
+        }
+    }
+
+    /**
+     * 记录取消后仍到达并被丢弃的token
+     */
+    public void recordDiscardedToken() {
+        tokensDiscardedAfterCancel.increment();
+    }
+
+    /**
+     * 获取统计快照
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("completedStreams", completedStreams.sum());
+        result.put("completedTokens", completedTokens.sum());
+        result.put("cancelledStreams", cancelledStreams.sum());
+
+        Map<String, Long> reasons = new LinkedHashMap<>();
+        cancelledByReason.forEach((reason, count) -> reasons.put(reason, count.sum()));
+        result.put("cancelledByReason", reasons);
+
+        result.put("tokensStreamedBeforeCancel", tokensStreamedBeforeCancel.sum());
+        result.put("tokensDiscardedAfterCancel", tokensDiscardedAfterCancel.sum());
+        result.put("tokensSavedEstimate", tokensSavedEstimate.sum());
+        return result;
+    }
+}
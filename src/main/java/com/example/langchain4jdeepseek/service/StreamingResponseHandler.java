@@ -1,6 +1,8 @@
 package com.example.langchain4jdeepseek.service;
 
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
 import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.service.tool.ToolExecution;
 
 /**
  * 流式响应处理器接口
@@ -14,6 +16,29 @@ public interface StreamingResponseHandler<T> {
      */
     void onNext(String token);
     
+    /**
+     * 处理工具开始执行事件，在工具线程上调用，实现不能阻塞
+     * @param request 工具调用请求
+     */
+    default void onToolStarted(ToolExecutionRequest request) {
+    }
+    
+    /**
+     * 处理工具执行过程中的增量输出，在工具线程上调用，实现不能阻塞
+     * @param request 正在执行的工具调用请求
+     * @param chunk 输出片段
+     */
+    default void onToolOutput(ToolExecutionRequest request, String chunk) {
+    }
+    
+    /**
+     * 处理工具执行完成事件，在工具线程上调用，实现不能阻塞
+     * @param execution 工具调用请求及结果
+     * @param durationMs 工具执行耗时（毫秒）
+     */
+    default void onToolExecuted(ToolExecution execution, long durationMs) {
+    }
+    
     /**
      * 处理完成事件
      * @param response 完整响应
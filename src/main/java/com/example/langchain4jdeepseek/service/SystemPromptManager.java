@@ -1,12 +1,11 @@
 package com.example.langchain4jdeepseek.service;
 
+import com.example.langchain4jdeepseek.prompt.PromptRegistry;
 import org.springframework.stereotype.Component;
-import org.springframework.core.io.ClassPathResource;
 import java.util.Map;
-import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 import java.time.LocalDateTime;
-import java.io.IOException;
 
 /**
  * 系统提示词动态管理器
@@ -15,64 +14,14 @@ import java.io.IOException;
 @Component
 public class SystemPromptManager {
     
-    // 存储不同场景的系统提示词模板
-    private final Map<String, String> promptTemplates = new HashMap<>();
+    // 统一的提示词注册表
+    private final PromptRegistry promptRegistry;
     
     // 存储动态变量
-    private final Map<String, String> dynamicVariables = new HashMap<>();
+    private final Map<String, String> dynamicVariables = new ConcurrentHashMap<>();
     
-    public SystemPromptManager() {
-        // 初始化默认的系统提示词模板
-        initializeDefaultTemplates();
-    }
-    
-    /**
-     * 初始化默认的系统提示词模板
-     */
-    private void initializeDefaultTemplates() {
-        // 首先加载默认场景，确保至少有一个可用的提示词
-        loadPromptFromFile("default");
-        
-        // 从文件加载其他场景的系统提示词模板
-        loadPromptFromFile("translator");
-        loadPromptFromFile("code_reviewer");
-        loadPromptFromFile("technical_writer");
-        loadPromptFromFile("customer_support");
-    }
-    
-    /**
-     * 从文件加载指定场景的提示词
-     * @param scenario 场景标识
-     */
-    private void loadPromptFromFile(String scenario) {
-        try {
-            ClassPathResource resource = new ClassPathResource("system-prompts/" + scenario + ".prompt");
-            if (resource.exists()) {
-                // 使用getInputStream()而不是getFile()，这样可以在JAR包中正常工作
-                String content = new String(resource.getInputStream().readAllBytes()).trim();
-                promptTemplates.put(scenario, content);
-            } else {
-                // 文件不存在时使用默认提示词
-                if ("default".equals(scenario)) {
-                    // 如果是默认文件不存在，使用硬编码的默认提示词
-                    promptTemplates.put(scenario, "You are a helpful AI assistant. Please provide accurate and helpful responses.");
-                } else {
-                    System.err.println("Prompt file not found for scenario: " + scenario + ", using default prompt");
-                    // 对于其他场景，使用默认提示词
-                    promptTemplates.put(scenario, promptTemplates.getOrDefault("default", "You are a helpful AI assistant."));
-                }
-            }
-        } catch (IOException e) {
-            // 如果文件读取失败，使用默认提示词
-            System.err.println("Failed to read prompt file for scenario: " + scenario + ", using default prompt. Error: " + e.getMessage());
-            if ("default".equals(scenario)) {
-                // 如果是默认文件读取失败，使用硬编码的默认提示词
-                promptTemplates.put(scenario, "You are a helpful AI assistant. Please provide accurate and helpful responses.");
-            } else {
-                // 对于其他场景，使用默认提示词
-                promptTemplates.put(scenario, promptTemplates.getOrDefault("default", "You are a helpful AI assistant."));
-            }
-        }
+    public SystemPromptManager(PromptRegistry promptRegistry) {
+        this.promptRegistry = promptRegistry;
     }
     
     /**
@@ -81,7 +30,7 @@ public class SystemPromptManager {
      * @return 系统提示词
      */
     public String getSystemPrompt(String scenario) {
-        String template = promptTemplates.getOrDefault(scenario, promptTemplates.get("default"));
+        String template = promptRegistry.get(scenario).template().trim();
         return replaceDynamicVariables(template);
     }
     
@@ -99,7 +48,7 @@ public class SystemPromptManager {
      * @param template 提示词模板
      */
     public void addPromptTemplate(String scenario, String template) {
-        promptTemplates.put(scenario, template);
+        promptRegistry.put(scenario, template);
     }
     
     /**
@@ -107,7 +56,7 @@ public class SystemPromptManager {
      * @param scenario 场景标识
      */
     public void removePromptTemplate(String scenario) {
-        promptTemplates.remove(scenario);
+        promptRegistry.remove(scenario);
     }
     
     /**
@@ -115,7 +64,7 @@ public class SystemPromptManager {
      * @return 场景列表
      */
     public List<String> getAvailableScenarios() {
-        return List.copyOf(promptTemplates.keySet());
+        return List.copyOf(promptRegistry.snapshot().keySet());
     }
     
     /**
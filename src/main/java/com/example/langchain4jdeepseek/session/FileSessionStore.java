@@ -0,0 +1,350 @@
+package com.example.langchain4jdeepseek.session;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * 基于共享目录的会话状态存储
+ * 各节点挂载同一个目录即可共享状态：每个会话一个元数据文件和一个只追加的内容文件，
+ * 元数据、场景和变量文件先写临时文件再原子替换，变量的合并通过文件锁串行化。
+ * 已结束的会话保留一段时间供其他节点查询；长时间没有更新的进行中会话视为所在节点已退出，由后台任务清理
+ */
+public class FileSessionStore implements SessionStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileSessionStore.class);
+
+    private static final String META_SUFFIX = ".json";
+    private static final String CONTENT_SUFFIX = ".txt";
+    private static final String SCENARIO_FILE = "scenario.txt";
+    private static final String VARIABLES_FILE = "variables.json";
+    private static final String VARIABLES_LOCK_FILE = "variables.lock";
+
+    // 可以直接作为文件名的会话ID，其他ID使用摘要
+    private static final Pattern SAFE_ID = Pattern.compile("[A-Za-z0-9_-]{1,100}");
+
+    private final Path directory;
+    private final Path streamsDirectory;
+    private final long endedRetentionMillis;
+    private final long staleMillis;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ScheduledExecutorService maintenance;
+
+    private final LongAdder diskReads = new LongAdder();
+    private final LongAdder diskWrites = new LongAdder();
+    private final LongAdder expiredStreams = new LongAdder();
+
+    // 场景和变量按文件版本缓存，文件未被替换时不重新读取
+    private volatile Cached<String> scenarioCache;
+    private volatile Cached<Map<String, String>> variablesCache;
+
+    public FileSessionStore(Path directory, long endedRetentionMillis, long staleMillis,
+                            long maintenanceIntervalMillis) throws IOException {
+        this.directory = directory;
+        this.streamsDirectory = directory.resolve("streams");
+        this.endedRetentionMillis = endedRetentionMillis;
+        this.staleMillis = staleMillis;
+        Files.createDirectories(streamsDirectory);
+        this.maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "session-store-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        maintenance.scheduleWithFixedDelay(this::expire,
+                maintenanceIntervalMillis, maintenanceIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void startStream(String sessionId, String scenario, String message) {
+        try {
+            Files.deleteIfExists(contentPath(sessionId));
+            writeMeta(sessionId, scenario, message, STATUS_ACTIVE);
+        } catch (IOException e) {
+            logger.error("Failed to start stream {} in session store", sessionId, e);
+        }
+    }
+
+    @Override
+    public void appendStream(String sessionId, String text) {
+        if (!Files.exists(metaPath(sessionId))) {
+            return;
+        }
+        try {
+            Files.write(contentPath(sessionId), text.getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            diskWrites.increment();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to append stream " + sessionId, e);
+        }
+    }
+
+    @Override
+    public void endStream(String sessionId, String status) {
+        try {
+            if (endedRetentionMillis <= 0) {
+                delete(sessionId);
+                return;
+            }
+            Map<String, Object> meta = readMeta(metaPath(sessionId));
+            if (meta != null) {
+                writeMeta(sessionId, (String) meta.get("scenario"), (String) meta.get("message"), status);
+            }
+        } catch (IOException e) {
+            logger.error("Failed to end stream {} in session store", sessionId, e);
+        }
+    }
+
+    @Override
+    public StreamSession getStream(String sessionId) {
+        try {
+            Map<String, Object> meta = readMeta(metaPath(sessionId));
+            if (meta == null) {
+                return null;
+            }
+            String content;
+            try {
+                content = Files.readString(contentPath(sessionId), StandardCharsets.UTF_8);
+            } catch (NoSuchFileException e) {
+                content = "";
+            }
+            return new StreamSession((String) meta.get("scenario"), (String) meta.get("message"), content,
+                    (String) meta.get("status"));
+        } catch (IOException e) {
+            logger.error("Failed to read stream {} from session store", sessionId, e);
+            return null;
+        }
+    }
+
+    @Override
+    public String getScenario() {
+        Path path = directory.resolve(SCENARIO_FILE);
+        try {
+            String version = fileVersion(path);
+            Cached<String> cached = scenarioCache;
+            if (cached != null && cached.version.equals(version)) {
+                return cached.value;
+            }
+            String scenario = version.isEmpty() ? "default" : Files.readString(path, StandardCharsets.UTF_8);
+            diskReads.increment();
+            scenarioCache = new Cached<>(version, scenario);
+            return scenario;
+        } catch (IOException e) {
+            logger.warn("Failed to read current scenario from session store: {}", e.getMessage());
+            Cached<String> cached = scenarioCache;
+            return cached != null ? cached.value : "default";
+        }
+    }
+
+    @Override
+    public void setScenario(String scenario) {
+        if (scenario.equals(getScenario())) {
+            return;
+        }
+        try {
+            writeAtomically(directory.resolve(SCENARIO_FILE), scenario.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            logger.warn("Failed to write current scenario to session store: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public Map<String, String> getVariables() {
+        try {
+            return new HashMap<>(readVariables());
+        } catch (IOException e) {
+            logger.warn("Failed to read variables from session store: {}", e.getMessage());
+            Cached<Map<String, String>> cached = variablesCache;
+            return cached != null ? new HashMap<>(cached.value) : new HashMap<>();
+        }
+    }
+
+    /**
+     * 文件锁在节点之间串行化合并，同一进程内的并发调用由方法锁串行化
+     */
+    @Override
+    public synchronized void putVariables(Map<String, String> variables) {
+        try (FileChannel lockChannel = FileChannel.open(directory.resolve(VARIABLES_LOCK_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            FileLock lock = lockChannel.lock();
+            try {
+                Map<String, String> merged = new HashMap<>(readVariables());
+                merged.putAll(variables);
+                writeAtomically(directory.resolve(VARIABLES_FILE), objectMapper.writeValueAsBytes(merged));
+            } finally {
+                lock.release();
+            }
+        } catch (IOException e) {
+            logger.error("Failed to write variables to session store", e);
+        }
+    }
+
+    @Override
+    public Map<String, Object> snapshot() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("type", "file");
+        stats.put("directory", directory.toAbsolutePath().toString());
+        stats.put("diskReads", diskReads.sum());
+        stats.put("diskWrites", diskWrites.sum());
+        stats.put("expiredStreams", expiredStreams.sum());
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        maintenance.shutdownNow();
+    }
+
+    /**
+     * 删除保留期已过的已结束会话和长时间没有更新的进行中会话
+     */
+    private void expire() {
+        long now = System.currentTimeMillis();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(streamsDirectory, "*" + META_SUFFIX)) {
+            for (Path metaPath : stream) {
+                Map<String, Object> meta = readMeta(metaPath);
+                if (meta == null) {
+                    continue;
+                }
+                String sessionId = (String) meta.get("sessionId");
+                long updatedAt = ((Number) meta.get("updatedAt")).longValue();
+                if (STATUS_ACTIVE.equals(meta.get("status"))) {
+                    updatedAt = Math.max(updatedAt, lastModified(contentPath(sessionId)));
+                    if (now - updatedAt < staleMillis) {
+                        continue;
+                    }
+                } else if (now - updatedAt < endedRetentionMillis) {
+                    continue;
+                }
+                delete(sessionId);
+                expiredStreams.increment();
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Failed to expire streams in session store: {}", e.getMessage());
+        }
+    }
+
+    private Map<String, String> readVariables() throws IOException {
+        Path path = directory.resolve(VARIABLES_FILE);
+        String version = fileVersion(path);
+        Cached<Map<String, String>> cached = variablesCache;
+        if (cached != null && cached.version.equals(version)) {
+            return cached.value;
+        }
+        Map<String, String> variables = version.isEmpty() ? Map.of()
+                : Map.copyOf(objectMapper.readValue(path.toFile(), new TypeReference<Map<String, String>>() {}));
+        diskReads.increment();
+        variablesCache = new Cached<>(version, variables);
+        return variables;
+    }
+
+    private Map<String, Object> readMeta(Path path) throws IOException {
+        try {
+            byte[] bytes = Files.readAllBytes(path);
+            diskReads.increment();
+            return objectMapper.readValue(bytes, new TypeReference<Map<String, Object>>() {});
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private void writeMeta(String sessionId, String scenario, String message, String status) throws IOException {
+        Map<String, Object> meta = new LinkedHashMap<>();
+        meta.put("sessionId", sessionId);
+        meta.put("scenario", scenario);
+        meta.put("message", message);
+        meta.put("status", status);
+        meta.put("updatedAt", System.currentTimeMillis());
+        writeAtomically(metaPath(sessionId), objectMapper.writeValueAsBytes(meta));
+    }
+
+    /**
+     * 先写入同目录的临时文件再原子替换，其他节点不会读到写了一半的文件
+     */
+    private void writeAtomically(Path path, byte[] bytes) throws IOException {
+        Path temp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temp, bytes);
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            diskWrites.increment();
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private void delete(String sessionId) throws IOException {
+        Files.deleteIfExists(metaPath(sessionId));
+        Files.deleteIfExists(contentPath(sessionId));
+    }
+
+    private Path metaPath(String sessionId) {
+        return streamsDirectory.resolve(fileName(sessionId) + META_SUFFIX);
+    }
+
+    private Path contentPath(String sessionId) {
+        return streamsDirectory.resolve(fileName(sessionId) + CONTENT_SUFFIX);
+    }
+
+    private static String fileName(String sessionId) {
+        if (SAFE_ID.matcher(sessionId).matches()) {
+            return sessionId;
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(sessionId.getBytes(StandardCharsets.UTF_8));
+            return "h" + HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 文件的修改时间，不存在时返回0
+     */
+    private static long lastModified(Path path) throws IOException {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class).lastModifiedTime().toMillis();
+        } catch (NoSuchFileException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * 文件的版本，由修改时间和文件标识组成，原子替换后文件标识随之变化；不存在时返回空字符串
+     */
+    private static String fileVersion(Path path) throws IOException {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            return attributes.lastModifiedTime().toMillis() + ":" + attributes.fileKey();
+        } catch (NoSuchFileException e) {
+            return "";
+        }
+    }
+
+    private record Cached<T>(String version, T value) {
+    }
+}
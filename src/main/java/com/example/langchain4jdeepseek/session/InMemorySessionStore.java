@@ -0,0 +1,91 @@
+package com.example.langchain4jdeepseek.session;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 进程内的会话状态存储，只能由处理会话的节点查询
+ * 已结束的会话直接移除
+ */
+public class InMemorySessionStore implements SessionStore {
+
+    private final Map<String, Session> streams = new ConcurrentHashMap<>();
+    private final Map<String, String> variables = new ConcurrentHashMap<>();
+
+    private volatile String scenario = "default";
+
+    @Override
+    public void startStream(String sessionId, String scenario, String message) {
+        streams.put(sessionId, new Session(scenario, message));
+    }
+
+    @Override
+    public void appendStream(String sessionId, String text) {
+        Session session = streams.get(sessionId);
+        if (session != null) {
+            synchronized (session.content) {
+                session.content.append(text);
+            }
+        }
+    }
+
+    @Override
+    public void endStream(String sessionId, String status) {
+        streams.remove(sessionId);
+    }
+
+    @Override
+    public StreamSession getStream(String sessionId) {
+        Session session = streams.get(sessionId);
+        if (session == null) {
+            return null;
+        }
+        String content;
+        synchronized (session.content) {
+            content = session.content.toString();
+        }
+        return new StreamSession(session.scenario, session.message, content, STATUS_ACTIVE);
+    }
+
+    @Override
+    public String getScenario() {
+        return scenario;
+    }
+
+    @Override
+    public void setScenario(String scenario) {
+        this.scenario = scenario;
+    }
+
+    @Override
+    public Map<String, String> getVariables() {
+        return new HashMap<>(variables);
+    }
+
+    @Override
+    public void putVariables(Map<String, String> variables) {
+        this.variables.putAll(variables);
+    }
+
+    @Override
+    public Map<String, Object> snapshot() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("type", "memory");
+        stats.put("streams", streams.size());
+        stats.put("variables", variables.size());
+        return stats;
+    }
+
+    private static final class Session {
+        final String scenario;
+        final String message;
+        final StringBuilder content = new StringBuilder();
+
+        Session(String scenario, String message) {
+            this.scenario = scenario;
+            this.message = message;
+        }
+    }
+}
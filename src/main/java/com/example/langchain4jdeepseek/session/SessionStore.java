@@ -0,0 +1,83 @@
+package com.example.langchain4jdeepseek.session;
+
+import java.util.Map;
+
+/**
+ * 会话状态存储
+ * 保存进行中流式会话的内容、当前场景和动态变量。默认实现在进程内存中；
+ * 共享实现让多个节点读写同一份状态，任一节点都能查询其他节点上进行中的会话，负载均衡不需要会话保持
+ */
+public interface SessionStore {
+
+    String STATUS_ACTIVE = "active";
+
+    /**
+     * 开始一个流式会话
+     * @param sessionId 会话ID
+     * @param scenario 场景
+     * @param message 用户消息
+     */
+    void startStream(String sessionId, String scenario, String message);
+
+    /**
+     * 向会话内容追加文本，会话不存在时忽略
+     * 共享实现写入失败时抛出UncheckedIOException，调用方可保留文本稍后重试
+     * @param sessionId 会话ID
+     * @param text 追加的文本
+     */
+    void appendStream(String sessionId, String text);
+
+    /**
+     * 结束会话
+     * 实现可以保留已结束的会话一段时间，供其他节点查询结果
+     * @param sessionId 会话ID
+     * @param status 结束状态，如completed、cancelled、error
+     */
+    void endStream(String sessionId, String status);
+
+    /**
+     * 获取会话
+     * @param sessionId 会话ID
+     * @return 会话，不存在时返回null
+     */
+    StreamSession getStream(String sessionId);
+
+    /**
+     * 获取最近一次请求使用的场景，未设置时为default
+     */
+    String getScenario();
+
+    void setScenario(String scenario);
+
+    /**
+     * 获取提示词中替换的动态变量
+     */
+    Map<String, String> getVariables();
+
+    /**
+     * 合并动态变量，已有的同名变量被覆盖
+     */
+    void putVariables(Map<String, String> variables);
+
+    /**
+     * 获取存储统计
+     */
+    Map<String, Object> snapshot();
+
+    /**
+     * 关闭存储，写入尚未持久化的内容
+     */
+    default void close() {
+    }
+
+    /**
+     * 流式会话的内容
+     * @param status 进行中为active，已结束时为结束状态
+     */
+    record StreamSession(String scenario, String message, String content, String status) {
+
+        public boolean isActive() {
+            return STATUS_ACTIVE.equals(status);
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.example.langchain4jdeepseek.session;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 会话内容的延迟写入
+ * 流式token先追加到本节点的缓冲区，由后台任务按时间间隔或缓冲字符数合并后一次写入底层存储，
+ * 每个token只做一次内存追加，不访问存储。本节点查询会话时合并尚未写入的缓冲区；
+ * 其他节点看到的内容最多落后一个刷新间隔。其余操作直接委托给底层存储
+ */
+public class WriteBehindSessionStore implements SessionStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(WriteBehindSessionStore.class);
+
+    private final SessionStore delegate;
+    private final int flushMaxChars;
+
+    private final Map<String, PendingContent> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher;
+
+    private final LongAdder appends = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder flushedChars = new LongAdder();
+    private final LongAdder flushFailures = new LongAdder();
+    private final LongAdder deferredEnds = new LongAdder();
+
+    public WriteBehindSessionStore(SessionStore delegate, long flushIntervalMillis, int flushMaxChars) {
+        this.delegate = delegate;
+        this.flushMaxChars = flushMaxChars;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "session-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushAll, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void startStream(String sessionId, String scenario, String message) {
+        delegate.startStream(sessionId, scenario, message);
+        pending.put(sessionId, new PendingContent());
+    }
+
+    /**
+     * 追加到缓冲区，缓冲字符数达到上限时提交一次后台刷新
+     */
+    @Override
+    public void appendStream(String sessionId, String text) {
+        PendingContent content = pending.get(sessionId);
+        if (content == null) {
+            return;
+        }
+        appends.increment();
+        boolean scheduleFlush;
+        synchronized (content) {
+            content.buffer.append(text);
+            scheduleFlush = content.buffer.length() >= flushMaxChars && !content.flushScheduled;
+            if (scheduleFlush) {
+                content.flushScheduled = true;
+            }
+        }
+        if (scheduleFlush) {
+            flusher.execute(() -> flush(sessionId));
+        }
+    }
+
+    /**
+     * 先写入缓冲区中剩余的内容再结束会话
+     * 写入失败时保留缓冲区和结束状态，由后台刷新重试，写入成功后再结束会话，避免丢失最后一段内容
+     */
+    @Override
+    public void endStream(String sessionId, String status) {
+        PendingContent content = pending.get(sessionId);
+        if (content == null) {
+            delegate.endStream(sessionId, status);
+            return;
+        }
+        content.endStatus = status;
+        if (!finishIfEnded(sessionId, content)) {
+            deferredEnds.increment();
+        }
+    }
+
+    @Override
+    public StreamSession getStream(String sessionId) {
+        PendingContent content = pending.get(sessionId);
+        if (content == null) {
+            return delegate.getStream(sessionId);
+        }
+        // 持有刷新锁，避免读到已从缓冲区取出但尚未写入存储的内容
+        synchronized (content.flushLock) {
+            StreamSession session = delegate.getStream(sessionId);
+            if (session == null) {
+                return null;
+            }
+            String endStatus = content.endStatus;
+            synchronized (content) {
+                if (content.buffer.isEmpty() && endStatus == null) {
+                    return session;
+                }
+                return new StreamSession(session.scenario(), session.message(), session.content() + content.buffer,
+                        endStatus != null ? endStatus : session.status());
+            }
+        }
+    }
+
+    @Override
+    public String getScenario() {
+        return delegate.getScenario();
+    }
+
+    @Override
+    public void setScenario(String scenario) {
+        delegate.setScenario(scenario);
+    }
+
+    @Override
+    public Map<String, String> getVariables() {
+        return delegate.getVariables();
+    }
+
+    @Override
+    public void putVariables(Map<String, String> variables) {
+        delegate.putVariables(variables);
+    }
+
+    @Override
+    public Map<String, Object> snapshot() {
+        long pendingChars = 0;
+        for (PendingContent content : pending.values()) {
+            synchronized (content) {
+                pendingChars += content.buffer.length();
+            }
+        }
+        Map<String, Object> writeBehind = new LinkedHashMap<>();
+        writeBehind.put("pendingStreams", pending.size());
+        writeBehind.put("pendingChars", pendingChars);
+        writeBehind.put("appends", appends.sum());
+        writeBehind.put("flushes", flushes.sum());
+        writeBehind.put("flushedChars", flushedChars.sum());
+        writeBehind.put("flushFailures", flushFailures.sum());
+        writeBehind.put("deferredEnds", deferredEnds.sum());
+
+        Map<String, Object> stats = new LinkedHashMap<>(delegate.snapshot());
+        stats.put("writeBehind", writeBehind);
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushAll();
+        // 停止前仍无法写入的已结束会话只记录结束状态，缓冲的内容丢失
+        for (Map.Entry<String, PendingContent> entry : pending.entrySet()) {
+            PendingContent content = entry.getValue();
+            if (content.endStatus != null && pending.remove(entry.getKey(), content)) {
+                logger.warn("Dropping {} unflushed chars of ended stream {}", content.buffer.length(), entry.getKey());
+                delegate.endStream(entry.getKey(), content.endStatus);
+            }
+        }
+        delegate.close();
+    }
+
+    private void flushAll() {
+        for (Map.Entry<String, PendingContent> entry : pending.entrySet()) {
+            if (entry.getValue().endStatus != null) {
+                finishIfEnded(entry.getKey(), entry.getValue());
+            } else {
+                flush(entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * 写入已结束会话的剩余内容，成功后结束会话并移除缓冲区
+     * @return true表示会话已结束
+     */
+    private boolean finishIfEnded(String sessionId, PendingContent content) {
+        if (!flush(sessionId)) {
+            return false;
+        }
+        if (pending.remove(sessionId, content)) {
+            delegate.endStream(sessionId, content.endStatus);
+        }
+        return true;
+    }
+
+    /**
+     * 将会话缓冲区的内容一次写入底层存储，失败时放回缓冲区头部等待下次刷新
+     * @return true表示缓冲区已全部写入
+     */
+    private boolean flush(String sessionId) {
+        PendingContent content = pending.get(sessionId);
+        if (content == null) {
+            return true;
+        }
+        synchronized (content.flushLock) {
+            String text;
+            synchronized (content) {
+                content.flushScheduled = false;
+                if (content.buffer.isEmpty()) {
+                    return true;
+                }
+                text = content.buffer.toString();
+                content.buffer.setLength(0);
+            }
+            try {
+                delegate.appendStream(sessionId, text);
+                flushes.increment();
+                flushedChars.add(text.length());
+                return true;
+            } catch (RuntimeException e) {
+                flushFailures.increment();
+                logger.warn("Failed to flush {} chars of stream {}, will retry: {}", text.length(), sessionId, e.getMessage());
+                synchronized (content) {
+                    content.buffer.insert(0, text);
+                }
+                return false;
+            }
+        }
+    }
+
+    /**
+     * 会话尚未写入的内容
+     * 缓冲区由对象自身的锁保护，token追加只竞争这把锁；flushLock串行化刷新和读取，持有期间可能访问存储
+     */
+    private static final class PendingContent {
+        final StringBuilder buffer = new StringBuilder();
+        final Object flushLock = new Object();
+        boolean flushScheduled;
+        // 会话已结束但剩余内容尚未写入时的结束状态
+        volatile String endStatus;
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.langchain4jdeepseek.sse;
+
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * 自行序列化为字节的编码基类，负责压缩和发送
+ */
+public abstract class ByteStreamEncoder implements StreamEncoder {
+
+    private final StreamCompression.Compressor compressor;
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+    private boolean finished;
+
+    protected ByteStreamEncoder(StreamCompression compression) {
+        this.compressor = compression.newCompressor();
+    }
+
+    @Override
+    public void write(ResponseBodyEmitter emitter, StreamEvent event, long sequence) throws IOException {
+        send(emitter, encode(event, sequence));
+    }
+
+    @Override
+    public void heartbeat(ResponseBodyEmitter emitter) throws IOException {
+        checkNotFinished();
+        buffer.reset();
+        renderHeartbeat(buffer);
+        send(emitter, compressor.compress(buffer.toByteArray()));
+    }
+
+    @Override
+    public void finish(ResponseBodyEmitter emitter) throws IOException {
+        send(emitter, finish());
+    }
+
+    @Override
+    public void release() {
+        finished = true;
+        compressor.release();
+    }
+
+    @Override
+    public boolean batchesTokens() {
+        return true;
+    }
+
+    /**
+     * 序列化并压缩一个事件
+     * @return 可以直接写出的字节
+     */
+    public byte[] encode(StreamEvent event, long sequence) throws IOException {
+        checkNotFinished();
+        buffer.reset();
+        render(event, sequence, buffer);
+        return compressor.compress(buffer.toByteArray());
+    }
+
+    /**
+     * 结束压缩流，返回剩余字节；重复调用返回空数组
+     */
+    public byte[] finish() throws IOException {
+        if (finished) {
+            return new byte[0];
+        }
+        finished = true;
+        return compressor.finish();
+    }
+
+    private void checkNotFinished() throws IOException {
+        if (finished) {
+            throw new IOException("Stream encoder already finished");
+        }
+    }
+
+    protected abstract void render(StreamEvent event, long sequence, ByteArrayOutputStream out) throws IOException;
+
+    protected abstract void renderHeartbeat(ByteArrayOutputStream out) throws IOException;
+
+    private static void send(ResponseBodyEmitter emitter, byte[] bytes) throws IOException {
+        if (bytes.length > 0) {
+            emitter.send(bytes);
+        }
+    }
+}
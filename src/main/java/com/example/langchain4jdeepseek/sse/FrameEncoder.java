@@ -0,0 +1,76 @@
+package com.example.langchain4jdeepseek.sse;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * 长度前缀的二进制帧格式（版本1）
+ * 每帧为：长度(4字节，大端，不含自身) + 类型(1字节) + 序号(4字节，大端) + 负载。
+ * 会话ID、token和完成事件的负载是UTF-8文本，工具、用量和错误事件的负载是JSON对象；心跳为类型0、序号0的空帧
+ */
+public class FrameEncoder extends ByteStreamEncoder {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final int HEADER_SIZE = 5;
+
+    private final ByteArrayOutputStream payload = new ByteArrayOutputStream(256);
+
+    public FrameEncoder(StreamCompression compression) {
+        super(compression);
+    }
+
+    @Override
+    protected void render(StreamEvent event, long sequence, ByteArrayOutputStream out) throws IOException {
+        payload.reset();
+        if (isText(event.type())) {
+            if (event.content() != null) {
+                payload.writeBytes(event.content().getBytes(StandardCharsets.UTF_8));
+            }
+        } else {
+            try (JsonGenerator json = JSON_FACTORY.createGenerator(payload, JsonEncoding.UTF8)) {
+                json.writeStartObject();
+                if (event.content() != null) {
+                    json.writeStringField("c", event.content());
+                }
+                for (Map.Entry<String, Object> field : event.fields().entrySet()) {
+                    json.writeObjectField(field.getKey(), field.getValue());
+                }
+                json.writeEndObject();
+            }
+        }
+        writeFrame(out, event.type().code(), sequence, payload);
+    }
+
+    @Override
+    protected void renderHeartbeat(ByteArrayOutputStream out) throws IOException {
+        writeFrame(out, StreamEvent.Type.PING.code(), 0, null);
+    }
+
+    private static boolean isText(StreamEvent.Type type) {
+        return type == StreamEvent.Type.SESSION || type == StreamEvent.Type.TOKEN || type == StreamEvent.Type.COMPLETE;
+    }
+
+    private static void writeFrame(ByteArrayOutputStream out, int type, long sequence, ByteArrayOutputStream body)
+            throws IOException {
+        int length = HEADER_SIZE + (body == null ? 0 : body.size());
+        writeInt(out, length);
+        out.write(type);
+        writeInt(out, (int) sequence);
+        if (body != null) {
+            body.writeTo(out);
+        }
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+}
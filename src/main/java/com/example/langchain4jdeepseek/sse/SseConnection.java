@@ -0,0 +1,377 @@
+package com.example.langchain4jdeepseek.sse;
+
+import com.example.langchain4jdeepseek.resilience.SharedScheduler;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * 已登记的流式连接
+ * 记录创建时间、最近一次写出和最近一次数据事件的时间，供注册表判断心跳和超时。
+ * 事件经编码器写出并分配递增序号；编码器支持时，相邻token在达到字符数或等待时间上限前合并发送。
+ * 工具线程上的事件通过post()放入发件队列后立即返回，由注册表的发送线程写出；
+ * 之后的同步发送会先写出队列中的事件，保持事件顺序。
+ * 注册表线程池上的心跳、发件队列和重连提示只尝试获取写锁，连接正在写出时跳过或稍后重试，
+ * 慢客户端不会让这些共享线程排队等锁
+ */
+public class SseConnection {
+
+    private final String id;
+    private final ResponseBodyEmitter emitter;
+    private final StreamEncoder encoder;
+    private final String clientKey;
+    private final String scenario;
+    private final long createdAt;
+    private final long expiresAt;
+    private final Consumer<String> onClose;
+    private final BiConsumer<SseConnection, String> onSendFailure;
+    private final BiConsumer<SseConnection, String> onCompleted;
+    private final int batchMaxChars;
+    private final long batchMaxDelayMs;
+    private final AtomicBoolean closed = new AtomicBoolean();
+    // 已提交尚未发送的心跳，避免慢连接堆积心跳任务
+    private final AtomicBoolean heartbeatPending = new AtomicBoolean();
+    // 已提交的重连提示，连接只提示一次
+    private final AtomicBoolean reconnectPending = new AtomicBoolean();
+
+    // 工具事件的发件队列，队列过长时丢弃工具输出片段
+    private final Queue<StreamEvent> outbox = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger outboxSize = new AtomicInteger();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private final Executor dispatcher;
+    private final int maxQueuedEvents;
+    private final LongAdder droppedEvents;
+
+    // 写锁，以下字段由其保护
+    private final ReentrantLock lock = new ReentrantLock();
+    private final StringBuilder pendingTokens = new StringBuilder();
+    private boolean flushScheduled;
+    private boolean released;
+    private long sequence;
+
+    // 最近一次写出（含心跳）和最近一次数据事件的时间（毫秒）
+    private volatile long lastWriteAt;
+    private volatile long lastDataAt;
+
+    SseConnection(String id, ResponseBodyEmitter emitter, StreamEncoder encoder, String clientKey, String scenario,
+                  long createdAt, long expiresAt, int batchMaxChars, long batchMaxDelayMs,
+                  Executor dispatcher, int maxQueuedEvents, LongAdder droppedEvents,
+                  Consumer<String> onClose, BiConsumer<SseConnection, String> onSendFailure,
+                  BiConsumer<SseConnection, String> onCompleted) {
+        this.id = id;
+        this.emitter = emitter;
+        this.encoder = encoder;
+        this.clientKey = clientKey;
+        this.scenario = scenario;
+        this.createdAt = createdAt;
+        this.expiresAt = expiresAt;
+        this.batchMaxChars = encoder.batchesTokens() ? batchMaxChars : 0;
+        this.batchMaxDelayMs = batchMaxDelayMs;
+        this.dispatcher = dispatcher;
+        this.maxQueuedEvents = maxQueuedEvents;
+        this.droppedEvents = droppedEvents;
+        this.onClose = onClose;
+        this.onSendFailure = onSendFailure;
+        this.onCompleted = onCompleted;
+        this.lastWriteAt = createdAt;
+        this.lastDataAt = createdAt;
+    }
+
+    /**
+     * 发送事件，token可能先缓冲再合并发送
+     * @throws IOException 客户端不可达
+     */
+    public void send(StreamEvent event) throws IOException {
+        lock.lock();
+        try {
+            // 服务端关闭后到达的事件直接丢弃
+            if (closed.get()) {
+                return;
+            }
+            lastDataAt = System.currentTimeMillis();
+            flushOutbox();
+            if (event.type() == StreamEvent.Type.TOKEN && batchMaxChars > 0) {
+                pendingTokens.append(event.content());
+                if (pendingTokens.length() >= batchMaxChars) {
+                    flushTokens();
+                } else if (!flushScheduled) {
+                    flushScheduled = true;
+                    SharedScheduler.schedule(this::scheduledFlush, batchMaxDelayMs);
+                }
+                return;
+            }
+            flushTokens();
+            write(event);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 异步发送事件，不阻塞调用线程，适用于工具线程上的进度事件
+     * 队列超过上限时丢弃工具输出片段，工具开始和结束事件总是保留
+     */
+    public void post(StreamEvent event) {
+        if (closed.get()) {
+            return;
+        }
+        if (event.type() == StreamEvent.Type.TOOL_OUTPUT && outboxSize.get() >= maxQueuedEvents) {
+            droppedEvents.increment();
+            return;
+        }
+        outbox.add(event);
+        outboxSize.incrementAndGet();
+        lastDataAt = System.currentTimeMillis();
+        if (drainScheduled.compareAndSet(false, true)) {
+            dispatcher.execute(this::drainOutbox);
+        }
+    }
+
+    /**
+     * 发送最后一个事件并结束编码，如写出压缩流的尾部
+     */
+    public void sendLast(StreamEvent event) throws IOException {
+        lock.lock();
+        try {
+            if (closed.get()) {
+                return;
+            }
+            send(event);
+            encoder.finish(emitter);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 由服务端正常结束响应，如生成完成或出错后已发送最后一个事件。
+     * 之后容器的完成回调不再视为客户端断开，也不触发关闭回调
+     * @param reason 结束原因，如completed、error
+     * @param error 以错误结束时的异常，为null时正常完成
+     */
+    public void complete(String reason, Throwable error) {
+        if (closed.compareAndSet(false, true)) {
+            onCompleted.accept(this, reason);
+        }
+        if (error != null) {
+            emitter.completeWithError(error);
+        } else {
+            emitter.complete();
+        }
+        releaseEncoder();
+    }
+
+    /**
+     * 发送心跳，不计入数据活动；连接正在写出时跳过
+     * @return true表示已写出心跳
+     */
+    boolean heartbeat() throws IOException {
+        try {
+            if (!lock.tryLock()) {
+                return false;
+            }
+            try {
+                if (closed.get()) {
+                    return false;
+                }
+                encoder.heartbeat(emitter);
+                lastWriteAt = System.currentTimeMillis();
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            heartbeatPending.set(false);
+        }
+    }
+
+    boolean markHeartbeatPending() {
+        return heartbeatPending.compareAndSet(false, true);
+    }
+
+    boolean markReconnectPending() {
+        return reconnectPending.compareAndSet(false, true);
+    }
+
+    private void write(StreamEvent event) throws IOException {
+        encoder.write(emitter, event, ++sequence);
+        lastWriteAt = System.currentTimeMillis();
+    }
+
+    /**
+     * 写出发件队列中的事件，先写出缓冲的token以保持顺序
+     */
+    private void flushOutbox() throws IOException {
+        if (outbox.isEmpty()) {
+            return;
+        }
+        flushTokens();
+        StreamEvent event;
+        while ((event = outbox.poll()) != null) {
+            outboxSize.decrementAndGet();
+            write(event);
+        }
+    }
+
+    private void drainOutbox() {
+        if (!lock.tryLock()) {
+            // 连接正在写出，稍后重试，不占用发送线程等锁
+            SharedScheduler.schedule(() -> dispatcher.execute(this::drainOutbox), batchMaxDelayMs);
+            return;
+        }
+        try {
+            drainScheduled.set(false);
+            if (closed.get()) {
+                return;
+            }
+            flushOutbox();
+            return;
+        } catch (IOException | IllegalStateException e) {
+            // 在锁外处理发送失败
+        } finally {
+            lock.unlock();
+        }
+        onSendFailure.accept(this, "send_failure");
+    }
+
+    private void flushTokens() throws IOException {
+        if (pendingTokens.length() == 0) {
+            return;
+        }
+        String tokens = pendingTokens.toString();
+        pendingTokens.setLength(0);
+        write(StreamEvent.token(tokens));
+    }
+
+    private void scheduledFlush() {
+        if (!lock.tryLock()) {
+            // 连接正在写出，稍后重试，不阻塞共享的定时线程
+            SharedScheduler.schedule(this::scheduledFlush, batchMaxDelayMs);
+            return;
+        }
+        try {
+            flushScheduled = false;
+            if (closed.get()) {
+                return;
+            }
+            flushTokens();
+            return;
+        } catch (IOException | IllegalStateException e) {
+            // 在锁外处理发送失败
+        } finally {
+            lock.unlock();
+        }
+        onSendFailure.accept(this, "send_failure");
+    }
+
+    /**
+     * 由服务端关闭连接：先通知持有者（如取消上游生成），再写出最后一个事件并结束响应
+     * @param lastEvent 结束前发送的事件，如重连提示，为null时不发送
+     * @return true表示本次调用关闭了连接
+     */
+    boolean close(String reason, StreamEvent lastEvent) {
+        if (!closed.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            onClose.accept(reason);
+            if (lastEvent != null) {
+                writeLast(lastEvent);
+            }
+        } finally {
+            emitter.complete();
+            releaseEncoder();
+        }
+        return true;
+    }
+
+    /**
+     * 写出最后一个事件并结束编码；连接正在写出时放弃该事件，直接结束响应
+     */
+    private void writeLast(StreamEvent event) {
+        if (!lock.tryLock()) {
+            return;
+        }
+        try {
+            flushTokens();
+            write(event);
+            encoder.finish(emitter);
+        } catch (IOException | IllegalStateException e) {
+            // 客户端已不可达，直接结束响应
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 连接结束后释放编码器，如压缩器的本地内存，只释放一次；
+     * 连接正在写出时稍后重试，不阻塞调用线程
+     */
+    void releaseEncoder() {
+        if (!lock.tryLock()) {
+            SharedScheduler.schedule(this::releaseEncoder, batchMaxDelayMs);
+            return;
+        }
+        try {
+            if (!released) {
+                released = true;
+                pendingTokens.setLength(0);
+                encoder.release();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 标记连接已由容器或客户端结束
+     */
+    boolean markClosed() {
+        return closed.compareAndSet(false, true);
+    }
+
+    void notifyClosed(String reason) {
+        onClose.accept(reason);
+    }
+
+    public boolean isClosed() {
+        return closed.get();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getClientKey() {
+        return clientKey;
+    }
+
+    public String getScenario() {
+        return scenario;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    long getExpiresAt() {
+        return expiresAt;
+    }
+
+    long getLastWriteAt() {
+        return lastWriteAt;
+    }
+
+    long getLastDataAt() {
+        return lastDataAt;
+    }
+}
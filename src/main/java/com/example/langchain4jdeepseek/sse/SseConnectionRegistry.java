@@ -0,0 +1,285 @@
+package com.example.langchain4jdeepseek.sse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * SSE连接注册表
+ * 所有流式连接共用一个定时扫描任务：空闲超过心跳间隔的连接发送注释心跳，避免代理断开长时间等待工具的连接；
+ * 超过空闲时间或最长存活时间的连接由服务端关闭。心跳由小型线程池发送，单个慢连接不会拖住扫描；
+ * 工具线程上的进度事件同样交给该线程池写出。线程池只尝试获取连接的写锁，正在写出的连接跳过心跳、
+ * 稍后再写出工具事件，不会因等锁占满线程池
+ */
+@Component
+public class SseConnectionRegistry implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(SseConnectionRegistry.class);
+
+    private final long heartbeatIntervalMs;
+    private final long idleTimeoutMs;
+    private final long maxAgeMs;
+    private final int batchMaxChars;
+    private final long batchMaxDelayMs;
+    private final int maxQueuedEvents;
+
+    private final Map<String, SseConnection> connections = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService sweeper;
+    private final ExecutorService heartbeatSender;
+
+    private final LongAdder opened = new LongAdder();
+    private final Map<String, LongAdder> closedByReason = new ConcurrentHashMap<>();
+    private final LongAdder heartbeats = new LongAdder();
+    private final LongAdder heartbeatFailures = new LongAdder();
+    private final LongAdder heartbeatsSkipped = new LongAdder();
+    private final LongAdder droppedEvents = new LongAdder();
+
+    public SseConnectionRegistry(
+            @Value("${sse.heartbeat-interval-ms:15000}") long heartbeatIntervalMs,
+            @Value("${sse.idle-timeout-ms:600000}") long idleTimeoutMs,
+            @Value("${sse.max-age-ms:1800000}") long maxAgeMs,
+            @Value("${sse.sweep-interval-ms:5000}") long sweepIntervalMs,
+            @Value("${sse.heartbeat-threads:2}") int heartbeatThreads,
+            @Value("${sse.batch-max-chars:64}") int batchMaxChars,
+            @Value("${sse.batch-max-delay-ms:25}") long batchMaxDelayMs,
+            @Value("${sse.max-queued-events:256}") int maxQueuedEvents) {
+        this.heartbeatIntervalMs = heartbeatIntervalMs;
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.maxAgeMs = maxAgeMs;
+        this.batchMaxChars = batchMaxChars;
+        this.batchMaxDelayMs = batchMaxDelayMs;
+        this.maxQueuedEvents = maxQueuedEvents;
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sse-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.heartbeatSender = Executors.newFixedThreadPool(heartbeatThreads, runnable -> {
+            Thread thread = new Thread(runnable, "sse-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::sweep, sweepIntervalMs, sweepIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 登记连接并接管发送器的完成、超时和错误回调
+     * @param id 连接ID，通常为会话ID
+     * @param emitter 发送器，原有SSE格式为SseEmitter
+     * @param encoder 协商得到的传输编码
+     * @param clientKey 客户端标识
+     * @param scenario 场景
+     * @param timeoutMs 连接的最长存活时间，不超过sse.max-age-ms
+     * @param onClose 连接被客户端断开或由服务端提前关闭时的回调，参数为结束原因，如client_disconnect、timeout、
+     *                idle_timeout；通过SseConnection.complete正常结束的连接不回调
+     * @return 已登记的连接
+     */
+    public SseConnection register(String id, ResponseBodyEmitter emitter, StreamEncoder encoder, String clientKey,
+                                  String scenario, long timeoutMs, Consumer<String> onClose) {
+        long now = System.currentTimeMillis();
+        SseConnection connection = new SseConnection(id, emitter, encoder, clientKey, scenario,
+                now, now + Math.min(timeoutMs, maxAgeMs), batchMaxChars, batchMaxDelayMs,
+                heartbeatSender, maxQueuedEvents, droppedEvents, onClose, this::close, this::completed);
+        connections.put(id, connection);
+        opened.increment();
+
+        // 服务端完成或关闭的连接已标记为关闭，容器随后的完成回调不再计为客户端断开
+        emitter.onCompletion(() -> finished(connection, "client_disconnect"));
+        emitter.onError(error -> finished(connection, "client_disconnect"));
+        emitter.onTimeout(() -> close(connection, "timeout"));
+        return connection;
+    }
+
+    /**
+     * 由服务端关闭连接
+     * @return true表示连接存在并被本次调用关闭
+     */
+    public boolean close(String id, String reason) {
+        SseConnection connection = connections.get(id);
+        return connection != null && close(connection, reason);
+    }
+
+    /**
+     * 关闭所有连接
+     * @param reason 关闭原因
+     * @return 关闭的连接数
+     */
+    public int closeAll(String reason) {
+        int count = 0;
+        for (SseConnection connection : connections.values()) {
+            if (close(connection, reason)) {
+                count++;
+            }
+        }
+        if (count > 0) {
+            logger.info("已关闭{}个SSE连接 ({})", count, reason);
+        }
+        return count;
+    }
+
+    /**
+     * 向连接发送重连提示后关闭，上游生成随之取消
+     * 重连等待时间在基础值上加随机抖动，避免客户端同时重连；发送由心跳线程池执行，慢连接不阻塞调用方
+     * @param idleMillis 只处理超过该时间没有数据事件的连接，为0时处理所有连接
+     * @param retryBaseMs 建议的最短重连等待时间
+     * @param retryJitterMs 重连等待时间的随机抖动上限
+     * @param reason 关闭原因
+     * @return 本次提示的连接数
+     */
+    public int reconnect(long idleMillis, long retryBaseMs, long retryJitterMs, String reason) {
+        long now = System.currentTimeMillis();
+        int count = 0;
+        for (SseConnection connection : connections.values()) {
+            if (connection.isClosed() || now - connection.getLastDataAt() < idleMillis
+                    || !connection.markReconnectPending()) {
+                continue;
+            }
+            long retryMs = retryBaseMs + (retryJitterMs > 0 ? ThreadLocalRandom.current().nextLong(retryJitterMs) : 0);
+            heartbeatSender.execute(() -> close(connection, reason, StreamEvent.reconnect(reason, retryMs)));
+            count++;
+        }
+        if (count > 0) {
+            logger.info("已提示{}个SSE连接重连 ({})", count, reason);
+        }
+        return count;
+    }
+
+    public int size() {
+        return connections.size();
+    }
+
+    /**
+     * 获取连接统计，包括当前连接数、按场景分布、连接时长分位数和按原因分类的关闭次数
+     */
+    public Map<String, Object> snapshot() {
+        long now = System.currentTimeMillis();
+        long[] ages = new long[connections.size()];
+        int count = 0;
+        Map<String, Integer> byScenario = new TreeMap<>();
+        Set<String> clients = new HashSet<>();
+        for (SseConnection connection : connections.values()) {
+            if (count == ages.length) {
+                break;
+            }
+            ages[count++] = now - connection.getCreatedAt();
+            byScenario.merge(String.valueOf(connection.getScenario()), 1, Integer::sum);
+            clients.add(connection.getClientKey());
+        }
+        Arrays.sort(ages, 0, count);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("open", count);
+        result.put("clients", clients.size());
+        result.put("byScenario", byScenario);
+        result.put("ageP50Seconds", count == 0 ? 0 : ages[count / 2] / 1000);
+        result.put("ageP99Seconds", count == 0 ? 0 : ages[Math.min(count - 1, count * 99 / 100)] / 1000);
+        result.put("ageMaxSeconds", count == 0 ? 0 : ages[count - 1] / 1000);
+        result.put("opened", opened.sum());
+        Map<String, Long> reasons = new LinkedHashMap<>();
+        closedByReason.forEach((reason, closed) -> reasons.put(reason, closed.sum()));
+        result.put("closedByReason", reasons);
+        result.put("heartbeats", heartbeats.sum());
+        result.put("heartbeatFailures", heartbeatFailures.sum());
+        result.put("heartbeatsSkipped", heartbeatsSkipped.sum());
+        result.put("droppedToolOutputEvents", droppedEvents.sum());
+        return result;
+    }
+
+    /**
+     * 扫描所有连接，发送心跳并关闭超时的连接
+     */
+    private void sweep() {
+        long now = System.currentTimeMillis();
+        try {
+            for (SseConnection connection : connections.values()) {
+                if (connection.isClosed()) {
+                    connections.remove(connection.getId(), connection);
+                } else if (now >= connection.getExpiresAt()) {
+                    close(connection, "max_age");
+                } else if (now - connection.getLastDataAt() >= idleTimeoutMs) {
+                    close(connection, "idle_timeout");
+                } else if (now - connection.getLastWriteAt() >= heartbeatIntervalMs
+                        && connection.markHeartbeatPending()) {
+                    heartbeatSender.execute(() -> heartbeat(connection));
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.error("扫描SSE连接失败: {}", e.getMessage(), e);
+        }
+    }
+
+    private void heartbeat(SseConnection connection) {
+        if (connection.isClosed()) {
+            return;
+        }
+        try {
+            if (connection.heartbeat()) {
+                heartbeats.increment();
+            } else {
+                heartbeatsSkipped.increment();
+            }
+        } catch (IOException | IllegalStateException e) {
+            heartbeatFailures.increment();
+            close(connection, "send_failure");
+        }
+    }
+
+    private boolean close(SseConnection connection, String reason) {
+        return close(connection, reason, null);
+    }
+
+    private boolean close(SseConnection connection, String reason, StreamEvent lastEvent) {
+        connections.remove(connection.getId(), connection);
+        if (!connection.close(reason, lastEvent)) {
+            return false;
+        }
+        closedByReason.computeIfAbsent(reason, key -> new LongAdder()).increment();
+        return true;
+    }
+
+    /**
+     * 连接由服务端正常结束，不触发关闭回调
+     */
+    private void completed(SseConnection connection, String reason) {
+        connections.remove(connection.getId(), connection);
+        closedByReason.computeIfAbsent(reason, key -> new LongAdder()).increment();
+    }
+
+    /**
+     * 容器结束响应，客户端断开时触发关闭回调；无论由哪一方结束都释放编码器
+     */
+    private void finished(SseConnection connection, String reason) {
+        connections.remove(connection.getId(), connection);
+        if (connection.markClosed()) {
+            closedByReason.computeIfAbsent(reason, key -> new LongAdder()).increment();
+            connection.notifyClosed(reason);
+        }
+        connection.releaseEncoder();
+    }
+
+    @Override
+    public void destroy() {
+        sweeper.shutdownNow();
+        closeAll("shutdown");
+        heartbeatSender.shutdownNow();
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.langchain4jdeepseek.sse;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * 紧凑JSON的SSE格式（版本1）
+ * 每个事件一行data：{"t":类型,"s":序号,"c":内容,...附加字段}，相邻token合并为一个事件
+ */
+public class SseJsonEncoder extends ByteStreamEncoder {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final byte[] DATA_PREFIX = "data:".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] EVENT_END = "\n\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HEARTBEAT = ":\n\n".getBytes(StandardCharsets.US_ASCII);
+
+    public SseJsonEncoder(StreamCompression compression) {
+        super(compression);
+    }
+
+    @Override
+    protected void render(StreamEvent event, long sequence, ByteArrayOutputStream out) throws IOException {
+        out.write(DATA_PREFIX);
+        // JSON字符串中的换行会被转义，整个事件只占一行data
+        try (JsonGenerator json = JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8)) {
+            json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            writeJson(json, event, sequence);
+        }
+        out.write(EVENT_END);
+    }
+
+    @Override
+    protected void renderHeartbeat(ByteArrayOutputStream out) {
+        out.writeBytes(HEARTBEAT);
+    }
+
+    static void writeJson(JsonGenerator json, StreamEvent event, long sequence) throws IOException {
+        json.writeStartObject();
+        json.writeStringField("t", event.type().eventName());
+        if (sequence > 0) {
+            json.writeNumberField("s", sequence);
+        }
+        if (event.content() != null) {
+            json.writeStringField("c", event.content());
+        }
+        for (Map.Entry<String, Object> field : event.fields().entrySet()) {
+            json.writeObjectField(field.getKey(), field.getValue());
+        }
+        json.writeEndObject();
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.langchain4jdeepseek.sse;
+
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+
+/**
+ * 原有的SSE格式（版本0）
+ * 每个token一个命名事件，数据为原始文本；工具和用量事件不发送，保持旧客户端的行为不变。
+ * 重连提示只写出retry字段和注释，旧客户端不会把它当作token
+ */
+public class SseTextEncoder implements StreamEncoder {
+
+    @Override
+    public void write(ResponseBodyEmitter emitter, StreamEvent event, long sequence) throws IOException {
+        SseEmitter.SseEventBuilder builder = toSse(event);
+        if (builder != null) {
+            ((SseEmitter) emitter).send(builder);
+        }
+    }
+
+    @Override
+    public void heartbeat(ResponseBodyEmitter emitter) throws IOException {
+        ((SseEmitter) emitter).send(SseEmitter.event().comment("heartbeat"));
+    }
+
+    @Override
+    public boolean batchesTokens() {
+        return false;
+    }
+
+    /**
+     * 转换为SSE事件，不发送的事件返回null
+     */
+    static SseEmitter.SseEventBuilder toSse(StreamEvent event) {
+        return switch (event.type()) {
+            case SESSION, TOKEN, COMPLETE -> SseEmitter.event().name(event.type().eventName()).data(event.content());
+            case ERROR -> {
+                SseEmitter.SseEventBuilder builder = SseEmitter.event()
+                        .name(event.type().eventName())
+                        .data("Error: " + event.content());
+                // 被限流时通过retry字段提示客户端等待时间
+                Object retryMs = event.fields().get("retryMs");
+                if (retryMs instanceof Long millis) {
+                    builder.reconnectTime(millis);
+                }
+                yield builder;
+            }
+            case RECONNECT -> SseEmitter.event()
+                    .reconnectTime((Long) event.fields().get("retryMs"))
+                    .comment(event.type().eventName());
+            default -> null;
+        };
+    }
+}
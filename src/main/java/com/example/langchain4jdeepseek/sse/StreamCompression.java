@@ -0,0 +1,130 @@
+package com.example.langchain4jdeepseek.sse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 流式响应的内容压缩
+ * 每批数据写入后同步刷新，客户端无需等待流结束即可解压出已发送的事件
+ */
+public enum StreamCompression {
+    IDENTITY(null),
+    GZIP("gzip"),
+    DEFLATE("deflate");
+
+    private final String contentEncoding;
+
+    StreamCompression(String contentEncoding) {
+        this.contentEncoding = contentEncoding;
+    }
+
+    /**
+     * Content-Encoding响应头的值，不压缩时为null
+     */
+    public String contentEncoding() {
+        return contentEncoding;
+    }
+
+    /**
+     * 按Accept-Encoding请求头选择压缩方式，gzip优先，q=0表示不接受
+     */
+    public static StreamCompression negotiate(String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isBlank()) {
+            return IDENTITY;
+        }
+        boolean deflate = false;
+        for (String part : acceptEncoding.split(",")) {
+            String[] tokens = part.trim().split(";");
+            String coding = tokens[0].trim().toLowerCase();
+            boolean refused = false;
+            for (int i = 1; i < tokens.length; i++) {
+                String parameter = tokens[i].trim().replace(" ", "");
+                if (parameter.matches("q=0(\\.0*)?")) {
+                    refused = true;
+                }
+            }
+            if (refused) {
+                continue;
+            }
+            if (coding.equals("gzip")) {
+                return GZIP;
+            }
+            if (coding.equals("deflate")) {
+                deflate = true;
+            }
+        }
+        return deflate ? DEFLATE : IDENTITY;
+    }
+
+    /**
+     * 创建压缩器
+     */
+    public Compressor newCompressor() {
+        return new Compressor(this);
+    }
+
+    /**
+     * 有状态的压缩器，一个连接一个
+     */
+    public static final class Compressor {
+
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+        private final OutputStream stream;
+
+        private Compressor(StreamCompression compression) {
+            try {
+                this.stream = switch (compression) {
+                    case IDENTITY -> buffer;
+                    case GZIP -> new GZIPOutputStream(buffer, 512, true);
+                    case DEFLATE -> new DeflaterOutputStream(buffer, true);
+                };
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        /**
+         * 压缩一批数据并同步刷新
+         * @return 可以立即发送的字节
+         */
+        public byte[] compress(byte[] data) throws IOException {
+            stream.write(data);
+            stream.flush();
+            return drain();
+        }
+
+        /**
+         * 结束压缩流
+         * @return 剩余的字节，如gzip尾部
+         */
+        public byte[] finish() throws IOException {
+            if (stream != buffer) {
+                stream.close();
+            }
+            return drain();
+        }
+
+        /**
+         * 释放压缩器占用的本地内存，丢弃未发送的字节；可重复调用
+         */
+        public void release() {
+            if (stream != buffer) {
+                try {
+                    stream.close();
+                } catch (IOException e) {
+                    // 输出到内存缓冲，不会失败
+                }
+            }
+            buffer.reset();
+        }
+
+        private byte[] drain() {
+            byte[] bytes = buffer.toByteArray();
+            buffer.reset();
+            return bytes;
+        }
+    }
+}
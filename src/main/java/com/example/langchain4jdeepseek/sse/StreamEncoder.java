@@ -0,0 +1,40 @@
+package com.example.langchain4jdeepseek.sse;
+
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.io.IOException;
+
+/**
+ * 流式响应的传输编码
+ * 调用方保证同一连接上的调用串行执行
+ */
+public interface StreamEncoder {
+
+    /**
+     * 写出一个事件
+     * @param sequence 事件序号，从1开始递增
+     */
+    void write(ResponseBodyEmitter emitter, StreamEvent event, long sequence) throws IOException;
+
+    /**
+     * 写出心跳
+     */
+    void heartbeat(ResponseBodyEmitter emitter) throws IOException;
+
+    /**
+     * 结束前写出缓冲的数据，如压缩流的尾部
+     */
+    default void finish(ResponseBodyEmitter emitter) throws IOException {
+    }
+
+    /**
+     * 连接结束后释放编码器持有的资源，如压缩器的本地内存；可重复调用
+     */
+    default void release() {
+    }
+
+    /**
+     * 是否可以把相邻的token合并为一个事件
+     */
+    boolean batchesTokens();
+}
@@ -0,0 +1,135 @@
+package com.example.langchain4jdeepseek.sse;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 流式响应事件，与具体的传输格式无关
+ * @param type 事件类型
+ * @param content 文本内容，如token、会话ID或错误信息
+ * @param fields 附加字段，如工具名称、token用量
+ */
+public record StreamEvent(Type type, String content, Map<String, Object> fields) {
+
+    /**
+     * 事件类型，code为帧格式中的类型字节，name为SSE事件名
+     */
+    public enum Type {
+        PING(0, "ping"),
+        SESSION(1, "session-id"),
+        TOKEN(2, "token"),
+        TOOL_END(3, "tool-end"),
+        USAGE(4, "usage"),
+        COMPLETE(5, "complete"),
+        ERROR(6, "error"),
+        TOOL_START(7, "tool-start"),
+        TOOL_OUTPUT(8, "tool-output"),
+        RECONNECT(9, "reconnect");
+
+        private final int code;
+        private final String eventName;
+
+        Type(int code, String eventName) {
+            this.code = code;
+            this.eventName = eventName;
+        }
+
+        public int code() {
+            return code;
+        }
+
+        public String eventName() {
+            return eventName;
+        }
+    }
+
+    public static StreamEvent session(String sessionId) {
+        return new StreamEvent(Type.SESSION, sessionId, Map.of());
+    }
+
+    public static StreamEvent token(String token) {
+        return new StreamEvent(Type.TOKEN, token, Map.of());
+    }
+
+    public static StreamEvent complete() {
+        return new StreamEvent(Type.COMPLETE, "Stream completed", Map.of());
+    }
+
+    /**
+     * 工具开始执行
+     * @param id 工具调用ID
+     * @param tool 工具名称
+     * @param arguments 调用参数（JSON），可能已截断
+     */
+    public static StreamEvent toolStart(String id, String tool, String arguments) {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put("id", id);
+        fields.put("name", tool);
+        fields.put("args", arguments);
+        return new StreamEvent(Type.TOOL_START, tool, fields);
+    }
+
+    /**
+     * 工具执行过程中的增量输出，如命令的标准输出
+     * @param id 工具调用ID
+     * @param tool 工具名称
+     * @param chunk 输出片段
+     */
+    public static StreamEvent toolOutput(String id, String tool, String chunk) {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put("id", id);
+        fields.put("name", tool);
+        return new StreamEvent(Type.TOOL_OUTPUT, chunk, fields);
+    }
+
+    /**
+     * 工具执行结束
+     * @param id 工具调用ID
+     * @param tool 工具名称
+     * @param durationMs 执行耗时（毫秒）
+     * @param resultChars 结果长度
+     */
+    public static StreamEvent toolEnd(String id, String tool, long durationMs, int resultChars) {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put("id", id);
+        fields.put("name", tool);
+        fields.put("ms", durationMs);
+        fields.put("resultChars", resultChars);
+        return new StreamEvent(Type.TOOL_END, tool, fields);
+    }
+
+    /**
+     * 本轮对话的token用量
+     */
+    public static StreamEvent usage(Integer inputTokens, Integer outputTokens, String finishReason) {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put("in", inputTokens);
+        fields.put("out", outputTokens);
+        fields.put("finish", finishReason);
+        return new StreamEvent(Type.USAGE, null, fields);
+    }
+
+    /**
+     * 服务端即将关闭连接，提示客户端稍后重新发起请求
+     * @param reason 关闭原因，如drain
+     * @param retryAfterMillis 建议的重连等待时间
+     */
+    public static StreamEvent reconnect(String reason, long retryAfterMillis) {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put("retryMs", retryAfterMillis);
+        return new StreamEvent(Type.RECONNECT, reason, fields);
+    }
+
+    /**
+     * 错误事件
+     * @param message 错误信息
+     * @param retryAfterMillis 建议的重试等待时间，没有时为null
+     */
+    public static StreamEvent error(String message, Long retryAfterMillis) {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        if (retryAfterMillis != null) {
+            fields.put("retryMs", retryAfterMillis);
+        }
+        return new StreamEvent(Type.ERROR, message, fields);
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.langchain4jdeepseek.sse;
+
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 流式响应协议，按Accept请求头协商
+ * text/event-stream为原有格式；text/event-stream;version=1为紧凑JSON的SSE；
+ * application/x-chat-frames为长度前缀的二进制帧
+ */
+public enum StreamProtocol {
+    SSE_TEXT("sse/0", MediaType.TEXT_EVENT_STREAM),
+    SSE_JSON("sse-json/1", new MediaType(MediaType.TEXT_EVENT_STREAM, Map.of("version", "1"))),
+    FRAMES("frames/1", new MediaType("application", "x-chat-frames", Map.of("version", "1")));
+
+    private final String id;
+    private final MediaType mediaType;
+
+    StreamProtocol(String id, MediaType mediaType) {
+        this.id = id;
+        this.mediaType = mediaType;
+    }
+
+    /**
+     * 协议标识，通过X-Stream-Protocol响应头返回
+     */
+    public String id() {
+        return id;
+    }
+
+    public MediaType mediaType() {
+        return mediaType;
+    }
+
+    /**
+     * 是否由服务端序列化并可压缩，原有格式交给SseEmitter输出
+     */
+    public boolean isCompressible() {
+        return this != SSE_TEXT;
+    }
+
+    public StreamEncoder newEncoder(StreamCompression compression) {
+        return switch (this) {
+            case SSE_TEXT -> new SseTextEncoder();
+            case SSE_JSON -> new SseJsonEncoder(compression);
+            case FRAMES -> new FrameEncoder(compression);
+        };
+    }
+
+    /**
+     * 按Accept请求头中首个支持的媒体类型选择协议，无法识别时使用原有格式
+     */
+    public static StreamProtocol negotiate(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return SSE_TEXT;
+        }
+        List<MediaType> mediaTypes;
+        try {
+            mediaTypes = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return SSE_TEXT;
+        }
+        for (MediaType mediaType : mediaTypes) {
+            if (FRAMES.mediaType.equalsTypeAndSubtype(mediaType)) {
+                return FRAMES;
+            }
+            if (MediaType.TEXT_EVENT_STREAM.equalsTypeAndSubtype(mediaType)) {
+                return "1".equals(mediaType.getParameter("version")) ? SSE_JSON : SSE_TEXT;
+            }
+        }
+        return SSE_TEXT;
+    }
+}
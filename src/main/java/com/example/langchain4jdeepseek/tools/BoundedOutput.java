@@ -0,0 +1,65 @@
+package com.example.langchain4jdeepseek.tools;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * 有界的命令输出缓冲区
+ * 超过上限后保留开头和最近的结尾部分，中间的行只计数，避免大输出占满内存
+ */
+class BoundedOutput {
+
+    private final long headLimit;
+    private final long tailLimit;
+
+    private final StringBuilder head = new StringBuilder();
+    private final Deque<String> tail = new ArrayDeque<>();
+    private long tailChars;
+
+    private long totalLines;
+    private long totalChars;
+    private long headLines;
+    private long droppedLines;
+
+    BoundedOutput(long maxChars) {
+        this.headLimit = maxChars / 2;
+        this.tailLimit = maxChars - headLimit;
+    }
+
+    void appendLine(String line) {
+        totalLines++;
+        totalChars += line.length() + 1;
+        if (tail.isEmpty() && head.length() + line.length() + 1 <= headLimit) {
+            head.append(line).append('\n');
+            headLines++;
+            return;
+        }
+
+        tail.addLast(line);
+        tailChars += line.length() + 1;
+        while (tailChars > tailLimit && tail.size() > 1) {
+            tailChars -= tail.removeFirst().length() + 1;
+            droppedLines++;
+        }
+    }
+
+    long getTotalChars() {
+        return totalChars;
+    }
+
+    @Override
+    public String toString() {
+        if (tail.isEmpty()) {
+            return head.toString();
+        }
+        StringBuilder result = new StringBuilder(head);
+        if (droppedLines > 0) {
+            result.append("[... 输出过大，已省略第").append(headLines + 1).append('-')
+                    .append(headLines + droppedLines).append("行（共").append(totalLines).append("行）...]\n");
+        }
+        for (String line : tail) {
+            result.append(line).append('\n');
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.langchain4jdeepseek.tools;
+
+import com.example.langchain4jdeepseek.tracing.Span;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.invocation.InvocationContext;
+import dev.langchain4j.service.tool.ToolExecutionResult;
+import dev.langchain4j.service.tool.ToolExecutor;
+
+/**
+ * 限制工具结果长度的执行器
+ * 结果在交给模型前经过ToolOutputProcessor压缩，并按场景的工具结果上限截断。
+ * 每次调用作为当前追踪段的子段记录，执行期间绑定为当前段，工具内部的请求记录在其下
+ */
+public class ClippingToolExecutor implements ToolExecutor {
+
+    private final ToolExecutor delegate;
+    private final ToolOutputProcessor toolOutputProcessor;
+    private final long maxTokens;
+
+    public ClippingToolExecutor(ToolExecutor delegate, ToolOutputProcessor toolOutputProcessor, long maxTokens) {
+        this.delegate = delegate;
+        this.toolOutputProcessor = toolOutputProcessor;
+        this.maxTokens = maxTokens;
+    }
+
+    @Override
+    public String execute(ToolExecutionRequest request, Object memoryId) {
+        Span span = startSpan(request);
+        Span previous = Span.bind(span);
+        try {
+            String raw = delegate.execute(request, memoryId);
+            String processed = toolOutputProcessor.process(request.name(), raw, maxTokens);
+            endSpan(span, raw, processed, false);
+            return processed;
+        } catch (RuntimeException e) {
+            span.recordError(e).end();
+            throw e;
+        } finally {
+            Span.restore(previous);
+        }
+    }
+
+    @Override
+    public ToolExecutionResult executeWithContext(ToolExecutionRequest request, InvocationContext context) {
+        Span span = startSpan(request);
+        Span previous = Span.bind(span);
+        try {
+            ToolExecutionResult result = delegate.executeWithContext(request, context);
+            String processed = toolOutputProcessor.process(request.name(), result.resultText(), maxTokens);
+            endSpan(span, result.resultText(), processed, result.isError());
+            if (processed == null || processed.equals(result.resultText())) {
+                return result;
+            }
+            return ToolExecutionResult.builder()
+                    .isError(result.isError())
+                    .result(processed)
+                    .resultText(processed)
+                    .build();
+        } catch (RuntimeException e) {
+            span.recordError(e).end();
+            throw e;
+        } finally {
+            Span.restore(previous);
+        }
+    }
+
+    private static Span startSpan(ToolExecutionRequest request) {
+        Span span = Span.current().startChild("tool " + request.name(), Span.KIND_INTERNAL);
+        if (span.isSampled()) {
+            span.setAttribute("tool.name", request.name())
+                    .setAttribute("tool.call_id", request.id())
+                    .setAttribute("tool.arguments.chars", request.arguments() != null ? request.arguments().length() : 0);
+        }
+        return span;
+    }
+
+    private static void endSpan(Span span, String raw, String processed, boolean error) {
+        if (!span.isSampled()) {
+            return;
+        }
+        span.setAttribute("tool.result.chars", raw != null ? raw.length() : 0)
+                .setAttribute("tool.result.clipped_chars", processed != null ? processed.length() : 0);
+        if (error) {
+            span.setError("Tool returned an error result");
+        } else {
+            span.setOk();
+        }
+        span.end();
+    }
+}
@@ -1,30 +1,82 @@
 package com.example.langchain4jdeepseek.tools;
 
+import com.example.langchain4jdeepseek.http.StreamCancellation;
+import com.example.langchain4jdeepseek.lifecycle.StartupWarmup;
+import com.example.langchain4jdeepseek.logging.TrafficLogger;
+import com.example.langchain4jdeepseek.resilience.Deadline;
+import com.example.langchain4jdeepseek.resilience.SharedScheduler;
+import com.example.langchain4jdeepseek.tracing.Span;
 import dev.langchain4j.agent.tool.Tool;
 import dev.langchain4j.agent.tool.P;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.core.io.ClassPathResource;
 
 import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @Component
 public class CommandExecutionTool {
     
     private static final Logger logger = LoggerFactory.getLogger(CommandExecutionTool.class);
-    private final Set<String> blacklistedCommands = new HashSet<>();
+    // 黑名单在预热任务或首次检查命令时加载
+    private volatile Set<String> blacklistedCommands;
+    private final TrafficLogger trafficLogger;
     
-    public CommandExecutionTool() {
-        loadBlacklistedCommands();
+    // 正在执行的命令进程，停机排空时结束剩余的进程
+    private final Set<Process> runningProcesses = ConcurrentHashMap.newKeySet();
+    
+    // 单条命令的最长执行时间，请求截止时间更早时以截止时间为准
+    @Value("${command.timeout-ms:60000}")
+    private long commandTimeoutMs;
+    
+    // 读取命令输出时最多保留的字符数，超出部分只保留开头和结尾
+    @Value("${command.max-output-chars:1000000}")
+    private long maxOutputChars;
+    
+    // 流式会话中实时上报输出：达到字符数或距上次上报超过间隔时发送一个片段，单条命令上报的总字符数有上限
+    @Value("${command.progress.chunk-chars:512}")
+    private int progressChunkChars;
+    
+    @Value("${command.progress.interval-ms:200}")
+    private long progressIntervalMs;
+    
+    @Value("${command.progress.max-chars:20000}")
+    private long progressMaxChars;
+    
+    @Autowired
+    public CommandExecutionTool(TrafficLogger trafficLogger, StartupWarmup startupWarmup) {
+        this.trafficLogger = trafficLogger;
+        startupWarmup.register("command-blacklist", this::blacklist);
     }
     
-    private void loadBlacklistedCommands() {
+    private Set<String> blacklist() {
+        Set<String> commands = blacklistedCommands;
+        if (commands == null) {
+            synchronized (this) {
+                commands = blacklistedCommands;
+                if (commands == null) {
+                    commands = loadBlacklistedCommands();
+                    blacklistedCommands = commands;
+                }
+            }
+        }
+        return commands;
+    }
+    
+    private Set<String> loadBlacklistedCommands() {
+        Set<String> blacklistedCommands = new HashSet<>();
         try {
             ClassPathResource resource = new ClassPathResource("command-blacklist.txt");
             InputStream inputStream = resource.getInputStream();
@@ -51,9 +103,11 @@ public class CommandExecutionTool {
             // 如果加载失败，禁用命令执行功能
             blacklistedCommands.add("*"); // 添加通配符以阻止所有命令
         }
+        return blacklistedCommands;
     }
     
     private boolean isCommandBlacklisted(String command) {
+        Set<String> blacklistedCommands = blacklist();
         // 如果黑名单包含通配符，则阻止所有命令
         if (blacklistedCommands.contains("*")) {
             logger.warn("All commands are blocked due to security policy");
@@ -95,31 +149,181 @@ public class CommandExecutionTool {
             return errorMsg;
         }
         
+        long budgetMs = Deadline.budgetMillis(Deadline.current(), commandTimeoutMs);
+        if (budgetMs <= 0) {
+            logger.warn("Request deadline exceeded, skipping command: {}", command);
+            return "Error: Request deadline exceeded, command was not executed.";
+        }
+        
+        long start = System.nanoTime();
         try {
             ProcessBuilder processBuilder = new ProcessBuilder();
             processBuilder.command("bash", "-c", command);
             
             Process process = processBuilder.start();
+            runningProcesses.add(process);
             
-            StringBuilder output = new StringBuilder();
-            BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+            // 超出时间预算时强制结束进程及其子进程，读取循环随之结束
+            AtomicBoolean timedOut = new AtomicBoolean(false);
+            ScheduledFuture<?> killer = SharedScheduler.schedule(() -> {
+                timedOut.set(true);
+                destroyTree(process);
+            }, budgetMs);
             
-            String line;
-            while ((line = reader.readLine()) != null) {
-                output.append(line).append("\n");
+            // 流式会话被取消时同样结束进程，不留下无人读取输出的子进程
+            StreamCancellation cancellation = StreamCancellation.current();
+            Closeable onCancel = () -> destroyTree(process);
+            if (cancellation != null) {
+                cancellation.attach(onCancel);
             }
             
-            int exitCode = process.waitFor();
+            BoundedOutput output = new BoundedOutput(maxOutputChars);
+            ProgressForwarder progress = new ProgressForwarder(ToolProgress.current());
+            int exitCode;
+            try {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+                
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    output.appendLine(line);
+                    progress.appendLine(line);
+                }
+                progress.flush();
+                
+                exitCode = process.waitFor();
+            } finally {
+                progress.stop();
+                killer.cancel(false);
+                if (cancellation != null) {
+                    cancellation.detach(onCancel);
+                }
+                runningProcesses.remove(process);
+            }
+            
+            long durationMs = (System.nanoTime() - start) / 1_000_000;
+            // 记录到当前的工具调用段
+            Span span = Span.current();
+            if (span.isSampled()) {
+                span.setAttribute("process.exit_code", exitCode)
+                        .setAttribute("process.output.chars", output.getTotalChars())
+                        .setAttribute("process.timed_out", timedOut.get())
+                        .setAttribute("process.cancelled", cancellation != null && cancellation.isCancelled());
+            }
+            if (cancellation != null && cancellation.isCancelled()) {
+                logger.info("Command cancelled with session {}: {}", cancellation.getSessionId(), command);
+                trafficLogger.logTool("executeCommand", command, output.toString(), durationMs, false);
+                return "Error: Command was cancelled";
+            }
+            if (timedOut.get()) {
+                logger.error("Command timed out after {}ms: {}", budgetMs, command);
+                trafficLogger.logTool("executeCommand", command, output.toString(), durationMs, false);
+                return "Error: Command timed out after " + budgetMs + "ms";
+            }
             if (exitCode != 0) {
                 logger.error("Command execution failed with exit code: {}", exitCode);
+                trafficLogger.logTool("executeCommand", command, output.toString(), durationMs, false);
                 return "Error: Command execution failed with exit code " + exitCode;
             }
             
-            logger.info("Command executed successfully. Output: {}", output.toString());
-            return output.toString();
+            // 完整输出只进入采样的流量日志
+            logger.info("Command executed successfully in {}ms, {} chars of output", durationMs, output.getTotalChars());
+            String result = output.toString();
+            trafficLogger.logTool("executeCommand", command, result, durationMs, true);
+            return result;
         } catch (IOException | InterruptedException e) {
             logger.error("Error executing command: {}", command, e);
             return "Error executing command: " + e.getMessage();
         }
     }
-}
\ No newline at end of file
+    
+    /**
+     * 获取正在执行的命令数
+     */
+    public int getRunningCommands() {
+        return runningProcesses.size();
+    }
+    
+    /**
+     * 强制结束所有正在执行的命令及其子进程
+     * @return 结束的命令数
+     */
+    public int terminateAll() {
+        int count = 0;
+        for (Process process : runningProcesses) {
+            destroyTree(process);
+            count++;
+        }
+        if (count > 0) {
+            logger.warn("Terminated {} running commands", count);
+        }
+        return count;
+    }
+    
+    private static void destroyTree(Process process) {
+        process.descendants().forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
+    }
+    
+    /**
+     * 将命令输出按片段转发给流式会话，未绑定接收方时不做任何事
+     * 读取线程追加输出，定时任务在命令没有新输出时也按间隔发送已缓冲的内容
+     */
+    private class ProgressForwarder {
+        
+        private final ToolProgress.Listener listener;
+        private final StringBuilder pending = new StringBuilder();
+        private long lastSentAt = System.nanoTime();
+        private long sentChars;
+        private boolean stopped;
+        
+        ProgressForwarder(ToolProgress.Listener listener) {
+            this.listener = listener;
+            if (listener != null) {
+                SharedScheduler.schedule(this::tick, progressIntervalMs);
+            }
+        }
+        
+        synchronized void appendLine(String line) {
+            if (listener == null || sentChars >= progressMaxChars) {
+                return;
+            }
+            pending.append(line).append('\n');
+            if (pending.length() >= progressChunkChars
+                    || System.nanoTime() - lastSentAt >= progressIntervalMs * 1_000_000) {
+                flush();
+            }
+        }
+        
+        /**
+         * 停止定时发送，命令结束后调用
+         */
+        synchronized void stop() {
+            stopped = true;
+        }
+        
+        private void tick() {
+            synchronized (this) {
+                if (stopped) {
+                    return;
+                }
+                if (System.nanoTime() - lastSentAt >= progressIntervalMs * 1_000_000) {
+                    flush();
+                }
+            }
+            SharedScheduler.schedule(this::tick, progressIntervalMs);
+        }
+        
+        synchronized void flush() {
+            if (listener == null || pending.length() == 0) {
+                return;
+            }
+            String chunk = pending.length() > progressMaxChars - sentChars
+                    ? pending.substring(0, (int) (progressMaxChars - sentChars)) + "\n[... 后续输出不再实时显示 ...]\n"
+                    : pending.toString();
+            pending.setLength(0);
+            sentChars += chunk.length();
+            lastSentAt = System.nanoTime();
+            listener.onOutput("executeCommand", chunk);
+        }
+    }
+}
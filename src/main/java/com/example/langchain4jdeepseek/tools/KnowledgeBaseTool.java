@@ -0,0 +1,67 @@
+package com.example.langchain4jdeepseek.tools;
+
+import com.example.langchain4jdeepseek.knowledge.KnowledgeBase;
+import com.example.langchain4jdeepseek.logging.TrafficLogger;
+import dev.langchain4j.agent.tool.P;
+import dev.langchain4j.agent.tool.Tool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+/**
+ * 本地知识库检索工具类
+ * 在进程内的文档索引中检索内部资料，不访问网络。
+ * 每个场景一个实例，只返回对该场景可见的文档
+ */
+public class KnowledgeBaseTool {
+
+    private static final Logger logger = LoggerFactory.getLogger(KnowledgeBaseTool.class);
+
+    private final KnowledgeBase knowledgeBase;
+    private final TrafficLogger trafficLogger;
+    private final String scenario;
+    private final int maxResults;
+
+    public KnowledgeBaseTool(KnowledgeBase knowledgeBase, TrafficLogger trafficLogger, String scenario, int maxResults) {
+        this.knowledgeBase = knowledgeBase;
+        this.trafficLogger = trafficLogger;
+        this.scenario = scenario;
+        this.maxResults = maxResults;
+    }
+
+    /**
+     * 在本地知识库中检索内部文档
+     * @param query 检索内容
+     * @return 格式化的检索结果
+     */
+    @Tool("在内部文档知识库中检索资料。问题涉及公司内部的产品、流程、规范或文档时优先使用，再考虑网络搜索")
+    public String searchKnowledgeBase(@P("The search query") String query) {
+        logger.info("正在检索知识库: {}", query);
+        long start = System.nanoTime();
+        try {
+            List<KnowledgeBase.Hit> hits = knowledgeBase.search(query, scenario, maxResults);
+            String result = format(hits);
+            trafficLogger.logTool("searchKnowledgeBase", query, result, (System.nanoTime() - start) / 1_000_000, true);
+            return result;
+        } catch (Exception e) {
+            logger.error("检索知识库时发生错误: {}", query, e);
+            trafficLogger.logTool("searchKnowledgeBase", query, e.getMessage(), (System.nanoTime() - start) / 1_000_000, false);
+            return "知识库检索出错: " + e.getMessage();
+        }
+    }
+
+    private String format(List<KnowledgeBase.Hit> hits) {
+        if (hits.isEmpty()) {
+            return "知识库中未找到相关内容。";
+        }
+        StringBuilder result = new StringBuilder("知识库结果:\n");
+        for (int i = 0; i < hits.size(); i++) {
+            KnowledgeBase.Hit hit = hits.get(i);
+            String title = hit.title() == null || hit.title().isBlank() ? hit.documentId() : hit.title();
+            result.append(String.format("%d. %s（相关度 %.2f）\n   %s\n   文档: %s\n\n",
+                    i + 1, title, hit.score(), hit.text(), hit.documentId()));
+        }
+        return result.toString().trim();
+    }
+}
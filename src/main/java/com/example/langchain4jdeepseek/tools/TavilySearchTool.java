@@ -1,42 +1,114 @@
 package com.example.langchain4jdeepseek.tools;
 
 import com.example.langchain4jdeepseek.config.TavilyConfig;
+import com.example.langchain4jdeepseek.logging.TrafficLogger;
+import com.example.langchain4jdeepseek.resilience.Deadline;
+import com.example.langchain4jdeepseek.tracing.Span;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import dev.langchain4j.agent.tool.Tool;
 import dev.langchain4j.agent.tool.P;
 import org.apache.hc.client5.http.classic.methods.HttpPost;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpResponse;
 import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
 import org.apache.hc.core5.http.ContentType;
 import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.apache.hc.core5.util.Timeout;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
 /**
  * Tavily搜索工具类
- * 用于通过Tavily API进行网络搜索，获取最新信息
+ * 用于通过Tavily API进行网络搜索，获取最新信息。
+ * 所有搜索共用一个连接池；多查询搜索并发执行各个查询，按URL合并结果并用倒数排名融合排序
  */
 @Component
-public class TavilySearchTool {
+public class TavilySearchTool implements DisposableBean {
 
     private static final Logger logger = LoggerFactory.getLogger(TavilySearchTool.class);
 
+    // 倒数排名融合的平滑常数，得分为各查询中 1/(k+名次) 之和
+    private static final int RRF_K = 60;
+
+    // 单次搜索展示的结果数
+    private static final int SINGLE_QUERY_RESULTS = 3;
+
     private final TavilyConfig tavilyConfig;
     private final ObjectMapper objectMapper;
+    private final TrafficLogger trafficLogger;
+
+    // 单次搜索的最长时间，请求截止时间更早时以截止时间为准
+    private final long searchTimeoutMs;
+
+    // 单条搜索结果正文的最大字符数
+    private final int maxContentChars;
+
+    // 多查询搜索的最大查询数、合并后展示的最大结果数和结果总字符数
+    private final int maxQueries;
+    private final int maxMergedResults;
+    private final int maxResultChars;
+
+    private final CloseableHttpClient httpClient;
+    private final ExecutorService searchExecutor;
 
     @Autowired
-    public TavilySearchTool(TavilyConfig tavilyConfig) {
+    public TavilySearchTool(TavilyConfig tavilyConfig, TrafficLogger trafficLogger,
+                            @Value("${tavily.timeout-ms:15000}") long searchTimeoutMs,
+                            @Value("${tavily.max-content-chars:800}") int maxContentChars,
+                            @Value("${tavily.max-connections:8}") int maxConnections,
+                            @Value("${tavily.multi.max-queries:5}") int maxQueries,
+                            @Value("${tavily.multi.max-results:8}") int maxMergedResults,
+                            @Value("${tavily.multi.max-result-chars:4000}") int maxResultChars) {
         this.tavilyConfig = tavilyConfig;
         this.objectMapper = new ObjectMapper();
+        this.trafficLogger = trafficLogger;
+        this.searchTimeoutMs = searchTimeoutMs;
+        this.maxContentChars = maxContentChars;
+        this.maxQueries = maxQueries;
+        this.maxMergedResults = maxMergedResults;
+        this.maxResultChars = maxResultChars;
+        // 复用连接，避免每次搜索重新建立TCP和TLS连接；建立连接的超时在连接池上配置，不超过单次搜索的时间上限
+        this.httpClient = HttpClients.custom()
+                .setConnectionManager(PoolingHttpClientConnectionManagerBuilder.create()
+                        .setMaxConnTotal(maxConnections)
+                        .setMaxConnPerRoute(maxConnections)
+                        .setDefaultConnectionConfig(ConnectionConfig.custom()
+                                .setConnectTimeout(Timeout.ofMilliseconds(searchTimeoutMs))
+                                .build())
+                        .build())
+                .build();
+        this.searchExecutor = Executors.newFixedThreadPool(maxConnections, runnable -> {
+            Thread thread = new Thread(runnable, "tavily-search");
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
     /**
@@ -48,39 +120,170 @@ public class TavilySearchTool {
     public String searchWeb(@P("The search query") String query) {
         logger.info("正在搜索关键词: {}", query);
 
+        String configError = checkConfig();
+        if (configError != null) {
+            return configError;
+        }
+
+        long budgetMs = Deadline.budgetMillis(Deadline.current(), searchTimeoutMs);
+        if (budgetMs <= 0) {
+            logger.warn("请求已超过截止时间，跳过搜索: {}", query);
+            return "搜索出错: 请求已超过截止时间";
+        }
+
+        long start = System.nanoTime();
+        try {
+            JsonNode rootNode = fetch(query, budgetMs, Span.current());
+            // 解析并格式化响应
+            String result = formatResponse(rootNode);
+            trafficLogger.logTool("searchWeb", query, result, (System.nanoTime() - start) / 1_000_000, true);
+            return result;
+        } catch (Exception e) {
+            logger.error("搜索关键词时发生错误: {}", query, e);
+            trafficLogger.logTool("searchWeb", query, e.getMessage(), (System.nanoTime() - start) / 1_000_000, false);
+            return "搜索出错: " + e.getMessage();
+        }
+    }
+
+    /**
+     * 并发执行多个搜索查询并合并结果
+     * 同一URL在多个查询中出现时只保留一条，按倒数排名融合得分排序，输出不超过结果字符数上限
+     * @param queries 搜索查询词列表
+     * @return 合并后的搜索结果
+     */
+    @Tool("需要从多个角度或用不同措辞查询同一问题时使用，一次并发执行多个搜索并合并去重结果，比多次调用searchWeb更快")
+    public String searchWebMulti(@P("2到5个措辞或角度不同的搜索查询") List<String> queries) {
+        Set<String> distinct = new LinkedHashSet<>();
+        if (queries != null) {
+            for (String query : queries) {
+                if (query != null && !query.isBlank() && distinct.size() < maxQueries) {
+                    distinct.add(query.trim());
+                }
+            }
+        }
+        if (distinct.isEmpty()) {
+            return "搜索出错: 未提供搜索查询";
+        }
+        if (distinct.size() == 1) {
+            return searchWeb(distinct.iterator().next());
+        }
+        logger.info("正在并发搜索{}个查询: {}", distinct.size(), distinct);
+
+        String configError = checkConfig();
+        if (configError != null) {
+            return configError;
+        }
+
+        long budgetMs = Deadline.budgetMillis(Deadline.current(), searchTimeoutMs);
+        if (budgetMs <= 0) {
+            logger.warn("请求已超过截止时间，跳过搜索: {}", distinct);
+            return "搜索出错: 请求已超过截止时间";
+        }
+
+        long start = System.nanoTime();
+        List<String> queryList = new ArrayList<>(distinct);
+        List<Future<JsonNode>> futures = new ArrayList<>(queryList.size());
+        // 查询在线程池中执行，各自的请求段挂在当前工具段下
+        Span parent = Span.current();
+        for (String query : queryList) {
+            futures.add(searchExecutor.submit(() -> fetch(query, budgetMs, parent)));
+        }
+
+        // 所有查询共用同一个时间预算
+        long waitUntil = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budgetMs);
+        List<JsonNode> responses = new ArrayList<>(queryList.size());
+        Map<String, String> failures = new LinkedHashMap<>();
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                responses.add(futures.get(i).get(Math.max(0, waitUntil - System.nanoTime()), TimeUnit.NANOSECONDS));
+            } catch (TimeoutException e) {
+                futures.get(i).cancel(true);
+                responses.add(null);
+                failures.put(queryList.get(i), "超时");
+            } catch (ExecutionException e) {
+                responses.add(null);
+                failures.put(queryList.get(i), e.getCause().getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.forEach(future -> future.cancel(true));
+                return "搜索出错: 搜索被中断";
+            }
+        }
+
+        String joinedQueries = String.join(" | ", queryList);
+        if (failures.size() == queryList.size()) {
+            String message = "搜索出错: " + failures.values().iterator().next();
+            trafficLogger.logTool("searchWebMulti", joinedQueries, message, (System.nanoTime() - start) / 1_000_000, false);
+            return message;
+        }
+        String result = mergeResponses(queryList, responses, failures);
+        trafficLogger.logTool("searchWebMulti", joinedQueries, result, (System.nanoTime() - start) / 1_000_000, true);
+        return result;
+    }
+
+    private String checkConfig() {
         // 检查配置是否正确加载
         if (tavilyConfig.apiUrl == null) {
             logger.error("Tavily API URL 未配置");
             return "搜索出错: Tavily API URL 未配置";
         }
-        
+
         if (tavilyConfig.apiKey == null) {
             logger.error("Tavily API Key 未配置");
             return "搜索出错: Tavily API Key 未配置";
         }
+        return null;
+    }
+
+    /**
+     * 执行一次搜索请求
+     * @param query 搜索查询词
+     * @param budgetMs 连接、等待连接池和响应各自的超时时间
+     * @param parent 请求段的父段
+     * @return 解析后的响应，API返回错误时抛出异常
+     */
+    private JsonNode fetch(String query, long budgetMs, Span parent) throws Exception {
+        // 创建请求载荷
+        String requestBody = createRequestBody(query);
+        Span span = parent.startChild("tavily.search", Span.KIND_CLIENT);
+        if (span.isSampled()) {
+            span.setAttribute("http.request.body.size", requestBody.getBytes(StandardCharsets.UTF_8).length);
+        }
 
-        try (CloseableHttpClient httpClient = HttpClients.createDefault()) {
-            // 创建请求载荷
-            String requestBody = createRequestBody(query);
-            
-            // 创建HTTP POST请求
-            String fullUrl = tavilyConfig.apiUrl + "/search";
-            HttpPost httpPost = new HttpPost(fullUrl);
-            httpPost.setEntity(new StringEntity(requestBody, ContentType.APPLICATION_JSON));
-            httpPost.setHeader("Authorization", "Bearer " + tavilyConfig.apiKey);
-            httpPost.setHeader("Content-Type", "application/json");
-
-            // 执行请求
-            try (CloseableHttpResponse response = httpClient.execute(httpPost)) {
-                // 读取响应
-                String responseBody = readResponseBody(response);
-                
-                // 解析并格式化响应
-                return parseAndFormatResponse(responseBody);
+        // 创建HTTP POST请求
+        String fullUrl = tavilyConfig.apiUrl + "/search";
+        HttpPost httpPost = new HttpPost(fullUrl);
+        httpPost.setEntity(new StringEntity(requestBody, ContentType.APPLICATION_JSON));
+        httpPost.setHeader("Authorization", "Bearer " + tavilyConfig.apiKey);
+        httpPost.setHeader("Content-Type", "application/json");
+        // 等待连接池和等待响应都只使用剩余的时间预算
+        httpPost.setConfig(RequestConfig.custom()
+                .setConnectionRequestTimeout(Timeout.ofMilliseconds(budgetMs))
+                .setResponseTimeout(Timeout.ofMilliseconds(budgetMs))
+                .build());
+
+        // 执行请求
+        try (CloseableHttpResponse response = httpClient.execute(httpPost)) {
+            String responseBody = readResponseBody(response);
+            if (span.isSampled()) {
+                span.setAttribute("http.response.status_code", response.getCode())
+                        .setAttribute("http.response.body.size", responseBody.getBytes(StandardCharsets.UTF_8).length);
+            }
+            JsonNode rootNode = objectMapper.readTree(responseBody);
+            // 检查响应中是否有错误
+            if (rootNode.has("error")) {
+                String errorMessage = rootNode.get("error").asText();
+                logger.error("Tavily API 错误: {}", errorMessage);
+                throw new IllegalStateException("Tavily API 错误: " + errorMessage);
             }
+            JsonNode results = rootNode.get("results");
+            span.setAttribute("search.results", results != null ? results.size() : 0).setOk();
+            return rootNode;
         } catch (Exception e) {
-            logger.error("搜索关键词时发生错误: {}", query, e);
-            return "搜索出错: " + e.getMessage();
+            span.recordError(e);
+            throw e;
+        } finally {
+            span.end();
         }
     }
 
@@ -98,7 +301,7 @@ public class TavilySearchTool {
                 .put("include_images", false)     // 不包含图片
                 .put("include_raw_content", false) // 不包含原始内容
                 .put("max_results", 5);           // 最大结果数
-        
+
         return objectMapper.writeValueAsString(requestBody);
     }
 
@@ -109,49 +312,188 @@ public class TavilySearchTool {
      * @throws IOException IO异常
      */
     private String readResponseBody(CloseableHttpResponse response) throws IOException {
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(response.getEntity().getContent()))) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(response.getEntity().getContent(), StandardCharsets.UTF_8))) {
             return reader.lines().collect(Collectors.joining("\n"));
         }
     }
 
     /**
-     * 解析并格式化API响应
-     * @param responseBody 原始响应体字符串
+     * 格式化单个查询的响应
+     * @param rootNode 解析后的响应
      * @return 格式化的搜索结果
-     * @throws Exception 解析过程中可能发生的异常
      */
-    private String parseAndFormatResponse(String responseBody) throws Exception {
-        JsonNode rootNode = objectMapper.readTree(responseBody);
-        
-        // 检查响应中是否有错误
-        if (rootNode.has("error")) {
-            String errorMessage = rootNode.get("error").asText();
-            logger.error("Tavily API 错误: {}", errorMessage);
-            return "Tavily API 错误: " + errorMessage;
-        }
-        
+    private String formatResponse(JsonNode rootNode) {
         // 提取答案（如果可用）
         StringBuilder result = new StringBuilder();
         if (rootNode.has("answer") && !rootNode.get("answer").isNull()) {
             result.append("答案: ").append(rootNode.get("answer").asText()).append("\n\n");
         }
-        
+
         // 提取结果
         if (rootNode.has("results")) {
             JsonNode resultsNode = rootNode.get("results");
             if (resultsNode.isArray() && resultsNode.size() > 0) {
                 result.append("热门结果:\n");
-                for (int i = 0; i < Math.min(resultsNode.size(), 3); i++) {
+                for (int i = 0; i < Math.min(resultsNode.size(), SINGLE_QUERY_RESULTS); i++) {
                     JsonNode resultNode = resultsNode.get(i);
                     String title = resultNode.has("title") ? resultNode.get("title").asText() : "无标题";
-                    String content = resultNode.has("content") ? resultNode.get("content").asText() : "无内容";
+                    String content = resultNode.has("content") ? truncateContent(resultNode.get("content").asText(), maxContentChars) : "无内容";
                     String url = resultNode.has("url") ? resultNode.get("url").asText() : "无URL";
-                    
+
                     result.append(String.format("%d. %s\n   %s\n   来源: %s\n\n", i + 1, title, content, url));
                 }
             }
         }
-        
+
+        return result.length() > 0 ? result.toString().trim() : "未找到结果。";
+    }
+
+    /**
+     * 合并多个查询的响应
+     * 结果按规范化的URL去重，得分为各查询中 1/(RRF_K+名次) 之和，被多个查询命中的结果排在前面；
+     * 各查询的答案去重后列出。输出超过结果字符数上限时不再追加后续结果
+     */
+    private String mergeResponses(List<String> queries, List<JsonNode> responses, Map<String, String> failures) {
+        Map<String, MergedResult> merged = new LinkedHashMap<>();
+        Map<String, String> answers = new LinkedHashMap<>();
+        for (int q = 0; q < queries.size(); q++) {
+            JsonNode rootNode = responses.get(q);
+            if (rootNode == null) {
+                continue;
+            }
+            JsonNode answer = rootNode.get("answer");
+            if (answer != null && !answer.isNull() && !answer.asText().isBlank()) {
+                answers.putIfAbsent(answer.asText().trim(), queries.get(q));
+            }
+            JsonNode resultsNode = rootNode.get("results");
+            if (resultsNode == null || !resultsNode.isArray()) {
+                continue;
+            }
+            for (int rank = 0; rank < resultsNode.size(); rank++) {
+                JsonNode resultNode = resultsNode.get(rank);
+                String url = resultNode.has("url") ? resultNode.get("url").asText() : null;
+                if (url == null || url.isBlank()) {
+                    continue;
+                }
+                MergedResult result = merged.computeIfAbsent(normalizeUrl(url), key -> new MergedResult(url));
+                result.score += 1.0 / (RRF_K + rank + 1);
+                result.hits++;
+                String content = resultNode.has("content") ? resultNode.get("content").asText() : "";
+                // 保留正文最长的一条
+                if (content.length() > result.content.length()) {
+                    result.content = content;
+                    result.title = resultNode.has("title") ? resultNode.get("title").asText() : result.title;
+                } else if (result.title == null && resultNode.has("title")) {
+                    result.title = resultNode.get("title").asText();
+                }
+            }
+        }
+
+        StringBuilder result = new StringBuilder();
+        if (!answers.isEmpty()) {
+            if (answers.size() == 1) {
+                result.append("答案: ").append(answers.keySet().iterator().next()).append("\n\n");
+            } else {
+                result.append("答案:\n");
+                answers.forEach((answer, query) -> result.append("- [").append(query).append("] ").append(answer).append('\n'));
+                result.append('\n');
+            }
+        }
+
+        List<MergedResult> ranked = merged.values().stream()
+                .sorted((a, b) -> Double.compare(b.score, a.score))
+                .limit(maxMergedResults)
+                .toList();
+        if (!ranked.isEmpty()) {
+            result.append(String.format("合并结果（%d个查询，%d条去重结果）:\n", queries.size() - failures.size(), merged.size()));
+            // 正文长度按剩余预算平均分配，每条不超过maxContentChars
+            int contentChars = Math.min(maxContentChars,
+                    Math.max(100, (maxResultChars - result.length()) / ranked.size() - 80));
+            int shown = 0;
+            for (MergedResult item : ranked) {
+                String entry = String.format("%d. %s\n   %s\n   来源: %s%s\n\n", shown + 1,
+                        item.title != null ? item.title : "无标题",
+                        item.content.isEmpty() ? "无内容" : truncateContent(item.content, contentChars),
+                        item.url, item.hits > 1 ? "（" + item.hits + "个查询命中）" : "");
+                if (shown > 0 && result.length() + entry.length() > maxResultChars) {
+                    result.append("（另有").append(ranked.size() - shown).append("条结果因长度限制省略）\n");
+                    break;
+                }
+                result.append(entry);
+                shown++;
+            }
+        }
+
+        if (!failures.isEmpty()) {
+            failures.forEach((query, reason) -> result.append("查询失败: ").append(query).append("（").append(reason).append("）\n"));
+        }
         return result.length() > 0 ? result.toString().trim() : "未找到结果。";
     }
-}
\ No newline at end of file
+
+    /**
+     * 规范化URL用于去重：忽略协议、主机名大小写、www前缀、片段和末尾斜杠
+     * 路径和查询参数区分大小写，只在主机部分转为小写
+     */
+    static String normalizeUrl(String url) {
+        String normalized = url.trim();
+        int fragment = normalized.indexOf('#');
+        if (fragment >= 0) {
+            normalized = normalized.substring(0, fragment);
+        }
+        int scheme = normalized.indexOf("://");
+        if (scheme >= 0) {
+            normalized = normalized.substring(scheme + 3);
+        }
+        int hostEnd = normalized.length();
+        for (int i = 0; i < normalized.length(); i++) {
+            char c = normalized.charAt(i);
+            if (c == '/' || c == '?') {
+                hostEnd = i;
+                break;
+            }
+        }
+        String host = normalized.substring(0, hostEnd).toLowerCase(Locale.ROOT);
+        if (host.startsWith("www.")) {
+            host = host.substring(4);
+        }
+        normalized = host + normalized.substring(hostEnd);
+        while (normalized.endsWith("/")) {
+            normalized = normalized.substring(0, normalized.length() - 1);
+        }
+        return normalized;
+    }
+
+    /**
+     * 截断过长的结果正文
+     * @param content 结果正文
+     * @param limit 最大字符数
+     * @return 不超过limit的正文，截断时注明原长度
+     */
+    private static String truncateContent(String content, int limit) {
+        if (content.length() <= limit) {
+            return content;
+        }
+        return content.substring(0, limit) + "…（正文共" + content.length() + "字，已截断）";
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        searchExecutor.shutdownNow();
+        httpClient.close();
+    }
+
+    /**
+     * 按URL合并的搜索结果
+     */
+    private static final class MergedResult {
+        private final String url;
+        private String title;
+        private String content = "";
+        private double score;
+        private int hits;
+
+        MergedResult(String url) {
+            this.url = url;
+        }
+    }
+}
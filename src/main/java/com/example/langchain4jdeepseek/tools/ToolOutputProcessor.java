@@ -0,0 +1,251 @@
+package com.example.langchain4jdeepseek.tools;
+
+import com.example.langchain4jdeepseek.config.ToolOutputProperties;
+import com.example.langchain4jdeepseek.context.ContextBudget;
+import com.example.langchain4jdeepseek.context.TokenEstimator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * 工具输出后处理
+ * 在结果交给模型前压缩JSON、折叠重复行、压缩表格对齐空白，
+ * 仍超出上限时按行保留开头和结尾，并标注省略的范围以便模型按需重新获取
+ */
+@Component
+public class ToolOutputProcessor {
+
+    // 为省略标记预留的token数
+    private static final long MARKER_TOKENS = 48;
+
+    // 表格列之间的对齐空白
+    private static final Pattern COLUMN_PADDING = Pattern.compile("(?<=\\S) {2,}(?=\\S)");
+
+    // 判定为表格输出的最少行数及对齐行占比
+    private static final int TABLE_MIN_LINES = 5;
+    private static final double TABLE_MIN_RATIO = 0.6;
+
+    private final ToolOutputProperties properties;
+    private final TokenEstimator tokenEstimator;
+    private final ContextBudget contextBudget;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder truncated = new LongAdder();
+    private final LongAdder tokensIn = new LongAdder();
+    private final LongAdder tokensOut = new LongAdder();
+
+    public ToolOutputProcessor(ToolOutputProperties properties, TokenEstimator tokenEstimator,
+                               ContextBudget contextBudget) {
+        this.properties = properties;
+        this.tokenEstimator = tokenEstimator;
+        this.contextBudget = contextBudget;
+    }
+
+    /**
+     * 处理工具输出
+     * @param tool 工具名
+     * @param text 原始输出
+     * @param scenarioLimit 场景允许的工具结果token上限
+     * @return 处理后的输出
+     */
+    public String process(String tool, String text, long scenarioLimit) {
+        if (text == null || text.isBlank()) {
+            return text;
+        }
+        long limit = Math.min(scenarioLimit, properties.maxTokensFor(tool));
+        long before = tokenEstimator.estimate(text);
+        processed.increment();
+        tokensIn.add(before);
+
+        String result = compactJson(text);
+        List<Line> lines = collapseRepeats(result);
+        result = join(lines);
+
+        if (tokenEstimator.estimate(result) > limit && isTable(lines)) {
+            lines = compactTable(lines);
+            result = join(lines);
+        }
+        if (tokenEstimator.estimate(result) > limit) {
+            truncated.increment();
+            result = keepHeadAndTail(tool, lines, limit);
+        }
+        // 按行拼接会补上结尾换行，原输出没有时去掉
+        if (!text.endsWith("\n") && result.endsWith("\n")) {
+            result = result.substring(0, result.length() - 1);
+        }
+
+        tokensOut.add(tokenEstimator.estimate(result));
+        return result;
+    }
+
+    /**
+     * 获取处理统计
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("processed", processed.sum());
+        result.put("truncated", truncated.sum());
+        result.put("tokensIn", tokensIn.sum());
+        result.put("tokensOut", tokensOut.sum());
+        return result;
+    }
+
+    /**
+     * JSON输出去掉缩进和换行，解析失败时原样返回
+     */
+    private String compactJson(String text) {
+        String trimmed = text.strip();
+        if (!(trimmed.startsWith("{") && trimmed.endsWith("}"))
+                && !(trimmed.startsWith("[") && trimmed.endsWith("]"))) {
+            return text;
+        }
+        try {
+            JsonNode node = objectMapper.readTree(trimmed);
+            return objectMapper.writeValueAsString(node);
+        } catch (Exception e) {
+            return text;
+        }
+    }
+
+    /**
+     * 折叠连续重复的行和连续空行，保留原始行号
+     */
+    private List<Line> collapseRepeats(String text) {
+        String[] raw = text.split("\n", -1);
+        int length = raw.length;
+        // 去掉末尾换行产生的空行
+        if (length > 0 && raw[length - 1].isEmpty()) {
+            length--;
+        }
+
+        int threshold = Math.max(2, properties.getCollapseRepeatedLines());
+        List<Line> lines = new ArrayList<>();
+        int i = 0;
+        while (i < length) {
+            int j = i + 1;
+            while (j < length && raw[j].equals(raw[i])) {
+                j++;
+            }
+            int repeats = j - i;
+            if (raw[i].isBlank()) {
+                lines.add(new Line("", i + 1));
+            } else if (repeats >= threshold) {
+                lines.add(new Line(raw[i], i + 1));
+                lines.add(new Line("[... 上一行又重复了" + (repeats - 1) + "次 ...]", i + 2));
+            } else {
+                for (int k = i; k < j; k++) {
+                    lines.add(new Line(raw[k], k + 1));
+                }
+            }
+            i = j;
+        }
+        return lines;
+    }
+
+    private boolean isTable(List<Line> lines) {
+        if (lines.size() < TABLE_MIN_LINES) {
+            return false;
+        }
+        long aligned = lines.stream().filter(line -> COLUMN_PADDING.matcher(line.text()).find()).count();
+        return aligned >= lines.size() * TABLE_MIN_RATIO;
+    }
+
+    /**
+     * 将表格列之间的对齐空白压缩为制表符
+     */
+    private List<Line> compactTable(List<Line> lines) {
+        List<Line> compacted = new ArrayList<>(lines.size());
+        for (Line line : lines) {
+            compacted.add(new Line(COLUMN_PADDING.matcher(line.text().strip()).replaceAll("\t"), line.number()));
+        }
+        return compacted;
+    }
+
+    /**
+     * 按行保留开头和结尾，中间替换为省略标记
+     */
+    private String keepHeadAndTail(String tool, List<Line> lines, long limit) {
+        long keep = Math.max(0, limit - MARKER_TOKENS);
+        long headBudget = (long) (keep * properties.headRatioFor(tool));
+        long tailBudget = keep - headBudget;
+
+        int headEnd = 0;
+        long used = 0;
+        while (headEnd < lines.size()) {
+            long cost = lineTokens(lines.get(headEnd));
+            if (used + cost > headBudget) {
+                break;
+            }
+            used += cost;
+            headEnd++;
+        }
+
+        int tailStart = lines.size();
+        used = 0;
+        while (tailStart > headEnd) {
+            long cost = lineTokens(lines.get(tailStart - 1));
+            if (used + cost > tailBudget) {
+                break;
+            }
+            used += cost;
+            tailStart--;
+        }
+
+        // 单行过长（如压缩后的JSON）时按字符截断
+        if (headEnd == 0 && tailStart == lines.size()) {
+            return contextBudget.clip(join(lines), limit);
+        }
+
+        List<Line> omitted = lines.subList(headEnd, tailStart);
+        long omittedTokens = 0;
+        for (Line line : omitted) {
+            omittedTokens += lineTokens(line);
+        }
+        int firstOmitted = omitted.get(0).number();
+        int lastOmitted = tailStart < lines.size() ? lines.get(tailStart).number() - 1 : omitted.get(omitted.size() - 1).number();
+
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < headEnd; i++) {
+            result.append(lines.get(i).text()).append('\n');
+        }
+        result.append("[... 已省略原输出第").append(firstOmitted).append('-').append(lastOmitted)
+                .append("行，约").append(omittedTokens).append("个token。").append(hint(tool)).append(" ...]\n");
+        for (int i = tailStart; i < lines.size(); i++) {
+            result.append(lines.get(i).text()).append('\n');
+        }
+        return result.toString();
+    }
+
+    private String hint(String tool) {
+        if ("executeCommand".equals(tool)) {
+            return "如需查看，请用grep、head、tail或sed -n '起始行,结束行p'缩小输出范围后重新执行";
+        }
+        return "如需查看，请缩小查询范围后重新调用工具";
+    }
+
+    private long lineTokens(Line line) {
+        return tokenEstimator.estimate(line.text()) + 1;
+    }
+
+    private static String join(List<Line> lines) {
+        StringBuilder result = new StringBuilder();
+        for (Line line : lines) {
+            result.append(line.text()).append('\n');
+        }
+        return result.toString();
+    }
+
+    /**
+     * 输出中的一行及其在原始输出中的行号
+     */
+    private record Line(String text, int number) {
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.langchain4jdeepseek.tools;
+
+/**
+ * 工具执行进度的接收方
+ * 流式会话将接收方绑定到执行工具的线程，工具运行过程中通过current()上报增量输出；
+ * 未绑定时工具不上报。接收方的实现不能阻塞，输出只应放入队列后立即返回
+ */
+public final class ToolProgress {
+
+    private static final ThreadLocal<Listener> CURRENT = new ThreadLocal<>();
+
+    private ToolProgress() {
+    }
+
+    /**
+     * 获取当前线程绑定的接收方
+     * @return 接收方，未绑定时返回null
+     */
+    public static Listener current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 将接收方绑定到当前线程
+     * @param listener 接收方
+     * @return 之前绑定的接收方，用于恢复
+     */
+    public static Listener bind(Listener listener) {
+        Listener previous = CURRENT.get();
+        CURRENT.set(listener);
+        return previous;
+    }
+
+    /**
+     * 恢复之前绑定的接收方
+     * @param previous bind返回的接收方
+     */
+    public static void restore(Listener previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    /**
+     * 增量输出的接收方
+     */
+    @FunctionalInterface
+    public interface Listener {
+        /**
+         * @param tool 工具名称
+         * @param chunk 输出片段
+         */
+        void onOutput(String tool, String chunk);
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.langchain4jdeepseek.tracing;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * 将每批段作为一行OTLP/JSON追加到本地文件，可由收集器的otlpjsonfile接收器读取
+ * 文件超过大小上限时轮转：当前文件改名为.1，已有的.1、.2依次后移，超出保留个数的最旧文件被删除
+ */
+class OtlpFileExporter implements SpanExporter {
+
+    private final Path file;
+    private final String serviceName;
+    private final String scopeName;
+    private final long maxBytes;
+    private final int maxFiles;
+    private final ByteArrayOutputStream batch = new ByteArrayOutputStream(64 * 1024);
+    private OutputStream out;
+    private long size;
+
+    /**
+     * @param maxBytes 单个文件的大小上限，不大于0时不轮转
+     * @param maxFiles 轮转后保留的旧文件个数
+     */
+    OtlpFileExporter(Path file, String serviceName, String scopeName, long maxBytes, int maxFiles) throws IOException {
+        this.file = file;
+        this.serviceName = serviceName;
+        this.scopeName = scopeName;
+        this.maxBytes = maxBytes;
+        this.maxFiles = maxFiles;
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        open();
+    }
+
+    @Override
+    public void export(List<Span> spans) throws IOException {
+        batch.reset();
+        OtlpJsonEncoder.encode(spans, serviceName, scopeName, batch);
+        batch.write('\n');
+        if (maxBytes > 0 && size > 0 && size + batch.size() > maxBytes) {
+            rotate();
+        }
+        batch.writeTo(out);
+        out.flush();
+        size += batch.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private void open() throws IOException {
+        this.out = Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.size = Files.size(file);
+    }
+
+    private void rotate() throws IOException {
+        out.close();
+        if (maxFiles > 0) {
+            Files.deleteIfExists(rotated(maxFiles));
+            for (int i = maxFiles - 1; i >= 1; i--) {
+                Path source = rotated(i);
+                if (Files.exists(source)) {
+                    Files.move(source, rotated(i + 1), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            Files.move(file, rotated(1), StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Files.deleteIfExists(file);
+        }
+        open();
+    }
+
+    private Path rotated(int index) {
+        return file.resolveSibling(file.getFileName() + "." + index);
+    }
+}
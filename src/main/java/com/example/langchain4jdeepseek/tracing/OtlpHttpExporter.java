@@ -0,0 +1,51 @@
+package com.example.langchain4jdeepseek.tracing;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * 通过OTLP/HTTP的JSON编码将每批段发送到收集器，如http://localhost:4318/v1/traces
+ */
+class OtlpHttpExporter implements SpanExporter {
+
+    private final URI endpoint;
+    private final String serviceName;
+    private final String scopeName;
+    private final Duration timeout;
+    private final HttpClient httpClient;
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(64 * 1024);
+
+    OtlpHttpExporter(String endpoint, String serviceName, String scopeName, long timeoutMs) {
+        this.endpoint = URI.create(endpoint);
+        this.serviceName = serviceName;
+        this.scopeName = scopeName;
+        this.timeout = Duration.ofMillis(timeoutMs);
+        this.httpClient = HttpClient.newBuilder().connectTimeout(timeout).build();
+    }
+
+    @Override
+    public void export(List<Span> spans) throws IOException {
+        buffer.reset();
+        OtlpJsonEncoder.encode(spans, serviceName, scopeName, buffer);
+        HttpRequest request = HttpRequest.newBuilder(endpoint)
+                .timeout(timeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(buffer.toByteArray()))
+                .build();
+        try {
+            HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() / 100 != 2) {
+                throw new IOException("Collector returned HTTP " + response.statusCode());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while exporting spans", e);
+        }
+    }
+}
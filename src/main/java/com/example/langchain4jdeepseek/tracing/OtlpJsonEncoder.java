@@ -0,0 +1,104 @@
+package com.example.langchain4jdeepseek.tracing;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * 按OTLP/JSON编码一批段
+ * 输出为一个ExportTraceServiceRequest对象，可直接POST到收集器的/v1/traces，
+ * 也可按行写入文件供收集器的otlpjsonfile接收器读取。64位整数按protobuf的JSON映射写成字符串
+ */
+final class OtlpJsonEncoder {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final HexFormat HEX = HexFormat.of();
+
+    private OtlpJsonEncoder() {
+    }
+
+    static void encode(List<Span> spans, String serviceName, String scopeName, OutputStream out) throws IOException {
+        try (JsonGenerator json = JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8)) {
+            json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            json.writeStartObject();
+            json.writeArrayFieldStart("resourceSpans");
+            json.writeStartObject();
+
+            json.writeObjectFieldStart("resource");
+            json.writeArrayFieldStart("attributes");
+            writeAttribute(json, "service.name", serviceName, 0);
+            json.writeEndArray();
+            json.writeEndObject();
+
+            json.writeArrayFieldStart("scopeSpans");
+            json.writeStartObject();
+            json.writeObjectFieldStart("scope");
+            json.writeStringField("name", scopeName);
+            json.writeEndObject();
+            json.writeArrayFieldStart("spans");
+            for (Span span : spans) {
+                writeSpan(json, span);
+            }
+            json.writeEndArray();
+            json.writeEndObject();
+            json.writeEndArray();
+
+            json.writeEndObject();
+            json.writeEndArray();
+            json.writeEndObject();
+        }
+    }
+
+    private static void writeSpan(JsonGenerator json, Span span) throws IOException {
+        synchronized (span) {
+            json.writeStartObject();
+            json.writeStringField("traceId", HEX.toHexDigits(span.traceIdHigh) + HEX.toHexDigits(span.traceIdLow));
+            json.writeStringField("spanId", HEX.toHexDigits(span.spanId));
+            if (span.parentSpanId != 0) {
+                json.writeStringField("parentSpanId", HEX.toHexDigits(span.parentSpanId));
+            }
+            json.writeStringField("name", span.name);
+            json.writeNumberField("kind", span.kind);
+            json.writeStringField("startTimeUnixNano", Long.toString(span.startEpochNanos));
+            json.writeStringField("endTimeUnixNano", Long.toString(span.endEpochNanos));
+            json.writeArrayFieldStart("attributes");
+            for (int i = 0; i < span.attributeCount; i++) {
+                writeAttribute(json, span.keys[i], span.values[i], span.numbers[i]);
+            }
+            json.writeEndArray();
+            if (span.droppedAttributes > 0) {
+                json.writeNumberField("droppedAttributesCount", span.droppedAttributes);
+            }
+            json.writeObjectFieldStart("status");
+            json.writeNumberField("code", span.status);
+            if (span.statusMessage != null) {
+                json.writeStringField("message", span.statusMessage);
+            }
+            json.writeEndObject();
+            json.writeEndObject();
+        }
+    }
+
+    /**
+     * 写出属性，value为null时是整数属性
+     */
+    private static void writeAttribute(JsonGenerator json, String key, Object value, long number) throws IOException {
+        json.writeStartObject();
+        json.writeStringField("key", key);
+        json.writeObjectFieldStart("value");
+        if (value == null) {
+            json.writeStringField("intValue", Long.toString(number));
+        } else if (value instanceof Boolean bool) {
+            json.writeBooleanField("boolValue", bool);
+        } else {
+            json.writeStringField("stringValue", value.toString());
+        }
+        json.writeEndObject();
+        json.writeEndObject();
+    }
+}
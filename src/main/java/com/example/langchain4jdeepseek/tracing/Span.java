@@ -0,0 +1,230 @@
+package com.example.langchain4jdeepseek.tracing;
+
+/**
+ * 追踪中的一个时间段，如一轮对话、一次模型调用或一次工具调用
+ * 未采样时使用共享的空实现，创建子段、设置属性和结束都不分配对象；采样的段属性保存在定长数组中，
+ * 结束后交给Tracer异步导出。与截止时间一样，当前段绑定在线程上，换线程执行时需要重新绑定
+ */
+public final class Span {
+
+    public static final int KIND_INTERNAL = 1;
+    public static final int KIND_SERVER = 2;
+    public static final int KIND_CLIENT = 3;
+
+    public static final int STATUS_UNSET = 0;
+    public static final int STATUS_OK = 1;
+    public static final int STATUS_ERROR = 2;
+
+    // 单个段最多保留的属性数，超出的属性丢弃
+    private static final int MAX_ATTRIBUTES = 24;
+
+    static final Span NOOP = new Span();
+
+    private static final ThreadLocal<Span> CURRENT = new ThreadLocal<>();
+
+    private final Tracer tracer;
+    final long traceIdHigh;
+    final long traceIdLow;
+    final long spanId;
+    final long parentSpanId;
+    final String name;
+    final int kind;
+    final long startEpochNanos;
+
+    // 以下字段由this保护，导出线程在结束之后读取
+    final String[] keys;
+    final Object[] values;
+    final long[] numbers;
+    int attributeCount;
+    int droppedAttributes;
+    int status;
+    String statusMessage;
+    long endEpochNanos;
+    private boolean ended;
+
+    private Span() {
+        this.tracer = null;
+        this.traceIdHigh = 0;
+        this.traceIdLow = 0;
+        this.spanId = 0;
+        this.parentSpanId = 0;
+        this.name = null;
+        this.kind = KIND_INTERNAL;
+        this.startEpochNanos = 0;
+        this.keys = null;
+        this.values = null;
+        this.numbers = null;
+        this.ended = true;
+    }
+
+    Span(Tracer tracer, long traceIdHigh, long traceIdLow, long spanId, long parentSpanId, String name, int kind) {
+        this.tracer = tracer;
+        this.traceIdHigh = traceIdHigh;
+        this.traceIdLow = traceIdLow;
+        this.spanId = spanId;
+        this.parentSpanId = parentSpanId;
+        this.name = name;
+        this.kind = kind;
+        this.startEpochNanos = tracer.nowEpochNanos();
+        this.keys = new String[MAX_ATTRIBUTES];
+        this.values = new Object[MAX_ATTRIBUTES];
+        this.numbers = new long[MAX_ATTRIBUTES];
+    }
+
+    /**
+     * 获取当前线程绑定的段
+     * @return 当前段，未绑定时返回未采样的空实现
+     */
+    public static Span current() {
+        Span span = CURRENT.get();
+        return span != null ? span : NOOP;
+    }
+
+    /**
+     * 将段绑定到当前线程
+     * @param span 段
+     * @return 之前绑定的段，用于恢复
+     */
+    public static Span bind(Span span) {
+        Span previous = CURRENT.get();
+        if (span == null || span == NOOP) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(span);
+        }
+        return previous;
+    }
+
+    /**
+     * 恢复之前绑定的段
+     * @param previous bind返回的段
+     */
+    public static void restore(Span previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    public boolean isSampled() {
+        return this != NOOP;
+    }
+
+    /**
+     * 创建子段，本段未采样时返回空实现
+     */
+    public Span startChild(String name, int kind) {
+        if (this == NOOP) {
+            return NOOP;
+        }
+        return tracer.startChild(this, name, kind);
+    }
+
+    public Span setAttribute(String key, String value) {
+        if (this != NOOP && value != null) {
+            put(key, value, 0);
+        }
+        return this;
+    }
+
+    public Span setAttribute(String key, long value) {
+        if (this != NOOP) {
+            put(key, null, value);
+        }
+        return this;
+    }
+
+    public Span setAttribute(String key, boolean value) {
+        if (this != NOOP) {
+            put(key, value, 0);
+        }
+        return this;
+    }
+
+    /**
+     * 标记成功
+     */
+    public Span setOk() {
+        if (this != NOOP) {
+            synchronized (this) {
+                if (!ended && status == STATUS_UNSET) {
+                    status = STATUS_OK;
+                }
+            }
+        }
+        return this;
+    }
+
+    /**
+     * 标记失败并记录异常类型
+     */
+    public Span recordError(Throwable error) {
+        if (this == NOOP || error == null) {
+            return this;
+        }
+        put("exception.type", error.getClass().getName(), 0);
+        return setError(error.getMessage());
+    }
+
+    /**
+     * 标记失败
+     */
+    public Span setError(String message) {
+        if (this != NOOP) {
+            synchronized (this) {
+                if (!ended) {
+                    status = STATUS_ERROR;
+                    statusMessage = message;
+                }
+            }
+        }
+        return this;
+    }
+
+    /**
+     * 结束并提交导出，重复调用只生效一次
+     */
+    public void end() {
+        if (this == NOOP) {
+            return;
+        }
+        synchronized (this) {
+            if (ended) {
+                return;
+            }
+            ended = true;
+            endEpochNanos = tracer.nowEpochNanos();
+        }
+        tracer.onEnd(this);
+    }
+
+    /**
+     * 自开始以来经过的毫秒数
+     */
+    public long elapsedMillis() {
+        return this == NOOP ? 0 : (tracer.nowEpochNanos() - startEpochNanos) / 1_000_000;
+    }
+
+    private synchronized void put(String key, Object value, long number) {
+        if (ended) {
+            return;
+        }
+        // 同名属性覆盖
+        for (int i = 0; i < attributeCount; i++) {
+            if (keys[i].equals(key)) {
+                values[i] = value;
+                numbers[i] = number;
+                return;
+            }
+        }
+        if (attributeCount == MAX_ATTRIBUTES) {
+            droppedAttributes++;
+            return;
+        }
+        keys[attributeCount] = key;
+        values[attributeCount] = value;
+        numbers[attributeCount] = number;
+        attributeCount++;
+    }
+}
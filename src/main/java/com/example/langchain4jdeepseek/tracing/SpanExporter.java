@@ -0,0 +1,15 @@
+package com.example.langchain4jdeepseek.tracing;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 已结束段的导出方式，由Tracer的导出线程按批调用
+ */
+interface SpanExporter {
+
+    void export(List<Span> spans) throws IOException;
+
+    default void close() throws IOException {
+    }
+}
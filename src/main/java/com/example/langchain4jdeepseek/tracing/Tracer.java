@@ -0,0 +1,207 @@
+package com.example.langchain4jdeepseek.tracing;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 对话轮次的追踪
+ * 每轮对话开始时按采样率决定是否追踪，未采样的轮次及其所有子段都使用空实现，不分配对象；
+ * 采样的段结束后进入有界无锁队列，由后台线程按批编码为OTLP/JSON写入文件或发送到收集器，
+ * 队列满或导出失败时丢弃，不阻塞请求线程
+ */
+@Component
+public class Tracer implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(Tracer.class);
+
+    private static final String SCOPE_NAME = "com.example.langchain4jdeepseek";
+
+    private final boolean enabled;
+    private final double sampleRate;
+    private final int bufferSize;
+    private final int batchSize;
+    private final long exportIntervalMs;
+    private final String exporterType;
+    private final SpanExporter exporter;
+
+    // 段的时间戳以墙钟为基准、单调时钟计算增量，避免墙钟调整导致段的时长为负
+    private final long epochNanosAnchor = System.currentTimeMillis() * 1_000_000L;
+    private final long nanoTimeAnchor = System.nanoTime();
+
+    private final ConcurrentLinkedQueue<Span> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final LongAdder traces = new LongAdder();
+    private final LongAdder unsampled = new LongAdder();
+    private final LongAdder spans = new LongAdder();
+    private final LongAdder exported = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder exportFailures = new LongAdder();
+
+    private final Thread exportThread;
+    private volatile boolean running = true;
+
+    public Tracer(
+            @Value("${tracing.enabled:true}") boolean enabled,
+            @Value("${tracing.sample-rate:0.1}") double sampleRate,
+            @Value("${tracing.exporter:file}") String exporterType,
+            @Value("${tracing.file:logs/traces.jsonl}") String file,
+            @Value("${tracing.file-max-bytes:104857600}") long fileMaxBytes,
+            @Value("${tracing.file-max-files:5}") int fileMaxFiles,
+            @Value("${tracing.otlp.endpoint:http://localhost:4318/v1/traces}") String otlpEndpoint,
+            @Value("${tracing.otlp.timeout-ms:5000}") long otlpTimeoutMs,
+            @Value("${tracing.service-name:langchain4j-deepseek}") String serviceName,
+            @Value("${tracing.buffer-size:2048}") int bufferSize,
+            @Value("${tracing.batch-size:512}") int batchSize,
+            @Value("${tracing.export-interval-ms:1000}") long exportIntervalMs) throws IOException {
+        this.sampleRate = sampleRate;
+        this.bufferSize = bufferSize;
+        this.batchSize = batchSize;
+        this.exportIntervalMs = exportIntervalMs;
+        this.exporterType = exporterType;
+        this.exporter = switch (exporterType) {
+            case "file" -> new OtlpFileExporter(Path.of(file), serviceName, SCOPE_NAME, fileMaxBytes, fileMaxFiles);
+            case "otlp-http" -> new OtlpHttpExporter(otlpEndpoint, serviceName, SCOPE_NAME, otlpTimeoutMs);
+            case "none" -> null;
+            default -> throw new IllegalStateException("Unknown tracing.exporter: " + exporterType);
+        };
+        this.enabled = enabled && exporter != null;
+        this.exportThread = new Thread(this::exportLoop, "trace-exporter");
+        this.exportThread.setDaemon(true);
+        if (this.enabled) {
+            this.exportThread.start();
+        }
+    }
+
+    /**
+     * 开始一个新的追踪
+     * @param name 根段名称
+     * @param kind 段类型
+     * @return 根段，未采样时返回空实现
+     */
+    public Span startTrace(String name, int kind) {
+        if (!enabled) {
+            return Span.NOOP;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (sampleRate < 1.0 && random.nextDouble() >= sampleRate) {
+            unsampled.increment();
+            return Span.NOOP;
+        }
+        traces.increment();
+        spans.increment();
+        return new Span(this, nonZero(random), random.nextLong(), nonZero(random), 0, name, kind);
+    }
+
+    Span startChild(Span parent, String name, int kind) {
+        spans.increment();
+        return new Span(this, parent.traceIdHigh, parent.traceIdLow, nonZero(ThreadLocalRandom.current()),
+                parent.spanId, name, kind);
+    }
+
+    long nowEpochNanos() {
+        return epochNanosAnchor + (System.nanoTime() - nanoTimeAnchor);
+    }
+
+    /**
+     * 提交已结束的段，队列已满时丢弃
+     */
+    void onEnd(Span span) {
+        if (queued.incrementAndGet() > bufferSize) {
+            queued.decrementAndGet();
+            dropped.increment();
+            return;
+        }
+        queue.offer(span);
+    }
+
+    /**
+     * 获取追踪统计
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", enabled);
+        result.put("exporter", exporterType);
+        result.put("sampleRate", sampleRate);
+        result.put("traces", traces.sum());
+        result.put("unsampled", unsampled.sum());
+        result.put("spans", spans.sum());
+        result.put("queued", queued.get());
+        result.put("exported", exported.sum());
+        result.put("dropped", dropped.sum());
+        result.put("exportFailures", exportFailures.sum());
+        return result;
+    }
+
+    private void exportLoop() {
+        List<Span> batch = new ArrayList<>(batchSize);
+        long lastExport = System.nanoTime();
+        while (running || !queue.isEmpty()) {
+            Span span;
+            while (batch.size() < batchSize && (span = queue.poll()) != null) {
+                queued.decrementAndGet();
+                batch.add(span);
+            }
+            boolean due = System.nanoTime() - lastExport >= TimeUnit.MILLISECONDS.toNanos(exportIntervalMs);
+            if (!batch.isEmpty() && (batch.size() >= batchSize || due || !running)) {
+                export(batch);
+                batch.clear();
+                lastExport = System.nanoTime();
+            } else if (batch.size() < batchSize) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+            }
+        }
+        if (!batch.isEmpty()) {
+            export(batch);
+        }
+    }
+
+    private void export(List<Span> batch) {
+        try {
+            exporter.export(batch);
+            exported.add(batch.size());
+        } catch (IOException | RuntimeException e) {
+            exportFailures.increment();
+            dropped.add(batch.size());
+            logger.warn("Failed to export {} spans: {}", batch.size(), e.getMessage());
+        }
+    }
+
+    private static long nonZero(ThreadLocalRandom random) {
+        long id;
+        do {
+            id = random.nextLong();
+        } while (id == 0);
+        return id;
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        running = false;
+        if (exportThread.isAlive()) {
+            exportThread.join(TimeUnit.SECONDS.toMillis(5));
+        }
+        if (exporter != null) {
+            try {
+                exporter.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close span exporter: {}", e.getMessage());
+            }
+        }
+    }
+}
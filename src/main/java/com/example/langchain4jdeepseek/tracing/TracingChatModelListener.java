@@ -0,0 +1,103 @@
+package com.example.langchain4jdeepseek.tracing;
+
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.listener.ChatModelErrorContext;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.listener.ChatModelRequestContext;
+import dev.langchain4j.model.chat.listener.ChatModelResponseContext;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.output.TokenUsage;
+
+import java.util.List;
+
+/**
+ * 为每次模型调用创建当前段的子段
+ * 调用开始时在请求线程上创建，段保存在本次调用的属性中，响应或失败时结束；当前段未采样时不做任何记录
+ */
+public class TracingChatModelListener implements ChatModelListener {
+
+    private static final String SPAN = "tracing.span";
+
+    private final String endpoint;
+
+    public TracingChatModelListener(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    @Override
+    public void onRequest(ChatModelRequestContext requestContext) {
+        Span parent = Span.current();
+        if (!parent.isSampled()) {
+            return;
+        }
+        ChatRequest request = requestContext.chatRequest();
+        Span span = parent.startChild("chat " + request.modelName(), Span.KIND_CLIENT)
+                .setAttribute("gen_ai.system", "deepseek")
+                .setAttribute("gen_ai.request.model", request.modelName())
+                .setAttribute("model.endpoint", endpoint)
+                .setAttribute("model.request.messages", request.messages().size())
+                .setAttribute("model.request.chars", requestChars(request.messages()));
+        List<ToolSpecification> tools = request.toolSpecifications();
+        if (tools != null && !tools.isEmpty()) {
+            span.setAttribute("model.request.tools", tools.size());
+        }
+        requestContext.attributes().put(SPAN, span);
+    }
+
+    @Override
+    public void onResponse(ChatModelResponseContext responseContext) {
+        if (!(responseContext.attributes().get(SPAN) instanceof Span span)) {
+            return;
+        }
+        ChatResponse response = responseContext.chatResponse();
+        TokenUsage usage = response.tokenUsage();
+        if (usage != null) {
+            if (usage.inputTokenCount() != null) {
+                span.setAttribute("gen_ai.usage.input_tokens", usage.inputTokenCount());
+            }
+            if (usage.outputTokenCount() != null) {
+                span.setAttribute("gen_ai.usage.output_tokens", usage.outputTokenCount());
+            }
+        }
+        if (response.finishReason() != null) {
+            span.setAttribute("gen_ai.response.finish_reason", response.finishReason().name());
+        }
+        AiMessage aiMessage = response.aiMessage();
+        if (aiMessage != null) {
+            span.setAttribute("model.response.chars", aiMessage.text() != null ? aiMessage.text().length() : 0);
+            if (aiMessage.hasToolExecutionRequests()) {
+                span.setAttribute("model.response.tool_calls", aiMessage.toolExecutionRequests().size());
+            }
+        }
+        span.setOk().end();
+    }
+
+    @Override
+    public void onError(ChatModelErrorContext errorContext) {
+        if (errorContext.attributes().get(SPAN) instanceof Span span) {
+            span.recordError(errorContext.error()).end();
+        }
+    }
+
+    private static long requestChars(List<ChatMessage> messages) {
+        long chars = 0;
+        for (ChatMessage message : messages) {
+            if (message instanceof SystemMessage systemMessage) {
+                chars += systemMessage.text().length();
+            } else if (message instanceof UserMessage userMessage && userMessage.hasSingleText()) {
+                chars += userMessage.singleText().length();
+            } else if (message instanceof AiMessage aiMessage && aiMessage.text() != null) {
+                chars += aiMessage.text().length();
+            } else if (message instanceof ToolExecutionResultMessage resultMessage) {
+                chars += resultMessage.text().length();
+            }
+        }
+        return chars;
+    }
+}
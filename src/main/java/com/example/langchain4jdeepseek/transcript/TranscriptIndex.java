@@ -0,0 +1,181 @@
+package com.example.langchain4jdeepseek.transcript;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 内存映射的会话索引
+ * 开放寻址哈希表，槽位保存会话ID的两个64位哈希和记录位置；
+ * 文件头记录已建立索引的日志位置，重启后只需重放其后的记录。
+ * 调用方负责并发控制
+ */
+class TranscriptIndex implements Closeable {
+
+    private static final int MAGIC = 0x54524958;
+    private static final int HEADER_SIZE = 32;
+    private static final int SLOT_SIZE = 24;
+
+    // 超过该装载因子时需要扩容重建
+    private static final double MAX_LOAD = 0.7;
+
+    private final FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int capacity;
+    private int size;
+
+    private TranscriptIndex(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * 打开索引文件，文件不存在或已损坏时创建空索引
+     * @param file 索引文件
+     * @param initialCapacity 初始槽位数，取2的幂
+     */
+    static TranscriptIndex open(Path file, int initialCapacity) throws IOException {
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        TranscriptIndex index = new TranscriptIndex(channel);
+        if (channel.size() >= HEADER_SIZE) {
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            int capacity = header.getInt(4);
+            if (header.getInt(0) == MAGIC && Integer.bitCount(capacity) == 1
+                    && channel.size() >= HEADER_SIZE + (long) capacity * SLOT_SIZE) {
+                index.map(capacity);
+                index.size = index.buffer.getInt(8);
+                return index;
+            }
+        }
+        index.reset(Integer.highestOneBit(Math.max(16, initialCapacity)));
+        return index;
+    }
+
+    /**
+     * 清空索引，必要时扩大容量
+     */
+    void reset(int newCapacity) throws IOException {
+        if (buffer == null || newCapacity != capacity) {
+            map(newCapacity);
+        }
+        // 文件中可能残留旧容量下的槽位，需全部清零
+        for (int i = 0; i < HEADER_SIZE + capacity * SLOT_SIZE; i += 8) {
+            buffer.putLong(i, 0);
+        }
+        size = 0;
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, capacity);
+        buffer.putInt(8, 0);
+        checkpoint(0, 0);
+    }
+
+    /**
+     * 查找会话的记录位置
+     * @return 记录位置，不存在时返回0
+     */
+    long get(String sessionId) {
+        long h1 = hash(sessionId, 0xcbf29ce484222325L);
+        long h2 = hash(sessionId, 0x84222325cbf29ce4L);
+        int mask = capacity - 1;
+        for (int i = 0; i < capacity; i++) {
+            int slot = HEADER_SIZE + (((int) h1 + i) & mask) * SLOT_SIZE;
+            long location = buffer.getLong(slot + 16);
+            if (location == 0) {
+                return 0;
+            }
+            if (buffer.getLong(slot) == h1 && buffer.getLong(slot + 8) == h2) {
+                return location;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 写入或覆盖会话的记录位置
+     */
+    void put(String sessionId, long location) {
+        long h1 = hash(sessionId, 0xcbf29ce484222325L);
+        long h2 = hash(sessionId, 0x84222325cbf29ce4L);
+        int mask = capacity - 1;
+        for (int i = 0; i < capacity; i++) {
+            int slot = HEADER_SIZE + (((int) h1 + i) & mask) * SLOT_SIZE;
+            long existing = buffer.getLong(slot + 16);
+            if (existing == 0) {
+                buffer.putLong(slot, h1);
+                buffer.putLong(slot + 8, h2);
+                buffer.putLong(slot + 16, location);
+                size++;
+                buffer.putInt(8, size);
+                return;
+            }
+            if (buffer.getLong(slot) == h1 && buffer.getLong(slot + 8) == h2) {
+                buffer.putLong(slot + 16, location);
+                return;
+            }
+        }
+        throw new IllegalStateException("Transcript index is full");
+    }
+
+    boolean needsGrow() {
+        return size + 1 > capacity * MAX_LOAD;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * 记录已建立索引的日志位置
+     */
+    void checkpoint(long segmentId, long offset) {
+        buffer.putLong(16, segmentId);
+        buffer.putLong(24, offset);
+    }
+
+    long checkpointSegment() {
+        return buffer.getLong(16);
+    }
+
+    long checkpointOffset() {
+        return buffer.getLong(24);
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    private void map(int newCapacity) throws IOException {
+        capacity = newCapacity;
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) newCapacity * SLOT_SIZE);
+    }
+
+    /**
+     * FNV-1a哈希，使用不同种子得到两个相互独立的哈希值
+     */
+    private static long hash(String value, long seed) {
+        long hash = seed;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        // 再做一次混合，使低位分布均匀
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
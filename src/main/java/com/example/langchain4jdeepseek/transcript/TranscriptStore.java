@@ -0,0 +1,771 @@
+package com.example.langchain4jdeepseek.transcript;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * 流式会话记录的磁盘存储
+ * 已结束的会话以记录的形式追加写入分段日志文件，会话ID到记录位置的映射保存在内存映射索引中；
+ * 记录正文是预先序列化好的JSON，读取时从文件通道分块复制到响应输出流，不在堆上重建字符串。
+ * 后台任务按保留期限和总大小删除旧分段，并压缩有效记录过少的分段；
+ * 扫描分段和重建索引都在锁外进行，只在删除分段、复制记录和替换索引时短暂持有写锁。
+ * 保留期限按记录头中的写入时间计算：分段在其中最新的记录过期后删除，压缩时丢弃已过期的记录，
+ * 复制到新分段的记录保留原始时间戳
+ */
+@Component
+public class TranscriptStore implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(TranscriptStore.class);
+
+    private static final int RECORD_MAGIC = 0x54524331;
+
+    // 记录头：magic(4) + 正文长度(4) + 时间戳(8) + CRC32(4) + 会话ID长度(2)
+    private static final int RECORD_HEADER_SIZE = 22;
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String INDEX_FILE = "index.bin";
+
+    // 记录位置的编码：高位为分段ID，低40位为分段内偏移
+    private static final int OFFSET_BITS = 40;
+    private static final long OFFSET_MASK = (1L << OFFSET_BITS) - 1;
+
+    private final boolean enabled;
+    private final Path directory;
+    private final long segmentBytes;
+    private final long retentionMillis;
+    private final long maxTotalBytes;
+    private final double compactionLiveRatio;
+    private final int indexCapacity;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final NavigableMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private final ScheduledExecutorService maintenance;
+
+    private final LongAdder appended = new LongAdder();
+    private final LongAdder appendedBytes = new LongAdder();
+    private final LongAdder diskReads = new LongAdder();
+    private final LongAdder compactedSegments = new LongAdder();
+    private final LongAdder expiredSegments = new LongAdder();
+
+    private TranscriptIndex index;
+    private Segment active;
+
+    public TranscriptStore(
+            @Value("${transcript.enabled:true}") boolean enabled,
+            @Value("${transcript.dir:data/transcripts}") String directory,
+            @Value("${transcript.segment-bytes:67108864}") long segmentBytes,
+            @Value("${transcript.retention-hours:168}") long retentionHours,
+            @Value("${transcript.max-total-bytes:1073741824}") long maxTotalBytes,
+            @Value("${transcript.compaction-live-ratio:0.5}") double compactionLiveRatio,
+            @Value("${transcript.index-capacity:65536}") int indexCapacity,
+            @Value("${transcript.maintenance-interval-minutes:10}") long maintenanceIntervalMinutes) {
+        this.enabled = enabled;
+        this.directory = Path.of(directory);
+        this.segmentBytes = segmentBytes;
+        this.retentionMillis = TimeUnit.HOURS.toMillis(retentionHours);
+        this.maxTotalBytes = maxTotalBytes;
+        this.compactionLiveRatio = compactionLiveRatio;
+        this.indexCapacity = indexCapacity;
+        this.maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "transcript-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        if (enabled) {
+            try {
+                open();
+                maintenance.scheduleWithFixedDelay(this::maintain,
+                        maintenanceIntervalMinutes, maintenanceIntervalMinutes, TimeUnit.MINUTES);
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to open transcript store at " + this.directory, e);
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 追加一条已结束的会话记录
+     * @param sessionId 会话ID
+     * @param status 会话结束状态，如completed、cancelled、error
+     * @param scenario 场景
+     * @param message 用户消息
+     * @param content 模型输出
+     * @return true表示写入成功
+     */
+    public boolean append(String sessionId, String status, String scenario, String message, String content) {
+        if (!enabled) {
+            return false;
+        }
+
+        Map<String, Object> transcript = new LinkedHashMap<>();
+        transcript.put("sessionId", sessionId);
+        transcript.put("status", status);
+        transcript.put("scenario", scenario);
+        transcript.put("message", message);
+        transcript.put("content", content);
+        transcript.put("completedAt", Instant.now().toString());
+
+        long timestamp = System.currentTimeMillis();
+        ByteBuffer record;
+        try {
+            record = encode(sessionId, objectMapper.writeValueAsBytes(transcript), timestamp);
+        } catch (JsonProcessingException e) {
+            logger.error("Failed to serialize transcript for session {}", sessionId, e);
+            return false;
+        }
+
+        lock.writeLock().lock();
+        try {
+            writeRecord(sessionId, record, timestamp);
+            appended.increment();
+            appendedBytes.add(record.limit());
+            return true;
+        } catch (IOException e) {
+            logger.error("Failed to append transcript for session {}", sessionId, e);
+            return false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 查找会话记录
+     * 返回的读取器持有独立的文件通道，分段之后被删除也不影响本次读取
+     * @param sessionId 会话ID
+     * @return 记录正文的读取器，不存在时为空
+     */
+    public Optional<TranscriptReader> find(String sessionId) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        lock.readLock().lock();
+        try {
+            long location = index.get(sessionId);
+            Segment segment = location != 0 ? segments.get(location >>> OFFSET_BITS) : null;
+            if (segment == null) {
+                return Optional.empty();
+            }
+
+            long offset = location & OFFSET_MASK;
+            FileChannel channel = FileChannel.open(segment.path, StandardOpenOption.READ);
+            try {
+                RecordHeader header = readHeader(channel, offset, segment.size);
+                if (header == null || !header.sessionId.equals(sessionId) || isExpired(header, System.currentTimeMillis())) {
+                    channel.close();
+                    return Optional.empty();
+                }
+                diskReads.increment();
+                return Optional.of(new TranscriptReader(channel, header.payloadOffset, header.payloadLength));
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+        } catch (IOException e) {
+            logger.error("Failed to read transcript for session {}", sessionId, e);
+            return Optional.empty();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 获取存储统计
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", enabled);
+        result.put("appended", appended.sum());
+        result.put("appendedBytes", appendedBytes.sum());
+        result.put("diskReads", diskReads.sum());
+        result.put("compactedSegments", compactedSegments.sum());
+        result.put("expiredSegments", expiredSegments.sum());
+        if (enabled) {
+            lock.readLock().lock();
+            try {
+                result.put("segments", segments.size());
+                result.put("totalBytes", segments.values().stream().mapToLong(segment -> segment.size).sum());
+                result.put("indexedSessions", index.size());
+                result.put("indexCapacity", index.capacity());
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+        return result;
+    }
+
+    private void open() throws IOException {
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                long id = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                segments.put(id, new Segment(id, file));
+            }
+        }
+
+        index = TranscriptIndex.open(directory.resolve(INDEX_FILE), indexCapacity);
+        recover();
+
+        if (segments.isEmpty()) {
+            active = createSegment(1);
+        } else {
+            active = segments.lastEntry().getValue();
+            active.openForAppend();
+        }
+        logger.info("Opened transcript store at {} with {} segments and {} indexed sessions",
+                directory, segments.size(), index.size());
+    }
+
+    /**
+     * 从索引检查点之后重放日志，检查点无效时重建整个索引；
+     * 最后一个分段末尾不完整的记录会被截掉
+     */
+    private void recover() throws IOException {
+        long checkpointSegment = index.checkpointSegment();
+        Segment checkpoint = segments.get(checkpointSegment);
+        if (checkpoint == null || index.checkpointOffset() > Files.size(checkpoint.path)) {
+            rebuildIndex(index.capacity(), true);
+            return;
+        }
+        for (Segment segment : segments.tailMap(checkpointSegment, true).values()) {
+            long from = segment.id == checkpointSegment ? index.checkpointOffset() : 0;
+            replay(segment, from, segment == segments.lastEntry().getValue());
+        }
+    }
+
+    /**
+     * 扫描所有分段重建索引
+     * @param recovering 是否为启动恢复，恢复时校验并截断最后一个分段末尾不完整的记录
+     */
+    private void rebuildIndex(int capacity, boolean recovering) throws IOException {
+        index.reset(capacity);
+        for (Segment segment : segments.values()) {
+            replay(segment, 0, recovering && segment == segments.lastEntry().getValue());
+        }
+    }
+
+    /**
+     * 顺序读取分段中的记录并写入索引
+     * @param truncateInvalid 是否截掉末尾无效的记录（只用于最后一个分段）
+     */
+    private void replay(Segment segment, long from, boolean truncateInvalid) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment.path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long fileSize = channel.size();
+            long offset = from;
+            long maxTimestamp = segment.maxTimestamp;
+            while (offset < fileSize) {
+                RecordHeader header = readHeader(channel, offset, fileSize);
+                if (header == null || (truncateInvalid && !checksumMatches(channel, header))) {
+                    break;
+                }
+                putIndex(header.sessionId, location(segment.id, offset));
+                maxTimestamp = Math.max(maxTimestamp, header.timestamp);
+                offset = header.payloadOffset + header.payloadLength;
+            }
+            if (offset < fileSize && truncateInvalid) {
+                logger.warn("Truncating {} bytes of incomplete transcript records in {}", fileSize - offset, segment.path);
+                channel.truncate(offset);
+            }
+            segment.size = Math.min(offset, fileSize);
+            // 只重放了检查点之后的部分时无法确定整个分段的最新时间，留到需要时再扫描
+            if (from == 0) {
+                segment.maxTimestamp = maxTimestamp;
+            }
+            index.checkpoint(segment.id, segment.size);
+        }
+    }
+
+    private void writeRecord(String sessionId, ByteBuffer record, long timestamp) throws IOException {
+        if (active.size > 0 && active.size + record.limit() > segmentBytes) {
+            active.seal();
+            active = createSegment(active.id + 1);
+        }
+        long offset = active.size;
+        while (record.hasRemaining()) {
+            active.channel.write(record, offset + record.position());
+        }
+        active.size += record.limit();
+        // 新写入的记录时间不早于分段内任何记录
+        active.maxTimestamp = timestamp;
+        putIndex(sessionId, location(active.id, offset));
+        index.checkpoint(active.id, active.size);
+    }
+
+    private void putIndex(String sessionId, long location) throws IOException {
+        if (index.needsGrow()) {
+            logger.info("Growing transcript index to {} slots", index.capacity() * 2);
+            rebuildIndex(index.capacity() * 2, false);
+        }
+        index.put(sessionId, location);
+    }
+
+    private Segment createSegment(long id) throws IOException {
+        Segment segment = new Segment(id, directory.resolve(String.format("%s%012d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX)));
+        segment.openForAppend();
+        segments.put(id, segment);
+        return segment;
+    }
+
+    /**
+     * 定期维护：删除过期分段、按总大小淘汰最旧分段、压缩有效记录过少的分段
+     * 只有维护线程删除分段，已封存的分段内容不再变化，因此可以在锁外扫描
+     */
+    private void maintain() {
+        try {
+            boolean removed = expireSegments();
+            removed |= compactSegments();
+            if (removed) {
+                // 删除分段或丢弃过期记录后重建索引，清理指向已删除分段的槽位
+                rebuildIndexConcurrently();
+            }
+            lock.readLock().lock();
+            try {
+                index.force();
+                active.channel.force(false);
+            } finally {
+                lock.readLock().unlock();
+            }
+        } catch (IOException e) {
+            logger.error("Transcript store maintenance failed", e);
+        }
+    }
+
+    /**
+     * 获取已封存分段的快照，按ID从旧到新排列
+     */
+    private List<Segment> sealedSegments() {
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(segments.headMap(active.id, false).values());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean expireSegments() throws IOException {
+        long now = System.currentTimeMillis();
+        long totalBytes;
+        lock.readLock().lock();
+        try {
+            totalBytes = segments.values().stream().mapToLong(segment -> segment.size).sum();
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<Segment> expired = new ArrayList<>();
+        for (Segment segment : sealedSegments()) {
+            // 按分段内最新记录的写入时间判断，压缩时复制过来的旧记录不会因文件修改时间刷新而延长保留
+            if (now - maxTimestamp(segment) <= retentionMillis && totalBytes <= maxTotalBytes) {
+                break;
+            }
+            totalBytes -= segment.size;
+            expired.add(segment);
+        }
+        if (expired.isEmpty()) {
+            return false;
+        }
+
+        lock.writeLock().lock();
+        try {
+            for (Segment segment : expired) {
+                deleteSegment(segment);
+                expiredSegments.increment();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return true;
+    }
+
+    /**
+     * 分段内最新记录的写入时间，启动时未重放的分段在首次需要时扫描记录头
+     */
+    private long maxTimestamp(Segment segment) throws IOException {
+        if (segment.maxTimestamp == Segment.UNKNOWN_TIMESTAMP) {
+            long max = 0;
+            try (FileChannel channel = FileChannel.open(segment.path, StandardOpenOption.READ)) {
+                long offset = 0;
+                RecordHeader header;
+                while ((header = readHeader(channel, offset, segment.size)) != null) {
+                    max = Math.max(max, header.timestamp);
+                    offset = header.payloadOffset + header.payloadLength;
+                }
+            }
+            segment.maxTimestamp = max;
+        }
+        return segment.maxTimestamp;
+    }
+
+    private boolean isExpired(RecordHeader header, long now) {
+        return now - header.timestamp > retentionMillis;
+    }
+
+    /**
+     * 将有效记录占比过低的已封存分段中未过期的有效记录复制到当前分段，然后删除该分段
+     * 记录头在锁外读取；复制前在写锁下重新确认记录仍是该会话的最新记录，避免覆盖期间新写入的位置
+     * @return true表示删除了分段
+     */
+    private boolean compactSegments() throws IOException {
+        long now = System.currentTimeMillis();
+        boolean removed = false;
+        for (Segment segment : sealedSegments()) {
+            List<RecordHeader> headers = new ArrayList<>();
+            List<Long> offsets = new ArrayList<>();
+            try (FileChannel channel = FileChannel.open(segment.path, StandardOpenOption.READ)) {
+                long offset = 0;
+                RecordHeader header;
+                while ((header = readHeader(channel, offset, segment.size)) != null) {
+                    if (!isExpired(header, now)) {
+                        headers.add(header);
+                        offsets.add(offset);
+                    }
+                    offset = header.payloadOffset + header.payloadLength;
+                }
+            }
+
+            long liveBytes = 0;
+            lock.readLock().lock();
+            try {
+                for (int i = 0; i < headers.size(); i++) {
+                    if (index.get(headers.get(i).sessionId) == location(segment.id, offsets.get(i))) {
+                        liveBytes += headers.get(i).payloadOffset + headers.get(i).payloadLength - offsets.get(i);
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            if (segment.size == 0 || (double) liveBytes / segment.size >= compactionLiveRatio) {
+                continue;
+            }
+
+            int copied = 0;
+            lock.writeLock().lock();
+            try (FileChannel channel = FileChannel.open(segment.path, StandardOpenOption.READ)) {
+                for (int i = 0; i < headers.size(); i++) {
+                    RecordHeader header = headers.get(i);
+                    long offset = offsets.get(i);
+                    if (index.get(header.sessionId) == location(segment.id, offset)) {
+                        copyRecord(channel, offset, header.payloadOffset + header.payloadLength - offset);
+                        copied++;
+                    }
+                }
+                deleteSegment(segment);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            compactedSegments.increment();
+            removed = true;
+            logger.info("Compacted transcript segment {} ({} live records)", segment.id, copied);
+        }
+        return removed;
+    }
+
+    /**
+     * 在锁外扫描分段构建新索引，然后在写锁下补上扫描期间追加的记录并替换现有索引
+     * 新索引写入临时文件，替换时原子改名为索引文件；补录时需要扩容则放弃本次重建，下次维护时重试
+     */
+    private void rebuildIndexConcurrently() throws IOException {
+        long scannedSegment;
+        long scannedOffset;
+        int capacity;
+        List<Segment> snapshot;
+        lock.readLock().lock();
+        try {
+            snapshot = new ArrayList<>(segments.values());
+            scannedSegment = active.id;
+            scannedOffset = active.size;
+            capacity = index.capacity();
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        Path indexFile = directory.resolve(INDEX_FILE);
+        Path tempFile = directory.resolve(INDEX_FILE + ".tmp");
+        Files.deleteIfExists(tempFile);
+        TranscriptIndex rebuilt = TranscriptIndex.open(tempFile, capacity);
+        boolean swapped = false;
+        try {
+            while (!scanInto(rebuilt, snapshot, scannedSegment, scannedOffset)) {
+                rebuilt.reset(rebuilt.capacity() * 2);
+            }
+
+            lock.writeLock().lock();
+            try {
+                for (Segment segment : segments.tailMap(scannedSegment, true).values()) {
+                    long from = segment.id == scannedSegment ? scannedOffset : 0;
+                    if (!scanInto(rebuilt, segment, from, segment.size)) {
+                        logger.info("Transcript index filled up during rebuild, retrying at next maintenance");
+                        return;
+                    }
+                }
+                rebuilt.checkpoint(active.id, active.size);
+                rebuilt.force();
+                Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                index.close();
+                index = rebuilt;
+                swapped = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            if (!swapped) {
+                rebuilt.close();
+                Files.deleteIfExists(tempFile);
+            }
+        }
+    }
+
+    /**
+     * 将快照中的分段扫描到索引，当前分段只扫描到快照时的大小
+     * @return false表示索引需要扩容
+     */
+    private boolean scanInto(TranscriptIndex target, List<Segment> snapshot, long activeId, long activeSize)
+            throws IOException {
+        for (Segment segment : snapshot) {
+            if (!scanInto(target, segment, 0, segment.id == activeId ? activeSize : segment.size)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 将分段中[from, to)范围内的记录写入索引
+     * @return false表示索引需要扩容
+     */
+    private boolean scanInto(TranscriptIndex target, Segment segment, long from, long to) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment.path, StandardOpenOption.READ)) {
+            long offset = from;
+            RecordHeader header;
+            while ((header = readHeader(channel, offset, to)) != null) {
+                if (target.needsGrow()) {
+                    return false;
+                }
+                target.put(header.sessionId, location(segment.id, offset));
+                offset = header.payloadOffset + header.payloadLength;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 在文件通道之间直接复制记录并更新索引，记录头中的原始时间戳随记录一起复制
+     */
+    private void copyRecord(FileChannel source, long offset, long length) throws IOException {
+        RecordHeader header = readHeader(source, offset, offset + length);
+        if (active.size > 0 && active.size + length > segmentBytes) {
+            active.seal();
+            active = createSegment(active.id + 1);
+        }
+        long target = active.size;
+        // transferTo从目标通道的当前位置写入
+        active.channel.position(target);
+        long copied = 0;
+        while (copied < length) {
+            copied += source.transferTo(offset + copied, length - copied, active.channel);
+        }
+        active.size += length;
+        if (active.maxTimestamp != Segment.UNKNOWN_TIMESTAMP) {
+            active.maxTimestamp = Math.max(active.maxTimestamp, header.timestamp);
+        }
+        putIndex(header.sessionId, location(active.id, target));
+        index.checkpoint(active.id, active.size);
+    }
+
+    private void deleteSegment(Segment segment) throws IOException {
+        segments.remove(segment.id);
+        segment.close();
+        Files.deleteIfExists(segment.path);
+    }
+
+    private static ByteBuffer encode(String sessionId, byte[] payload, long timestamp) {
+        byte[] id = sessionId.getBytes(StandardCharsets.UTF_8);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_SIZE + id.length + payload.length);
+        buffer.putInt(RECORD_MAGIC)
+                .putInt(payload.length)
+                .putLong(timestamp)
+                .putInt((int) crc.getValue())
+                .putShort((short) id.length)
+                .put(id)
+                .put(payload);
+        return buffer.flip();
+    }
+
+    /**
+     * 读取记录头
+     * @return 记录头，位置越界或数据无效时返回null
+     */
+    private static RecordHeader readHeader(FileChannel channel, long offset, long limit) throws IOException {
+        if (offset + RECORD_HEADER_SIZE > limit) {
+            return null;
+        }
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        readFully(channel, header, offset);
+        header.flip();
+        if (header.getInt() != RECORD_MAGIC) {
+            return null;
+        }
+        int payloadLength = header.getInt();
+        long timestamp = header.getLong();
+        int crc = header.getInt();
+        int idLength = Short.toUnsignedInt(header.getShort());
+        long payloadOffset = offset + RECORD_HEADER_SIZE + idLength;
+        if (payloadLength < 0 || payloadOffset + payloadLength > limit) {
+            return null;
+        }
+
+        ByteBuffer id = ByteBuffer.allocate(idLength);
+        readFully(channel, id, offset + RECORD_HEADER_SIZE);
+        return new RecordHeader(new String(id.array(), StandardCharsets.UTF_8), timestamp, payloadOffset, payloadLength, crc);
+    }
+
+    private static boolean checksumMatches(FileChannel channel, RecordHeader header) throws IOException {
+        ByteBuffer payload = ByteBuffer.allocate(header.payloadLength);
+        readFully(channel, payload, header.payloadOffset);
+        CRC32 crc = new CRC32();
+        crc.update(payload.flip());
+        return (int) crc.getValue() == header.crc;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of transcript segment");
+            }
+        }
+    }
+
+    private static long location(long segmentId, long offset) {
+        return (segmentId << OFFSET_BITS) | offset;
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        maintenance.shutdownNow();
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            for (Segment segment : segments.values()) {
+                segment.close();
+            }
+            index.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private record RecordHeader(String sessionId, long timestamp, long payloadOffset, int payloadLength, int crc) {
+    }
+
+    /**
+     * 日志分段，只有当前分段保持写入通道
+     */
+    private static final class Segment {
+        static final long UNKNOWN_TIMESTAMP = -1;
+
+        final long id;
+        final Path path;
+        volatile long size;
+        // 分段内最新记录的写入时间，未扫描时为UNKNOWN_TIMESTAMP
+        long maxTimestamp = UNKNOWN_TIMESTAMP;
+        FileChannel channel;
+
+        Segment(long id, Path path) throws IOException {
+            this.id = id;
+            this.path = path;
+            this.size = Files.exists(path) ? Files.size(path) : 0;
+        }
+
+        void openForAppend() throws IOException {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+
+        void seal() throws IOException {
+            if (channel != null) {
+                channel.force(false);
+                channel.close();
+                channel = null;
+            }
+        }
+
+        void close() throws IOException {
+            seal();
+        }
+    }
+
+    /**
+     * 会话记录正文的读取器，持有独立的文件通道，使用后需关闭
+     */
+    public static final class TranscriptReader implements AutoCloseable {
+
+        private final FileChannel channel;
+        private final long position;
+        private final long length;
+
+        TranscriptReader(FileChannel channel, long position, long length) {
+            this.channel = channel;
+            this.position = position;
+            this.length = length;
+        }
+
+        public long length() {
+            return length;
+        }
+
+        /**
+         * 将正文从文件通道传输到目标通道
+         * 只有目标是文件或套接字通道时才由内核直接传输，其他通道经JDK的临时缓冲区分块复制
+         */
+        public void transferTo(WritableByteChannel target) throws IOException {
+            long transferred = 0;
+            while (transferred < length) {
+                transferred += channel.transferTo(position + transferred, length - transferred, target);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
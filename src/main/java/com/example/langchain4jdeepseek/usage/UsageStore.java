@@ -0,0 +1,211 @@
+package com.example.langchain4jdeepseek.usage;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+/**
+ * token用量的本地存储
+ * 每天一个JSON Lines文件，每行是一次批量刷新中某个（客户端, 场景, 模型）组合的增量；
+ * 同一组合在一天内可能有多行，查询时再汇总。一次刷新的所有行合并为一次追加写入
+ */
+public class UsageStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(UsageStore.class);
+
+    private static final String FILE_PREFIX = "usage-";
+    private static final String FILE_SUFFIX = ".jsonl";
+
+    private final Path directory;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public UsageStore(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+    }
+
+    /**
+     * 追加一批用量记录
+     * @param day 记录所属的日期
+     * @param records 用量记录
+     */
+    public void append(LocalDate day, List<UsageRecord> records) throws IOException {
+        if (records.isEmpty()) {
+            return;
+        }
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(records.size() * 128);
+        long now = System.currentTimeMillis();
+        for (UsageRecord record : records) {
+            Map<String, Object> line = new LinkedHashMap<>();
+            line.put("at", now);
+            line.put("client", record.clientKey());
+            line.put("scenario", record.scenario());
+            line.put("model", record.model());
+            line.put("requests", record.requests());
+            line.put("in", record.inputTokens());
+            line.put("out", record.outputTokens());
+            buffer.write(objectMapper.writeValueAsBytes(line));
+            buffer.write('\n');
+        }
+        Files.write(file(day), buffer.toByteArray(), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * 按日期顺序读取区间内的用量记录，无法解析的行被跳过
+     * @param from 起始日期（含）
+     * @param to 结束日期（含）
+     * @param consumer 接收日期和记录
+     */
+    public void read(LocalDate from, LocalDate to, RecordConsumer consumer) throws IOException {
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            Path file = file(day);
+            if (!Files.exists(file)) {
+                continue;
+            }
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    UsageRecord record = parse(line);
+                    if (record != null) {
+                        consumer.accept(day, record);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 按映射改写所有文件中的客户端标识，只重写有变化的文件；先写入临时文件再替换原文件，无法解析的行原样保留
+     * @return 改写的文件数
+     */
+    public int rewriteClients(UnaryOperator<String> mapping) throws IOException {
+        int rewritten = 0;
+        for (Path file : files().values()) {
+            List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            StringBuilder content = new StringBuilder();
+            boolean changed = false;
+            for (String line : lines) {
+                JsonNode node = null;
+                try {
+                    node = line.isBlank() ? null : objectMapper.readTree(line);
+                } catch (IOException e) {
+                    // 原样保留
+                }
+                if (node instanceof ObjectNode object && object.path("client").isTextual()) {
+                    String client = object.get("client").asText();
+                    String mapped = mapping.apply(client);
+                    if (!mapped.equals(client)) {
+                        object.put("client", mapped);
+                        line = objectMapper.writeValueAsString(object);
+                        changed = true;
+                    }
+                }
+                content.append(line).append('\n');
+            }
+            if (changed) {
+                Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+                Files.writeString(temp, content, StandardCharsets.UTF_8);
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                rewritten++;
+            }
+        }
+        return rewritten;
+    }
+
+    /**
+     * 删除早于指定日期的文件
+     * @return 删除的文件数
+     */
+    public int deleteBefore(LocalDate cutoff) {
+        int deleted = 0;
+        for (Map.Entry<LocalDate, Path> entry : files().entrySet()) {
+            if (entry.getKey().isBefore(cutoff)) {
+                try {
+                    Files.deleteIfExists(entry.getValue());
+                    deleted++;
+                } catch (IOException e) {
+                    logger.warn("Failed to delete usage file {}: {}", entry.getValue(), e.getMessage());
+                }
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * 列出已有的用量文件
+     */
+    public Map<LocalDate, Path> files() {
+        Map<LocalDate, Path> result = new LinkedHashMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, FILE_PREFIX + "*" + FILE_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    result.put(LocalDate.parse(name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length())), file);
+                } catch (DateTimeParseException e) {
+                    // 忽略不符合命名规则的文件
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to list usage files in {}: {}", directory, e.getMessage());
+        }
+        return result;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    private Path file(LocalDate day) {
+        return directory.resolve(FILE_PREFIX + day + FILE_SUFFIX);
+    }
+
+    private UsageRecord parse(String line) {
+        if (line.isBlank()) {
+            return null;
+        }
+        try {
+            JsonNode node = objectMapper.readTree(line);
+            return new UsageRecord(node.path("client").asText(), node.path("scenario").asText(), node.path("model").asText(),
+                    node.path("requests").asLong(), node.path("in").asLong(), node.path("out").asLong());
+        } catch (IOException e) {
+            // 进程崩溃时可能留下不完整的最后一行
+            return null;
+        }
+    }
+
+    /**
+     * 用量记录
+     */
+    public record UsageRecord(String clientKey, String scenario, String model,
+                              long requests, long inputTokens, long outputTokens) {
+        public long totalTokens() {
+            return inputTokens + outputTokens;
+        }
+    }
+
+    /**
+     * 读取用量记录的回调
+     */
+    @FunctionalInterface
+    public interface RecordConsumer {
+        void accept(LocalDate day, UsageRecord record);
+    }
+}
@@ -0,0 +1,557 @@
+package com.example.langchain4jdeepseek.usage;
+
+import com.example.langchain4jdeepseek.config.UsageQuotaProperties;
+import com.example.langchain4jdeepseek.exception.QuotaExceededException;
+import com.example.langchain4jdeepseek.limit.ClientKeys;
+import dev.langchain4j.model.output.TokenUsage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * token用量统计与配额
+ * 模型返回的用量按（客户端, 场景, 模型）累加到LongAdder中，后台任务定期取出增量批量写入本地存储；
+ * 每个客户端（及客户端在各场景下）的当日和当月用量同样保存在内存计数器中，配额检查只读计数器，
+ * 请求路径上没有磁盘读写。启动时从本月的存储文件恢复计数器
+ */
+@Component
+public class UsageTracker implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(UsageTracker.class);
+
+    // 超过该数量时回收已无增量的用量计数器和本月之前的配额计数器
+    private static final int MAX_TRACKED_KEYS = 10_000;
+
+    // 单次查询的最大天数
+    private static final int MAX_QUERY_DAYS = 400;
+
+    // 单次查询返回的最大行数
+    private static final int MAX_QUERY_ROWS = 1000;
+
+    private static final List<String> DIMENSIONS = List.of("client", "scenario", "model", "day");
+
+    // 旧版本以原始API Key作为客户端标识写入用量文件，迁移为指纹后创建该标记文件
+    private static final String FINGERPRINT_MARKER = ".client-fingerprints";
+
+    // 来源地址形式的客户端标识（IPv4或IPv6），迁移时保留
+    private static final Pattern ADDRESS = Pattern.compile("\\d{1,3}(\\.\\d{1,3}){3}|[0-9a-fA-F.]*:[0-9a-fA-F:.]*(%\\w+)?");
+
+    private final boolean enabled;
+    private final ZoneId zone;
+    private final long retentionDays;
+    private final UsageQuotaProperties quotaProperties;
+    private final UsageStore store;
+
+    // 尚未写入存储的用量增量
+    private final Map<UsageKey, Counters> pending = new ConcurrentHashMap<>();
+
+    // 配额计数器，键为客户端标识或“客户端\0场景”
+    private final Map<String, QuotaWindow> windows = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService flusher;
+
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder flushedRows = new LongAdder();
+    private final LongAdder flushFailures = new LongAdder();
+    private final LongAdder quotaRejections = new LongAdder();
+
+    private volatile long lastFlushMillis;
+    private LocalDate lastCleanupDay;
+
+    public UsageTracker(
+            @Value("${usage.enabled:true}") boolean enabled,
+            @Value("${usage.dir:data/usage}") String directory,
+            @Value("${usage.flush-interval-ms:10000}") long flushIntervalMs,
+            @Value("${usage.retention-days:400}") long retentionDays,
+            @Value("${usage.zone:}") String zone,
+            UsageQuotaProperties quotaProperties) {
+        this.enabled = enabled;
+        this.zone = zone == null || zone.isBlank() ? ZoneId.systemDefault() : ZoneId.of(zone);
+        this.retentionDays = retentionDays;
+        this.quotaProperties = quotaProperties;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "usage-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        if (!enabled) {
+            this.store = null;
+            return;
+        }
+        try {
+            this.store = new UsageStore(Path.of(directory));
+            fingerprintLegacyClients();
+            loadWindows();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to open usage store at " + directory, e);
+        }
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 记录一次模型调用返回的用量
+     * @param clientKey 客户端标识
+     * @param scenario 场景
+     * @param model 模型名称
+     * @param usage 模型返回的用量，为null时只计请求数
+     */
+    public void record(String clientKey, String scenario, String model, TokenUsage usage) {
+        if (!enabled) {
+            return;
+        }
+        clientKey = normalize(clientKey, "anonymous");
+        scenario = normalize(scenario, "default");
+        long input = usage != null && usage.inputTokenCount() != null ? usage.inputTokenCount() : 0;
+        long output = usage != null && usage.outputTokenCount() != null ? usage.outputTokenCount() : 0;
+
+        Counters counters = pending.computeIfAbsent(new UsageKey(clientKey, scenario, normalize(model, "unknown")),
+                key -> new Counters());
+        counters.requests.increment();
+        counters.inputTokens.add(input);
+        counters.outputTokens.add(output);
+        recorded.increment();
+
+        long total = input + output;
+        if (total > 0) {
+            LocalDate today = today();
+            long day = today.toEpochDay();
+            long month = monthOf(today);
+            window(clientKey).add(total, day, month);
+            window(scenarioWindowKey(clientKey, scenario)).add(total, day, month);
+        }
+    }
+
+    /**
+     * 在调用模型前检查配额，超出时抛出QuotaExceededException
+     * 只读取内存计数器；当前请求的预估token数计入检查，已接近配额时提前拒绝
+     * @param clientKey 客户端标识
+     * @param scenario 场景
+     * @param estimatedTokens 预估本次请求消耗的token数
+     */
+    public void checkQuota(String clientKey, String scenario, long estimatedTokens) {
+        if (!enabled || !quotaProperties.isEnabled()) {
+            return;
+        }
+        clientKey = normalize(clientKey, "anonymous");
+        scenario = normalize(scenario, "default");
+        LocalDate today = today();
+        // 只读取已有的计数器，没有用量的客户端不创建计数器，避免大量新客户端挤占计数器
+        check(clientKey, windows.get(clientKey), quotaProperties.forClient(clientKey), today, estimatedTokens, "");
+        UsageQuotaProperties.Limit scenarioLimit = quotaProperties.getScenarios().get(scenario);
+        if (scenarioLimit != null) {
+            check(clientKey, windows.get(scenarioWindowKey(clientKey, scenario)), scenarioLimit, today,
+                    estimatedTokens, " for scenario " + scenario);
+        }
+    }
+
+    /**
+     * 查询客户端当前的配额使用情况
+     */
+    public Map<String, Object> quota(String clientKey) {
+        clientKey = normalize(clientKey, "anonymous");
+        LocalDate today = today();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("client", clientKey);
+        result.put("day", today.toString());
+        result.put("enforced", enabled && quotaProperties.isEnabled());
+        result.putAll(quotaStatus(windows.get(clientKey), quotaProperties.forClient(clientKey), today));
+
+        Map<String, Object> scenarios = new LinkedHashMap<>();
+        for (Map.Entry<String, UsageQuotaProperties.Limit> entry : quotaProperties.getScenarios().entrySet()) {
+            scenarios.put(entry.getKey(), quotaStatus(windows.get(scenarioWindowKey(clientKey, entry.getKey())),
+                    entry.getValue(), today));
+        }
+        result.put("scenarios", scenarios);
+        return result;
+    }
+
+    /**
+     * 按日期区间汇总用量，包括尚未写入存储的增量（计入今天）
+     * @param from 起始日期（含），为null时为结束日期所在月的第一天
+     * @param to 结束日期（含），为null时为今天
+     * @param clientKey 只统计该客户端，为null时不过滤
+     * @param scenario 只统计该场景，为null时不过滤
+     * @param model 只统计该模型，为null时不过滤
+     * @param groupBy 分组维度，可选client、scenario、model、day
+     * @return 汇总结果
+     */
+    public Map<String, Object> query(LocalDate from, LocalDate to, String clientKey, String scenario, String model,
+                                     Collection<String> groupBy) throws IOException {
+        if (to == null) {
+            to = today();
+        }
+        if (from == null) {
+            from = to.withDayOfMonth(1);
+        }
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("'to' must not be before 'from'");
+        }
+        if (from.plusDays(MAX_QUERY_DAYS).isBefore(to)) {
+            throw new IllegalArgumentException("Query range must not exceed " + MAX_QUERY_DAYS + " days");
+        }
+        for (String dimension : groupBy) {
+            if (!DIMENSIONS.contains(dimension)) {
+                throw new IllegalArgumentException("Unknown groupBy dimension: " + dimension + ", expected one of " + DIMENSIONS);
+            }
+        }
+
+        Map<List<String>, long[]> groups = new HashMap<>();
+        long[] totals = new long[3];
+        UsageStore.RecordConsumer consumer = (day, record) -> {
+            if ((clientKey != null && !clientKey.equals(record.clientKey()))
+                    || (scenario != null && !scenario.equals(record.scenario()))
+                    || (model != null && !model.equals(record.model()))) {
+                return;
+            }
+            List<String> group = new ArrayList<>(groupBy.size());
+            for (String dimension : groupBy) {
+                group.add(switch (dimension) {
+                    case "client" -> record.clientKey();
+                    case "scenario" -> record.scenario();
+                    case "model" -> record.model();
+                    default -> day.toString();
+                });
+            }
+            long[] sums = groups.computeIfAbsent(group, key -> new long[3]);
+            sums[0] += record.requests();
+            sums[1] += record.inputTokens();
+            sums[2] += record.outputTokens();
+            totals[0] += record.requests();
+            totals[1] += record.inputTokens();
+            totals[2] += record.outputTokens();
+        };
+
+        if (enabled) {
+            store.read(from, to, consumer);
+            LocalDate today = today();
+            if (!today.isBefore(from) && !today.isAfter(to)) {
+                pending.forEach((key, counters) -> consumer.accept(today, new UsageStore.UsageRecord(key.clientKey(),
+                        key.scenario(), key.model(), counters.requests.sum(), counters.inputTokens.sum(),
+                        counters.outputTokens.sum())));
+            }
+        }
+
+        List<Map<String, Object>> rows = new ArrayList<>(groups.size());
+        groups.entrySet().stream()
+                .sorted((a, b) -> Long.compare(b.getValue()[1] + b.getValue()[2], a.getValue()[1] + a.getValue()[2]))
+                .limit(MAX_QUERY_ROWS)
+                .forEach(entry -> {
+                    Map<String, Object> row = new LinkedHashMap<>();
+                    int i = 0;
+                    for (String dimension : groupBy) {
+                        row.put(dimension, entry.getKey().get(i++));
+                    }
+                    row.putAll(sums(entry.getValue()));
+                    rows.add(row);
+                });
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("from", from.toString());
+        result.put("to", to.toString());
+        result.put("groupBy", groupBy);
+        result.put("totals", sums(totals));
+        result.put("rows", rows);
+        result.put("truncated", groups.size() > MAX_QUERY_ROWS);
+        return result;
+    }
+
+    /**
+     * 将尚未写入的增量批量写入存储，写入失败时增量放回计数器等待下次刷新
+     * @return 写入的行数
+     */
+    public synchronized int flush() {
+        if (!enabled) {
+            return 0;
+        }
+        LocalDate today = today();
+        List<UsageStore.UsageRecord> batch = new ArrayList<>();
+        boolean evict = pending.size() > MAX_TRACKED_KEYS;
+        for (Map.Entry<UsageKey, Counters> entry : pending.entrySet()) {
+            UsageKey key = entry.getKey();
+            Counters counters = entry.getValue();
+            if (evict && counters.isEmpty()) {
+                pending.remove(key, counters);
+            }
+            // 移除后仍可能有并发写入的增量，一并取出
+            long requests = counters.requests.sumThenReset();
+            long input = counters.inputTokens.sumThenReset();
+            long output = counters.outputTokens.sumThenReset();
+            if (requests != 0 || input != 0 || output != 0) {
+                batch.add(new UsageStore.UsageRecord(key.clientKey(), key.scenario(), key.model(), requests, input, output));
+            }
+        }
+
+        try {
+            store.append(today, batch);
+            if (!batch.isEmpty()) {
+                flushes.increment();
+                flushedRows.add(batch.size());
+            }
+            lastFlushMillis = System.currentTimeMillis();
+        } catch (IOException e) {
+            flushFailures.increment();
+            logger.error("Failed to flush {} usage rows, will retry: {}", batch.size(), e.getMessage());
+            for (UsageStore.UsageRecord record : batch) {
+                Counters counters = pending.computeIfAbsent(
+                        new UsageKey(record.clientKey(), record.scenario(), record.model()), key -> new Counters());
+                counters.requests.add(record.requests());
+                counters.inputTokens.add(record.inputTokens());
+                counters.outputTokens.add(record.outputTokens());
+            }
+            return 0;
+        }
+
+        if (!today.equals(lastCleanupDay)) {
+            lastCleanupDay = today;
+            int deleted = store.deleteBefore(today.minusDays(retentionDays));
+            if (deleted > 0) {
+                logger.info("Deleted {} usage files older than {} days", deleted, retentionDays);
+            }
+        }
+        return batch.size();
+    }
+
+    /**
+     * 获取用量统计
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", enabled);
+        result.put("quotaEnabled", enabled && quotaProperties.isEnabled());
+        result.put("recorded", recorded.sum());
+        result.put("pendingKeys", pending.size());
+        result.put("quotaWindows", windows.size());
+        result.put("flushes", flushes.sum());
+        result.put("flushedRows", flushedRows.sum());
+        result.put("flushFailures", flushFailures.sum());
+        result.put("lastFlushMillis", lastFlushMillis);
+        result.put("quotaRejections", quotaRejections.sum());
+        return result;
+    }
+
+    private void check(String clientKey, QuotaWindow window, UsageQuotaProperties.Limit limit,
+                       LocalDate today, long estimatedTokens, String scope) {
+        long day = today.toEpochDay();
+        long month = monthOf(today);
+        if (limit.getDailyTokens() > 0) {
+            long used = window != null ? window.daily(day, month) : 0;
+            if (used + estimatedTokens > limit.getDailyTokens()) {
+                throw rejected(clientKey, "daily", used, limit.getDailyTokens(), today.plusDays(1), scope);
+            }
+        }
+        if (limit.getMonthlyTokens() > 0) {
+            long used = window != null ? window.monthly(day, month) : 0;
+            if (used + estimatedTokens > limit.getMonthlyTokens()) {
+                throw rejected(clientKey, "monthly", used, limit.getMonthlyTokens(),
+                        today.withDayOfMonth(1).plusMonths(1), scope);
+            }
+        }
+    }
+
+    private QuotaExceededException rejected(String clientKey, String period, long used, long quota,
+                                            LocalDate resetDay, String scope) {
+        quotaRejections.increment();
+        long retryAfter = Math.max(1, Duration.between(ZonedDateTime.now(zone), resetDay.atStartOfDay(zone)).getSeconds() + 1);
+        logger.warn("Client '{}' exceeded {} token quota{} ({} / {})", clientKey, period, scope, used, quota);
+        return new QuotaExceededException("Token quota exceeded (" + period + scope + ")", period, used, quota, retryAfter);
+    }
+
+    private Map<String, Object> quotaStatus(QuotaWindow window, UsageQuotaProperties.Limit limit, LocalDate today) {
+        long day = today.toEpochDay();
+        long month = monthOf(today);
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("daily", period(window != null ? window.daily(day, month) : 0, limit.getDailyTokens()));
+        result.put("monthly", period(window != null ? window.monthly(day, month) : 0, limit.getMonthlyTokens()));
+        return result;
+    }
+
+    private static Map<String, Object> period(long used, long quota) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("usedTokens", used);
+        result.put("quotaTokens", quota > 0 ? quota : null);
+        result.put("remainingTokens", quota > 0 ? Math.max(0, quota - used) : null);
+        return result;
+    }
+
+    private static Map<String, Object> sums(long[] sums) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("requests", sums[0]);
+        result.put("inputTokens", sums[1]);
+        result.put("outputTokens", sums[2]);
+        result.put("totalTokens", sums[1] + sums[2]);
+        return result;
+    }
+
+    /**
+     * 将旧版本用量文件中的原始API Key替换为指纹，只在首次启动时执行
+     */
+    private void fingerprintLegacyClients() throws IOException {
+        Path marker = store.getDirectory().resolve(FINGERPRINT_MARKER);
+        if (Files.exists(marker)) {
+            return;
+        }
+        int rewritten = store.rewriteClients(client -> client.isEmpty() || client.equals("anonymous")
+                || client.startsWith(ClientKeys.FINGERPRINT_PREFIX) || ADDRESS.matcher(client).matches()
+                ? client : ClientKeys.fingerprint(client));
+        Files.write(marker, new byte[0]);
+        if (rewritten > 0) {
+            logger.info("Replaced raw API keys with fingerprints in {} usage files", rewritten);
+        }
+    }
+
+    /**
+     * 从本月的存储文件恢复配额计数器
+     */
+    private void loadWindows() throws IOException {
+        LocalDate today = today();
+        long day = today.toEpochDay();
+        long month = monthOf(today);
+        long[] rows = new long[1];
+        store.read(today.withDayOfMonth(1), today, (recordDay, record) -> {
+            long total = record.totalTokens();
+            long todayTokens = recordDay.equals(today) ? total : 0;
+            window(record.clientKey()).load(todayTokens, total, day, month);
+            window(scenarioWindowKey(record.clientKey(), record.scenario())).load(todayTokens, total, day, month);
+            rows[0]++;
+        });
+        logger.info("Loaded {} usage rows for {} quota windows from {}", rows[0], windows.size(), store.getDirectory());
+    }
+
+    private QuotaWindow window(String key) {
+        QuotaWindow window = windows.get(key);
+        if (window != null) {
+            return window;
+        }
+        if (windows.size() >= MAX_TRACKED_KEYS) {
+            // 只回收本月之前的计数器，本月有用量的计数器回收后配额会失效
+            long month = monthOf(today());
+            windows.values().removeIf(candidate -> candidate.month != month);
+        }
+        return windows.computeIfAbsent(key, k -> new QuotaWindow());
+    }
+
+    private LocalDate today() {
+        return LocalDate.now(zone);
+    }
+
+    private static long monthOf(LocalDate date) {
+        return date.getYear() * 12L + date.getMonthValue() - 1;
+    }
+
+    private static String scenarioWindowKey(String clientKey, String scenario) {
+        return clientKey + '\u0000' + scenario;
+    }
+
+    private static String normalize(String value, String fallback) {
+        return value == null || value.isBlank() ? fallback : value;
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            logger.error("Usage flush failed: {}", e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        flusher.shutdownNow();
+        flush();
+    }
+
+    /**
+     * 用量统计的维度
+     */
+    private record UsageKey(String clientKey, String scenario, String model) {
+    }
+
+    /**
+     * 一个维度组合尚未写入存储的增量
+     */
+    private static final class Counters {
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder inputTokens = new LongAdder();
+        private final LongAdder outputTokens = new LongAdder();
+
+        boolean isEmpty() {
+            return requests.sum() == 0 && inputTokens.sum() == 0 && outputTokens.sum() == 0;
+        }
+    }
+
+    /**
+     * 当日和当月的用量计数器，跨日或跨月后首次访问时清零
+     */
+    private static final class QuotaWindow {
+        private volatile long day = Long.MIN_VALUE;
+        private volatile long month = Long.MIN_VALUE;
+        private final LongAdder dayTokens = new LongAdder();
+        private final LongAdder monthTokens = new LongAdder();
+
+        void add(long tokens, long day, long month) {
+            roll(day, month);
+            dayTokens.add(tokens);
+            monthTokens.add(tokens);
+        }
+
+        void load(long todayTokens, long monthTokens, long day, long month) {
+            roll(day, month);
+            dayTokens.add(todayTokens);
+            this.monthTokens.add(monthTokens);
+        }
+
+        long daily(long day, long month) {
+            roll(day, month);
+            return dayTokens.sum();
+        }
+
+        long monthly(long day, long month) {
+            roll(day, month);
+            return monthTokens.sum();
+        }
+
+        private void roll(long day, long month) {
+            if (this.day == day) {
+                return;
+            }
+            synchronized (this) {
+                if (this.day != day) {
+                    dayTokens.reset();
+                    if (this.month != month) {
+                        monthTokens.reset();
+                        this.month = month;
+                    }
+                    this.day = day;
+                }
+            }
+        }
+    }
+}
@@ -1,14 +1,34 @@
 // 流式聊天客户端示例
+// 使用紧凑JSON的SSE协议（Accept: text/event-stream;version=1），每个事件为 data:{"t":类型,"s":序号,"c":内容,...}
+// 相邻token会合并为一个事件；响应的gzip/deflate压缩由浏览器自动解压
 class StreamingChatClient {
     constructor(baseUrl = '') {
         this.baseUrl = baseUrl;
         this.eventSource = null;
         this.currentSessionId = null;
+        this.lastSequence = 0;
     }
     
     // 发送消息并接收流式响应
     async sendMessage(message, options = {}) {
-        const { scenario = '', onToken = () => {}, onComplete = () => {}, onError = () => {} } = options;
+        const {
+            scenario = '',
+            onToken = () => {},
+            onComplete = () => {},
+            onError = () => {},
+            onTool = () => {},
+            onUsage = () => {},
+            // 服务端排空时提示稍后重新发送，未提供时作为错误处理
+            onReconnect = null
+        } = options;
+        this.lastSequence = 0;
+        let completed = false;
+        const complete = () => {
+            if (!completed) {
+                completed = true;
+                onComplete();
+            }
+        };
         
         try {
             // 准备请求数据
@@ -22,7 +42,7 @@ class StreamingChatClient {
                 method: 'POST',
                 headers: {
                     'Content-Type': 'application/json',
-                    'Accept': 'text/event-stream',
+                    'Accept': 'text/event-stream;version=1',
                     'Cache-Control': 'no-cache'
                 },
                 body: JSON.stringify(requestData)
@@ -41,7 +61,7 @@ class StreamingChatClient {
                 const { done, value } = await reader.read();
                 
                 if (done) {
-                    onComplete();
+                    complete();
                     break;
                 }
                 
@@ -53,26 +73,52 @@ class StreamingChatClient {
                 for (const line of lines) {
                     if (line.trim() === '') continue;
                     
-                    // 处理SSE格式数据
-                    if (line.startsWith('data: ')) {
-                        const data = line.substring(6);
+                    // 处理SSE格式数据，以冒号开头的是心跳注释
+                    if (line.startsWith('data:')) {
+                        const data = line.substring(line.startsWith('data: ') ? 6 : 5);
                         
+                        let eventData;
                         try {
-                            // 尝试解析JSON数据
-                            const eventData = JSON.parse(data);
-                            
-                            if (eventData.type === 'token') {
-                                onToken(eventData.content);
-                            } else if (eventData.type === 'session-id') {
-                                this.currentSessionId = eventData.content;
-                            } else if (eventData.type === 'complete') {
-                                onComplete();
-                            } else if (eventData.type === 'error') {
-                                onError(eventData.content);
-                            }
+                            eventData = JSON.parse(data);
                         } catch (e) {
                             // 如果不是JSON格式，直接作为token处理
                             onToken(data);
+                            continue;
+                        }
+                        
+                        // 兼容 {type, content} 格式
+                        const type = eventData.t || eventData.type;
+                        const content = eventData.c !== undefined ? eventData.c : eventData.content;
+                        if (eventData.s) {
+                            if (this.lastSequence && eventData.s !== this.lastSequence + 1) {
+                                console.warn(`事件序号不连续: ${this.lastSequence} -> ${eventData.s}`);
+                            }
+                            this.lastSequence = eventData.s;
+                        }
+                        
+                        if (type === 'token') {
+                            onToken(content);
+                        } else if (type === 'session-id') {
+                            this.currentSessionId = content;
+                        } else if (type === 'tool-start' || type === 'tool-output' || type === 'tool-end') {
+                            // 工具活动：开始（name、args）、标准输出片段（c）、结束（ms、resultChars）
+                            onTool({ phase: type.substring(5), id: eventData.id, name: eventData.name,
+                                     args: eventData.args, output: type === 'tool-output' ? content : undefined,
+                                     durationMs: eventData.ms, resultChars: eventData.resultChars });
+                        } else if (type === 'usage') {
+                            onUsage({ inputTokens: eventData.in, outputTokens: eventData.out, finishReason: eventData.finish });
+                        } else if (type === 'complete') {
+                            complete();
+                        } else if (type === 'reconnect') {
+                            completed = true;
+                            if (onReconnect) {
+                                onReconnect({ reason: content, retryMs: eventData.retryMs });
+                            } else {
+                                onError(`服务正在重启，请在${Math.ceil(eventData.retryMs / 1000)}秒后重试`);
+                            }
+                        } else if (type === 'error') {
+                            completed = true;
+                            onError(content);
                         }
                     }
                 }
@@ -0,0 +1,216 @@
+package com.example.langchain4jdeepseek.pool;
+
+import com.example.langchain4jdeepseek.http.CancellableHttpClientBuilder;
+import com.example.langchain4jdeepseek.resilience.RetryBudget;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.openai.OpenAiChatModel;
+import dev.langchain4j.model.openai.OpenAiStreamingChatModel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 端点池路由测试
+ * 用com.sun.net.httpserver模拟OpenAI兼容的上游，验证故障转移、熔断和流式请求只在首个token前故障转移
+ */
+class RoutingChatModelTest {
+
+    private static final String COMPLETION = """
+            {"id":"1","object":"chat.completion","created":1,"model":"test",\
+            "choices":[{"index":0,"message":{"role":"assistant","content":"hello"},"finish_reason":"stop"}],\
+            "usage":{"prompt_tokens":1,"completion_tokens":1,"total_tokens":2}}""";
+
+    private static final String FIRST_CHUNK = """
+            data: {"id":"1","object":"chat.completion.chunk","created":1,"model":"test",\
+            "choices":[{"index":0,"delta":{"role":"assistant","content":"hel"},"finish_reason":null}]}
+
+            """;
+
+    private static final String LAST_CHUNK = """
+            data: {"id":"1","object":"chat.completion.chunk","created":1,"model":"test",\
+            "choices":[{"index":0,"delta":{"content":"lo"},"finish_reason":"stop"}]}
+
+            data: [DONE]
+
+            """;
+
+    private final List<HttpServer> servers = new ArrayList<>();
+
+    @AfterEach
+    void stopServers() {
+        servers.forEach(server -> server.stop(0));
+    }
+
+    @Test
+    void failsOverToHealthyEndpointAndOpensCircuit() {
+        AtomicInteger badCalls = new AtomicInteger();
+        AtomicInteger goodCalls = new AtomicInteger();
+        ModelEndpoint bad = endpoint("bad", start(exchange -> {
+            badCalls.incrementAndGet();
+            respond(exchange, 500, "application/json", "{\"error\":{\"message\":\"boom\"}}");
+        }));
+        ModelEndpoint good = endpoint("good", start(exchange -> {
+            goodCalls.incrementAndGet();
+            respond(exchange, 200, "application/json", COMPLETION);
+        }));
+        // 两个端点都没有延迟样本时评分相同，先选配置在前的bad
+        RoutingChatModel model = new RoutingChatModel(
+                new ModelEndpointPool(List.of(bad, good)), bad.getChatModel(), retryBudget());
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals("hello", model.chat(request()).aiMessage().text());
+        }
+
+        // 前两次请求在bad上失败后转移到good，失败率达到阈值后熔断，第三次请求不再发往bad
+        assertEquals(2, badCalls.get());
+        assertEquals(3, goodCalls.get());
+        assertEquals(CircuitBreaker.State.OPEN, bad.getCircuitBreaker().getState());
+        assertEquals(CircuitBreaker.State.CLOSED, good.getCircuitBreaker().getState());
+    }
+
+    @Test
+    void streamFailsOverBeforeFirstToken() throws Exception {
+        AtomicInteger badCalls = new AtomicInteger();
+        AtomicInteger goodCalls = new AtomicInteger();
+        ModelEndpoint bad = endpoint("bad", start(exchange -> {
+            badCalls.incrementAndGet();
+            respond(exchange, 500, "application/json", "{\"error\":{\"message\":\"boom\"}}");
+        }));
+        ModelEndpoint good = endpoint("good", start(exchange -> {
+            goodCalls.incrementAndGet();
+            respond(exchange, 200, "text/event-stream", FIRST_CHUNK + LAST_CHUNK);
+        }));
+        RoutingStreamingChatModel model = new RoutingStreamingChatModel(
+                new ModelEndpointPool(List.of(bad, good)), bad.getStreamingChatModel(), retryBudget());
+
+        StreamResult result = stream(model);
+
+        assertEquals("hello", result.completion.get(10, TimeUnit.SECONDS).aiMessage().text());
+        assertEquals("hello", result.partial.toString());
+        assertEquals(1, badCalls.get());
+        assertEquals(1, goodCalls.get());
+    }
+
+    @Test
+    void streamDoesNotFailOverAfterFirstToken() throws Exception {
+        AtomicInteger goodCalls = new AtomicInteger();
+        // 输出第一个token后返回无法解析的事件
+        ModelEndpoint broken = endpoint("broken", start(exchange ->
+                respond(exchange, 200, "text/event-stream", FIRST_CHUNK + "data: {\"choices\":[\n\n")));
+        ModelEndpoint good = endpoint("good", start(exchange -> {
+            goodCalls.incrementAndGet();
+            respond(exchange, 200, "text/event-stream", FIRST_CHUNK + LAST_CHUNK);
+        }));
+        RoutingStreamingChatModel model = new RoutingStreamingChatModel(
+                new ModelEndpointPool(List.of(broken, good)), broken.getStreamingChatModel(), retryBudget());
+
+        StreamResult result = stream(model);
+
+        assertThrows(Exception.class, () -> result.completion.get(10, TimeUnit.SECONDS));
+        assertEquals("hel", result.partial.toString());
+        assertEquals(0, goodCalls.get());
+    }
+
+    private HttpServer start(Handler handler) {
+        try {
+            HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.createContext("/", exchange -> {
+                exchange.getRequestBody().readAllBytes();
+                try {
+                    handler.handle(exchange);
+                } finally {
+                    exchange.close();
+                }
+            });
+            server.start();
+            servers.add(server);
+            return server;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static ModelEndpoint endpoint(String name, HttpServer server) {
+        String baseUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/v1";
+        ChatModel chatModel = OpenAiChatModel.builder()
+                .apiKey("test")
+                .baseUrl(baseUrl)
+                .modelName("test")
+                .maxRetries(0)
+                .httpClientBuilder(new CancellableHttpClientBuilder())
+                .build();
+        StreamingChatModel streamingChatModel = OpenAiStreamingChatModel.builder()
+                .apiKey("test")
+                .baseUrl(baseUrl)
+                .modelName("test")
+                .httpClientBuilder(new CancellableHttpClientBuilder())
+                .build();
+        // 至少2次调用且失败率达到50%时熔断，测试期间不会冷却
+        return new ModelEndpoint(name, baseUrl, chatModel, streamingChatModel,
+                new CircuitBreaker(2, 0.5, 60_000, 60_000), 0.3);
+    }
+
+    private static RetryBudget retryBudget() {
+        return new RetryBudget(0.1, 10, 3, 1, 1);
+    }
+
+    private static ChatRequest request() {
+        return ChatRequest.builder().messages(UserMessage.from("hi")).build();
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private static StreamResult stream(StreamingChatModel model) {
+        StreamResult result = new StreamResult();
+        model.chat(request(), new StreamingChatResponseHandler() {
+            @Override
+            public void onPartialResponse(String partialResponse) {
+                result.partial.append(partialResponse);
+            }
+
+            @Override
+            public void onCompleteResponse(ChatResponse completeResponse) {
+                result.completion.complete(completeResponse);
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                result.completion.completeExceptionally(error);
+            }
+        });
+        return result;
+    }
+
+    private interface Handler {
+        void handle(HttpExchange exchange) throws IOException;
+    }
+
+    private static final class StreamResult {
+        final StringBuffer partial = new StringBuffer();
+        final CompletableFuture<ChatResponse> completion = new CompletableFuture<>();
+    }
+}
@@ -0,0 +1,94 @@
+#!/bin/bash
+
+# 启动耗时基准测试
+# 默认模式和快速启动模式各自以普通启动、AOT、AOT+AppCDS三种方式启动应用，
+# 记录从启动进程到就绪检查返回200的耗时，每种方式重复多轮后输出中位数。
+# 两种模式使用相同的AOT和AppCDS组合，可以区分快速启动本身和AOT、AppCDS各自的收益。
+# 用法: ./startup-benchmark.sh [轮数] [端口]
+
+ROUNDS=${1:-5}
+PORT=${2:-18090}
+TARGET=target
+DEFAULT_JSA=$TARGET/app-cds-default.jsa
+FAST_JSA=$TARGET/app-cds-fast.jsa
+MAIN=com.example.langchain4jdeepseek.LangChain4jDeepSeekApplication
+WORK_DIR=$(mktemp -d)
+
+# 不访问外部服务，使用临时目录保存运行数据
+APP_ARGS="--server.port=$PORT --tavily.api.url=${TAVILY_API_URL:-https://api.tavily.com} \
+--transcript.dir=$WORK_DIR/transcripts --usage.dir=$WORK_DIR/usage --knowledge.dir=$WORK_DIR/knowledge \
+--traffic-log.file=$WORK_DIR/model-traffic.jsonl --tracing.file=$WORK_DIR/traces.jsonl"
+
+echo "构建应用和AOT初始化代码..."
+# AOT处理会启动一次应用上下文，输出写入构建日志
+if ! mvn -B -q -Paot package -DskipTests > $WORK_DIR/build.log 2>&1; then
+    cat $WORK_DIR/build.log
+    exit 1
+fi
+mvn -B -q dependency:build-classpath -Dmdep.outputFile=$TARGET/classpath.txt || exit 1
+
+# AppCDS只能归档jar中的类，使用未重新打包的应用jar和依赖jar组成的类路径
+APP_JAR=$(ls $TARGET/*.jar.original | head -1)
+CLASSPATH="$APP_JAR:$(cat $TARGET/classpath.txt)"
+
+# 两种模式加载的类不同，各自训练一个归档
+train_cds() {
+    local jsa=$1
+    local app_args=$2
+    rm -f $jsa
+    java -XX:ArchiveClassesAtExit=$jsa -Dspring.aot.enabled=true -Dspring.context.exit=onRefresh \
+        -cp "$CLASSPATH" $MAIN $APP_ARGS $app_args > $WORK_DIR/cds-training.log 2>&1
+}
+
+echo "生成AppCDS归档（上下文刷新后退出）..."
+train_cds $DEFAULT_JSA ""
+train_cds $FAST_JSA "--spring.profiles.active=fast-startup"
+
+# 启动一次并等待就绪，输出耗时（毫秒）
+run_once() {
+    local jvm_args=$1
+    local app_args=$2
+    local start=$(date +%s%N)
+    java $jvm_args -cp "$CLASSPATH" $MAIN $APP_ARGS $app_args > $WORK_DIR/run.log 2>&1 &
+    local pid=$!
+    local status=""
+    while [ "$status" != "200" ]; do
+        if ! kill -0 $pid 2>/dev/null; then
+            echo "启动失败，日志见 $WORK_DIR/run.log" >&2
+            echo -1
+            return
+        fi
+        sleep 0.02
+        status=$(curl -s -o /dev/null -w "%{http_code}" http://localhost:$PORT/api/lifecycle/readiness)
+    done
+    local end=$(date +%s%N)
+    kill $pid
+    wait $pid 2>/dev/null
+    echo $(( (end - start) / 1000000 ))
+}
+
+median() {
+    sort -n | awk '{ values[NR] = $1 } END { print values[int((NR + 1) / 2)] }'
+}
+
+benchmark() {
+    local name=$1
+    local jvm_args=$2
+    local app_args=$3
+    local results=""
+    for i in $(seq 1 $ROUNDS); do
+        results="$results$(run_once "$jvm_args" "$app_args")"$'\n'
+    done
+    printf "%-28s 就绪中位耗时 %6s ms  (各轮: %s)\n" "$name" \
+        "$(echo -n "$results" | median)" "$(echo -n "$results" | tr '\n' ' ')"
+}
+
+echo "每种模式启动${ROUNDS}轮..."
+benchmark "默认模式" "" ""
+benchmark "默认模式+AOT" "-Dspring.aot.enabled=true" ""
+benchmark "默认模式+AOT+AppCDS" "-Dspring.aot.enabled=true -XX:SharedArchiveFile=$DEFAULT_JSA" ""
+benchmark "快速启动" "" "--spring.profiles.active=fast-startup"
+benchmark "快速启动+AOT" "-Dspring.aot.enabled=true" "--spring.profiles.active=fast-startup"
+benchmark "快速启动+AOT+AppCDS" "-Dspring.aot.enabled=true -XX:SharedArchiveFile=$FAST_JSA" "--spring.profiles.active=fast-startup"
+
+rm -rf $WORK_DIR